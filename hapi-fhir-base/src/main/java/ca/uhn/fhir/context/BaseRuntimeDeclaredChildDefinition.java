@@ -20,6 +20,9 @@ package ca.uhn.fhir.context;
  * #L%
  */
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -45,7 +48,7 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 	private final IMutator myMutator;
 	private final String myShortDefinition;
 	private boolean mySummary;
-	BaseRuntimeDeclaredChildDefinition(Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName) throws ConfigurationException {
+	BaseRuntimeDeclaredChildDefinition(FhirContext theContext, Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName) throws ConfigurationException {
 		super();
 		Validate.notNull(theField, "No field speficied");
 		ValidateUtil.isGreaterThanOrEqualTo(theChildAnnotation.min(), 0, "Min must be >= 0");
@@ -67,7 +70,25 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		}
 
 		myField.setAccessible(true);
-		if (List.class.equals(myField.getType())) {
+		boolean isList = List.class.equals(myField.getType());
+		if (theContext.getPerformanceOptions().contains(PerformanceOptionsEnum.METHOD_HANDLE_CHILD_ACCESS)) {
+			MethodHandle getter;
+			MethodHandle setter;
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				getter = lookup.unreflectGetter(myField).asType(MethodType.methodType(Object.class, Object.class));
+				setter = lookup.unreflectSetter(myField).asType(MethodType.methodType(void.class, Object.class, Object.class));
+			} catch (IllegalAccessException e) {
+				throw new ConfigurationException("Failed to create accessors for field " + myField, e);
+			}
+			if (isList) {
+				myAccessor = new MethodHandleListAccessor(getter);
+				myMutator = new MethodHandleListMutator(getter, setter);
+			} else {
+				myAccessor = new MethodHandlePlainAccessor(getter);
+				myMutator = new MethodHandlePlainMutator(setter);
+			}
+		} else if (isList) {
 			// TODO: verify that generic type is IElement
 			myAccessor = new FieldListAccessor();
 			myMutator = new FieldListMutator();
@@ -222,4 +243,109 @@ public abstract class BaseRuntimeDeclaredChildDefinition extends BaseRuntimeChil
 		}
 	}
 
+	private static final class MethodHandleListAccessor implements IAccessor {
+		private final MethodHandle myGetter;
+
+		MethodHandleListAccessor(MethodHandle theGetter) {
+			myGetter = theGetter;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public List<IBase> getValues(Object theTarget) {
+			List<IBase> retVal;
+			try {
+				retVal = (List<IBase>) (Object) myGetter.invokeExact(theTarget);
+			} catch (Throwable e) {
+				throw new ConfigurationException("Failed to get value", e);
+			}
+
+			if (retVal == null) {
+				retVal = Collections.emptyList();
+			}
+			return retVal;
+		}
+	}
+
+	private static final class MethodHandleListMutator implements IMutator {
+		private final MethodHandle myGetter;
+		private final MethodHandle mySetter;
+
+		MethodHandleListMutator(MethodHandle theGetter, MethodHandle theSetter) {
+			myGetter = theGetter;
+			mySetter = theSetter;
+		}
+
+		@Override
+		public void addValue(Object theTarget, IBase theValue) {
+			addValue(theTarget, theValue, false);
+		}
+
+		private void addValue(Object theTarget, IBase theValue, boolean theClear) {
+			try {
+				@SuppressWarnings("unchecked")
+				List<IBase> existingList = (List<IBase>) (Object) myGetter.invokeExact(theTarget);
+				if (existingList == null) {
+					existingList = new ArrayList<IBase>(2);
+					mySetter.invokeExact(theTarget, (Object) existingList);
+				}
+				if (theClear) {
+					existingList.clear();
+				}
+				existingList.add(theValue);
+			} catch (Throwable e) {
+				throw new ConfigurationException("Failed to set value", e);
+			}
+		}
+
+		@Override
+		public void setValue(Object theTarget, IBase theValue) {
+			addValue(theTarget, theValue, true);
+		}
+	}
+
+	private static final class MethodHandlePlainAccessor implements IAccessor {
+		private final MethodHandle myGetter;
+
+		MethodHandlePlainAccessor(MethodHandle theGetter) {
+			myGetter = theGetter;
+		}
+
+		@Override
+		public List<IBase> getValues(Object theTarget) {
+			Object values;
+			try {
+				values = (Object) myGetter.invokeExact(theTarget);
+			} catch (Throwable e) {
+				throw new ConfigurationException("Failed to get value", e);
+			}
+			if (values == null) {
+				return Collections.emptyList();
+			}
+			return Collections.singletonList((IBase) values);
+		}
+	}
+
+	private static final class MethodHandlePlainMutator implements IMutator {
+		private final MethodHandle mySetter;
+
+		MethodHandlePlainMutator(MethodHandle theSetter) {
+			mySetter = theSetter;
+		}
+
+		@Override
+		public void addValue(Object theTarget, IBase theValue) {
+			try {
+				mySetter.invokeExact(theTarget, (Object) theValue);
+			} catch (Throwable e) {
+				throw new ConfigurationException("Failed to set value", e);
+			}
+		}
+
+		@Override
+		public void setValue(Object theTarget, IBase theValue) {
+			addValue(theTarget, theValue);
+		}
+	}
+
 }
@@ -349,23 +349,23 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 
 			BaseRuntimeDeclaredChildDefinition def;
 			if (childAnnotation.name().equals("extension") && IBaseExtension.class.isAssignableFrom(nextElementType)) {
-				def = new RuntimeChildExtension(nextField, childAnnotation.name(), childAnnotation, descriptionAnnotation);
+				def = new RuntimeChildExtension(myContext, nextField, childAnnotation.name(), childAnnotation, descriptionAnnotation);
 			} else if (childAnnotation.name().equals("modifierExtension") && IBaseExtension.class.isAssignableFrom(nextElementType)) {
-				def = new RuntimeChildExtension(nextField, childAnnotation.name(), childAnnotation, descriptionAnnotation);
+				def = new RuntimeChildExtension(myContext, nextField, childAnnotation.name(), childAnnotation, descriptionAnnotation);
 			} else if (BaseContainedDt.class.isAssignableFrom(nextElementType) || (childAnnotation.name().equals("contained") && IBaseResource.class.isAssignableFrom(nextElementType))) {
 				/*
 				 * Child is contained resources
 				 */
-				def = new RuntimeChildContainedResources(nextField, childAnnotation, descriptionAnnotation, elementName);
+				def = new RuntimeChildContainedResources(myContext, nextField, childAnnotation, descriptionAnnotation, elementName);
 			} else if (IAnyResource.class.isAssignableFrom(nextElementType) || IResource.class.equals(nextElementType)) {
 				/*
 				 * Child is a resource as a direct child, as in Bundle.entry.resource
 				 */
-				def = new RuntimeChildDirectResource(nextField, childAnnotation, descriptionAnnotation, elementName);
+				def = new RuntimeChildDirectResource(myContext, nextField, childAnnotation, descriptionAnnotation, elementName);
 			} else {
 				childIsChoiceType |= choiceTypes.size() > 1;
 				if (extensionAttr == null && childIsChoiceType && !BaseResourceReferenceDt.class.isAssignableFrom(nextElementType) && !IBaseReference.class.isAssignableFrom(nextElementType)) {
-					def = new RuntimeChildChoiceDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, choiceTypes);
+					def = new RuntimeChildChoiceDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, choiceTypes);
 				} else if (extensionAttr != null) {
 					/*
 					 * Child is an extension
@@ -377,7 +377,7 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 						binder = ModelScanner.getBoundCodeBinder(nextField);
 					}
 
-					def = new RuntimeChildDeclaredExtensionDefinition(nextField, childAnnotation, descriptionAnnotation, extensionAttr, elementName, extensionAttr.url(), et,							binder);
+					def = new RuntimeChildDeclaredExtensionDefinition(myContext, nextField, childAnnotation, descriptionAnnotation, extensionAttr, elementName, extensionAttr.url(), et,							binder);
 
 					if (IBaseEnumeration.class.isAssignableFrom(nextElementType)) {
 						((RuntimeChildDeclaredExtensionDefinition)def).setEnumerationType(ReflectionUtil.getGenericCollectionTypeOfFieldWithSecondOrderForList(nextField));
@@ -396,7 +396,7 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 						}
 						refTypesList.add((Class<? extends IBaseResource>) nextType);
 					}
-					def = new RuntimeChildResourceDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, refTypesList);
+					def = new RuntimeChildResourceDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, refTypesList);
 
 				} else if (IResourceBlock.class.isAssignableFrom(nextElementType) || IBaseBackboneElement.class.isAssignableFrom(nextElementType)
 						|| IBaseDatatypeElement.class.isAssignableFrom(nextElementType)) {
@@ -409,7 +409,7 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 				} else if (IDatatype.class.equals(nextElementType) || IElement.class.equals(nextElementType) || "Type".equals(nextElementType.getSimpleName())
 						|| IBaseDatatype.class.equals(nextElementType)) {
 
-					def = new RuntimeChildAny(nextField, elementName, childAnnotation, descriptionAnnotation);
+					def = new RuntimeChildAny(myContext, nextField, elementName, childAnnotation, descriptionAnnotation);
 				} else if (IDatatype.class.isAssignableFrom(nextElementType) || IPrimitiveType.class.isAssignableFrom(nextElementType) || ICompositeType.class.isAssignableFrom(nextElementType)
 						|| IBaseDatatype.class.isAssignableFrom(nextElementType) || IBaseExtension.class.isAssignableFrom(nextElementType)) {
 					Class<? extends IBase> nextDatatype = (Class<? extends IBase>) nextElementType;
@@ -418,22 +418,22 @@ public abstract class BaseRuntimeElementCompositeDefinition<T extends IBase> ext
 						if (nextElementType.equals(BoundCodeDt.class)) {
 							IValueSetEnumBinder<Enum<?>> binder = ModelScanner.getBoundCodeBinder(nextField);
 							Class<? extends Enum<?>> enumType = ModelScanner.determineEnumTypeForBoundField(nextField);
-							def = new RuntimeChildPrimitiveBoundCodeDatatypeDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype, binder, enumType);
+							def = new RuntimeChildPrimitiveBoundCodeDatatypeDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype, binder, enumType);
 						} else if (IBaseEnumeration.class.isAssignableFrom(nextElementType)) {
 							Class<? extends Enum<?>> binderType = ModelScanner.determineEnumTypeForBoundField(nextField);
-							def = new RuntimeChildPrimitiveEnumerationDatatypeDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype, binderType);
+							def = new RuntimeChildPrimitiveEnumerationDatatypeDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype, binderType);
 						} else {
-							def = new RuntimeChildPrimitiveDatatypeDefinition(nextField, elementName, descriptionAnnotation, childAnnotation, nextDatatype);
+							def = new RuntimeChildPrimitiveDatatypeDefinition(myContext, nextField, elementName, descriptionAnnotation, childAnnotation, nextDatatype);
 						}
 					} else {
 						if (IBoundCodeableConcept.class.isAssignableFrom(nextElementType)) {
 							IValueSetEnumBinder<Enum<?>> binder = ModelScanner.getBoundCodeBinder(nextField);
 							Class<? extends Enum<?>> enumType = ModelScanner.determineEnumTypeForBoundField(nextField);
-							def = new RuntimeChildCompositeBoundDatatypeDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype, binder, enumType);
+							def = new RuntimeChildCompositeBoundDatatypeDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype, binder, enumType);
 						} else if (BaseNarrativeDt.class.isAssignableFrom(nextElementType) || INarrative.class.isAssignableFrom(nextElementType)) {
-							def = new RuntimeChildNarrativeDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype);
+							def = new RuntimeChildNarrativeDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype);
 						} else {
-							def = new RuntimeChildCompositeDatatypeDefinition(nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype);
+							def = new RuntimeChildCompositeDatatypeDefinition(myContext, nextField, elementName, childAnnotation, descriptionAnnotation, nextDatatype);
 						}
 					}
 
@@ -42,6 +42,7 @@ public class ParserOptions {
 	private boolean myStripVersionsFromReferences = true;
 	private Set<String> myDontStripVersionsFromReferencesAtPaths = Collections.emptySet();
 	private boolean myOverrideResourceIdWithBundleEntryFullUrl = true;
+	private boolean myStreamingJsonParsing = false;
 	
 	/**
 	 * If supplied value(s), any resource references at the specified paths will have their
@@ -174,4 +175,46 @@ public class ParserOptions {
 		myOverrideResourceIdWithBundleEntryFullUrl = theOverrideResourceIdWithBundleEntryFullUrl;
 		return this;
 	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will read resources
+	 * directly from the token stream instead of first loading the entire document into an
+	 * in-memory JSON tree. Only small parts of the document (primitive values, extensions and
+	 * any resource object which does not declare <code>resourceType</code> as its first member)
+	 * are buffered, so the memory used beyond the parsed model itself is roughly proportional to
+	 * the largest of these parts rather than to the whole document. This is useful when parsing
+	 * very large Bundles.
+	 * <p>
+	 * In this mode, a <code>_name</code> extension/id element for a complex (non-primitive) element
+	 * is only applied if it appears before the element it belongs to. This never occurs
+	 * in valid FHIR JSON.
+	 * </p>
+	 *
+	 * @return Returns the parser instance's configuration setting for streaming JSON parsing. Default is <code>false</code>.
+	 */
+	public boolean isStreamingJsonParsing() {
+		return myStreamingJsonParsing;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), the JSON parser will read resources
+	 * directly from the token stream instead of first loading the entire document into an
+	 * in-memory JSON tree. Only small parts of the document (primitive values, extensions and
+	 * any resource object which does not declare <code>resourceType</code> as its first member)
+	 * are buffered, so the memory used beyond the parsed model itself is roughly proportional to
+	 * the largest of these parts rather than to the whole document. This is useful when parsing
+	 * very large Bundles.
+	 * <p>
+	 * In this mode, a <code>_name</code> extension/id element for a complex (non-primitive) element
+	 * is only applied if it appears before the element it belongs to. This never occurs
+	 * in valid FHIR JSON.
+	 * </p>
+	 *
+	 * @param theStreamingJsonParsing Set this to <code>true</code> to enable streaming JSON parsing
+	 * @return Returns a reference to <code>this</code> parser so that method calls can be chained together
+	 */
+	public ParserOptions setStreamingJsonParsing(boolean theStreamingJsonParsing) {
+		myStreamingJsonParsing = theStreamingJsonParsing;
+		return this;
+	}
 }
@@ -35,6 +35,19 @@ public enum PerformanceOptionsEnum {
 	 * Android or low powered devices.
 	 * </p> 
 	 */
-	DEFERRED_MODEL_SCANNING
-	
+	DEFERRED_MODEL_SCANNING,
+
+	/**
+	 * When this option is set, the fields of model classes are read and written through
+	 * {@link java.lang.invoke.MethodHandle MethodHandles} which are created when the model
+	 * is scanned, instead of through reflective {@link java.lang.reflect.Field} access. This
+	 * affects every parse, encode and {@link ca.uhn.fhir.util.FhirTerser} operation.
+	 * <p>
+	 * This option must be set before the context scans any model types. It should not be
+	 * used on platforms which do not support <code>java.lang.invoke</code>, e.g. older
+	 * versions of Android.
+	 * </p>
+	 */
+	METHOD_HANDLE_CHILD_ACCESS
+
 }
@@ -39,8 +39,8 @@ import ca.uhn.fhir.model.primitive.XhtmlDt;
 
 public class RuntimeChildAny extends RuntimeChildChoiceDefinition {
 
-	public RuntimeChildAny(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation) {
-		super(theField, theElementName, theChildAnnotation, theDescriptionAnnotation);
+	public RuntimeChildAny(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation) {
+		super(theContext, theField, theElementName, theChildAnnotation, theDescriptionAnnotation);
 	}
 
 	@Override
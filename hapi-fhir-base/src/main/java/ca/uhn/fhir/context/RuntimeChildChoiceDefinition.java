@@ -41,8 +41,8 @@ public class RuntimeChildChoiceDefinition extends BaseRuntimeDeclaredChildDefini
 	/**
 	 * Constructor
 	 */
-	public RuntimeChildChoiceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBase>> theChoiceTypes) {
-		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
+	public RuntimeChildChoiceDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBase>> theChoiceTypes) {
+		super(theContext, theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 
 		myChoiceTypes = Collections.unmodifiableList(theChoiceTypes);
 	}
@@ -52,8 +52,8 @@ public class RuntimeChildChoiceDefinition extends BaseRuntimeDeclaredChildDefini
 	 * 
 	 * For extension, if myChoiceTypes will be set some other way
 	 */
-	RuntimeChildChoiceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation) {
-		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
+	RuntimeChildChoiceDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation) {
+		super(theContext, theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 	}
 
 	void setChoiceTypes(List<Class<? extends IBase>> theChoiceTypes) {
@@ -34,8 +34,8 @@ public class RuntimeChildCompositeBoundDatatypeDefinition extends RuntimeChildCo
 	private IValueSetEnumBinder<Enum<?>> myBinder;
 	private Class<? extends Enum<?>> myEnumType;
 
-	public RuntimeChildCompositeBoundDatatypeDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, Class<? extends IBase> theDatatype, IValueSetEnumBinder<Enum<?>> theBinder, Class<? extends Enum<?>> theEnumType) {
-		super(theField, theElementName, theChildAnnotation, theDescriptionAnnotation, theDatatype);
+	public RuntimeChildCompositeBoundDatatypeDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, Class<? extends IBase> theDatatype, IValueSetEnumBinder<Enum<?>> theBinder, Class<? extends Enum<?>> theEnumType) {
+		super(theContext, theField, theElementName, theChildAnnotation, theDescriptionAnnotation, theDatatype);
 		Validate.notNull(theBinder, "theBinder must not be null");
 		Validate.notNull(theEnumType, "theEnumType must not be null");
 		
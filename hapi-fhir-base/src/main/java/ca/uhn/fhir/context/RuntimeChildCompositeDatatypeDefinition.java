@@ -29,8 +29,8 @@ import ca.uhn.fhir.model.api.annotation.Description;
 
 public class RuntimeChildCompositeDatatypeDefinition extends BaseRuntimeChildDatatypeDefinition {
 
-	public RuntimeChildCompositeDatatypeDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, Class<? extends IBase> theDatatype) {
-		super(theField, theElementName, theChildAnnotation,theDescriptionAnnotation, theDatatype);
+	public RuntimeChildCompositeDatatypeDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, Class<? extends IBase> theDatatype) {
+		super(theContext, theField, theElementName, theChildAnnotation,theDescriptionAnnotation, theDatatype);
 	}
 
 
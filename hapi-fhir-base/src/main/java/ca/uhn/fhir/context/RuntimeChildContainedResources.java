@@ -37,8 +37,8 @@ public class RuntimeChildContainedResources extends BaseRuntimeDeclaredChildDefi
 
 	private BaseRuntimeElementDefinition<?> myElem;
 
-	RuntimeChildContainedResources(Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName) throws ConfigurationException {
-		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
+	RuntimeChildContainedResources(FhirContext theContext, Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName) throws ConfigurationException {
+		super(theContext, theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 	}
 
 	@Override
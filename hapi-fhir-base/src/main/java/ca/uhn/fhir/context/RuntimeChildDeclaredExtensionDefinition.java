@@ -56,10 +56,10 @@ public class RuntimeChildDeclaredExtensionDefinition extends RuntimeChildChoiceD
 	 * @param theDefinedLocally
 	 *           See {@link Extension#definedLocally()}
 	 */
-	RuntimeChildDeclaredExtensionDefinition(Field theField, Child theChild, Description theDescriptionAnnotation, Extension theExtension, String theElementName, String theExtensionUrl,
+	RuntimeChildDeclaredExtensionDefinition(FhirContext theContext, Field theField, Child theChild, Description theDescriptionAnnotation, Extension theExtension, String theElementName, String theExtensionUrl,
 			Class<? extends IBase> theChildType, Object theBoundTypeBinder)
 			throws ConfigurationException {
-		super(theField, theElementName, theChild, theDescriptionAnnotation);
+		super(theContext, theField, theElementName, theChild, theDescriptionAnnotation);
 		assert isNotBlank(theExtensionUrl);
 		myExtensionUrl = theExtensionUrl;
 		myChildType = theChildType;
@@ -36,8 +36,8 @@ public class RuntimeChildDirectResource extends BaseRuntimeDeclaredChildDefiniti
 //	private RuntimeElemContainedResources myElem;
 	private FhirContext myContext;
 
-	RuntimeChildDirectResource(Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName) throws ConfigurationException {
-		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
+	RuntimeChildDirectResource(FhirContext theContext, Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName) throws ConfigurationException {
+		super(theContext, theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 	}
 
 	@Override
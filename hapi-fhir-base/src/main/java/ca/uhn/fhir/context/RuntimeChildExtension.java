@@ -33,8 +33,8 @@ public class RuntimeChildExtension extends RuntimeChildAny {
 
 //	private RuntimeChildUndeclaredExtensionDefinition myExtensionElement;
 
-	public RuntimeChildExtension(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation) {
-		super(theField, theElementName, theChildAnnotation, theDescriptionAnnotation);
+	public RuntimeChildExtension(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation) {
+		super(theContext, theField, theElementName, theChildAnnotation, theDescriptionAnnotation);
 	}
 
 	@Override
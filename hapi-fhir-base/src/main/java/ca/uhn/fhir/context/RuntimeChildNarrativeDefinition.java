@@ -29,8 +29,8 @@ import ca.uhn.fhir.model.api.annotation.Description;
 
 public class RuntimeChildNarrativeDefinition extends RuntimeChildCompositeDatatypeDefinition {
 
-	public RuntimeChildNarrativeDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, Class<? extends IBase> theDatatype) {
-		super(theField, theElementName, theChildAnnotation,theDescriptionAnnotation, theDatatype);
+	public RuntimeChildNarrativeDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, Class<? extends IBase> theDatatype) {
+		super(theContext, theField, theElementName, theChildAnnotation,theDescriptionAnnotation, theDatatype);
 	}
 
 
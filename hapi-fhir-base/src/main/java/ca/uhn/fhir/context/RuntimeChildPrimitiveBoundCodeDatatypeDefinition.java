@@ -32,8 +32,8 @@ public class RuntimeChildPrimitiveBoundCodeDatatypeDefinition extends RuntimeChi
 	private Object myBinder;
 	private Class<? extends Enum<?>> myEnumType;
 
-	public RuntimeChildPrimitiveBoundCodeDatatypeDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation,  Class<? extends IBase> theDatatype, Object theBinder, Class<? extends Enum<?>> theEnumType) {
-		super(theField, theElementName, theDescriptionAnnotation, theChildAnnotation, theDatatype);
+	public RuntimeChildPrimitiveBoundCodeDatatypeDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation,  Class<? extends IBase> theDatatype, Object theBinder, Class<? extends Enum<?>> theEnumType) {
+		super(theContext, theField, theElementName, theDescriptionAnnotation, theChildAnnotation, theDatatype);
 
 		myBinder = theBinder;
 		myEnumType = theEnumType;
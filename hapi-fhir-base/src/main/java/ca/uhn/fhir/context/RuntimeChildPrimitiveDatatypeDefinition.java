@@ -31,8 +31,8 @@ public class RuntimeChildPrimitiveDatatypeDefinition extends BaseRuntimeChildDat
 //	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(RuntimeChildPrimitiveDatatypeDefinition.class);
 //	private IMutator myReferenceMutator;
 	
-	public RuntimeChildPrimitiveDatatypeDefinition(Field theField, String theElementName, Description theDescriptionAnnotation, Child theChildAnnotation,  Class<? extends IBase> theDatatype) {
-		super(theField, theElementName, theChildAnnotation, theDescriptionAnnotation, theDatatype);
+	public RuntimeChildPrimitiveDatatypeDefinition(FhirContext theContext, Field theField, String theElementName, Description theDescriptionAnnotation, Child theChildAnnotation,  Class<? extends IBase> theDatatype) {
+		super(theContext, theField, theElementName, theChildAnnotation, theDescriptionAnnotation, theDatatype);
 	}
 
 //	@Override
@@ -32,8 +32,8 @@ public class RuntimeChildPrimitiveEnumerationDatatypeDefinition extends RuntimeC
 	private Object myBinder;
 	private Class<? extends Enum<?>> myEnumType;
 
-	public RuntimeChildPrimitiveEnumerationDatatypeDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation,  Class<? extends IBase> theDatatype, Class<? extends Enum<?>> theBinderType) {
-		super(theField, theElementName, theDescriptionAnnotation, theChildAnnotation, theDatatype);
+	public RuntimeChildPrimitiveEnumerationDatatypeDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation,  Class<? extends IBase> theDatatype, Class<? extends Enum<?>> theBinderType) {
+		super(theContext, theField, theElementName, theDescriptionAnnotation, theChildAnnotation, theDatatype);
 
 		myEnumType = theBinderType;
 	}
@@ -37,7 +37,7 @@ public class RuntimeChildResourceBlockDefinition extends BaseRuntimeDeclaredChil
 	private FhirContext myContext;
 
 	public RuntimeChildResourceBlockDefinition(FhirContext theContext, Field theField, Child theChildAnnotation, Description theDescriptionAnnotation, String theElementName, Class<? extends IBase> theResourceBlockType) throws ConfigurationException {
-		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
+		super(theContext, theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 		myContext = theContext;
 		myResourceBlockType = theResourceBlockType;
 	}
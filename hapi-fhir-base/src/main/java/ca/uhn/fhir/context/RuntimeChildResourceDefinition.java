@@ -44,8 +44,8 @@ public class RuntimeChildResourceDefinition extends BaseRuntimeDeclaredChildDefi
 	/**
 	 * Constructor
 	 */
-	public RuntimeChildResourceDefinition(Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBaseResource>> theResourceTypes) {
-		super(theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
+	public RuntimeChildResourceDefinition(FhirContext theContext, Field theField, String theElementName, Child theChildAnnotation, Description theDescriptionAnnotation, List<Class<? extends IBaseResource>> theResourceTypes) {
+		super(theContext, theField, theChildAnnotation, theDescriptionAnnotation, theElementName);
 		myResourceTypes = theResourceTypes;
 
 		if (theResourceTypes == null || theResourceTypes.isEmpty()) {
@@ -0,0 +1,178 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.util.FhirTerser;
+
+/**
+ * Common logic for the incremental Bundle parsers. Subclasses drive the {@link ParserState}
+ * forward through the document one entry at a time.
+ */
+abstract class BaseBundleEntryIterator<T extends IBaseBundle> implements IBundleEntryIterator<T> {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseBundleEntryIterator.class);
+
+	private final BaseRuntimeChildDefinition myEntryChild;
+	private final BaseRuntimeElementCompositeDefinition<?> myEntryDef;
+	private boolean myFinished;
+	private IBase myNext;
+	private final BaseParser myParser;
+	private final FhirTerser myTerser;
+	private final ParserState<T> myParserState;
+	private final Reader myReader;
+	private boolean myStarted;
+
+	BaseBundleEntryIterator(FhirContext theContext, BaseParser theParser, ParserState<T> theParserState, Reader theReader) {
+		myParser = theParser;
+		myParserState = theParserState;
+		myReader = theReader;
+		myTerser = theContext.newTerser();
+
+		RuntimeResourceDefinition bundleDef = theContext.getResourceDefinition("Bundle");
+		myEntryChild = bundleDef.getChildByName("entry");
+		myEntryDef = (BaseRuntimeElementCompositeDefinition<?>) myEntryChild.getChildByName("entry");
+	}
+
+	@Override
+	public void close() {
+		try {
+			myReader.close();
+		} catch (IOException e) {
+			ourLog.warn("Failed to close reader: {}", e.toString());
+		}
+	}
+
+	private void ensureStarted() {
+		if (!myStarted) {
+			myStarted = true;
+			readHeader();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T getBundle() {
+		ensureStarted();
+		return (T) myParserState.getRootResource();
+	}
+
+	protected ParserState<T> getParserState() {
+		return myParserState;
+	}
+
+	@Override
+	public boolean hasNext() {
+		ensureStarted();
+		if (myNext == null && !myFinished) {
+			IBase next = readNextEntry();
+			if (next == null) {
+				myFinished = true;
+			} else {
+				myParser.overrideResourceIdWithBundleEntryFullUrl(myEntryDef, next);
+				setResourceIdFromRequestUrl(next);
+				myParserState.clearContainedResources();
+				myNext = next;
+			}
+		}
+		return myNext != null;
+	}
+
+	@Override
+	public IBase next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		IBase retVal = myNext;
+		myNext = null;
+		return retVal;
+	}
+
+	/**
+	 * Reads the document up to (but not including) the first entry. If the document has
+	 * no entries, the whole document is read.
+	 */
+	protected abstract void readHeader() throws DataFormatException;
+
+	/**
+	 * Reads the next entry from the document, or if there are no more entries, reads the
+	 * remainder of the document
+	 *
+	 * @return The entry, which must not be attached to the Bundle, or <code>null</code> if there are no more entries
+	 */
+	protected abstract IBase readNextEntry() throws DataFormatException;
+
+	/**
+	 * When a whole Bundle is parsed, a resource with no ID is given its entry's
+	 * Bundle.entry.request.url if that is a <code>urn:</code> URL. Entries which are
+	 * parsed incrementally are never attached to the Bundle, so that happens here instead.
+	 */
+	private void setResourceIdFromRequestUrl(IBase theEntry) {
+		IBaseResource resource = myTerser.getSingleValueOrNull(theEntry, "resource", IBaseResource.class);
+		if (resource == null || !resource.getIdElement().isEmpty()) {
+			return;
+		}
+		IPrimitiveType<?> url = myTerser.getSingleValueOrNull(theEntry, "request.url", IPrimitiveType.class);
+		if (url != null && isNotBlank(url.getValueAsString()) && url.getValueAsString().startsWith("urn:")) {
+			resource.setId(url.getValueAsString());
+		}
+	}
+
+	/**
+	 * Removes and returns the entry which the parser state has most recently added to the Bundle
+	 */
+	protected IBase removeLastEntry() {
+		List<IBase> entries = myEntryChild.getAccessor().getValues(myParserState.getRootResource());
+		return entries.remove(entries.size() - 1);
+	}
+
+	/**
+	 * Removes and returns all entries which are currently attached to the Bundle
+	 */
+	protected List<IBase> removeAllEntries() {
+		List<IBase> entries = myEntryChild.getAccessor().getValues(myParserState.getRootResource());
+		List<IBase> retVal = new ArrayList<IBase>(entries);
+		entries.clear();
+		return retVal;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
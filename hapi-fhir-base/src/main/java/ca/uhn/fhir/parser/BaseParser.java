@@ -292,6 +292,8 @@ public abstract class BaseParser implements IParser {
 
 	protected abstract void doEncodeResourceToWriter(IBaseResource theResource, Writer theWriter) throws IOException, DataFormatException;
 
+	protected abstract <T extends IBaseBundle> IBundleEntryIterator<T> doParseBundleIncrementally(Class<T> theBundleType, Reader theReader) throws DataFormatException;
+
 	protected abstract <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) throws DataFormatException;
 
 	@Override
@@ -661,39 +663,58 @@ public abstract class BaseParser implements IParser {
 			List<IBase> entries = entryChild.getAccessor().getValues(retVal);
 			if (entries != null) {
 				for (IBase nextEntry : entries) {
+					overrideResourceIdWithBundleEntryFullUrl(entryDef, nextEntry);
+				}
+			}
 
-					/**
-					 * If Bundle.entry.fullUrl is populated, set the resource ID to that
-					 */
-					// TODO: should emit a warning and maybe notify the error handler if the resource ID doesn't match the
-					// fullUrl idPart
-					BaseRuntimeChildDefinition fullUrlChild = entryDef.getChildByName("fullUrl");
-					if (fullUrlChild == null) {
-						continue; // TODO: remove this once the data model in tinder plugin catches up to 1.2
-					}
-					if (isOverrideResourceIdWithBundleEntryFullUrl()) {
-						List<IBase> fullUrl = fullUrlChild.getAccessor().getValues(nextEntry);
-						if (fullUrl != null && !fullUrl.isEmpty()) {
-							IPrimitiveType<?> value = (IPrimitiveType<?>) fullUrl.get(0);
-							if (value.isEmpty() == false) {
-								List<IBase> entryResources = entryDef.getChildByName("resource").getAccessor().getValues(nextEntry);
-								if (entryResources != null && entryResources.size() > 0) {
-									IBaseResource res = (IBaseResource) entryResources.get(0);
-									String versionId = res.getIdElement().getVersionIdPart();
-									res.setId(value.getValueAsString());
-									if (isNotBlank(versionId) && res.getIdElement().hasVersionIdPart() == false) {
-										res.setId(res.getIdElement().withVersion(versionId));
-									}
-								}
-							}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * If Bundle.entry.fullUrl is populated (and {@link #isOverrideResourceIdWithBundleEntryFullUrl()} is
+	 * <code>true</code>), set the ID of the entry's resource to that
+	 */
+	void overrideResourceIdWithBundleEntryFullUrl(BaseRuntimeElementCompositeDefinition<?> theEntryDef, IBase theEntry) {
+		// TODO: should emit a warning and maybe notify the error handler if the resource ID doesn't match the
+		// fullUrl idPart
+		BaseRuntimeChildDefinition fullUrlChild = theEntryDef.getChildByName("fullUrl");
+		if (fullUrlChild == null) {
+			return; // TODO: remove this once the data model in tinder plugin catches up to 1.2
+		}
+		if (isOverrideResourceIdWithBundleEntryFullUrl()) {
+			List<IBase> fullUrl = fullUrlChild.getAccessor().getValues(theEntry);
+			if (fullUrl != null && !fullUrl.isEmpty()) {
+				IPrimitiveType<?> value = (IPrimitiveType<?>) fullUrl.get(0);
+				if (value.isEmpty() == false) {
+					List<IBase> entryResources = theEntryDef.getChildByName("resource").getAccessor().getValues(theEntry);
+					if (entryResources != null && entryResources.size() > 0) {
+						IBaseResource res = (IBaseResource) entryResources.get(0);
+						String versionId = res.getIdElement().getVersionIdPart();
+						res.setId(value.getValueAsString());
+						if (isNotBlank(versionId) && res.getIdElement().hasVersionIdPart() == false) {
+							res.setId(res.getIdElement().withVersion(versionId));
 						}
 					}
 				}
 			}
-
 		}
+	}
 
-		return retVal;
+	@Override
+	public <T extends IBaseBundle> IBundleEntryIterator<T> parseBundleIncrementally(Class<T> theBundleType, Reader theReader) throws DataFormatException {
+		Validate.notNull(theBundleType, "theBundleType must not be null");
+		Validate.notNull(theReader, "theReader must not be null");
+
+		/*
+		 * As with parseResource, this verifies that the structure is for the
+		 * correct FHIR version
+		 */
+		RuntimeResourceDefinition def = myContext.getResourceDefinition(theBundleType);
+		Validate.isTrue("Bundle".equals(def.getName()), "theBundleType must be a Bundle type, found: %s", def.getName());
+
+		return doParseBundleIncrementally(theBundleType, theReader);
 	}
 
 	@SuppressWarnings("cast")
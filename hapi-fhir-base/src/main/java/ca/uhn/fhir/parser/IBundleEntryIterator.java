@@ -0,0 +1,65 @@
+package ca.uhn.fhir.parser;
+
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
+
+/**
+ * Iterates over the entries of a Bundle as they are parsed, so that Bundles of
+ * any size can be processed without the whole Bundle ever being held in memory.
+ * Instances are created using {@link IParser#parseBundleIncrementally(Class, java.io.Reader)}.
+ * <p>
+ * Each call to {@link #next()} returns the next <code>Bundle.entry</code> element (e.g. a
+ * <code>Bundle.BundleEntryComponent</code> for R4), including its resource, request, response and
+ * search elements. Entries are never added to the Bundle returned by {@link #getBundle()}.
+ * If <code>Bundle.entry.fullUrl</code> is populated, it is used to set the ID of the entry resource
+ * in the same way that {@link IParser#parseResource(Class, java.io.Reader)} would. Because the other
+ * entries are not available, references between entries are not resolved
+ * (i.e. {@link org.hl7.fhir.instance.model.api.IBaseReference#getResource()} will not be populated
+ * for them).
+ * </p>
+ * <p>
+ * Thread safety: Instances of this class are not thread safe.
+ * </p>
+ *
+ * @since 3.4.0
+ */
+public interface IBundleEntryIterator<T extends IBaseBundle> extends Iterator<IBase>, Closeable {
+
+	/**
+	 * Returns the Bundle being parsed. Before the first entry has been read, this Bundle is populated
+	 * with every element that appears before <code>Bundle.entry</code> in the document (e.g. id, meta,
+	 * type, total and link). Any elements which appear after the entries (e.g. signature) are
+	 * added once {@link #hasNext()} has returned <code>false</code>.
+	 */
+	T getBundle();
+
+	/**
+	 * Closes the underlying reader
+	 */
+	@Override
+	void close();
+
+}
@@ -113,6 +113,33 @@ public interface IParser {
 	 */
 	boolean isSummaryMode();
 
+	/**
+	 * Parses a Bundle incrementally, returning an iterator which parses and returns one
+	 * <code>Bundle.entry</code> at a time. Elements of the Bundle which appear before the
+	 * entries are parsed before this method returns, and are available through
+	 * {@link IBundleEntryIterator#getBundle()}. This allows Bundles of any size to be processed
+	 * using a constant amount of memory.
+	 * 
+	 * @param theBundleType
+	 *           The Bundle type to use (e.g. <code>org.hl7.fhir.r4.model.Bundle</code>)
+	 * @param theReader
+	 *           The reader to parse input from. The reader is closed when {@link IBundleEntryIterator#close()} is
+	 *           called.
+	 * @return An iterator over the entries in the Bundle
+	 * @throws DataFormatException
+	 *            If the Bundle can not be parsed because the data is not recognized or invalid for any reason. Note that
+	 *            this exception may also be thrown by the methods of the returned iterator.
+	 * @throws UnsupportedOperationException
+	 *            If this parser does not support incremental parsing. The parsers provided by HAPI FHIR
+	 *            all support it, but the default implementation of this method (which exists so that
+	 *            other implementations of this interface do not need to change) does not.
+	 * @see IBundleEntryIterator
+	 * @since 3.4.0
+	 */
+	default <T extends IBaseBundle> IBundleEntryIterator<T> parseBundleIncrementally(Class<T> theBundleType, Reader theReader) throws DataFormatException {
+		throw new UnsupportedOperationException(getClass().getName() + " does not support incremental Bundle parsing");
+	}
+
 	/**
 	 * Parses a resource
 	 * 
@@ -36,6 +36,8 @@ import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.util.ElementUtil;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.text.WordUtils;
@@ -157,8 +159,19 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		doEncodeResourceToJsonLikeWriter(theResource, eventWriter);
 	}
 
+	@Override
+	protected <T extends IBaseBundle> IBundleEntryIterator<T> doParseBundleIncrementally(Class<T> theBundleType, Reader theReader) {
+		JsonReader reader = GsonStreamingStructure.newReader(theReader, false);
+		ParserState<T> state = ParserState.getPreResourceInstance(this, theBundleType, myContext, true, getErrorHandler());
+		return new JsonBundleEntryIterator<T>(state, reader, theReader);
+	}
+
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
+		if (myContext.getParserOptions().isStreamingJsonParsing()) {
+			return doParseResourceStreaming(theResourceType, theReader);
+		}
+
 		JsonLikeStructure jsonStructure = new GsonStructure();
 		jsonStructure.load(theReader);
 
@@ -191,6 +204,224 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 		return retVal;
 	}
 
+	/**
+	 * Parses a resource directly from the JSON token stream, without loading the
+	 * whole document into a {@link JsonLikeStructure} first.
+	 *
+	 * @see ParserOptions#setStreamingJsonParsing(boolean)
+	 */
+	private <T extends IBaseResource> T doParseResourceStreaming(Class<T> theResourceType, Reader theReader) {
+		JsonReader reader = GsonStreamingStructure.newReader(theReader, false);
+		ParserState<? extends IBaseResource> state = ParserState.getPreResourceInstance(this, theResourceType, myContext, true, getErrorHandler());
+		try {
+			reader.beginObject();
+			streamResource(reader, state, true);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		} catch (IllegalStateException e) {
+			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		}
+		state.endingElement();
+
+		@SuppressWarnings("unchecked")
+		T retVal = (T) state.getObject();
+
+		return retVal;
+	}
+
+	/**
+	 * Streams a complex (non-resource) element whose opening brace has already been consumed
+	 */
+	private void streamElement(JsonReader theReader, ParserState<?> theState, String theName, JsonLikeValue theAlternateVal, String theAlternateName, boolean theInArray) throws IOException {
+		if (theName.equals("id")) {
+			getErrorHandler().incorrectJsonType(null, "id", ValueType.SCALAR, ScalarType.STRING, ValueType.OBJECT, null);
+		}
+		if (!theInArray && theState.elementIsRepeating(theName)) {
+			getErrorHandler().incorrectJsonType(null, theName, ValueType.ARRAY, null, ValueType.OBJECT, null);
+		}
+
+		theState.enteringNewElement(null, theName);
+		parseAlternates(theAlternateVal, theState, theAlternateName, theAlternateName);
+		if (theState.isPreResource()) {
+			streamResource(theReader, theState, false);
+		} else {
+			streamChildren(theReader, theState);
+		}
+		theState.endingElement();
+	}
+
+	/**
+	 * Streams the members of an object whose opening brace has already been consumed, up
+	 * to and including the closing brace.
+	 * <p>
+	 * Elements with an object value (or an array of objects) are passed to the parser state as soon as they
+	 * are read. Everything else is small, so it is held until the end of the object, where each primitive
+	 * can be matched up with its "_name" alternate no matter which order the two appeared in.
+	 * </p>
+	 */
+	private void streamChildren(JsonReader theReader, ParserState<?> theState) throws IOException {
+		StreamedChildren children = new StreamedChildren();
+		while (theReader.hasNext()) {
+			streamMember(theReader, theState, theReader.nextName(), children);
+		}
+		theReader.endObject();
+		flushHeldValues(theState, children);
+	}
+
+	/**
+	 * Streams the value of a single object member whose name has just been read
+	 */
+	private void streamMember(JsonReader theReader, ParserState<?> theState, String theName, StreamedChildren theChildren) throws IOException {
+		if ("resourceType".equals(theName)) {
+			theReader.skipValue();
+			return;
+		} else if ("extension".equals(theName) || "modifierExtension".equals(theName)) {
+			JsonLikeValue value = GsonStreamingStructure.readValue(theReader);
+			if (value.isNull()) {
+				return;
+			}
+			if (!value.isArray()) {
+				throw new DataFormatException("Syntax error parsing JSON FHIR structure: Expected ARRAY at element '" + theName + "', found '" + value.getJsonType() + "'");
+			}
+			parseExtension(theState, value.getAsArray(), "modifierExtension".equals(theName));
+			return;
+		} else if ("fhir_comments".equals(theName)) {
+			parseFhirComments(GsonStreamingStructure.readValue(theReader), theState);
+			return;
+		}
+
+		JsonToken nextToken = theReader.peek();
+		if (theName.charAt(0) != '_' && (nextToken == JsonToken.BEGIN_OBJECT || nextToken == JsonToken.BEGIN_ARRAY)) {
+			String alternateName = '_' + theName;
+			JsonLikeValue alternateVal = theChildren.getHeldValue(alternateName);
+
+			if (nextToken == JsonToken.BEGIN_OBJECT) {
+				theReader.beginObject();
+				streamElement(theReader, theState, theName, alternateVal, alternateName, false);
+				theChildren.addStreamedName(theName);
+				return;
+			}
+
+			theReader.beginArray();
+			if (theReader.peek() == JsonToken.BEGIN_OBJECT) {
+				if (alternateVal != null && alternateVal.isArray() == false) {
+					getErrorHandler().incorrectJsonType(null, alternateName, ValueType.ARRAY, null, alternateVal.getJsonType(), null);
+					alternateVal = null;
+				}
+				JsonLikeArray alternateArray = JsonLikeValue.asArray(alternateVal);
+				for (int i = 0; theReader.hasNext(); i++) {
+					JsonLikeValue nextAlternate = null;
+					if (alternateArray != null && alternateArray.size() >= (i + 1)) {
+						nextAlternate = alternateArray.get(i);
+					}
+					streamArrayElement(theReader, theState, theName, nextAlternate, alternateName);
+				}
+				theReader.endArray();
+				theChildren.addStreamedName(theName);
+				return;
+			}
+
+			// An array of primitives, which is held below like any other primitive
+			theChildren.holdValue(theName, GsonStreamingStructure.readArrayElements(theReader));
+			return;
+		}
+
+		theChildren.holdValue(theName, GsonStreamingStructure.readValue(theReader));
+	}
+
+	/**
+	 * Streams one element of an array of complex elements
+	 */
+	private void streamArrayElement(JsonReader theReader, ParserState<?> theState, String theName, JsonLikeValue theAlternateVal, String theAlternateName) throws IOException {
+		if (theReader.peek() == JsonToken.BEGIN_OBJECT) {
+			theReader.beginObject();
+			streamElement(theReader, theState, theName, theAlternateVal, theAlternateName, true);
+		} else {
+			parseChildren(theState, theName, GsonStreamingStructure.readValue(theReader), theAlternateVal, theAlternateName, true);
+		}
+	}
+
+	/**
+	 * Passes the values held by {@link #streamMember(JsonReader, ParserState, String, StreamedChildren)} to the parser
+	 * state once the end of their object has been reached
+	 */
+	private void flushHeldValues(ParserState<?> theState, StreamedChildren theChildren) {
+		Map<String, JsonLikeValue> heldValues = theChildren.myHeldValues;
+		if (heldValues == null) {
+			return;
+		}
+
+		int allUnderscoreNames = 0;
+		int handledUnderscoreNames = 0;
+		for (String nextName : heldValues.keySet()) {
+			if (nextName.charAt(0) == '_') {
+				allUnderscoreNames++;
+				continue;
+			}
+			String alternateName = '_' + nextName;
+			JsonLikeValue alternateVal = heldValues.get(alternateName);
+			if (alternateVal != null) {
+				handledUnderscoreNames++;
+			}
+			parseChildren(theState, nextName, heldValues.get(nextName), alternateVal, alternateName, false);
+		}
+
+		/*
+		 * As in the non-streaming parser, this happens if an element has an extension
+		 * but no actual value. Alternates for elements which were streamed have either already
+		 * been applied (if they came first) or can't be applied any more, so they are skipped.
+		 */
+		if (allUnderscoreNames > handledUnderscoreNames) {
+			for (String alternateName : heldValues.keySet()) {
+				if (alternateName.startsWith("_") && alternateName.length() > 1) {
+					String nextName = alternateName.substring(1);
+					if (heldValues.get(nextName) != null || theChildren.isStreamed(nextName)) {
+						continue;
+					}
+					JsonLikeValue nextValue = heldValues.get(alternateName);
+					if (nextValue.isObject()) {
+						theState.enteringNewElement(null, nextName);
+						parseAlternates(nextValue, theState, alternateName, alternateName);
+						theState.endingElement();
+					} else {
+						getErrorHandler().incorrectJsonType(null, alternateName, ValueType.OBJECT, null, nextValue.getJsonType(), null);
+					}
+				}
+			}
+		}
+		theChildren.myHeldValues = null;
+	}
+
+	/**
+	 * Streams a resource object whose opening brace has already been consumed. If
+	 * the first member is not <code>resourceType</code>, this one object is buffered and
+	 * parsed the same way the non-streaming parser would.
+	 */
+	private void streamResource(JsonReader theReader, ParserState<?> theState, boolean theRoot) throws IOException {
+		String firstName = theReader.hasNext() ? theReader.nextName() : null;
+		if ("resourceType".equals(firstName) && theReader.peek() == JsonToken.STRING) {
+			String resourceType = theReader.nextString();
+			if (theRoot && isBlank(resourceType)) {
+				throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+			}
+			theState.enteringNewElement(null, resourceType);
+			streamChildren(theReader, theState);
+		} else {
+			JsonLikeObject object = GsonStreamingStructure.readObjectMembers(theReader, firstName);
+			JsonLikeValue resourceTypeObj = object.get("resourceType");
+			if (theRoot) {
+				if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
+					throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+				}
+			} else if (resourceTypeObj == null || !resourceTypeObj.isString()) {
+				throw new DataFormatException("Missing required element 'resourceType' from JSON resource object, unable to parse");
+			}
+			theState.enteringNewElement(null, resourceTypeObj.getAsString());
+			parseChildren(object, theState);
+		}
+		theState.endingElement();
+	}
+
 	private void encodeChildElementToStreamWriter(RuntimeResourceDefinition theResDef, IBaseResource theResource, JsonLikeWriter theEventWriter, IBase theNextValue,
 																 BaseRuntimeElementDefinition<?> theChildDef, String theChildName, boolean theContainedResource, boolean theSubResource, CompositeChildElement theChildElem,
 																 boolean theForceEmpty) throws IOException {
@@ -1458,4 +1689,149 @@ public class JsonParser extends BaseParser implements IJsonLikeParser {
 			theEventWriter.endObject();
 		}
 	}
+
+	/**
+	 * Streams a Bundle one entry at a time. The members of the Bundle which come before
+	 * <code>entry</code> are parsed by {@link #readHeader()}, and any members which follow it
+	 * are parsed once the last entry has been read.
+	 */
+	private class JsonBundleEntryIterator<T extends IBaseBundle> extends BaseBundleEntryIterator<T> {
+
+		private StreamedChildren myBundleChildren;
+		private Deque<IBase> myBufferedEntries;
+		private boolean myInEntryArray;
+		private final JsonReader myJsonReader;
+
+		JsonBundleEntryIterator(ParserState<T> theState, JsonReader theJsonReader, Reader theReader) {
+			super(myContext, JsonParser.this, theState, theReader);
+			myJsonReader = theJsonReader;
+		}
+
+		@Override
+		protected void readHeader() {
+			ParserState<T> state = getParserState();
+			try {
+				myJsonReader.beginObject();
+				String firstName = myJsonReader.hasNext() ? myJsonReader.nextName() : null;
+				if (!"resourceType".equals(firstName) || myJsonReader.peek() != JsonToken.STRING) {
+					/*
+					 * We can't tell what type this is until we've seen the resourceType, so
+					 * this Bundle is parsed in one go and its entries are handed out afterward
+					 */
+					JsonLikeObject object = GsonStreamingStructure.readObjectMembers(myJsonReader, firstName);
+					JsonLikeValue resourceTypeObj = object.get("resourceType");
+					if (resourceTypeObj == null || !resourceTypeObj.isString() || isBlank(resourceTypeObj.getAsString())) {
+						throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+					}
+					state.enteringNewElement(null, resourceTypeObj.getAsString());
+					parseChildren(object, state);
+					myBufferedEntries = new ArrayDeque<IBase>(removeAllEntries());
+					state.endingElement();
+					state.endingElement();
+					return;
+				}
+
+				String resourceType = myJsonReader.nextString();
+				if (isBlank(resourceType)) {
+					throw new DataFormatException("Invalid JSON content detected, missing required element: 'resourceType'");
+				}
+				state.enteringNewElement(null, resourceType);
+
+				myBundleChildren = new StreamedChildren();
+				while (myJsonReader.hasNext()) {
+					String nextName = myJsonReader.nextName();
+					if ("entry".equals(nextName) && myJsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+						myJsonReader.beginArray();
+						myInEntryArray = true;
+						myBundleChildren.addStreamedName(nextName);
+						flushHeldValues(state, myBundleChildren);
+						return;
+					}
+					streamMember(myJsonReader, state, nextName, myBundleChildren);
+				}
+
+				finishBundle();
+			} catch (IOException e) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			} catch (IllegalStateException e) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			}
+		}
+
+		@Override
+		protected IBase readNextEntry() {
+			if (myBufferedEntries != null) {
+				return myBufferedEntries.poll();
+			}
+			if (!myInEntryArray) {
+				return null;
+			}
+
+			ParserState<T> state = getParserState();
+			try {
+				while (myJsonReader.hasNext()) {
+					if (myJsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+						myJsonReader.beginObject();
+						streamElement(myJsonReader, state, "entry", null, "_entry", true);
+						return removeLastEntry();
+					}
+					// Not a valid entry, so this just reports it to the error handler
+					parseChildren(state, "entry", GsonStreamingStructure.readValue(myJsonReader), null, "_entry", true);
+				}
+
+				myJsonReader.endArray();
+				myInEntryArray = false;
+				while (myJsonReader.hasNext()) {
+					streamMember(myJsonReader, state, myJsonReader.nextName(), myBundleChildren);
+				}
+				finishBundle();
+				return null;
+			} catch (IOException e) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			} catch (IllegalStateException e) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+			}
+		}
+
+		private void finishBundle() throws IOException {
+			ParserState<T> state = getParserState();
+			myJsonReader.endObject();
+			flushHeldValues(state, myBundleChildren);
+			state.endingElement();
+			state.endingElement();
+		}
+
+	}
+
+	/**
+	 * The members of an object which is being streamed that can't be passed to the
+	 * parser state until the end of the object has been reached
+	 */
+	private static class StreamedChildren {
+		private Map<String, JsonLikeValue> myHeldValues;
+		private Set<String> myStreamedNames;
+
+		void addStreamedName(String theName) {
+			if (myStreamedNames == null) {
+				myStreamedNames = new HashSet<String>();
+			}
+			myStreamedNames.add(theName);
+		}
+
+		JsonLikeValue getHeldValue(String theName) {
+			return myHeldValues != null ? myHeldValues.get(theName) : null;
+		}
+
+		void holdValue(String theName, JsonLikeValue theValue) {
+			if (myHeldValues == null) {
+				myHeldValues = new LinkedHashMap<String, JsonLikeValue>();
+			}
+			myHeldValues.put(theName, theValue);
+		}
+
+		boolean isStreamed(String theName) {
+			return myStreamedNames != null && myStreamedNames.contains(theName);
+		}
+	}
+
 }
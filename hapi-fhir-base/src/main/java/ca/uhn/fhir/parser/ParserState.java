@@ -99,6 +99,39 @@ class ParserState<T> {
 		return myObject;
 	}
 
+	/**
+	 * Returns the resource being populated by the outermost resource state. Unlike
+	 * {@link #getObject()}, this is available while parsing is still in progress.
+	 */
+	IBaseResource getRootResource() {
+		if (myState == null) {
+			return (IBaseResource) myObject;
+		}
+		BaseState state = myState;
+		while (state.myStack != null) {
+			state = state.myStack;
+		}
+		return (IBaseResource) state.getCurrentElement();
+	}
+
+	/**
+	 * Discards the contained resources which have been collected so far. Contained resources
+	 * are collected by the outermost resource state and are only needed until the resource
+	 * which contains them has been parsed.
+	 */
+	void clearContainedResources() {
+		if (myState == null) {
+			return;
+		}
+		BaseState state = myState;
+		while (state.myStack != null) {
+			state = state.myStack;
+		}
+		if (state.isPreResource()) {
+			((PreResourceState) state).getContainedResources().clear();
+		}
+	}
+
 	public boolean isPreResource() {
 		return myState.isPreResource();
 	}
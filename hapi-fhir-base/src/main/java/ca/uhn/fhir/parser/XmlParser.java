@@ -113,6 +113,13 @@ public class XmlParser extends BaseParser /* implements IParser */ {
 		}
 	}
 
+	@Override
+	protected <T extends IBaseBundle> IBundleEntryIterator<T> doParseBundleIncrementally(Class<T> theBundleType, Reader theReader) {
+		XMLEventReader streamReader = createStreamReader(theReader);
+		ParserState<T> parserState = ParserState.getPreResourceInstance(this, theBundleType, myContext, false, getErrorHandler());
+		return new XmlBundleEntryIterator<T>(parserState, streamReader, theReader);
+	}
+
 	@Override
 	public <T extends IBaseResource> T doParseResource(Class<T> theResourceType, Reader theReader) {
 		XMLEventReader streamReader = createStreamReader(theReader);
@@ -127,90 +134,94 @@ public class XmlParser extends BaseParser /* implements IParser */ {
 
 			while (streamReader.hasNext()) {
 				XMLEvent nextEvent = streamReader.nextEvent();
-				try {
+				processXmlEvent(nextEvent, parserState, heldComments);
+			}
+			return parserState.getObject();
+		} catch (XMLStreamException e) {
+			throw new DataFormatException(e);
+		}
+	}
 
-					switch (nextEvent.getEventType()) {
-					case XMLStreamConstants.START_ELEMENT: {
-						StartElement elem = nextEvent.asStartElement();
+	private void processXmlEvent(XMLEvent nextEvent, ParserState<?> parserState, List<String> heldComments) {
+		try {
 
-						String namespaceURI = elem.getName().getNamespaceURI();
+			switch (nextEvent.getEventType()) {
+			case XMLStreamConstants.START_ELEMENT: {
+				StartElement elem = nextEvent.asStartElement();
 
-						if ("extension".equals(elem.getName().getLocalPart())) {
-							Attribute urlAttr = elem.getAttributeByName(new QName("url"));
-							String url;
-							if (urlAttr == null || isBlank(urlAttr.getValue())) {
-								getErrorHandler().missingRequiredElement(new ParseLocation().setParentElementName("extension"), "url");
-								url = null;
-							} else {
-								url = urlAttr.getValue();
-							}
-							parserState.enteringNewElementExtension(elem, url, false, getServerBaseUrl());
-						} else if ("modifierExtension".equals(elem.getName().getLocalPart())) {
-							Attribute urlAttr = elem.getAttributeByName(new QName("url"));
-							String url;
-							if (urlAttr == null || isBlank(urlAttr.getValue())) {
-								getErrorHandler().missingRequiredElement(new ParseLocation().setParentElementName("modifierExtension"), "url");
-								url = null;
-							} else {
-								url = urlAttr.getValue();
-							}
-							parserState.enteringNewElementExtension(elem, url, true, getServerBaseUrl());
-						} else {
-							String elementName = elem.getName().getLocalPart();
-							parserState.enteringNewElement(namespaceURI, elementName);
-						}
+				String namespaceURI = elem.getName().getNamespaceURI();
 
-						if (!heldComments.isEmpty()) {
-							for (String next : heldComments) {
-								parserState.commentPre(next);
-							}
-							heldComments.clear();
-						}
+				if ("extension".equals(elem.getName().getLocalPart())) {
+					Attribute urlAttr = elem.getAttributeByName(new QName("url"));
+					String url;
+					if (urlAttr == null || isBlank(urlAttr.getValue())) {
+						getErrorHandler().missingRequiredElement(new ParseLocation().setParentElementName("extension"), "url");
+						url = null;
+					} else {
+						url = urlAttr.getValue();
+					}
+					parserState.enteringNewElementExtension(elem, url, false, getServerBaseUrl());
+				} else if ("modifierExtension".equals(elem.getName().getLocalPart())) {
+					Attribute urlAttr = elem.getAttributeByName(new QName("url"));
+					String url;
+					if (urlAttr == null || isBlank(urlAttr.getValue())) {
+						getErrorHandler().missingRequiredElement(new ParseLocation().setParentElementName("modifierExtension"), "url");
+						url = null;
+					} else {
+						url = urlAttr.getValue();
+					}
+					parserState.enteringNewElementExtension(elem, url, true, getServerBaseUrl());
+				} else {
+					String elementName = elem.getName().getLocalPart();
+					parserState.enteringNewElement(namespaceURI, elementName);
+				}
 
-						@SuppressWarnings("unchecked")
-						Iterator<Attribute> attributes = elem.getAttributes();
-						for (Iterator<Attribute> iter = attributes; iter.hasNext();) {
-							Attribute next = iter.next();
-							parserState.attributeValue(next.getName().getLocalPart(), next.getValue());
-						}
+				if (!heldComments.isEmpty()) {
+					for (String next : heldComments) {
+						parserState.commentPre(next);
+					}
+					heldComments.clear();
+				}
+
+				@SuppressWarnings("unchecked")
+				Iterator<Attribute> attributes = elem.getAttributes();
+				for (Iterator<Attribute> iter = attributes; iter.hasNext();) {
+					Attribute next = iter.next();
+					parserState.attributeValue(next.getName().getLocalPart(), next.getValue());
+				}
 
-						break;
+				break;
+			}
+			case XMLStreamConstants.END_DOCUMENT:
+			case XMLStreamConstants.END_ELEMENT: {
+				if (!heldComments.isEmpty()) {
+					for (String next : heldComments) {
+						parserState.commentPost(next);
 					}
-					case XMLStreamConstants.END_DOCUMENT:
-					case XMLStreamConstants.END_ELEMENT: {
-						if (!heldComments.isEmpty()) {
-							for (String next : heldComments) {
-								parserState.commentPost(next);
-							}
-							heldComments.clear();
-						}
-						parserState.endingElement();
+					heldComments.clear();
+				}
+				parserState.endingElement();
 //						if (parserState.isComplete()) {
 //							return parserState.getObject();
 //						}
-						break;
-					}
-					case XMLStreamConstants.CHARACTERS: {
-						parserState.string(nextEvent.asCharacters().getData());
-						break;
-					}
-					case XMLStreamConstants.COMMENT: {
-						Comment comment = (Comment) nextEvent;
-						String commentText = comment.getText();
-						heldComments.add(commentText);
-						break;
-					}
-					}
+				break;
+			}
+			case XMLStreamConstants.CHARACTERS: {
+				parserState.string(nextEvent.asCharacters().getData());
+				break;
+			}
+			case XMLStreamConstants.COMMENT: {
+				Comment comment = (Comment) nextEvent;
+				String commentText = comment.getText();
+				heldComments.add(commentText);
+				break;
+			}
+			}
 
-					parserState.xmlEvent(nextEvent);
+			parserState.xmlEvent(nextEvent);
 
-				} catch (DataFormatException e) {
-					throw new DataFormatException("DataFormatException at [" + nextEvent.getLocation().toString() + "]: " + e.getMessage(), e);
-				}
-			}
-			return parserState.getObject();
-		} catch (XMLStreamException e) {
-			throw new DataFormatException(e);
+		} catch (DataFormatException e) {
+			throw new DataFormatException("DataFormatException at [" + nextEvent.getLocation().toString() + "]: " + e.getMessage(), e);
 		}
 	}
 
@@ -757,4 +768,74 @@ public class XmlParser extends BaseParser /* implements IParser */ {
 		}
 	}
 
+	/**
+	 * Feeds the XML event stream to the parser state one Bundle entry at a time
+	 */
+	private class XmlBundleEntryIterator<T extends IBaseBundle> extends BaseBundleEntryIterator<T> {
+
+		private int myDepth;
+		private final List<String> myHeldComments = new ArrayList<String>(1);
+		private final XMLEventReader myStreamReader;
+
+		XmlBundleEntryIterator(ParserState<T> theParserState, XMLEventReader theStreamReader, Reader theReader) {
+			super(myContext, XmlParser.this, theParserState, theReader);
+			myStreamReader = theStreamReader;
+		}
+
+		@Override
+		public void close() {
+			try {
+				myStreamReader.close();
+			} catch (XMLStreamException e) {
+				ourLog.warn("Failed to close XML stream: {}", e.toString());
+			}
+			super.close();
+		}
+
+		private boolean isEntryNext() throws XMLStreamException {
+			XMLEvent next = myStreamReader.peek();
+			return myDepth == 1 && next.isStartElement() && "entry".equals(next.asStartElement().getName().getLocalPart());
+		}
+
+		private void processNextEvent() throws XMLStreamException {
+			XMLEvent nextEvent = myStreamReader.nextEvent();
+			if (nextEvent.isStartElement()) {
+				myDepth++;
+			} else if (nextEvent.isEndElement()) {
+				myDepth--;
+			}
+			processXmlEvent(nextEvent, getParserState(), myHeldComments);
+		}
+
+		@Override
+		protected void readHeader() {
+			try {
+				while (myStreamReader.hasNext() && !isEntryNext()) {
+					processNextEvent();
+				}
+			} catch (XMLStreamException e) {
+				throw new DataFormatException(e);
+			}
+		}
+
+		@Override
+		protected IBase readNextEntry() {
+			try {
+				while (myStreamReader.hasNext()) {
+					if (isEntryNext()) {
+						do {
+							processNextEvent();
+						} while (myDepth > 1);
+						return removeLastEntry();
+					}
+					processNextEvent();
+				}
+				return null;
+			} catch (XMLStreamException e) {
+				throw new DataFormatException(e);
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,311 @@
+package ca.uhn.fhir.parser.json;
+/*
+ * #%L
+ * HAPI FHIR - Core Library
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+
+import ca.uhn.fhir.parser.DataFormatException;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A {@link JsonLikeStructure} which is read directly from the Gson token stream
+ * ({@link JsonReader}) instead of through the Gson DOM. Each JSON value is held
+ * exactly once, in a compact form, rather than as a Gson tree plus a lazily
+ * populated wrapper tree as {@link GsonStructure} does.
+ * <p>
+ * This class also exposes the token-level helpers used by the streaming mode of
+ * the JSON parser (see {@link ca.uhn.fhir.context.ParserOptions#setStreamingJsonParsing(boolean)}),
+ * which only buffers small parts of the document (e.g. primitive values and extensions)
+ * and hands everything else to the parser as it is read.
+ * </p>
+ */
+public class GsonStreamingStructure implements JsonLikeStructure {
+
+	private JsonLikeValue myRoot;
+	private GsonWriter myJsonLikeWriter;
+
+	@Override
+	public JsonLikeStructure getInstance() {
+		return new GsonStreamingStructure();
+	}
+
+	@Override
+	public void load(Reader theReader) throws DataFormatException {
+		load(theReader, false);
+	}
+
+	@Override
+	public void load(Reader theReader, boolean theAllowArray) throws DataFormatException {
+		JsonReader reader = newReader(theReader, theAllowArray);
+		try {
+			myRoot = readValue(reader);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		} catch (IllegalStateException e) {
+			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public JsonLikeObject getRootObject() throws DataFormatException {
+		if (myRoot != null && myRoot.isObject()) {
+			return myRoot.getAsObject();
+		}
+		throw new DataFormatException("Content must be a valid JSON Object. It must start with '{'.");
+	}
+
+	@Override
+	public JsonLikeArray getRootArray() throws DataFormatException {
+		if (myRoot != null && myRoot.isArray()) {
+			return myRoot.getAsArray();
+		}
+		throw new DataFormatException("Content must be a valid JSON Array. It must start with '['.");
+	}
+
+	@Override
+	public JsonLikeWriter getJsonLikeWriter() {
+		if (null == myJsonLikeWriter) {
+			myJsonLikeWriter = new GsonWriter();
+		}
+		return myJsonLikeWriter;
+	}
+
+	@Override
+	public JsonLikeWriter getJsonLikeWriter(Writer theWriter) {
+		if (null == myJsonLikeWriter) {
+			myJsonLikeWriter = new GsonWriter(theWriter);
+		}
+		return myJsonLikeWriter;
+	}
+
+	/**
+	 * Creates a lenient {@link JsonReader} (matching the leniency of the Gson DOM parser) after
+	 * verifying that the content looks like JSON
+	 *
+	 * @param theReader The source
+	 * @param theAllowArray Should a top level array be accepted? If not, the content must begin with '{'
+	 * @throws DataFormatException If the content does not begin with a JSON object (or array, if permitted)
+	 */
+	public static JsonReader newReader(Reader theReader, boolean theAllowArray) throws DataFormatException {
+		PushbackReader pbr = new PushbackReader(theReader);
+		try {
+			GsonStructure.assertContentLooksLikeJson(pbr, theAllowArray);
+		} catch (DataFormatException e) {
+			throw new DataFormatException("Failed to parse JSON content, error was: " + e.getMessage(), e);
+		}
+		JsonReader retVal = new JsonReader(pbr);
+		retVal.setLenient(true);
+		return retVal;
+	}
+
+	/**
+	 * Reads the next complete value (object, array, scalar or null) from the given reader
+	 */
+	public static JsonLikeValue readValue(JsonReader theReader) throws IOException {
+		switch (theReader.peek()) {
+		case BEGIN_OBJECT:
+			theReader.beginObject();
+			return readObjectMembers(theReader, null);
+		case BEGIN_ARRAY:
+			theReader.beginArray();
+			return readArrayElements(theReader);
+		case STRING:
+			return new StreamedScalar(theReader.nextString(), JsonLikeValue.ScalarType.STRING);
+		case NUMBER:
+			return new StreamedScalar(theReader.nextString(), JsonLikeValue.ScalarType.NUMBER);
+		case BOOLEAN:
+			return theReader.nextBoolean() ? JsonLikeValue.TRUE : JsonLikeValue.FALSE;
+		case NULL:
+			theReader.nextNull();
+			return JsonLikeValue.NULL;
+		default:
+			throw new IllegalStateException("Unexpected JSON token: " + theReader.peek());
+		}
+	}
+
+	/**
+	 * Reads the remaining members of an object whose opening brace has already been consumed,
+	 * up to and including the closing brace.
+	 *
+	 * @param theReader The reader
+	 * @param theFirstName If the name of the first member has already been read from the stream (but not its
+	 *                     value), that name. Otherwise <code>null</code>.
+	 */
+	public static JsonLikeObject readObjectMembers(JsonReader theReader, String theFirstName) throws IOException {
+		StreamedObject retVal = new StreamedObject();
+		if (theFirstName != null) {
+			retVal.put(theFirstName, readValue(theReader));
+		}
+		while (theReader.hasNext()) {
+			String nextName = theReader.nextName();
+			retVal.put(nextName, readValue(theReader));
+		}
+		theReader.endObject();
+		return retVal;
+	}
+
+	/**
+	 * Reads the remaining elements of an array whose opening bracket has already been consumed,
+	 * up to and including the closing bracket.
+	 */
+	public static JsonLikeArray readArrayElements(JsonReader theReader) throws IOException {
+		StreamedArray retVal = new StreamedArray();
+		while (theReader.hasNext()) {
+			retVal.myValues.add(readValue(theReader));
+		}
+		theReader.endArray();
+		retVal.myValues.trimToSize();
+		return retVal;
+	}
+
+	/**
+	 * An object is stored as two parallel lists instead of a map. FHIR objects have a small number
+	 * of members so a linear scan is cheap, and this avoids a map entry per member.
+	 */
+	private static class StreamedObject extends JsonLikeObject {
+		private final ArrayList<String> myNames = new ArrayList<String>(4);
+		private final ArrayList<JsonLikeValue> myValues = new ArrayList<JsonLikeValue>(4);
+		private Set<String> myKeySet;
+
+		@Override
+		public JsonLikeValue get(String theKey) {
+			int idx = myNames.indexOf(theKey);
+			if (idx == -1) {
+				return null;
+			}
+			return myValues.get(idx);
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public Set<String> keySet() {
+			if (myKeySet == null) {
+				myKeySet = new AbstractSet<String>() {
+					@Override
+					public boolean contains(Object theObject) {
+						return myNames.contains(theObject);
+					}
+
+					@Override
+					public Iterator<String> iterator() {
+						return Collections.unmodifiableList(myNames).iterator();
+					}
+
+					@Override
+					public int size() {
+						return myNames.size();
+					}
+				};
+			}
+			return myKeySet;
+		}
+
+		/**
+		 * A duplicate name replaces the earlier value but keeps its position, which
+		 * is how the Gson DOM behaves
+		 */
+		void put(String theName, JsonLikeValue theValue) {
+			int idx = myNames.indexOf(theName);
+			if (idx != -1) {
+				myValues.set(idx, theValue);
+			} else {
+				myNames.add(theName);
+				myValues.add(theValue);
+			}
+		}
+	}
+
+	private static class StreamedArray extends JsonLikeArray {
+		private final ArrayList<JsonLikeValue> myValues = new ArrayList<JsonLikeValue>();
+
+		@Override
+		public JsonLikeValue get(int theIndex) {
+			return myValues.get(theIndex);
+		}
+
+		@Override
+		public Object getValue() {
+			return null;
+		}
+
+		@Override
+		public int size() {
+			return myValues.size();
+		}
+	}
+
+	private static class StreamedScalar extends JsonLikeValue {
+		private final String myText;
+		private final ScalarType myType;
+
+		StreamedScalar(String theText, ScalarType theType) {
+			myText = theText;
+			myType = theType;
+		}
+
+		@Override
+		public Number getAsNumber() {
+			return myType == ScalarType.NUMBER ? new BigDecimal(myText) : null;
+		}
+
+		@Override
+		public String getAsString() {
+			return myText;
+		}
+
+		@Override
+		public ScalarType getDataType() {
+			return myType;
+		}
+
+		@Override
+		public ValueType getJsonType() {
+			return ValueType.SCALAR;
+		}
+
+		@Override
+		public Object getValue() {
+			if (myType == ScalarType.NUMBER) {
+				return getAsNumber();
+			}
+			return myText;
+		}
+
+		@Override
+		public String toString() {
+			return myText;
+		}
+	}
+
+}
@@ -19,6 +19,7 @@ package ca.uhn.fhir.parser.json;
  * #L%
  */
 
+import java.io.IOException;
 import java.io.PushbackReader;
 import java.io.Reader;
 import java.io.Writer;
@@ -83,15 +84,45 @@ public class GsonStructure implements JsonLikeStructure {
 	@Override
 	public void load(Reader theReader, boolean allowArray) throws DataFormatException {
 		PushbackReader pbr = new PushbackReader(theReader);
+		try {
+			int nextInt = assertContentLooksLikeJson(pbr, allowArray);
+		
+			Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+			if (nextInt == '{') {
+				JsonObject root = gson.fromJson(pbr, JsonObject.class);
+				setNativeObject(root);
+			} else
+			if (nextInt == '[') {
+				JsonArray root = gson.fromJson(pbr, JsonArray.class);
+				setNativeArray(root);
+			}
+		} catch (JsonSyntaxException e) {
+			if (e.getMessage().startsWith("Unexpected char 39")) {
+				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
+			}
+			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
+		} catch (Exception e) {
+			throw new DataFormatException("Failed to parse JSON content, error was: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Skips any leading whitespace and verifies that the first real character starts
+	 * a JSON object (or array, if permitted). That character is pushed back onto the
+	 * reader.
+	 *
+	 * @return The first non-whitespace character
+	 */
+	static int assertContentLooksLikeJson(PushbackReader thePushbackReader, boolean allowArray) throws DataFormatException {
 		int nextInt;
 		try {
 			while(true) {
-					nextInt = pbr.read();
+				nextInt = thePushbackReader.read();
 				if (nextInt == -1) {
 					throw new DataFormatException("Did not find any content to parse");
 				}
 				if (nextInt == '{') {
-					pbr.unread(nextInt);
+					thePushbackReader.unread(nextInt);
 					break;
 				}
 				if (Character.isWhitespace(nextInt)) {
@@ -99,31 +130,17 @@ public class GsonStructure implements JsonLikeStructure {
 				}
 				if (allowArray) {
 					if (nextInt == '[') {
-						pbr.unread(nextInt);
+						thePushbackReader.unread(nextInt);
 						break;
 					}
 					throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char)nextInt + "' (must be '{' or '[')");
 				}
 				throw new DataFormatException("Content does not appear to be FHIR JSON, first non-whitespace character was: '" + (char)nextInt + "' (must be '{')");
 			}
-		
-			Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-			if (nextInt == '{') {
-				JsonObject root = gson.fromJson(pbr, JsonObject.class);
-				setNativeObject(root);
-			} else
-			if (nextInt == '[') {
-				JsonArray root = gson.fromJson(pbr, JsonArray.class);
-				setNativeArray(root);
-			}
-		} catch (JsonSyntaxException e) {
-			if (e.getMessage().startsWith("Unexpected char 39")) {
-				throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage() + " - This may indicate that single quotes are being used as JSON escapes where double quotes are required", e);
-			}
-			throw new DataFormatException("Failed to parse JSON encoded FHIR content: " + e.getMessage(), e);
-		} catch (Exception e) {
+		} catch (IOException e) {
 			throw new DataFormatException("Failed to parse JSON content, error was: " + e.getMessage(), e);
 		}
+		return nextInt;
 	}
 
 	@Override
@@ -80,4 +80,19 @@ public @interface Operation {
 	 */
 	BundleTypeEnum bundleType() default BundleTypeEnum.COLLECTION;
 
+	/**
+	 * If this is set to <code>true</code> (default is <code>false</code>), the server will
+	 * not read or parse the body of a <code>HTTP POST</code> to this operation. The method is
+	 * expected to read the body itself, e.g. using {@link ca.uhn.fhir.rest.api.server.RequestDetails#getInputStream()},
+	 * which allows it to stream request bodies which are not FHIR resources, or which are too
+	 * large to hold in memory. Any {@link OperationParam} parameters are taken from the
+	 * request URL, as they would be for a <code>HTTP GET</code>.
+	 * <p>
+	 * This value has no effect when used on client implementations.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	boolean manualRequest() default false;
+
 }
@@ -19,13 +19,21 @@ package ca.uhn.fhir.validation;
  * limitations under the License.
  * #L%
  */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.*;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.hl7.fhir.instance.model.api.IBaseBundle;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.model.api.IResource;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.util.BundleUtil;
 import ca.uhn.fhir.validation.schematron.SchematronProvider;
 
 /**
@@ -43,9 +51,11 @@ import ca.uhn.fhir.validation.schematron.SchematronProvider;
 public class FhirValidator {
 
 	private static final String I18N_KEY_NO_PHLOC_ERROR = FhirValidator.class.getName() + ".noPhlocError";
+	private static final int MAX_IN_FLIGHT_VALIDATIONS = 100;
 
 	private static volatile Boolean ourPhlocPresentOnClasspath;
 	private final FhirContext myContext;
+	private volatile ExecutorService myExecutorService;
 	private List<IValidatorModule> myValidators = new ArrayList<IValidatorModule>();
 
 	/**
@@ -75,6 +85,17 @@ public class FhirValidator {
 		}
 	}
 
+	/**
+	 * Returns the executor which is used to validate resources in parallel when validating
+	 * a batch of resources, or <code>null</code> if batches are validated on the calling thread
+	 *
+	 * @see #setExecutorService(ExecutorService)
+	 * @since 3.4.0
+	 */
+	public ExecutorService getExecutorService() {
+		return myExecutorService;
+	}
+
 	private boolean haveValidatorOfType(Class<? extends IValidatorModule> type) {
 		boolean found = false;
 		for (IValidatorModule next : myValidators) {
@@ -144,6 +165,34 @@ public class FhirValidator {
 		return this;
 	}
 
+	/**
+	 * Sets the executor which is used to validate resources in parallel when validating a batch
+	 * of resources (e.g. using {@link #validateBundleEntriesWithResults(IBaseBundle)}). If this is
+	 * <code>null</code> (which is the default), batches are validated one resource at a time
+	 * on the calling thread.
+	 * <p>
+	 * Note that when an executor is set, the registered validator modules will be called from
+	 * several threads at once. The schema and schematron validators, and the
+	 * <code>FhirInstanceValidator</code> for DSTU2, DSTU2.1, DSTU3 and R4 (with the validation
+	 * supports which are supplied with HAPI), may be used this way. They share their caches of
+	 * conformance resources between threads. Custom modules and custom validation supports
+	 * must be thread safe, or a separate FhirValidator must be used for each thread.
+	 * The executor is not shut down by this class.
+	 * </p>
+	 * <p>
+	 * At most 100 resources from a batch are submitted to the executor ahead of the
+	 * result currently being collected, so that large inputs are read as they are validated.
+	 * If validating any resource fails, the validations which are still outstanding are cancelled.
+	 * </p>
+	 *
+	 * @return Returns a reference to <code>this<code> for method chaining
+	 * @since 3.4.0
+	 */
+	public FhirValidator setExecutorService(ExecutorService theExecutorService) {
+		myExecutorService = theExecutorService;
+		return this;
+	}
+
 	/**
 	 * Removes a validator module from this validator. You may register as many modules as you like, and remove them at any time.
 	 * 
@@ -160,6 +209,71 @@ public class FhirValidator {
 	}
 
 
+	private List<ValidationResult> validateAll(Iterator<?> theInputs) {
+		applyDefaultValidators();
+
+		ExecutorService executorService = myExecutorService;
+		List<ValidationResult> retVal = new ArrayList<ValidationResult>();
+		if (executorService == null) {
+			while (theInputs.hasNext()) {
+				retVal.add(validateInput(theInputs.next()));
+			}
+			return retVal;
+		}
+
+		/*
+		 * Only a limited number of inputs are submitted ahead of the result which is
+		 * being waited on, so that large inputs (e.g. an NDJSON stream) are never all
+		 * held in memory at once
+		 */
+		Deque<Future<ValidationResult>> inFlight = new ArrayDeque<Future<ValidationResult>>();
+		try {
+			while (theInputs.hasNext()) {
+				if (inFlight.size() >= MAX_IN_FLIGHT_VALIDATIONS) {
+					retVal.add(getResult(inFlight.removeFirst()));
+				}
+				final Object next = theInputs.next();
+				inFlight.addLast(executorService.submit(new Callable<ValidationResult>() {
+					@Override
+					public ValidationResult call() {
+						return validateInput(next);
+					}
+				}));
+			}
+			while (!inFlight.isEmpty()) {
+				retVal.add(getResult(inFlight.removeFirst()));
+			}
+		} finally {
+			// Only non-empty if something failed, in which case the remaining results aren't needed
+			for (Future<ValidationResult> next : inFlight) {
+				next.cancel(true);
+			}
+		}
+
+		return retVal;
+	}
+
+	private static ValidationResult getResult(Future<ValidationResult> theFuture) {
+		try {
+			return theFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InternalErrorException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new InternalErrorException(e.getCause());
+		}
+	}
+
+	private ValidationResult validateInput(Object theInput) {
+		if (theInput instanceof String) {
+			return validateWithResult((String) theInput);
+		}
+		return validateWithResult((IBaseResource) theInput);
+	}
+
 	private void applyDefaultValidators() {
 		if (myValidators.isEmpty()) {
 			setValidateAgainstStandardSchema(true);
@@ -234,4 +348,136 @@ public class FhirValidator {
 		return ctx.toResult();
 	}
 
+	/**
+	 * Validates each resource in a Bundle, returning a {@link ValidationResult} for each entry which
+	 * contains a resource, in the same order as the entries in the Bundle. The Bundle itself
+	 * is not validated.
+	 * <p>
+	 * If an {@link #setExecutorService(ExecutorService) executor} has been set, the entries are
+	 * validated in parallel.
+	 * </p>
+	 *
+	 * @param theBundle
+	 *           the bundle whose entries should be validated
+	 * @return the results of validation
+	 * @since 3.4.0
+	 */
+	public List<ValidationResult> validateBundleEntriesWithResults(IBaseBundle theBundle) {
+		Validate.notNull(theBundle, "theBundle must not be null");
+		return validateAll(BundleUtil.toListOfResources(myContext, theBundle).iterator());
+	}
+
+	/**
+	 * Validates a stream of resources in NDJSON format (one JSON resource per line), returning
+	 * a {@link ValidationResult} for each resource in the same order as they appear in the
+	 * stream. Blank lines are skipped.
+	 * <p>
+	 * If an {@link #setExecutorService(ExecutorService) executor} has been set, the resources are
+	 * validated in parallel. The reader is not closed by this method.
+	 * </p>
+	 *
+	 * @param theNdjson
+	 *           the NDJSON input
+	 * @return the results of validation
+	 * @throws IOException
+	 *            If the input can not be read
+	 * @since 3.4.0
+	 */
+	public List<ValidationResult> validateNdjsonWithResults(Reader theNdjson) throws IOException {
+		Validate.notNull(theNdjson, "theNdjson must not be null");
+
+		NdjsonLineIterator lines = new NdjsonLineIterator(new BufferedReader(theNdjson));
+		List<ValidationResult> retVal = validateTextWithResults(lines);
+		if (lines.myException != null) {
+			throw lines.myException;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Validates a number of resources in text form (XML or JSON), returning a {@link ValidationResult}
+	 * for each resource in the same order as they are returned by the iterator.
+	 * <p>
+	 * If an {@link #setExecutorService(ExecutorService) executor} has been set, the resources are
+	 * validated in parallel.
+	 * </p>
+	 *
+	 * @param theResources
+	 *           the resources to validate
+	 * @return the results of validation
+	 * @since 3.4.0
+	 */
+	public List<ValidationResult> validateTextWithResults(Iterator<String> theResources) {
+		Validate.notNull(theResources, "theResources must not be null");
+		return validateAll(theResources);
+	}
+
+	/**
+	 * Validates a number of resource instances, returning a {@link ValidationResult} for each
+	 * resource in the same order as they are returned by the iterator.
+	 * <p>
+	 * If an {@link #setExecutorService(ExecutorService) executor} has been set, the resources are
+	 * validated in parallel.
+	 * </p>
+	 *
+	 * @param theResources
+	 *           the resources to validate
+	 * @return the results of validation
+	 * @since 3.4.0
+	 */
+	public List<ValidationResult> validateWithResults(Iterator<? extends IBaseResource> theResources) {
+		Validate.notNull(theResources, "theResources must not be null");
+		return validateAll(theResources);
+	}
+
+	/**
+	 * Reads the non-blank lines of an NDJSON stream one at a time. Iterators can't throw
+	 * checked exceptions, so a read failure ends the iteration and is kept for the caller
+	 * to rethrow.
+	 */
+	private static class NdjsonLineIterator implements Iterator<String> {
+		private final BufferedReader myReader;
+		private IOException myException;
+		private String myNext;
+
+		NdjsonLineIterator(BufferedReader theReader) {
+			myReader = theReader;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (myNext == null && myException == null) {
+				String line;
+				try {
+					line = myReader.readLine();
+				} catch (IOException e) {
+					myException = e;
+					break;
+				}
+				if (line == null) {
+					break;
+				}
+				if (StringUtils.isNotBlank(line)) {
+					myNext = line;
+				}
+			}
+			return myNext != null;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String retVal = myNext;
+			myNext = null;
+			return retVal;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
 }
@@ -36,6 +36,13 @@ import org.hl7.fhir.dstu3.model.StructureDefinition;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.apache.commons.lang3.StringUtils.*;
 import static org.fusesource.jansi.Ansi.ansi;
@@ -62,6 +69,7 @@ public class ValidateCommand extends BaseCommand {
 		OptionGroup source = new OptionGroup();
 		source.addOption(new Option("n", "file", true, "The name of the file to validate"));
 		source.addOption(new Option("d", "data", true, "The text to validate"));
+		source.addOption(new Option("D", "directory", true, "A directory containing files to validate"));
 		retVal.addOptionGroup(source);
 
 		retVal.addOption("x", "xsd", false, "Validate using Schemas");
@@ -71,6 +79,7 @@ public class ValidateCommand extends BaseCommand {
 				"Allow fetching remote resources (in other words, if a resource being validated refers to an external StructureDefinition, Questionnaire, etc. this flag allows the validator to access the internet to try and fetch this resource)");
 		retVal.addOption(new Option("l", "fetch-local", true, "Fetch a profile locally and use it if referenced"));
 		retVal.addOption("e", "encoding", false, "File encoding (default is UTF-8)");
+		retVal.addOption(new Option("t", "threads", true, "The number of threads to use when validating a directory (default is the number of available processors)"));
 
 		return retVal;
 	}
@@ -81,28 +90,46 @@ public class ValidateCommand extends BaseCommand {
 
 		String fileName = theCommandLine.getOptionValue("n");
 		String contents = theCommandLine.getOptionValue("c");
+		String directoryName = theCommandLine.getOptionValue("D");
 		if (isNotBlank(fileName) && isNotBlank(contents)) {
 			throw new ParseException("Can not supply both a file (-n) and data (-d)");
 		}
-		if (isBlank(fileName) && isBlank(contents)) {
-			throw new ParseException("Must supply either a file (-n) or data (-d)");
+		if (isBlank(fileName) && isBlank(contents) && isBlank(directoryName)) {
+			throw new ParseException("Must supply either a file (-n), a directory (-D) or data (-d)");
 		}
 
-		if (isNotBlank(fileName)) {
-			String encoding = theCommandLine.getOptionValue("e", "UTF-8");
-			ourLog.info("Reading file '{}' using encoding {}", fileName, encoding);
-
-			try {
-				contents = IOUtils.toString(new InputStreamReader(new FileInputStream(fileName), encoding));
-			} catch (IOException e) {
-				throw new CommandFailureException(e);
+		final String encoding = theCommandLine.getOptionValue("e", "UTF-8");
+		final List<String> fileNames = new ArrayList<>();
+		if (isNotBlank(directoryName)) {
+			File[] files = new File(directoryName).listFiles();
+			if (files == null) {
+				throw new ParseException("Not a directory: " + directoryName);
+			}
+			Arrays.sort(files);
+			for (File next : files) {
+				if (next.isFile()) {
+					fileNames.add(next.getPath());
+				}
+			}
+			if (fileNames.isEmpty()) {
+				throw new ParseException("No files found in directory: " + directoryName);
 			}
-			ourLog.info("Fully read - Size is {}", FileUtils.getFileSizeDisplay(contents.length()));
+		} else if (isNotBlank(fileName)) {
+			fileNames.add(fileName);
 		}
 
-		ca.uhn.fhir.rest.api.EncodingEnum enc = ca.uhn.fhir.rest.api.EncodingEnum.detectEncodingNoDefault(defaultString(contents));
-		if (enc == null) {
-			throw new ParseException("Could not detect encoding (json/xml) of contents");
+		/*
+		 * When validating a directory, each file is only read when the validator is
+		 * ready for it, so that the whole directory is never held in memory at once
+		 */
+		if (fileNames.size() <= 1) {
+			if (fileNames.size() == 1) {
+				contents = readFile(fileNames.get(0), encoding);
+			}
+			ca.uhn.fhir.rest.api.EncodingEnum enc = ca.uhn.fhir.rest.api.EncodingEnum.detectEncodingNoDefault(defaultString(contents));
+			if (enc == null) {
+				throw new ParseException("Could not detect encoding (json/xml) of contents");
+			}
 		}
 
 		FhirContext ctx = getFhirContext();
@@ -160,8 +187,84 @@ public class ValidateCommand extends BaseCommand {
 		val.setValidateAgainstStandardSchema(theCommandLine.hasOption("x"));
 		val.setValidateAgainstStandardSchematron(theCommandLine.hasOption("s"));
 
-		ValidationResult results = val.validateWithResult(contents);
+		List<ValidationResult> allResults;
+		if (fileNames.size() > 1) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			if (theCommandLine.hasOption("t")) {
+				try {
+					threads = Integer.parseInt(theCommandLine.getOptionValue("t"));
+				} catch (NumberFormatException e) {
+					throw new ParseException("Invalid number of threads: " + theCommandLine.getOptionValue("t"));
+				}
+				if (threads < 1) {
+					throw new ParseException("Invalid number of threads: " + threads);
+				}
+			}
+
+			ourLog.info("Validating {} files using {} threads", fileNames.size(), threads);
+			ExecutorService executorService = Executors.newFixedThreadPool(threads);
+			try {
+				val.setExecutorService(executorService);
+				allResults = val.validateTextWithResults(new Iterator<String>() {
+					private int myIndex;
+
+					@Override
+					public boolean hasNext() {
+						return myIndex < fileNames.size();
+					}
+
+					@Override
+					public String next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						String nextFileName = fileNames.get(myIndex++);
+						String nextContents = readFile(nextFileName, encoding);
+						if (ca.uhn.fhir.rest.api.EncodingEnum.detectEncodingNoDefault(nextContents) == null) {
+							throw new CommandFailureException("Could not detect encoding (json/xml) of file '" + nextFileName + "'");
+						}
+						return nextContents;
+					}
+				});
+			} finally {
+				executorService.shutdown();
+			}
+		} else {
+			allResults = new ArrayList<>();
+			allResults.add(val.validateWithResult(contents));
+		}
+
+		boolean allSuccessful = true;
+		for (int i = 0; i < allResults.size(); i++) {
+			if (fileNames.size() > 1) {
+				ourLog.info("Results for file '{}'", fileNames.get(i));
+			}
+			allSuccessful &= logResults(allResults.get(i));
+		}
+
+		if (fileNames.size() > 1) {
+			if (allSuccessful) {
+				ourLog.info("Validation of {} files successful!", fileNames.size());
+			} else {
+				ourLog.warn("Validation of {} files FAILED", fileNames.size());
+			}
+		}
+	}
+
+	private static String readFile(String theFileName, String theEncoding) {
+		ourLog.info("Reading file '{}' using encoding {}", theFileName, theEncoding);
+
+		String retVal;
+		try (Reader reader = new InputStreamReader(new FileInputStream(theFileName), theEncoding)) {
+			retVal = IOUtils.toString(reader);
+		} catch (IOException e) {
+			throw new CommandFailureException(e);
+		}
+		ourLog.info("Fully read - Size is {}", FileUtils.getFileSizeDisplay(retVal.length()));
+		return retVal;
+	}
 
+	private boolean logResults(ValidationResult results) {
 		StringBuilder b = new StringBuilder("Validation results:" + ansi().boldOff());
 		int count = 0;
 		for (SingleValidationMessage next : results.getMessages()) {
@@ -195,5 +298,6 @@ public class ValidateCommand extends BaseCommand {
 		} else {
 			ourLog.warn("Validation FAILED");
 		}
+		return results.isSuccessful();
 	}
 }
@@ -26,6 +26,7 @@ import ca.uhn.fhir.model.dstu2.resource.Bundle;
 import ca.uhn.fhir.model.dstu2.resource.Bundle.Entry;
 import ca.uhn.fhir.model.dstu2.resource.StructureDefinition;
 import ca.uhn.fhir.model.dstu2.resource.ValueSet;
+import ca.uhn.fhir.parser.IBundleEntryIterator;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
 import ca.uhn.fhir.rest.server.exceptions.UnprocessableEntityException;
@@ -44,10 +45,16 @@ import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
@@ -103,6 +110,40 @@ public class ValidationDataUploader extends BaseCommand {
 		}
 	}
 
+	/**
+	 * Parses an R4 Bundle from the classpath one entry at a time and passes each resource
+	 * which has not been excluded to the given consumer. The definition Bundles are large,
+	 * so this avoids holding a whole Bundle in memory while it is uploaded.
+	 */
+	private void forEachR4Resource(FhirContext theCtx, String theClasspathName, Consumer<org.hl7.fhir.r4.model.Resource> theConsumer) throws CommandFailureException {
+		InputStream stream = ValidationDataUploader.class.getResourceAsStream(theClasspathName);
+		if (stream == null) {
+			throw new CommandFailureException("Unable to find " + theClasspathName + " on the classpath");
+		}
+
+		Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+		try (IBundleEntryIterator<org.hl7.fhir.r4.model.Bundle> iter = theCtx.newXmlParser().parseBundleIncrementally(org.hl7.fhir.r4.model.Bundle.class, reader)) {
+			while (iter.hasNext()) {
+				org.hl7.fhir.r4.model.Resource next = ((org.hl7.fhir.r4.model.Bundle.BundleEntryComponent) iter.next()).getResource();
+				if (next == null || isExcluded(next)) {
+					continue;
+				}
+				theConsumer.accept(next);
+			}
+		}
+	}
+
+	private boolean isExcluded(IBaseResource theResource) {
+		for (IIdType nextExclude : myExcludes) {
+			if (nextExclude.hasResourceType() && nextExclude.toUnqualifiedVersionless().getValue().equals(theResource.getIdElement().toUnqualifiedVersionless().getValue())) {
+				return true;
+			} else if (nextExclude.getIdPart().equals(theResource.getIdElement().getIdPart())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public String getCommandDescription() {
 		return "Uploads the conformance resources (StructureDefinition and ValueSet) from the official FHIR definitions.";
@@ -370,78 +411,39 @@ public class ValidationDataUploader extends BaseCommand {
 		ourLog.info("Uploading definitions to server");
 
 		long start = System.currentTimeMillis();
-		int total = 0;
-		int count = 0;
-		org.hl7.fhir.r4.model.Bundle bundle;
-		String vsContents;
-
-		try {
-			theCtx.getVersion().getPathToSchemaDefinitions();
-			vsContents = IOUtils.toString(ValidationDataUploader.class.getResourceAsStream("/org/hl7/fhir/r4/model/valueset/" + "valuesets.xml"), "UTF-8");
-		} catch (IOException e) {
-			throw new CommandFailureException(e.toString());
-		}
-		bundle = theCtx.newXmlParser().parseResource(org.hl7.fhir.r4.model.Bundle.class, vsContents);
-		filterBundle(bundle);
-
-		total = bundle.getEntry().size();
-		count = 1;
-		for (org.hl7.fhir.r4.model.Bundle.BundleEntryComponent i : bundle.getEntry()) {
-			org.hl7.fhir.r4.model.Resource next = i.getResource();
+		final AtomicInteger count = new AtomicInteger(1);
+		forEachR4Resource(theCtx, "/org/hl7/fhir/r4/model/valueset/valuesets.xml", next -> {
 			next.setId(next.getIdElement().toUnqualifiedVersionless());
 
 			int bytes = theCtx.newXmlParser().encodeResourceToString(next).length();
 
-			ourLog.info("Uploading ValueSet {}/{} : {} ({} bytes}", new Object[] {count, total, next.getIdElement().getValue(), bytes});
+			ourLog.info("Uploading ValueSet {} : {} ({} bytes}", new Object[] {count.getAndIncrement(), next.getIdElement().getValue(), bytes});
 			try {
 				IIdType id = client.update().resource(next).execute().getId();
 				ourLog.info("  - Got ID: {}", id.getValue());
 			} catch (UnprocessableEntityException e) {
 				ourLog.warn("UnprocessableEntityException: " + e.toString());
 			}
-			count++;
-		}
-
-		try {
-			vsContents = IOUtils.toString(ValidationDataUploader.class.getResourceAsStream("/org/hl7/fhir/r4/model/valueset/" + "v3-codesystems.xml"), "UTF-8");
-		} catch (IOException e) {
-			throw new CommandFailureException(e.toString());
-		}
+		});
 
-		bundle = theCtx.newXmlParser().parseResource(org.hl7.fhir.r4.model.Bundle.class, vsContents);
-		filterBundle(bundle);
-		total = bundle.getEntry().size();
-		count = 1;
-		for (org.hl7.fhir.r4.model.Bundle.BundleEntryComponent i : bundle.getEntry()) {
-			org.hl7.fhir.r4.model.Resource next = i.getResource();
+		count.set(1);
+		forEachR4Resource(theCtx, "/org/hl7/fhir/r4/model/valueset/v3-codesystems.xml", next -> {
 			next.setId(next.getIdElement().toUnqualifiedVersionless());
 
-			ourLog.info("Uploading v3-codesystems ValueSet {}/{} : {}", new Object[] {count, total, next.getIdElement().getValue()});
+			ourLog.info("Uploading v3-codesystems ValueSet {} : {}", new Object[] {count.getAndIncrement(), next.getIdElement().getValue()});
 			client.update().resource(next).execute();
+		});
 
-			count++;
-		}
-
-		try {
-			vsContents = IOUtils.toString(ValidationDataUploader.class.getResourceAsStream("/org/hl7/fhir/r4/model/valueset/" + "v2-tables.xml"), "UTF-8");
-		} catch (IOException e) {
-			throw new CommandFailureException(e.toString());
-		}
-		bundle = theCtx.newXmlParser().parseResource(org.hl7.fhir.r4.model.Bundle.class, vsContents);
-		filterBundle(bundle);
-		total = bundle.getEntry().size();
-		count = 1;
-		for (org.hl7.fhir.r4.model.Bundle.BundleEntryComponent i : bundle.getEntry()) {
-			org.hl7.fhir.r4.model.Resource next = i.getResource();
+		count.set(1);
+		forEachR4Resource(theCtx, "/org/hl7/fhir/r4/model/valueset/v2-tables.xml", next -> {
 			if (next.getIdElement().isIdPartValidLong()) {
 				next.setIdElement(new org.hl7.fhir.r4.model.IdType("v2-" + next.getIdElement().getIdPart()));
 			}
 			next.setId(next.getIdElement().toUnqualifiedVersionless());
 
-			ourLog.info("Uploading v2-tables ValueSet {}/{} : {}", new Object[] {count, total, next.getIdElement().getValue()});
+			ourLog.info("Uploading v2-tables ValueSet {} : {}", new Object[] {count.getAndIncrement(), next.getIdElement().getValue()});
 			client.update().resource(next).execute();
-			count++;
-		}
+		});
 
 		ourLog.info("Finished uploading ValueSets");
 
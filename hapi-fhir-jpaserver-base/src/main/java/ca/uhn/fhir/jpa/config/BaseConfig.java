@@ -26,6 +26,10 @@ import ca.uhn.fhir.jpa.sp.SearchParamPresenceSvcImpl;
 import ca.uhn.fhir.jpa.subscription.email.SubscriptionEmailInterceptor;
 import ca.uhn.fhir.jpa.subscription.resthook.SubscriptionRestHookInterceptor;
 import ca.uhn.fhir.jpa.subscription.websocket.SubscriptionWebsocketInterceptor;
+import ca.uhn.fhir.jpa.util.ForcedIdCache;
+import ca.uhn.fhir.jpa.util.ParsedResourceCache;
+import ca.uhn.fhir.jpa.util.SearchParsePool;
+import ca.uhn.fhir.jpa.util.TagDefinitionCache;
 import org.springframework.beans.factory.annotation.Autowire;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
@@ -67,6 +71,26 @@ public class BaseConfig implements SchedulingConfigurer {
 		return retVal;
 	}
 
+	@Bean
+	public ForcedIdCache forcedIdCache() {
+		return new ForcedIdCache();
+	}
+
+	@Bean
+	public ParsedResourceCache parsedResourceCache() {
+		return new ParsedResourceCache();
+	}
+
+	@Bean
+	public SearchParsePool searchParsePool() {
+		return new SearchParsePool();
+	}
+
+	@Bean
+	public TagDefinitionCache tagDefinitionCache() {
+		return new TagDefinitionCache();
+	}
+
 	@Bean()
 	public ScheduledExecutorFactoryBean scheduledExecutorService() {
 		ScheduledExecutorFactoryBean b = new ScheduledExecutorFactoryBean();
@@ -79,6 +103,11 @@ public class BaseConfig implements SchedulingConfigurer {
 		return new SearchCoordinatorSvcImpl();
 	}
 
+	@Bean
+	public SearchResultBulkWriter searchResultBulkWriter() {
+		return new SearchResultBulkWriter();
+	}
+
 	@Bean
 	public ISearchParamPresenceSvc searchParamPresenceSvc() {
 		return new SearchParamPresenceSvcImpl();
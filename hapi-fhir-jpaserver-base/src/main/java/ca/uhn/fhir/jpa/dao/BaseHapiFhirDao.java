@@ -31,7 +31,11 @@ import ca.uhn.fhir.jpa.term.IHapiTerminologySvc;
 import ca.uhn.fhir.jpa.util.DeleteConflict;
 import ca.uhn.fhir.jpa.util.ExpungeOptions;
 import ca.uhn.fhir.jpa.util.ExpungeOutcome;
+import ca.uhn.fhir.jpa.util.ForcedIdCache;
 import ca.uhn.fhir.jpa.util.JpaConstants;
+import ca.uhn.fhir.jpa.util.ParsedResourceCache;
+import ca.uhn.fhir.jpa.util.SearchParsePool;
+import ca.uhn.fhir.jpa.util.TagDefinitionCache;
 import ca.uhn.fhir.model.api.*;
 import ca.uhn.fhir.model.base.composite.BaseCodingDt;
 import ca.uhn.fhir.model.base.composite.BaseResourceReferenceDt;
@@ -56,8 +60,8 @@ import ca.uhn.fhir.rest.server.interceptor.IServerOperationInterceptor;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
 import ca.uhn.fhir.util.*;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Charsets;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
@@ -67,6 +71,8 @@ import org.apache.commons.lang3.Validate;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.utils.URLEncodedUtils;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.internal.SessionImpl;
 import org.hl7.fhir.instance.model.api.*;
 import org.hl7.fhir.r4.model.BaseResource;
@@ -94,10 +100,13 @@ import javax.persistence.criteria.Root;
 import javax.xml.stream.events.Characters;
 import javax.xml.stream.events.XMLEvent;
 import java.io.CharArrayWriter;
-import java.io.UnsupportedEncodingException;
 import java.text.Normalizer;
+import java.sql.Savepoint;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.lang3.StringUtils.*;
@@ -122,6 +131,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 	 */
 	static final Map<String, Class<? extends IQueryParameterType>> RESOURCE_META_PARAMS;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseHapiFhirDao.class);
+	private static final int MAX_FORCED_IDS_PER_QUERY = 800;
 	private static final Map<FhirVersionEnum, FhirContext> ourRetrievalContexts = new HashMap<FhirVersionEnum, FhirContext>();
 	private static final String PROCESSING_SUB_REQUEST = "BaseHapiFhirDao.processingSubRequest";
 	private static boolean ourValidationDisabledForUnitTest;
@@ -187,6 +197,14 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 	private DaoConfig myConfig;
 	private FhirContext myContext;
 	@Autowired
+	private ForcedIdCache myForcedIdCache;
+	@Autowired
+	private ParsedResourceCache myParsedResourceCache;
+	@Autowired
+	private SearchParsePool mySearchParsePool;
+	@Autowired
+	private TagDefinitionCache myTagDefinitionCache;
+	@Autowired
 	private PlatformTransactionManager myPlatformTransactionManager;
 	@Autowired
 	private List<IFhirResourceDao<?>> myResourceDaos;
@@ -355,12 +373,16 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			doExpungeEverythingQuery("DELETE from " + ResourceHistoryTag.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + ResourceTag.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + TagDefinition.class.getSimpleName() + " d");
+			myTagDefinitionCache.invalidateAll();
 			doExpungeEverythingQuery("DELETE from " + ResourceHistoryTable.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + ResourceTable.class.getSimpleName() + " d");
 			doExpungeEverythingQuery("DELETE from " + org.hibernate.search.jpa.Search.class.getSimpleName() + " d");
 			return null;
 		});
 
+		myForcedIdCache.invalidateAll();
+		myParsedResourceCache.invalidateAll();
+		mySearchCoordinatorSvc.invalidateAllReusableSearches();
 		ourLog.info("** COMPLETED GLOBAL $expunge **");
 	}
 
@@ -388,9 +410,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			resource.setForcedId(null);
 			myResourceTableDao.saveAndFlush(resource);
 			myForcedIdDao.delete(forcedId);
+			myForcedIdCache.invalidate(forcedId.getResourceType(), forcedId.getForcedId());
 		}
 
 		myResourceTableDao.delete(resource);
+		mySearchCoordinatorSvc.invalidateReusableSearches(resource.getResourceType());
 
 	}
 
@@ -400,6 +424,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 
 		myResourceHistoryTagDao.delete(version.getTags());
 		myResourceHistoryTableDao.delete(version);
+		myParsedResourceCache.invalidate(version.getResourceId(), version.getVersion());
 	}
 
 	protected void expungeHistoricalVersionsOfId(Long theResourceId, AtomicInteger theRemainingCount) {
@@ -958,6 +983,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			return null;
 		}
 
+		TagDefinition retVal = myTagDefinitionCache.get(theTagType, theScheme, theTerm);
+		if (retVal != null) {
+			return retVal;
+		}
+
 		CriteriaBuilder builder = myEntityManager.getCriteriaBuilder();
 		CriteriaQuery<TagDefinition> cq = builder.createQuery(TagDefinition.class);
 		Root<TagDefinition> from = cq.from(TagDefinition.class);
@@ -976,14 +1006,59 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 					builder.equal(from.get("myCode"), theTerm)));
 		}
 
+		/*
+		 * The unique constraint on the table does not prevent duplicates with a null system
+		 * on all databases, so if concurrent writers have both created the same definition we
+		 * consistently use the oldest one instead of failing
+		 */
+		cq.orderBy(builder.asc(from.get("myId")));
+
 		TypedQuery<TagDefinition> q = myEntityManager.createQuery(cq);
-		try {
-			return q.getSingleResult();
-		} catch (NoResultException e) {
-			TagDefinition retVal = new TagDefinition(theTagType, theScheme, theTerm, theLabel);
-			myEntityManager.persist(retVal);
-			return retVal;
+		q.setMaxResults(1);
+		List<TagDefinition> existing = q.getResultList();
+		if (existing.isEmpty()) {
+			retVal = insertTagDefinition(new TagDefinition(theTagType, theScheme, theTerm, theLabel));
+			if (retVal == null) {
+				// Another writer inserted the same definition after we looked for it
+				existing = q.getResultList();
+				if (existing.isEmpty()) {
+					throw new InternalErrorException("Failed to create or load tag definition " + theTagType + " " + theScheme + "|" + theTerm);
+				}
+				retVal = existing.get(0);
+			}
+		} else {
+			retVal = existing.get(0);
 		}
+
+		myTagDefinitionCache.put(retVal);
+		return retVal;
+	}
+
+	/**
+	 * Inserts a new tag definition on the connection of the current transaction, within a savepoint.
+	 * If a concurrent transaction has already inserted the same definition, the insert fails on the
+	 * unique constraint, and only the savepoint is rolled back so that the current transaction can carry
+	 * on. A separate transaction isn't used for this because it would need a second connection while
+	 * this one is held.
+	 *
+	 * @return The inserted definition, or <code>null</code> if it already existed
+	 */
+	private TagDefinition insertTagDefinition(TagDefinition theDefinition) {
+		Session session = myEntityManager.unwrap(Session.class);
+		return session.doReturningWork(theConnection -> {
+			Savepoint savepoint = theConnection.setSavepoint();
+			StatelessSession statelessSession = session.getSessionFactory().openStatelessSession(theConnection);
+			try {
+				statelessSession.insert(theDefinition);
+				return theDefinition;
+			} catch (ConstraintViolationException e) {
+				ourLog.debug("Tag definition was created by a concurrent transaction: {}", e.toString());
+				theConnection.rollback(savepoint);
+				return null;
+			} finally {
+				statelessSession.close();
+			}
+		});
 	}
 
 	protected TagList getTags(Class<? extends IBaseResource> theResourceType, IIdType theResourceId) {
@@ -1202,27 +1277,23 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			encoding = myConfig.getResourceEncoding();
 			IParser parser = encoding.newParser(myContext);
 			parser.setDontEncodeElements(EXCLUDE_ELEMENTS_IN_ENCODED);
-			String encoded = parser.encodeResourceToString(theResource);
+			bytes = encoding.encode(parser, theResource);
 
 			theEntity.setFhirVersion(myContext.getVersion().getVersion());
-			switch (encoding) {
-				case JSON:
-					bytes = encoded.getBytes(Charsets.UTF_8);
-					break;
-				default:
-				case JSONC:
-					bytes = GZipUtil.compress(encoded);
-					break;
-			}
 
-			ourLog.debug("Encoded {} chars of resource body as {} bytes", encoded.length(), bytes.length);
+			ourLog.debug("Encoded resource body as {} bytes", bytes.length);
 
+			/*
+			 * The hash of the stored bytes is all we need to tell whether the body has
+			 * changed, so the previous version never needs to be loaded. If there is no
+			 * stored hash the body is treated as changed.
+			 */
+			HashFunction sha256 = Hashing.sha256();
+			String hashSha256 = sha256.hashBytes(bytes).toString();
+			if (hashSha256.equals(theEntity.getHashSha256()) == false) {
+				changed = true;
+			}
 			if (theUpdateHash) {
-				HashFunction sha256 = Hashing.sha256();
-				String hashSha256 = sha256.hashBytes(bytes).toString();
-				if (hashSha256.equals(theEntity.getHashSha256()) == false) {
-					changed = true;
-				}
 				theEntity.setHashSha256(hashSha256);
 			}
 
@@ -1273,17 +1344,8 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			encoding = ResourceEncodingEnum.DEL;
 		}
 
-		if (changed == false) {
-			if (theEntity.getId() == null) {
-				changed = true;
-			} else {
-				ResourceHistoryTable currentHistoryVersion = myResourceHistoryTableDao.findForIdAndVersion(theEntity.getId(), theEntity.getVersion());
-				if (currentHistoryVersion == null || currentHistoryVersion.getResource() == null) {
-					changed = true;
-				} else {
-					changed = !Arrays.equals(currentHistoryVersion.getResource(), bytes);
-				}
-			}
+		if (theEntity.getId() == null || bytes == null) {
+			changed = true;
 		}
 
 		EncodedResource retVal = new EncodedResource();
@@ -1442,6 +1504,11 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 
 	@Override
 	public <R extends IBaseResource> Set<Long> processMatchUrl(String theMatchUrl, Class<R> theResourceType) {
+		Set<Long> preResolved = MatchUrlBatchResolver.getPreResolvedMatch(theMatchUrl, theResourceType);
+		if (preResolved != null) {
+			return preResolved;
+		}
+
 		RuntimeResourceDefinition resourceDef = getContext().getResourceDefinition(theResourceType);
 
 		SearchParameterMap paramMap = translateMatchUrl(this, myContext, theMatchUrl, resourceDef);
@@ -1476,6 +1543,14 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 		return retVal;
 	}
 
+	private void calculateMissingHashes(Collection<? extends BaseResourceIndexedSearchParam> theParams) {
+		for (BaseResourceIndexedSearchParam next : theParams) {
+			if (next.getHashIdentity() == null) {
+				next.calculateHashes();
+			}
+		}
+	}
+
 	private void setUpdatedTime(Collection<? extends BaseResourceIndexedSearchParam> theParams, Date theUpdateTime) {
 		for (BaseResourceIndexedSearchParam nextSearchParam : theParams) {
 			nextSearchParam.setUpdated(theUpdateTime);
@@ -1553,35 +1628,154 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 		if (theEntity instanceof ResourceHistoryTable) {
 			history = (ResourceHistoryTable) theEntity;
 		} else {
+			// The body of a version never changes, so if it is cached the history row isn't needed at all
+			Class<R> resourceType = determineTypeToParse(theResourceType, theEntity);
+			R cached = myParsedResourceCache.get(resourceType, theEntity.getId(), theEntity.getVersion());
+			if (cached != null) {
+				return populateResourceMetadata(resourceType, theEntity, theForHistoryOperation, cached);
+			}
 			history = myResourceHistoryTableDao.findForIdAndVersion(theEntity.getId(), theEntity.getVersion());
 		}
 
+		return toResource(theResourceType, theEntity, history, theForHistoryOperation);
+	}
+
+	@Override
+	public <R extends IBaseResource> R toResource(Class<R> theResourceType, BaseHasResource theEntity, ResourceHistoryTable theHistory,
+																 boolean theForHistoryOperation) {
+
+		ResourceHistoryTable history = theHistory;
 		if (history == null) {
 			return null;
 		}
 
-		byte[] resourceBytes = history.getResource();
-		ResourceEncodingEnum resourceEncoding = history.getEncoding();
+		Class<R> resourceType = determineTypeToParse(theResourceType, theEntity);
+		R retVal = null;
+		if (history.getEncoding() != ResourceEncodingEnum.DEL) {
+			retVal = myParsedResourceCache.get(resourceType, history.getResourceId(), history.getVersion());
+		}
+		if (retVal == null) {
+			retVal = parseResourceBody(resourceType, theEntity, history, theEntity.getIdDt().getIdPart());
+		}
+		return populateResourceMetadata(resourceType, theEntity, theForHistoryOperation, retVal);
+	}
 
-		String resourceText = null;
-		switch (resourceEncoding) {
-			case JSON:
-				try {
-					resourceText = new String(resourceBytes, "UTF-8");
-				} catch (UnsupportedEncodingException e) {
-					throw new Error("Should not happen", e);
+	@SuppressWarnings("unchecked")
+	@Override
+	public List<IBaseResource> toResources(List<? extends BaseHasResource> theEntities, boolean theForHistoryOperation) {
+		StopWatch sw = new StopWatch();
+		int count = theEntities.size();
+
+		/*
+		 * Everything which touches the persistence context happens on this thread: deciding
+		 * which type to parse each entity into, and finding the bodies. Bodies are only loaded
+		 * for versions which aren't in the parsed resource cache, since a cache hit doesn't
+		 * need the history row at all.
+		 */
+		sw.startTask("Prepare " + count + " resource bodies");
+		final IBaseResource[] parsed = new IBaseResource[count];
+		final List<Class<? extends IBaseResource>> types = new ArrayList<>(count);
+		final List<ResourceHistoryTable> histories = new ArrayList<>(count);
+		final List<String> idParts = new ArrayList<>(count);
+		List<Long> pidsToLoad = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			BaseHasResource next = theEntities.get(i);
+			Class<? extends IBaseResource> type = myContext.getResourceDefinition(next.getResourceType()).getImplementingClass();
+			type = determineTypeToParse(type, next);
+			types.add(type);
+			idParts.add(next.getIdDt().getIdPart());
+			if (next instanceof ResourceHistoryTable) {
+				ResourceHistoryTable history = (ResourceHistoryTable) next;
+				histories.add(history);
+				if (history.getEncoding() != ResourceEncodingEnum.DEL) {
+					parsed[i] = myParsedResourceCache.get(type, history.getResourceId(), history.getVersion());
 				}
-				break;
-			case JSONC:
-				resourceText = GZipUtil.decompress(resourceBytes);
-				break;
-			case DEL:
-				break;
+				continue;
+			}
+			histories.add(null);
+			parsed[i] = myParsedResourceCache.get(type, next.getId(), next.getVersion());
+			if (parsed[i] == null) {
+				pidsToLoad.add(next.getId());
+			}
+		}
+
+		if (!pidsToLoad.isEmpty()) {
+			Map<Long, ResourceHistoryTable> pidToHistory = SearchBuilder.loadCurrentVersions(myEntityManager, pidsToLoad);
+			for (int i = 0; i < count; i++) {
+				BaseHasResource next = theEntities.get(i);
+				if (parsed[i] != null || next instanceof ResourceHistoryTable) {
+					continue;
+				}
+				ResourceHistoryTable history = pidToHistory.get(next.getId());
+				if (history == null || history.getVersion() != next.getVersion()) {
+					history = myResourceHistoryTableDao.findForIdAndVersion(next.getId(), next.getVersion());
+				}
+				histories.set(i, history);
+			}
 		}
 
 		/*
-		 * Use the appropriate custom type if one is specified in the context
+		 * Decompressing and parsing the bodies is CPU bound and doesn't need the
+		 * persistence context, so it can be spread across the parse pool
 		 */
+		sw.endCurrentTask();
+		sw.startTask("Parse " + count + " resource bodies");
+		int threadCount = myConfig.getSearchPageParseThreadCount();
+		if (threadCount > 1 && count > 1) {
+			List<Callable<Void>> tasks = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				final int index = i;
+				final BaseHasResource entity = theEntities.get(i);
+				tasks.add(() -> {
+					if (parsed[index] == null && histories.get(index) != null) {
+						parsed[index] = parseResourceBody(types.get(index), entity, histories.get(index), idParts.get(index));
+					}
+					return null;
+				});
+			}
+			try {
+				for (Future<Void> next : mySearchParsePool.getPool().invokeAll(tasks)) {
+					next.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new InternalErrorException(e.getCause());
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				if (parsed[i] == null && histories.get(i) != null) {
+					parsed[i] = parseResourceBody(types.get(i), theEntities.get(i), histories.get(i), idParts.get(i));
+				}
+			}
+		}
+
+		sw.endCurrentTask();
+		sw.startTask("Populate metadata for " + count + " resources");
+		List<IBaseResource> retVal = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			IBaseResource next = parsed[i];
+			if (next != null) {
+				next = populateResourceMetadata((Class<IBaseResource>) types.get(i), theEntities.get(i), theForHistoryOperation, next);
+			}
+			retVal.add(next);
+		}
+		sw.endCurrentTask();
+
+		ourLog.debug("Loaded {} resources using {} thread(s):\n{}", count, threadCount, sw.formatTaskDurations());
+		return retVal;
+	}
+
+	/**
+	 * Returns the custom type specified in the context for one of the entity's profiles, if
+	 * there is one, or the given type if not
+	 */
+	@SuppressWarnings("unchecked")
+	private <R extends IBaseResource> Class<R> determineTypeToParse(Class<R> theResourceType, BaseHasResource theEntity) {
 		Class<R> resourceType = theResourceType;
 		if (myContext.hasDefaultTypeForProfile()) {
 			for (BaseTag nextTag : theEntity.getTags()) {
@@ -1598,6 +1792,22 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 				}
 			}
 		}
+		return resourceType;
+	}
+
+	/**
+	 * Decompresses and parses a stored resource body, and adds it to the parsed resource cache.
+	 * Callers are expected to have checked the cache first. This does not touch the persistence
+	 * context, so it is safe to call from a thread other than the one which loaded the entity.
+	 *
+	 * @param theIdPart The ID of the resource, only used in error messages
+	 */
+	@SuppressWarnings("unchecked")
+	private <R extends IBaseResource> R parseResourceBody(Class<R> theResourceType, BaseHasResource theEntity, ResourceHistoryTable theHistory, String theIdPart) {
+		byte[] resourceBytes = theHistory.getResource();
+		ResourceEncodingEnum resourceEncoding = theHistory.getEncoding();
+
+		String resourceText = resourceEncoding.decode(resourceBytes);
 
 		R retVal;
 		if (resourceEncoding != ResourceEncodingEnum.DEL) {
@@ -1605,13 +1815,14 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			parser.setParserErrorHandler(new LenientErrorHandler(false).setErrorOnInvalidValue(false));
 
 			try {
-				retVal = parser.parseResource(resourceType, resourceText);
+				retVal = parser.parseResource(theResourceType, resourceText);
+				myParsedResourceCache.put(theHistory.getResourceId(), theHistory.getVersion(), retVal, resourceText.length());
 			} catch (Exception e) {
 				StringBuilder b = new StringBuilder();
 				b.append("Failed to parse database resource[");
-				b.append(resourceType);
+				b.append(theResourceType);
 				b.append("/");
-				b.append(theEntity.getIdDt().getIdPart());
+				b.append(theIdPart);
 				b.append(" (pid ");
 				b.append(theEntity.getId());
 				b.append(", version ");
@@ -1628,16 +1839,18 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			retVal = (R) myContext.getResourceDefinition(theEntity.getResourceType()).newInstance();
 
 		}
+		return retVal;
+	}
 
+	private <R extends IBaseResource> R populateResourceMetadata(Class<R> theResourceType, BaseHasResource theEntity, boolean theForHistoryOperation, R theResource) {
+		R retVal = theResource;
 		if (retVal instanceof IResource) {
 			IResource res = (IResource) retVal;
-			retVal = populateResourceMetadataHapi(resourceType, theEntity, theForHistoryOperation, res);
+			retVal = populateResourceMetadataHapi(theResourceType, theEntity, theForHistoryOperation, res);
 		} else {
 			IAnyResource res = (IAnyResource) retVal;
-			retVal = populateResourceMetadataRi(resourceType, theEntity, theForHistoryOperation, res);
+			retVal = populateResourceMetadataRi(theResourceType, theEntity, theForHistoryOperation, res);
 		}
-
-
 		return retVal;
 	}
 
@@ -1655,11 +1868,76 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 	}
 
 	Long translateForcedIdToPid(String theResourceName, String theResourceId) {
-		return translateForcedIdToPids(new IdDt(theResourceName, theResourceId), myForcedIdDao).get(0);
+		return translateForcedIdToPids(new IdDt(theResourceName, theResourceId)).get(0);
 	}
 
 	protected List<Long> translateForcedIdToPids(IIdType theId) {
-		return translateForcedIdToPids(theId, myForcedIdDao);
+		Validate.isTrue(theId.hasIdPart());
+
+		if (isValidPid(theId)) {
+			return Collections.singletonList(theId.getIdPartAsLong());
+		}
+
+		if (theId.hasResourceType()) {
+			Long cached = myForcedIdCache.get(theId.getResourceType(), theId.getIdPart());
+			if (cached != null) {
+				return Collections.singletonList(cached);
+			}
+		}
+
+		List<ForcedId> forcedId;
+		if (theId.hasResourceType()) {
+			forcedId = myForcedIdDao.findByTypeAndForcedId(theId.getResourceType(), theId.getIdPart());
+		} else {
+			forcedId = myForcedIdDao.findByForcedId(theId.getIdPart());
+		}
+
+		if (forcedId.isEmpty()) {
+			throw new ResourceNotFoundException(theId);
+		}
+
+		List<Long> retVal = new ArrayList<>(forcedId.size());
+		for (ForcedId next : forcedId) {
+			retVal.add(next.getResourcePid());
+		}
+		if (theId.hasResourceType() && retVal.size() == 1) {
+			myForcedIdCache.put(theId.getResourceType(), theId.getIdPart(), retVal.get(0));
+		}
+		return retVal;
+	}
+
+	/**
+	 * Resolves a collection of IDs of the given resource type to PIDs, looking up any forced IDs which
+	 * are not already cached using as few queries as possible. IDs which don't exist are not included
+	 * in the returned map.
+	 */
+	protected Map<String, Long> translateForcedIdsToPids(String theResourceType, Collection<String> theIds) {
+		Map<String, Long> retVal = new HashMap<>();
+		Set<String> toLookUp = new LinkedHashSet<>();
+		for (String next : theIds) {
+			if (retVal.containsKey(next)) {
+				continue;
+			}
+			if (isValidPid(new IdDt(theResourceType, next))) {
+				retVal.put(next, Long.parseLong(next));
+				continue;
+			}
+			Long cached = myForcedIdCache.get(theResourceType, next);
+			if (cached != null) {
+				retVal.put(next, cached);
+			} else {
+				toLookUp.add(next);
+			}
+		}
+
+		for (List<String> nextChunk : Lists.partition(new ArrayList<>(toLookUp), MAX_FORCED_IDS_PER_QUERY)) {
+			for (ForcedId next : myForcedIdDao.findByTypeAndForcedIds(theResourceType, nextChunk)) {
+				retVal.put(next.getForcedId(), next.getResourcePid());
+				myForcedIdCache.put(theResourceType, next.getForcedId(), next.getResourcePid());
+			}
+		}
+
+		return retVal;
 	}
 
 	private String translatePidIdToForcedId(String theResourceType, Long theId) {
@@ -1700,33 +1978,12 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 		}
 
 		Collection<ResourceIndexedSearchParamString> existingStringParams = new ArrayList<>();
-		if (theEntity.isParamsStringPopulated()) {
-			existingStringParams.addAll(theEntity.getParamsString());
-		}
 		Collection<ResourceIndexedSearchParamToken> existingTokenParams = new ArrayList<>();
-		if (theEntity.isParamsTokenPopulated()) {
-			existingTokenParams.addAll(theEntity.getParamsToken());
-		}
 		Collection<ResourceIndexedSearchParamNumber> existingNumberParams = new ArrayList<>();
-		if (theEntity.isParamsNumberPopulated()) {
-			existingNumberParams.addAll(theEntity.getParamsNumber());
-		}
 		Collection<ResourceIndexedSearchParamQuantity> existingQuantityParams = new ArrayList<>();
-		if (theEntity.isParamsQuantityPopulated()) {
-			existingQuantityParams.addAll(theEntity.getParamsQuantity());
-		}
 		Collection<ResourceIndexedSearchParamDate> existingDateParams = new ArrayList<>();
-		if (theEntity.isParamsDatePopulated()) {
-			existingDateParams.addAll(theEntity.getParamsDate());
-		}
 		Collection<ResourceIndexedSearchParamUri> existingUriParams = new ArrayList<>();
-		if (theEntity.isParamsUriPopulated()) {
-			existingUriParams.addAll(theEntity.getParamsUri());
-		}
 		Collection<ResourceIndexedSearchParamCoords> existingCoordsParams = new ArrayList<>();
-		if (theEntity.isParamsCoordsPopulated()) {
-			existingCoordsParams.addAll(theEntity.getParamsCoords());
-		}
 		Collection<ResourceLink> existingResourceLinks = new ArrayList<>();
 		if (theEntity.isHasLinks()) {
 			existingResourceLinks.addAll(theEntity.getResourceLinks());
@@ -1886,20 +2143,6 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 				} else {
 					theEntity.setLanguage(((IAnyResource) theResource).getLanguageElement().getValue());
 				}
-				theEntity.setParamsString(stringParams);
-				theEntity.setParamsStringPopulated(stringParams.isEmpty() == false);
-				theEntity.setParamsToken(tokenParams);
-				theEntity.setParamsTokenPopulated(tokenParams.isEmpty() == false);
-				theEntity.setParamsNumber(numberParams);
-				theEntity.setParamsNumberPopulated(numberParams.isEmpty() == false);
-				theEntity.setParamsQuantity(quantityParams);
-				theEntity.setParamsQuantityPopulated(quantityParams.isEmpty() == false);
-				theEntity.setParamsDate(dateParams);
-				theEntity.setParamsDatePopulated(dateParams.isEmpty() == false);
-				theEntity.setParamsUri(uriParams);
-				theEntity.setParamsUriPopulated(uriParams.isEmpty() == false);
-				theEntity.setParamsCoords(coordsParams);
-				theEntity.setParamsCoordsPopulated(coordsParams.isEmpty() == false);
 				theEntity.setParamsCompositeStringUniquePresent(compositeStringUniques.isEmpty() == false);
 				theEntity.setResourceLinks(links);
 				theEntity.setHasLinks(links.isEmpty() == false);
@@ -1918,6 +2161,101 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 
 		}
 
+		/*
+		 * Only load the existing index rows for the index types whose fingerprint no
+		 * longer matches the newly extracted rows. Types which haven't changed are
+		 * left alone entirely, which saves a collection load for each of them.
+		 */
+		IndexFingerprint newFingerprint = null;
+		boolean stringParamsChanged = true;
+		boolean tokenParamsChanged = true;
+		boolean numberParamsChanged = true;
+		boolean quantityParamsChanged = true;
+		boolean dateParamsChanged = true;
+		boolean uriParamsChanged = true;
+		boolean coordsParamsChanged = true;
+		if (thePerformIndexing) {
+			IndexFingerprint existingFingerprint = IndexFingerprint.parse(theEntity.getIndexFingerprint());
+			newFingerprint = new IndexFingerprint(stringParams, tokenParams, numberParams, quantityParams, dateParams, uriParams, coordsParams);
+
+			stringParamsChanged = newFingerprint.isStringChanged(existingFingerprint);
+			if (stringParamsChanged) {
+				if (theEntity.isParamsStringPopulated()) {
+					existingStringParams.addAll(theEntity.getParamsString());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsString(stringParams);
+					theEntity.setParamsStringPopulated(stringParams.isEmpty() == false);
+				}
+			}
+
+			tokenParamsChanged = newFingerprint.isTokenChanged(existingFingerprint);
+			if (tokenParamsChanged) {
+				if (theEntity.isParamsTokenPopulated()) {
+					existingTokenParams.addAll(theEntity.getParamsToken());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsToken(tokenParams);
+					theEntity.setParamsTokenPopulated(tokenParams.isEmpty() == false);
+				}
+			}
+
+			numberParamsChanged = newFingerprint.isNumberChanged(existingFingerprint);
+			if (numberParamsChanged) {
+				if (theEntity.isParamsNumberPopulated()) {
+					existingNumberParams.addAll(theEntity.getParamsNumber());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsNumber(numberParams);
+					theEntity.setParamsNumberPopulated(numberParams.isEmpty() == false);
+				}
+			}
+
+			quantityParamsChanged = newFingerprint.isQuantityChanged(existingFingerprint);
+			if (quantityParamsChanged) {
+				if (theEntity.isParamsQuantityPopulated()) {
+					existingQuantityParams.addAll(theEntity.getParamsQuantity());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsQuantity(quantityParams);
+					theEntity.setParamsQuantityPopulated(quantityParams.isEmpty() == false);
+				}
+			}
+
+			dateParamsChanged = newFingerprint.isDateChanged(existingFingerprint);
+			if (dateParamsChanged) {
+				if (theEntity.isParamsDatePopulated()) {
+					existingDateParams.addAll(theEntity.getParamsDate());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsDate(dateParams);
+					theEntity.setParamsDatePopulated(dateParams.isEmpty() == false);
+				}
+			}
+
+			uriParamsChanged = newFingerprint.isUriChanged(existingFingerprint);
+			if (uriParamsChanged) {
+				if (theEntity.isParamsUriPopulated()) {
+					existingUriParams.addAll(theEntity.getParamsUri());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsUri(uriParams);
+					theEntity.setParamsUriPopulated(uriParams.isEmpty() == false);
+				}
+			}
+
+			coordsParamsChanged = newFingerprint.isCoordsChanged(existingFingerprint);
+			if (coordsParamsChanged) {
+				if (theEntity.isParamsCoordsPopulated()) {
+					existingCoordsParams.addAll(theEntity.getParamsCoords());
+				}
+				if (theDeletedTimestampOrNull == null) {
+					theEntity.setParamsCoords(coordsParams);
+					theEntity.setParamsCoordsPopulated(coordsParams.isEmpty() == false);
+				}
+			}
+		}
+
 		if (!changed.isChanged() && !theForceUpdate && myConfig.isSuppressUpdatesWithNoChange()) {
 			ourLog.debug("Resource {} has not changed", theEntity.getIdDt().toUnqualified().getValue());
 			if (theResource != null) {
@@ -1939,6 +2277,7 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 
 			if (theEntity.getForcedId() != null) {
 				myEntityManager.persist(theEntity.getForcedId());
+				myForcedIdCache.put(theEntity.getResourceType(), theEntity.getForcedId().getForcedId(), theEntity.getId());
 			}
 
 			postPersist(theEntity, (T) theResource);
@@ -1949,6 +2288,15 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 			postUpdate(theEntity, (T) theResource);
 		}
 
+		/*
+		 * The body stored for this version may be replaced (or rolled back), so
+		 * make sure a stale copy is never served from the cache
+		 */
+		myParsedResourceCache.invalidate(theEntity.getId(), theEntity.getVersion());
+
+		// Searches for this type which have already been run may no longer be accurate
+		mySearchCoordinatorSvc.invalidateReusableSearches(theEntity.getResourceType());
+
 		/*
 		 * Create history entry
 		 */
@@ -1996,65 +2344,95 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 		 */
 		if (thePerformIndexing) {
 
-			for (ResourceIndexedSearchParamString next : removeCommon(existingStringParams, stringParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsString().remove(next);
-			}
-			for (ResourceIndexedSearchParamString next : removeCommon(stringParams, existingStringParams)) {
-				myEntityManager.persist(next);
+			if (stringParamsChanged) {
+				for (ResourceIndexedSearchParamString next : removeCommon(existingStringParams, stringParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsString().remove(next);
+				}
+				for (ResourceIndexedSearchParamString next : removeCommon(stringParams, existingStringParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
-			for (ResourceIndexedSearchParamToken next : removeCommon(existingTokenParams, tokenParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsToken().remove(next);
-			}
-			for (ResourceIndexedSearchParamToken next : removeCommon(tokenParams, existingTokenParams)) {
-				myEntityManager.persist(next);
+			if (tokenParamsChanged) {
+				for (ResourceIndexedSearchParamToken next : removeCommon(existingTokenParams, tokenParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsToken().remove(next);
+				}
+				for (ResourceIndexedSearchParamToken next : removeCommon(tokenParams, existingTokenParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
-			for (ResourceIndexedSearchParamNumber next : removeCommon(existingNumberParams, numberParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsNumber().remove(next);
-			}
-			for (ResourceIndexedSearchParamNumber next : removeCommon(numberParams, existingNumberParams)) {
-				myEntityManager.persist(next);
+			if (numberParamsChanged) {
+				for (ResourceIndexedSearchParamNumber next : removeCommon(existingNumberParams, numberParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsNumber().remove(next);
+				}
+				for (ResourceIndexedSearchParamNumber next : removeCommon(numberParams, existingNumberParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
-			for (ResourceIndexedSearchParamQuantity next : removeCommon(existingQuantityParams, quantityParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsQuantity().remove(next);
-			}
-			for (ResourceIndexedSearchParamQuantity next : removeCommon(quantityParams, existingQuantityParams)) {
-				myEntityManager.persist(next);
+			if (quantityParamsChanged) {
+				for (ResourceIndexedSearchParamQuantity next : removeCommon(existingQuantityParams, quantityParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsQuantity().remove(next);
+				}
+				for (ResourceIndexedSearchParamQuantity next : removeCommon(quantityParams, existingQuantityParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
 			// Store date SP's
-			for (ResourceIndexedSearchParamDate next : removeCommon(existingDateParams, dateParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsDate().remove(next);
-			}
-			for (ResourceIndexedSearchParamDate next : removeCommon(dateParams, existingDateParams)) {
-				myEntityManager.persist(next);
+			if (dateParamsChanged) {
+				for (ResourceIndexedSearchParamDate next : removeCommon(existingDateParams, dateParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsDate().remove(next);
+				}
+				for (ResourceIndexedSearchParamDate next : removeCommon(dateParams, existingDateParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
 			// Store URI SP's
-			for (ResourceIndexedSearchParamUri next : removeCommon(existingUriParams, uriParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsUri().remove(next);
-			}
-			for (ResourceIndexedSearchParamUri next : removeCommon(uriParams, existingUriParams)) {
-				myEntityManager.persist(next);
+			if (uriParamsChanged) {
+				for (ResourceIndexedSearchParamUri next : removeCommon(existingUriParams, uriParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsUri().remove(next);
+				}
+				for (ResourceIndexedSearchParamUri next : removeCommon(uriParams, existingUriParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
 			// Store Coords SP's
-			for (ResourceIndexedSearchParamCoords next : removeCommon(existingCoordsParams, coordsParams)) {
-				myEntityManager.remove(next);
-				theEntity.getParamsCoords().remove(next);
-			}
-			for (ResourceIndexedSearchParamCoords next : removeCommon(coordsParams, existingCoordsParams)) {
-				myEntityManager.persist(next);
+			if (coordsParamsChanged) {
+				for (ResourceIndexedSearchParamCoords next : removeCommon(existingCoordsParams, coordsParams)) {
+					myEntityManager.remove(next);
+					theEntity.getParamsCoords().remove(next);
+				}
+				for (ResourceIndexedSearchParamCoords next : removeCommon(coordsParams, existingCoordsParams)) {
+					myEntityManager.persist(next);
+				}
 			}
 
+			/*
+			 * Rows which were written before the hash columns existed are given
+			 * their hashes when the resource is next updated or reindexed. Only
+			 * the types which were loaded above are visited, but a resource which
+			 * predates the hash columns has no fingerprint so all of them are.
+			 */
+			calculateMissingHashes(existingStringParams);
+			calculateMissingHashes(existingTokenParams);
+			calculateMissingHashes(existingNumberParams);
+			calculateMissingHashes(existingQuantityParams);
+			calculateMissingHashes(existingDateParams);
+			calculateMissingHashes(existingUriParams);
+			calculateMissingHashes(existingCoordsParams);
+
+			theEntity.setIndexFingerprint(newFingerprint.encode());
+
 			// Store resource links
 			for (ResourceLink next : removeCommon(existingResourceLinks, links)) {
 				myEntityManager.remove(next);
@@ -2485,36 +2863,6 @@ public abstract class BaseHapiFhirDao<T extends IBaseResource> implements IDao {
 		return retVal;
 	}
 
-	protected static Long translateForcedIdToPid(String theResourceName, String theResourceId, IForcedIdDao
-		theForcedIdDao) {
-		return translateForcedIdToPids(new IdDt(theResourceName, theResourceId), theForcedIdDao).get(0);
-	}
-
-	static List<Long> translateForcedIdToPids(IIdType theId, IForcedIdDao theForcedIdDao) {
-		Validate.isTrue(theId.hasIdPart());
-
-		if (isValidPid(theId)) {
-			return Collections.singletonList(theId.getIdPartAsLong());
-		} else {
-			List<ForcedId> forcedId;
-			if (theId.hasResourceType()) {
-				forcedId = theForcedIdDao.findByTypeAndForcedId(theId.getResourceType(), theId.getIdPart());
-			} else {
-				forcedId = theForcedIdDao.findByForcedId(theId.getIdPart());
-			}
-
-			if (forcedId.isEmpty() == false) {
-				List<Long> retVal = new ArrayList<>(forcedId.size());
-				for (ForcedId next : forcedId) {
-					retVal.add(next.getResourcePid());
-				}
-				return retVal;
-			} else {
-				throw new ResourceNotFoundException(theId);
-			}
-		}
-	}
-
 	public static SearchParameterMap translateMatchUrl(IDao theCallingDao, FhirContext theContext, String
 		theMatchUrl, RuntimeResourceDefinition resourceDef) {
 		SearchParameterMap paramMap = new SearchParameterMap();
@@ -5,15 +5,26 @@ import ca.uhn.fhir.jpa.dao.data.IResourceTableDao;
 import ca.uhn.fhir.jpa.dao.data.ITermConceptDao;
 import ca.uhn.fhir.jpa.entity.ForcedId;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
+import ca.uhn.fhir.jpa.provider.ServletSubRequestDetails;
 import ca.uhn.fhir.jpa.util.*;
+import ca.uhn.fhir.parser.DataFormatException;
+import ca.uhn.fhir.parser.IParser;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
+import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
+import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor.ActionRequestDetails;
+import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
@@ -22,13 +33,21 @@ import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
 import javax.annotation.Nullable;
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 /*
  * #%L
@@ -52,12 +71,23 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 
 public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBaseResource> implements IFhirSystemDao<T, MT> {
 
+	/**
+	 * The largest number of resources which are reindexed in a single transaction
+	 */
+	static final int MAX_REINDEX_CHUNK_SIZE = 500;
+	/**
+	 * The number of NDJSON lines which are parsed and written together by one bulk import worker
+	 */
+	static final int BULK_IMPORT_CHUNK_SIZE = 500;
+	private static final long BULK_IMPORT_LOG_INTERVAL_MILLIS = 30 * DateUtils.MILLIS_PER_SECOND;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(BaseHapiFhirSystemDao.class);
 
 	@Autowired
 	private IForcedIdDao myForcedIdDao;
 
 	private ReentrantLock myReindexLock = new ReentrantLock(false);
+	private ExecutorService myReindexPool;
+	private final ReindexJobProgress myReindexJobProgress = new ReindexJobProgress();
 
 	@Autowired
 	private ITermConceptDao myTermConceptDao;
@@ -72,6 +102,214 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 	public ResourceCountCache myResourceCountsCache;
 
 
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public BulkImportOutcome bulkImport(RequestDetails theRequestDetails, Reader theInput) {
+		int threadCount = getConfig().getBulkImportThreadCount();
+
+		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
+		txTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+
+		/*
+		 * This thread reads the input and hands chunks of lines to the workers, which parse
+		 * them and write each chunk in its own transaction. When every worker is busy and the
+		 * queue is full, this thread works on the next chunk itself, which stops the reader
+		 * from getting too far ahead of the writers.
+		 */
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threadCount), new CustomizableThreadFactory("bulk_import_"), new ThreadPoolExecutor.CallerRunsPolicy());
+		BulkImportProgress progress = new BulkImportProgress();
+		StopWatch sw = new StopWatch();
+		StopWatch logSw = new StopWatch();
+		try {
+			BufferedReader reader = new BufferedReader(theInput);
+			List<String> chunk = new ArrayList<>(BULK_IMPORT_CHUNK_SIZE);
+			long chunkFirstLine = 1;
+			long lineNumber = 0;
+			String nextLine;
+			while ((nextLine = reader.readLine()) != null) {
+				lineNumber++;
+				if (isNotBlank(nextLine)) {
+					progress.myReadCount.incrementAndGet();
+				}
+				chunk.add(nextLine);
+
+				if (chunk.size() == BULK_IMPORT_CHUNK_SIZE) {
+					submitBulkImportChunk(theRequestDetails, pool, txTemplate, chunkFirstLine, chunk, progress);
+					chunk = new ArrayList<>(BULK_IMPORT_CHUNK_SIZE);
+					chunkFirstLine = lineNumber + 1;
+				}
+
+				if (logSw.getMillis() > BULK_IMPORT_LOG_INTERVAL_MILLIS) {
+					logBulkImportProgress(progress, sw.getMillis(), threadCount);
+					logSw.restart();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				submitBulkImportChunk(theRequestDetails, pool, txTemplate, chunkFirstLine, chunk, progress);
+			}
+		} catch (IOException e) {
+			throw new InternalErrorException(e);
+		} finally {
+			pool.shutdown();
+			try {
+				while (!pool.awaitTermination(BULK_IMPORT_LOG_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+					logBulkImportProgress(progress, sw.getMillis(), threadCount);
+				}
+			} catch (InterruptedException e) {
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		logBulkImportProgress(progress, sw.getMillis(), threadCount);
+		return progress.toOutcome(sw.getMillis());
+	}
+
+	private void submitBulkImportChunk(RequestDetails theRequestDetails, ExecutorService thePool, TransactionTemplate theTxTemplate, long theFirstLineNumber, List<String> theLines, BulkImportProgress theProgress) {
+		RequestDetails requestDetails = newBulkImportSubRequest(theRequestDetails);
+		thePool.execute(() -> bulkImportChunk(requestDetails, theTxTemplate, theFirstLineNumber, theLines, theProgress));
+	}
+
+	/**
+	 * Creates the request details used to write one chunk of a bulk import. Chunks are
+	 * written concurrently, and interceptors may keep state in the request details (e.g. in
+	 * the user data), so each chunk gets its own sub-request instead of sharing the original
+	 * one. The sub-request carries the headers and user data of the original request.
+	 */
+	private RequestDetails newBulkImportSubRequest(RequestDetails theRequestDetails) {
+		if (theRequestDetails == null) {
+			return null;
+		}
+
+		ServletSubRequestDetails retVal = new ServletSubRequestDetails();
+		if (theRequestDetails instanceof ServletRequestDetails) {
+			ServletRequestDetails servletRequestDetails = (ServletRequestDetails) theRequestDetails;
+			retVal.setServer(servletRequestDetails.getServer());
+			HttpServletRequest servletRequest = servletRequestDetails.getServletRequest();
+			retVal.setServletRequest(servletRequest);
+			if (servletRequest != null && servletRequest.getHeaderNames() != null) {
+				for (String nextName : Collections.list(servletRequest.getHeaderNames())) {
+					for (String nextValue : Collections.list(servletRequest.getHeaders(nextName))) {
+						retVal.addHeader(nextName, nextValue);
+					}
+				}
+			}
+		}
+		retVal.setRequestType(theRequestDetails.getRequestType());
+		retVal.setFhirServerBase(theRequestDetails.getFhirServerBase());
+		retVal.setTenantId(theRequestDetails.getTenantId());
+		if (theRequestDetails.getUserData() != null) {
+			retVal.getUserData().putAll(theRequestDetails.getUserData());
+		}
+		return retVal;
+	}
+
+	/**
+	 * Parses a chunk of NDJSON lines and writes the resources in a single transaction. If the
+	 * transaction fails, the resources are written again one per transaction so that only the
+	 * ones which can't be stored are lost.
+	 */
+	private void bulkImportChunk(RequestDetails theRequestDetails, TransactionTemplate theTxTemplate, long theFirstLineNumber, List<String> theLines, BulkImportProgress theProgress) {
+		StopWatch sw = new StopWatch();
+		int lineCount = 0;
+		for (String nextLine : theLines) {
+			if (isNotBlank(nextLine)) {
+				lineCount++;
+			}
+		}
+
+		int written = 0;
+		int failed = 0;
+		try {
+			IParser parser = getContext().newJsonParser();
+			List<String> parsedLines = new ArrayList<>(theLines.size());
+			List<IBaseResource> resources = new ArrayList<>(theLines.size());
+			for (int i = 0; i < theLines.size(); i++) {
+				String nextLine = theLines.get(i);
+				if (isBlank(nextLine)) {
+					continue;
+				}
+				try {
+					resources.add(parser.parseResource(nextLine));
+					parsedLines.add(nextLine);
+				} catch (DataFormatException e) {
+					ourLog.warn("Failed to parse line {}: {}", theFirstLineNumber + i, e.toString());
+					failed++;
+				}
+			}
+			theProgress.myParsedCount.addAndGet(resources.size());
+			theProgress.myParseMillis.addAndGet(sw.getMillisAndRestart());
+
+			if (resources.isEmpty()) {
+				return;
+			}
+
+			try {
+				theTxTemplate.execute(theStatus -> {
+					for (IBaseResource next : resources) {
+						bulkImportResource(theRequestDetails, next);
+					}
+					return null;
+				});
+				written = resources.size();
+			} catch (Exception e) {
+				ourLog.warn("Failed to import chunk starting at line {}, importing its resources individually: {}", theFirstLineNumber, e.toString());
+
+				// The failed attempt may have modified the resources (e.g. assigned IDs), so start again from the text
+				for (String nextLine : parsedLines) {
+					IBaseResource resource = parser.parseResource(nextLine);
+					try {
+						theTxTemplate.execute(theStatus -> {
+							bulkImportResource(theRequestDetails, resource);
+							return null;
+						});
+						written++;
+					} catch (Exception e2) {
+						ourLog.warn("Failed to import resource {}: {}", resource.getIdElement().getValue(), e2.toString());
+						failed++;
+					}
+				}
+			}
+			theProgress.myWriteMillis.addAndGet(sw.getMillis());
+		} catch (Exception e) {
+			// Every resource in the chunk which wasn't written by now has been lost
+			ourLog.error("Failed to import lines {}-{}", new Object[]{theFirstLineNumber, theFirstLineNumber + theLines.size() - 1, e});
+			failed = lineCount - written;
+		} finally {
+			theProgress.myWrittenCount.addAndGet(written);
+			theProgress.myFailedCount.addAndGet(failed);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void bulkImportResource(RequestDetails theRequestDetails, IBaseResource theResource) {
+		IFhirResourceDao<IBaseResource> dao = (IFhirResourceDao<IBaseResource>) getDao(theResource.getClass());
+		if (dao == null) {
+			throw new InvalidRequestException("Unable to import resource of type " + getContext().getResourceDefinition(theResource).getName() + ", no DAO is registered for it");
+		}
+		if (theResource.getIdElement().hasIdPart()) {
+			dao.update(theResource, theRequestDetails);
+		} else {
+			dao.create(theResource, theRequestDetails);
+		}
+	}
+
+	/**
+	 * Logs the throughput of each stage of a bulk import. The parse and write rates are per
+	 * worker thread, since each stage's time is summed across the threads doing it.
+	 */
+	private void logBulkImportProgress(BulkImportProgress theProgress, long theMillis, int theThreadCount) {
+		long read = theProgress.myReadCount.get();
+		long parsed = theProgress.myParsedCount.get();
+		long written = theProgress.myWrittenCount.get();
+		long readPerSecond = (read * DateUtils.MILLIS_PER_SECOND) / Math.max(theMillis, 1);
+		long parsedPerSecond = (parsed * DateUtils.MILLIS_PER_SECOND) / Math.max(theProgress.myParseMillis.get(), 1);
+		long writtenPerSecond = (written * DateUtils.MILLIS_PER_SECOND) / Math.max(theProgress.myWriteMillis.get(), 1);
+		long overallPerSecond = (written * DateUtils.MILLIS_PER_SECOND) / Math.max(theMillis, 1);
+		ourLog.info("Bulk import after {}: read {} ({}/sec), parsed {} ({}/sec/thread), written {} ({}/sec/thread), failed {} - {} resources / sec overall with {} threads",
+			new Object[]{StopWatch.formatMillis(theMillis), read, readPerSecond, parsed, parsedPerSecond, written, writtenPerSecond, theProgress.myFailedCount.get(), overallPerSecond, theThreadCount});
+	}
+
 	private int doPerformReindexingPass(final Integer theCount) {
 		/*
 		 * If any search parameters have been recently added or changed,
@@ -80,35 +318,177 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 		 */
 		mySearchParamRegistry.refreshCacheIfNecessary();
 
+		int threadCount = getConfig().getReindexThreadCount();
+
+		int maxResult = 500;
+		if (theCount != null) {
+			maxResult = Math.min(theCount, 2000);
+		}
+		maxResult = Math.max(maxResult, 10) * threadCount;
+
 		TransactionTemplate txTemplate = new TransactionTemplate(myTxManager);
-		txTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRED);
-		return doPerformReindexingPassForResources(theCount, txTemplate);
+		txTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+
+		/*
+		 * The index status column is our record of progress: each chunk marks its
+		 * resources as indexed when it commits, so a pass which is interrupted (e.g.
+		 * by a restart) simply resumes with whatever is still unindexed
+		 */
+		final int maxResultFinal = maxResult;
+		List<Long> pids = txTemplate.execute(theStatus -> {
+			TypedQuery<Long> q = myEntityManager.createQuery("SELECT t.myId FROM ResourceTable t WHERE t.myIndexStatus IS NULL ORDER BY t.myId", Long.class);
+			ourLog.debug("Beginning indexing query with maximum {}", maxResultFinal);
+			q.setMaxResults(maxResultFinal);
+			return q.getResultList();
+		});
+
+		if (pids.isEmpty()) {
+			ourLog.debug("Indexed 0 resources");
+			myReindexJobProgress.myRemainingCount.set(0);
+			return 0;
+		}
+
+		/*
+		 * Counting the unindexed resources is a full scan on a large table, so it is only
+		 * done once per job, and each pass then subtracts what it has done
+		 */
+		if (myReindexJobProgress.myRemainingCount.get() < 0) {
+			Long remaining = txTemplate.execute(theStatus -> {
+				TypedQuery<Long> q = myEntityManager.createQuery("SELECT COUNT(t) FROM ResourceTable t WHERE t.myIndexStatus IS NULL", Long.class);
+				return q.getSingleResult();
+			});
+			myReindexJobProgress.myRemainingCount.compareAndSet(-1, remaining);
+		}
+
+		/*
+		 * Split the PIDs into contiguous ranges, one (or more, for large passes) per
+		 * worker, each of which is reindexed in its own transaction
+		 */
+		int chunkSize = Math.min((pids.size() + threadCount - 1) / threadCount, MAX_REINDEX_CHUNK_SIZE);
+		List<List<Long>> chunks = Lists.partition(pids, chunkSize);
+
+		StopWatch sw = new StopWatch();
+		long failedBefore = myReindexJobProgress.myFailedCount.get();
+		int count = 0;
+		if (threadCount > 1 && chunks.size() > 1) {
+			List<Callable<Integer>> tasks = new ArrayList<>(chunks.size());
+			for (List<Long> nextChunk : chunks) {
+				tasks.add(() -> reindexChunkWithRetry(txTemplate, nextChunk));
+			}
+			try {
+				for (Future<Integer> next : getReindexPool().invokeAll(tasks)) {
+					try {
+						count += next.get();
+					} catch (ExecutionException e) {
+						throw new InternalErrorException(e.getCause());
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InternalErrorException(e);
+			}
+		} else {
+			for (List<Long> nextChunk : chunks) {
+				count += reindexChunkWithRetry(txTemplate, nextChunk);
+			}
+		}
+
+		long millis = sw.getMillis();
+		long done = count + myReindexJobProgress.myFailedCount.get() - failedBefore;
+		myReindexJobProgress.myIndexedCount.addAndGet(count);
+		myReindexJobProgress.myMillis.addAndGet(millis);
+		myReindexJobProgress.myRemainingCount.updateAndGet(t -> t < 0 ? t : Math.max(t - done, 0));
+
+		logReindexingProgress(count, millis);
+		return count;
+	}
+
+	/**
+	 * Reindexes a range of resources in a single transaction. If that fails for any reason
+	 * (which may be transient, e.g. a lock timeout), the resources in the range are retried one
+	 * per transaction, and only those which still fail on their own are marked as failed.
+	 */
+	private int reindexChunkWithRetry(TransactionTemplate theTxTemplate, List<Long> thePids) {
+		try {
+			return reindexChunk(theTxTemplate, thePids);
+		} catch (Exception e) {
+			if (thePids.size() > 1) {
+				ourLog.warn("Failed to reindex a chunk of {} resources, retrying them one at a time: {}", thePids.size(), e.toString());
+			}
+		}
+
+		int count = 0;
+		for (Long nextPid : thePids) {
+			try {
+				count += reindexChunk(theTxTemplate, Collections.singletonList(nextPid));
+			} catch (Exception e) {
+				ourLog.warn("Reindexing failed for resource {}: {}", nextPid, e.toString());
+				markResourceAsIndexingFailed(nextPid);
+				myReindexJobProgress.myFailedCount.incrementAndGet();
+			}
+		}
+		return count;
 	}
 
+	private void logReindexingProgress(int theCount, long theMillis) {
+		if (theCount == 0) {
+			ourLog.debug("Indexed 0 resources in {}ms", theMillis);
+			return;
+		}
+
+		long perSecond = (theCount * DateUtils.MILLIS_PER_SECOND) / Math.max(theMillis, 1);
+		ReindexingProgress progress = getReindexingProgress();
+		Long remaining = progress.getRemainingCount();
+		Long etaMillis = progress.getEstimatedMillisRemaining();
+
+		if (remaining != null && remaining > 0 && etaMillis != null) {
+			String eta = DurationFormatUtils.formatDurationWords(etaMillis, true, true);
+			ourLog.info("Indexed {} resources in {}ms - {} resources / sec - {} remaining, ETA {}", new Object[]{theCount, theMillis, perSecond, remaining, eta});
+		} else {
+			ourLog.info("Indexed {} resources in {}ms - {} resources / sec", new Object[]{theCount, theMillis, perSecond});
+		}
+	}
+
+	@Override
+	public ReindexingProgress getReindexingProgress() {
+		long remaining = myReindexJobProgress.myRemainingCount.get();
+		return new ReindexingProgress()
+			.setIndexedCount(myReindexJobProgress.myIndexedCount.get())
+			.setFailedCount(myReindexJobProgress.myFailedCount.get())
+			.setMillis(myReindexJobProgress.myMillis.get())
+			.setRemainingCount(remaining >= 0 ? remaining : null);
+	}
+
+	/**
+	 * Reindexes a range of resources in a single transaction, loading their current
+	 * bodies with one query
+	 *
+	 * @throws ReindexFailureException If any resource in the range fails to reindex, in which case the whole range is rolled back
+	 */
 	@SuppressWarnings("ConstantConditions")
-	private int doPerformReindexingPassForResources(final Integer theCount, TransactionTemplate txTemplate) {
-		return txTemplate.execute(new TransactionCallback<Integer>() {
+	private int reindexChunk(TransactionTemplate theTxTemplate, final List<Long> thePids) {
+		return theTxTemplate.execute(new TransactionCallback<Integer>() {
 			@SuppressWarnings("unchecked")
 			@Override
 			public Integer doInTransaction(@Nonnull TransactionStatus theStatus) {
-
-				int maxResult = 500;
-				if (theCount != null) {
-					maxResult = Math.min(theCount, 2000);
+				TypedQuery<ResourceTable> q = myEntityManager.createQuery("SELECT t FROM ResourceTable t LEFT JOIN FETCH t.myForcedId WHERE t.myId IN (:pids) AND t.myIndexStatus IS NULL ORDER BY t.myId", ResourceTable.class);
+				q.setParameter("pids", thePids);
+				List<ResourceTable> resourceTables = q.getResultList();
+				if (resourceTables.isEmpty()) {
+					return 0;
 				}
-				maxResult = Math.max(maxResult, 10);
 
-				TypedQuery<Long> q = myEntityManager.createQuery("SELECT t.myId FROM ResourceTable t WHERE t.myIndexStatus IS NULL", Long.class);
-
-				ourLog.debug("Beginning indexing query with maximum {}", maxResult);
-				q.setMaxResults(maxResult);
-				Collection<Long> resources = q.getResultList();
+				List<IBaseResource> resources;
+				try {
+					resources = toResources(resourceTables, false);
+				} catch (Exception e) {
+					// Parse them one at a time below so that we know which one failed
+					resources = null;
+				}
 
 				int count = 0;
-				long start = System.currentTimeMillis();
-
-				for (Long nextId : resources) {
-					ResourceTable resourceTable = myResourceTableDao.findOne(nextId);
+				for (int i = 0; i < resourceTables.size(); i++) {
+					ResourceTable resourceTable = resourceTables.get(i);
 
 					try {
 						/*
@@ -123,7 +503,8 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 							}
 						}
 
-						final IBaseResource resource = toResource(resourceTable, false);
+						IBaseResource resource = resources != null ? resources.get(i) : toResource(resourceTable, false);
+						Validate.notNull(resource, "Unable to find current version of resource");
 
 						@SuppressWarnings("rawtypes") final IFhirResourceDao dao = getDao(resource.getClass());
 
@@ -133,19 +514,6 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 						throw new ReindexFailureException(resourceTable.getId());
 					}
 					count++;
-
-					if (count >= maxResult) {
-						break;
-					}
-				}
-
-				long delay = System.currentTimeMillis() - start;
-				long avg;
-				if (count > 0) {
-					avg = (delay / count);
-					ourLog.info("Indexed {} resources in {}ms - Avg {}ms / resource", new Object[]{count, delay, avg});
-				} else {
-					ourLog.debug("Indexed 0 resources in {}ms", delay);
 				}
 
 				return count;
@@ -198,12 +566,13 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 	public int markAllResourcesForReindexing() {
 
 		ourLog.info("Marking all resources as needing reindexing");
-		int retVal = myEntityManager.createQuery("UPDATE " + ResourceTable.class.getSimpleName() + " t SET t.myIndexStatus = null").executeUpdate();
+		int retVal = myEntityManager.createQuery("UPDATE " + ResourceTable.class.getSimpleName() + " t SET t.myIndexStatus = null, t.myIndexFingerprint = null").executeUpdate();
 
 		ourLog.info("Marking all concepts as needing reindexing");
 		retVal += myTermConceptDao.markAllForReindexing();
 
 		ourLog.info("Done marking reindexing");
+		myReindexJobProgress.reset();
 		return retVal;
 	}
 
@@ -214,7 +583,7 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 			@Override
 			public Void doInTransaction(@Nonnull TransactionStatus theStatus) {
 				ourLog.info("Marking resource with PID {} as indexing_failed", new Object[]{theId});
-				Query q = myEntityManager.createQuery("UPDATE ResourceTable t SET t.myIndexStatus = :status WHERE t.myId = :id");
+				Query q = myEntityManager.createQuery("UPDATE ResourceTable t SET t.myIndexStatus = :status, t.myIndexFingerprint = null WHERE t.myId = :id");
 				q.setParameter("status", INDEX_STATUS_INDEXING_FAILED);
 				q.setParameter("id", theId);
 				q.executeUpdate();
@@ -264,6 +633,27 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 		});
 	}
 
+	/**
+	 * Returns the pool used to reindex chunks of resources in parallel, creating it with the
+	 * configured number of threads the first time it is needed. The pool is never replaced,
+	 * since another pass may still be submitting to it, and is only shut down when this
+	 * DAO is destroyed.
+	 */
+	private synchronized ExecutorService getReindexPool() {
+		if (myReindexPool == null) {
+			myReindexPool = Executors.newFixedThreadPool(getConfig().getReindexThreadCount(), new CustomizableThreadFactory("reindex_"));
+		}
+		return myReindexPool;
+	}
+
+	@PreDestroy
+	public synchronized void shutdownReindexPool() {
+		if (myReindexPool != null) {
+			myReindexPool.shutdown();
+			myReindexPool = null;
+		}
+	}
+
 	@Override
 	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public Integer performReindexingPass(final Integer theCount) {
@@ -272,13 +662,50 @@ public abstract class BaseHapiFhirSystemDao<T, MT> extends BaseHapiFhirDao<IBase
 		}
 		try {
 			return doPerformReindexingPass(theCount);
-		} catch (ReindexFailureException e) {
-			ourLog.warn("Reindexing failed for resource {}", e.getResourceId());
-			markResourceAsIndexingFailed(e.getResourceId());
-			return -1;
 		} finally {
 			myReindexLock.unlock();
 		}
 	}
 
+	/**
+	 * The progress of the current reindexing job, which starts whenever resources are
+	 * marked for reindexing
+	 */
+	private static class ReindexJobProgress {
+		private final AtomicLong myFailedCount = new AtomicLong();
+		private final AtomicLong myIndexedCount = new AtomicLong();
+		private final AtomicLong myMillis = new AtomicLong();
+		/**
+		 * -1 until the first pass of the job has counted the unindexed resources
+		 */
+		private final AtomicLong myRemainingCount = new AtomicLong(-1);
+
+		void reset() {
+			myFailedCount.set(0);
+			myIndexedCount.set(0);
+			myMillis.set(0);
+			myRemainingCount.set(-1);
+		}
+	}
+
+	private static class BulkImportProgress {
+		private final AtomicLong myFailedCount = new AtomicLong();
+		private final AtomicLong myParseMillis = new AtomicLong();
+		private final AtomicLong myParsedCount = new AtomicLong();
+		private final AtomicLong myReadCount = new AtomicLong();
+		private final AtomicLong myWriteMillis = new AtomicLong();
+		private final AtomicLong myWrittenCount = new AtomicLong();
+
+		BulkImportOutcome toOutcome(long theMillis) {
+			return new BulkImportOutcome()
+				.setMillis(theMillis)
+				.setReadCount(myReadCount.get())
+				.setParsedCount(myParsedCount.get())
+				.setParseMillis(myParseMillis.get())
+				.setWrittenCount(myWrittenCount.get())
+				.setWriteMillis(myWriteMillis.get())
+				.setFailedCount(myFailedCount.get());
+		}
+	}
+
 }
@@ -105,6 +105,10 @@ public abstract class BaseSearchParamExtractor implements ISearchParamExtractor
 		return myContext;
 	}
 
+	protected ISearchParamRegistry getSearchParamRegistry() {
+		return mySearchParamRegistry;
+	}
+
 	public Collection<RuntimeSearchParam> getSearchParams(IBaseResource theResource) {
 		RuntimeResourceDefinition def = getContext().getResourceDefinition(theResource);
 		Collection<RuntimeSearchParam> retVal = mySearchParamRegistry.getActiveSearchParams(def.getName()).values();
@@ -71,12 +71,17 @@ public class DaoConfig {
 	 */
 	private boolean myAllowInlineMatchUrlReferences = true;
 	private boolean myAllowMultipleDelete;
+	private int myBulkImportThreadCount = 4;
 	private boolean myDefaultSearchParamsCanBeOverridden = false;
 	/**
 	 * update setter javadoc if default changes
 	 */
 	private int myDeferIndexingForCodesystemsOfSize = 2000;
 	private boolean myDeleteStaleSearches = true;
+	/**
+	 * update setter javadoc if default changes
+	 */
+	private boolean myDisableHashBasedSearches = false;
 	private boolean myEnforceReferentialIntegrityOnDelete = true;
 	private boolean myUniqueIndexesEnabled = true;
 	private boolean myUniqueIndexesCheckedBeforeSave = true;
@@ -101,6 +106,8 @@ public class DaoConfig {
 	 */
 	private int myMaximumExpansionSize = 5000;
 	private Integer myMaximumSearchResultCountInTransaction = DEFAULT_MAXIMUM_SEARCH_RESULT_COUNT_IN_TRANSACTION;
+	private long myParsedResourceCacheMaxBodySize = 0;
+	private int myReindexThreadCount = 1;
 	private ResourceEncodingEnum myResourceEncoding = ResourceEncodingEnum.JSONC;
 	/**
 	 * update setter javadoc if default changes
@@ -108,6 +115,7 @@ public class DaoConfig {
 	private Integer myResourceMetaCountHardLimit = 1000;
 	private Long myReuseCachedSearchResultsForMillis = DEFAULT_REUSE_CACHED_SEARCH_RESULTS_FOR_MILLIS;
 	private boolean mySchedulingDisabled;
+	private int mySearchPageParseThreadCount = 1;
 	private boolean mySuppressUpdatesWithNoChange = true;
 	private Set<String> myTreatBaseUrlsAsLocal = new HashSet<>();
 	private Set<String> myTreatReferencesAsLogical = new HashSet<>(DEFAULT_LOGICAL_BASE_URLS);
@@ -143,6 +151,35 @@ public class DaoConfig {
 	}
 
 
+	/**
+	 * The number of worker threads used by {@link IFhirSystemDao#bulkImport(ca.uhn.fhir.rest.api.server.RequestDetails, java.io.Reader) bulk imports}.
+	 * Each worker parses a chunk of the input and writes it in its own transaction, so this
+	 * is also the number of database connections a bulk import will use.
+	 * <p>
+	 * The default is 4.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	public int getBulkImportThreadCount() {
+		return myBulkImportThreadCount;
+	}
+
+	/**
+	 * The number of worker threads used by {@link IFhirSystemDao#bulkImport(ca.uhn.fhir.rest.api.server.RequestDetails, java.io.Reader) bulk imports}.
+	 * Each worker parses a chunk of the input and writes it in its own transaction, so this
+	 * is also the number of database connections a bulk import will use.
+	 * <p>
+	 * The default is 4.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	public void setBulkImportThreadCount(int theBulkImportThreadCount) {
+		Validate.inclusiveBetween(1, Short.MAX_VALUE, theBulkImportThreadCount);
+		myBulkImportThreadCount = theBulkImportThreadCount;
+	}
+
 	/**
 	 * Specifies the highest number that a client is permitted to use in a
 	 * <code>Cache-Control: nostore, max-results=NNN</code>
@@ -460,11 +497,115 @@ public class DaoConfig {
 		myMaximumSearchResultCountInTransaction = theMaximumSearchResultCountInTransaction;
 	}
 
+	/**
+	 * If set to a value greater than 0, resource bodies which are parsed when reading
+	 * resources from the database are kept in an in-memory cache keyed by resource ID
+	 * and version, so that frequently read resources do not need to be decompressed and
+	 * parsed on every read. The value is the maximum total size (in characters) of the encoded
+	 * bodies of the resources held in the cache.
+	 * <p>
+	 * Only DSTU3 and R4 resources are cached. Resources which are parsed into a custom type (see
+	 * {@link ca.uhn.fhir.context.FhirContext#setDefaultTypeForProfile(String, Class)}) are only cached
+	 * if the custom type overrides <code>copy()</code> to return an instance of the custom type.
+	 * The default is 0, meaning that the cache is disabled.
+	 * </p>
+	 *
+	 * @see ca.uhn.fhir.jpa.util.ParsedResourceCache
+	 * @since 3.4.0
+	 */
+	public long getParsedResourceCacheMaxBodySize() {
+		return myParsedResourceCacheMaxBodySize;
+	}
+
+	/**
+	 * If set to a value greater than 0, resource bodies which are parsed when reading
+	 * resources from the database are kept in an in-memory cache keyed by resource ID
+	 * and version, so that frequently read resources do not need to be decompressed and
+	 * parsed on every read. The value is the maximum total size (in characters) of the encoded
+	 * bodies of the resources held in the cache.
+	 * <p>
+	 * Only DSTU3 and R4 resources are cached. Resources which are parsed into a custom type (see
+	 * {@link ca.uhn.fhir.context.FhirContext#setDefaultTypeForProfile(String, Class)}) are only cached
+	 * if the custom type overrides <code>copy()</code> to return an instance of the custom type.
+	 * The default is 0, meaning that the cache is disabled.
+	 * </p>
+	 *
+	 * @see ca.uhn.fhir.jpa.util.ParsedResourceCache
+	 * @since 3.4.0
+	 */
+	public void setParsedResourceCacheMaxBodySize(long theParsedResourceCacheMaxBodySize) {
+		Validate.isTrue(theParsedResourceCacheMaxBodySize >= 0, "theParsedResourceCacheMaxBodySize must not be negative");
+		myParsedResourceCacheMaxBodySize = theParsedResourceCacheMaxBodySize;
+	}
+
+	/**
+	 * The number of worker threads used to reindex resources which have been marked as
+	 * needing reindexing (e.g. after a search parameter has changed). Each reindexing pass
+	 * splits the pending resources into contiguous ranges of resource IDs, and each range is
+	 * reindexed by one of these threads in its own transaction. Each thread processes up to
+	 * the number of resources requested for the pass.
+	 * <p>
+	 * The worker pool is created with this many threads the first time it is needed, and
+	 * is not resized if this setting is changed afterwards.
+	 * </p>
+	 * <p>
+	 * The default is 1, meaning that resources are reindexed serially.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	public int getReindexThreadCount() {
+		return myReindexThreadCount;
+	}
+
+	/**
+	 * The number of worker threads used to reindex resources which have been marked as
+	 * needing reindexing (e.g. after a search parameter has changed). Each reindexing pass
+	 * splits the pending resources into contiguous ranges of resource IDs, and each range is
+	 * reindexed by one of these threads in its own transaction. Each thread processes up to
+	 * the number of resources requested for the pass.
+	 * <p>
+	 * The worker pool is created with this many threads the first time it is needed, and
+	 * is not resized if this setting is changed afterwards.
+	 * </p>
+	 * <p>
+	 * The default is 1, meaning that resources are reindexed serially.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	public void setReindexThreadCount(int theReindexThreadCount) {
+		Validate.inclusiveBetween(1, Short.MAX_VALUE, theReindexThreadCount);
+		myReindexThreadCount = theReindexThreadCount;
+	}
+
+	/**
+	 * Returns the encoding which will be used to store the body of new resource versions.
+	 * Existing versions keep the encoding they were written with, so this setting may be changed
+	 * at any time.
+	 * <p>
+	 * The default value for this setting is {@link ResourceEncodingEnum#JSONC} (GZip compressed JSON).
+	 * {@link ResourceEncodingEnum#JLZ4} (LZ4 compressed JSON) uses somewhat more space but is
+	 * considerably faster to read.
+	 * </p>
+	 */
 	public ResourceEncodingEnum getResourceEncoding() {
 		return myResourceEncoding;
 	}
 
+	/**
+	 * Sets the encoding which will be used to store the body of new resource versions.
+	 * Existing versions keep the encoding they were written with, so this setting may be changed
+	 * at any time.
+	 * <p>
+	 * The default value for this setting is {@link ResourceEncodingEnum#JSONC} (GZip compressed JSON).
+	 * {@link ResourceEncodingEnum#JLZ4} (LZ4 compressed JSON) uses somewhat more space but is
+	 * considerably faster to read.
+	 * </p>
+	 */
 	public void setResourceEncoding(ResourceEncodingEnum theResourceEncoding) {
+		Validate.notNull(theResourceEncoding, "theResourceEncoding must not be null");
+		Validate.isTrue(theResourceEncoding != ResourceEncodingEnum.DEL, "theResourceEncoding must not be DEL");
 		myResourceEncoding = theResourceEncoding;
 	}
 
@@ -528,6 +669,11 @@ public class DaoConfig {
 	 * searches may potentially return slightly out-of-date results.
 	 * </p>
 	 * <p>
+	 * A search is not reused if a resource of the type being searched for (or of any type,
+	 * for searches using chained or <code>_has</code> parameters) has been written since the
+	 * search was created. Note that only writes made on this server node are considered.
+	 * </p>
+	 * <p>
 	 * Note that if this is set to a non-null value, clients may override this setting by using
 	 * the <code>Cache-Control</code> header. If this is set to <code>null</code>, the Cache-Control
 	 * header will be ignored.
@@ -548,6 +694,11 @@ public class DaoConfig {
 	 * searches may potentially return slightly out-of-date results.
 	 * </p>
 	 * <p>
+	 * A search is not reused if a resource of the type being searched for (or of any type,
+	 * for searches using chained or <code>_has</code> parameters) has been written since the
+	 * search was created. Note that only writes made on this server node are considered.
+	 * </p>
+	 * <p>
 	 * Note that if this is set to a non-null value, clients may override this setting by using
 	 * the <code>Cache-Control</code> header. If this is set to <code>null</code>, the Cache-Control
 	 * header will be ignored.
@@ -557,6 +708,47 @@ public class DaoConfig {
 		myReuseCachedSearchResultsForMillis = theReuseCachedSearchResultsForMillis;
 	}
 
+	/**
+	 * When a page of search results is being loaded, the stored body of each resource on the
+	 * page needs to be decompressed and parsed. If this is set to a value greater than 1, this
+	 * work is spread across a shared pool with this many threads instead of being done serially
+	 * by the request thread. Results are always returned in the original order.
+	 * <p>
+	 * The pool is created with this many threads the first time it is needed. Changing this
+	 * setting afterwards only switches between parallel and serial parsing, and does not
+	 * resize the pool.
+	 * </p>
+	 * <p>
+	 * The default is 1, meaning that bodies are parsed serially.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	public int getSearchPageParseThreadCount() {
+		return mySearchPageParseThreadCount;
+	}
+
+	/**
+	 * When a page of search results is being loaded, the stored body of each resource on the
+	 * page needs to be decompressed and parsed. If this is set to a value greater than 1, this
+	 * work is spread across a shared pool with this many threads instead of being done serially
+	 * by the request thread. Results are always returned in the original order.
+	 * <p>
+	 * The pool is created with this many threads the first time it is needed. Changing this
+	 * setting afterwards only switches between parallel and serial parsing, and does not
+	 * resize the pool.
+	 * </p>
+	 * <p>
+	 * The default is 1, meaning that bodies are parsed serially.
+	 * </p>
+	 *
+	 * @since 3.4.0
+	 */
+	public void setSearchPageParseThreadCount(int theSearchPageParseThreadCount) {
+		Validate.inclusiveBetween(1, Short.MAX_VALUE, theSearchPageParseThreadCount);
+		mySearchPageParseThreadCount = theSearchPageParseThreadCount;
+	}
+
 	/**
 	 * This setting may be used to advise the server that any references found in
 	 * resources that have any of the base URLs given here will be replaced with
@@ -843,6 +1035,34 @@ public class DaoConfig {
 		myDefaultSearchParamsCanBeOverridden = theDefaultSearchParamsCanBeOverridden;
 	}
 
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), searches will match index rows
+	 * using the resource type, parameter name and value columns instead of the precomputed hash
+	 * columns (e.g. <code>HASH_IDENTITY</code> and <code>HASH_SYS_AND_VALUE</code>).
+	 * <p>
+	 * Index rows written by versions of HAPI FHIR before these columns were introduced do not
+	 * have hashes, so this should be enabled when upgrading an existing database until all
+	 * resources have been reindexed (which populates the missing hashes).
+	 * </p>
+	 */
+	public boolean isDisableHashBasedSearches() {
+		return myDisableHashBasedSearches;
+	}
+
+	/**
+	 * If set to <code>true</code> (default is <code>false</code>), searches will match index rows
+	 * using the resource type, parameter name and value columns instead of the precomputed hash
+	 * columns (e.g. <code>HASH_IDENTITY</code> and <code>HASH_SYS_AND_VALUE</code>).
+	 * <p>
+	 * Index rows written by versions of HAPI FHIR before these columns were introduced do not
+	 * have hashes, so this should be enabled when upgrading an existing database until all
+	 * resources have been reindexed (which populates the missing hashes).
+	 * </p>
+	 */
+	public void setDisableHashBasedSearches(boolean theDisableHashBasedSearches) {
+		myDisableHashBasedSearches = theDisableHashBasedSearches;
+	}
+
 	/**
 	 * If set to <code>false</code> (default is <code>true</code>) resources will be permitted to be
 	 * deleted even if other resources currently contain references to them.
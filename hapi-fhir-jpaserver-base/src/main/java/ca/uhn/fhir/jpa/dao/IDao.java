@@ -4,11 +4,13 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.context.RuntimeResourceDefinition;
 import ca.uhn.fhir.context.RuntimeSearchParam;
 import ca.uhn.fhir.jpa.entity.BaseHasResource;
+import ca.uhn.fhir.jpa.entity.ResourceHistoryTable;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /*
@@ -58,4 +60,19 @@ public interface IDao {
 
 	<R extends IBaseResource> R toResource(Class<R> theResourceType, BaseHasResource theEntity, boolean theForHistoryOperation);
 
+	/**
+	 * Same as {@link #toResource(Class, BaseHasResource, boolean)} but uses a version body which
+	 * the caller has already loaded, instead of looking it up
+	 */
+	<R extends IBaseResource> R toResource(Class<R> theResourceType, BaseHasResource theEntity, ResourceHistoryTable theHistory, boolean theForHistoryOperation);
+
+	/**
+	 * Converts a batch of entities to resources. The returned list is in the same order
+	 * as the entities, and contains <code>null</code> for any entity whose body could not be found.
+	 * Bodies which are not in the parsed resource cache are loaded using a single query.
+	 *
+	 * @see DaoConfig#setSearchPageParseThreadCount(int)
+	 */
+	List<IBaseResource> toResources(List<? extends BaseHasResource> theEntities, boolean theForHistoryOperation);
+
 }
@@ -20,6 +20,8 @@ package ca.uhn.fhir.jpa.dao;
  * #L%
  */
 
+import ca.uhn.fhir.jpa.util.BulkImportOutcome;
+import ca.uhn.fhir.jpa.util.ReindexingProgress;
 import ca.uhn.fhir.jpa.util.ExpungeOptions;
 import ca.uhn.fhir.jpa.util.ExpungeOutcome;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -29,6 +31,7 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Nullable;
+import java.io.Reader;
 import java.util.Date;
 import java.util.Map;
 
@@ -38,6 +41,30 @@ import java.util.Map;
  */
 public interface IFhirSystemDao<T, MT> extends IDao {
 
+	/**
+	 * Loads resources from NDJSON (one JSON resource per line). Resources with an ID are
+	 * created or updated with that ID, and resources without one are created. The input is
+	 * parsed and written by several worker threads, each committing its own chunk of
+	 * resources, so a failure part way through leaves the chunks which have already
+	 * finished in place. Resources which fail to parse or write are logged and counted,
+	 * and the import carries on.
+	 * <p>
+	 * No ordering is guaranteed between chunks, so if the input contains references
+	 * between resources, either list the targets first and use a single thread, or
+	 * disable {@link DaoConfig#setEnforceReferentialIntegrityOnWrite(boolean) referential integrity}
+	 * for the duration of the load.
+	 * </p>
+	 * <p>
+	 * Each chunk is written with a sub-request of the given request details, carrying its
+	 * headers and user data, so interceptors (including any authorization interceptor) see
+	 * every create and update just as they would for a transaction.
+	 * </p>
+	 *
+	 * @param theRequestDetails The details of the request which supplied the input, copied into a sub-request for each chunk
+	 * @see DaoConfig#setBulkImportThreadCount(int)
+	 */
+	BulkImportOutcome bulkImport(RequestDetails theRequestDetails, Reader theInput);
+
 	ExpungeOutcome expunge(ExpungeOptions theExpungeOptions);
 
 	<R extends IBaseResource> IFhirResourceDao<R> getDao(Class<R> theType);
@@ -70,6 +97,13 @@ public interface IFhirSystemDao<T, MT> extends IDao {
 
 	Integer performReindexingPass(Integer theCount);
 
+	/**
+	 * Returns the progress of the current reindexing job, i.e. of the reindexing passes which
+	 * have run since {@link #markAllResourcesForReindexing()} was last called, including the
+	 * throughput and an estimate of the time remaining
+	 */
+	ReindexingProgress getReindexingProgress();
+
 	T transaction(RequestDetails theRequestDetails, T theResources);
 
 }
@@ -0,0 +1,166 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.entity.*;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * A compact digest of the search index rows belonging to a single resource,
+ * which is stored on {@link ResourceTable} so that an update can tell which
+ * index types have changed without loading the existing rows.
+ * <p>
+ * Each index type gets its own 64 bit hash, calculated from the
+ * {@link BaseResourceIndexedSearchParam#calculateValueHash() value hashes} of its rows.
+ * The hash does not depend on the order of the rows.
+ * </p>
+ * <p>
+ * Not every column is covered. Only number rows include the missing flag, and string rows
+ * include the exact value but not the normalized value. If the way that string values
+ * are normalized changes, the fingerprints must be cleared (which
+ * {@link IFhirSystemDao#markAllResourcesForReindexing()} does) so that the string
+ * rows are rewritten.
+ * </p>
+ */
+public class IndexFingerprint {
+
+	/**
+	 * Bump this if the way that the hashes are calculated ever changes, so that
+	 * fingerprints written by an older version are ignored instead of compared
+	 */
+	private static final String VERSION_PREFIX = "1:";
+	private static final int TYPE_COUNT = 7;
+	private static final int STRING = 0;
+	private static final int TOKEN = 1;
+	private static final int NUMBER = 2;
+	private static final int QUANTITY = 3;
+	private static final int DATE = 4;
+	private static final int URI = 5;
+	private static final int COORDS = 6;
+
+	private final long[] myHashes;
+
+	private IndexFingerprint(long[] theHashes) {
+		myHashes = theHashes;
+	}
+
+	/**
+	 * Constructor
+	 */
+	public IndexFingerprint(
+		Collection<ResourceIndexedSearchParamString> theStringParams,
+		Collection<ResourceIndexedSearchParamToken> theTokenParams,
+		Collection<ResourceIndexedSearchParamNumber> theNumberParams,
+		Collection<ResourceIndexedSearchParamQuantity> theQuantityParams,
+		Collection<ResourceIndexedSearchParamDate> theDateParams,
+		Collection<ResourceIndexedSearchParamUri> theUriParams,
+		Collection<ResourceIndexedSearchParamCoords> theCoordsParams) {
+		myHashes = new long[TYPE_COUNT];
+		myHashes[STRING] = hashParams(theStringParams);
+		myHashes[TOKEN] = hashParams(theTokenParams);
+		myHashes[NUMBER] = hashParams(theNumberParams);
+		myHashes[QUANTITY] = hashParams(theQuantityParams);
+		myHashes[DATE] = hashParams(theDateParams);
+		myHashes[URI] = hashParams(theUriParams);
+		myHashes[COORDS] = hashParams(theCoordsParams);
+	}
+
+	public String encode() {
+		StringBuilder b = new StringBuilder(VERSION_PREFIX);
+		for (int i = 0; i < myHashes.length; i++) {
+			if (i > 0) {
+				b.append(',');
+			}
+			b.append(Long.toHexString(myHashes[i]));
+		}
+		return b.toString();
+	}
+
+	private boolean isChanged(IndexFingerprint thePrevious, int theType) {
+		return thePrevious == null || thePrevious.myHashes[theType] != myHashes[theType];
+	}
+
+	public boolean isCoordsChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, COORDS);
+	}
+
+	public boolean isDateChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, DATE);
+	}
+
+	public boolean isNumberChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, NUMBER);
+	}
+
+	public boolean isQuantityChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, QUANTITY);
+	}
+
+	public boolean isStringChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, STRING);
+	}
+
+	public boolean isTokenChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, TOKEN);
+	}
+
+	public boolean isUriChanged(IndexFingerprint thePrevious) {
+		return isChanged(thePrevious, URI);
+	}
+
+	private static long hashParams(Collection<? extends BaseResourceIndexedSearchParam> theParams) {
+		long sum = 0;
+		for (BaseResourceIndexedSearchParam next : theParams) {
+			sum += next.calculateValueHash();
+		}
+		// Mix in the count so that two rows which cancel each other out aren't the same as none
+		return sum ^ (theParams.size() * 0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Parses a value previously produced by {@link #encode()}. Returns <code>null</code>
+	 * if the value is blank or was not written by this version, in which case every
+	 * index type should be treated as changed.
+	 */
+	public static IndexFingerprint parse(String theValue) {
+		if (StringUtils.isBlank(theValue) || !theValue.startsWith(VERSION_PREFIX)) {
+			return null;
+		}
+
+		String[] parts = theValue.substring(VERSION_PREFIX.length()).split(",");
+		if (parts.length != TYPE_COUNT) {
+			return null;
+		}
+
+		long[] hashes = new long[TYPE_COUNT];
+		try {
+			for (int i = 0; i < TYPE_COUNT; i++) {
+				hashes[i] = Long.parseUnsignedLong(parts[i], 16);
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return new IndexFingerprint(hashes);
+	}
+
+}
@@ -0,0 +1,69 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import ca.uhn.fhir.parser.DataFormatException;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Compresses resource bodies using LZ4, which decompresses several times faster than GZip
+ * at the cost of a somewhat lower compression ratio.
+ * <p>
+ * The stored format is the length of the uncompressed UTF-8 body as a 4 byte big-endian
+ * integer, followed by a single LZ4 block.
+ * </p>
+ */
+public class Lz4Util {
+
+	private static final LZ4Factory ourFactory = LZ4Factory.fastestInstance();
+
+	public static String decompress(byte[] theResource) {
+		try {
+			int length = ByteBuffer.wrap(theResource, 0, 4).getInt();
+			byte[] uncompressed = new byte[length];
+			ourFactory.safeDecompressor().decompress(theResource, 4, theResource.length - 4, uncompressed, 0);
+			return new String(uncompressed, StandardCharsets.UTF_8);
+		} catch (LZ4Exception | IndexOutOfBoundsException | NegativeArraySizeException e) {
+			throw new DataFormatException("Failed to decompress contents", e);
+		}
+	}
+
+	public static byte[] compress(String theEncoded) {
+		return compress(theEncoded.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param theUncompressed The UTF-8 encoded body
+	 */
+	public static byte[] compress(byte[] theUncompressed) {
+		byte[] compressed = ourFactory.fastCompressor().compress(theUncompressed);
+		return ByteBuffer
+			.allocate(4 + compressed.length)
+			.putInt(theUncompressed.length)
+			.put(compressed)
+			.array();
+	}
+
+}
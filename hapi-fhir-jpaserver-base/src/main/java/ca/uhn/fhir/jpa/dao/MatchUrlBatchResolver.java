@@ -0,0 +1,240 @@
+package ca.uhn.fhir.jpa.dao;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import ca.uhn.fhir.context.RuntimeSearchParam;
+import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
+import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.rest.api.RestSearchParameterTypeEnum;
+import ca.uhn.fhir.rest.param.TokenParam;
+import ca.uhn.fhir.rest.server.exceptions.BaseServerResponseException;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.*;
+
+/**
+ * Resolves the match URLs of a batch of conditional creates/updates up front,
+ * using one <code>IN</code> query per token hash column instead of one search
+ * per URL.
+ * <p>
+ * Only URLs consisting of a single plain token parameter (e.g.
+ * <code>Patient?identifier=http://foo|123</code>) are resolved here, and only
+ * when hash based searches are enabled. Anything else is left alone and
+ * falls through to a normal search in
+ * {@link BaseHapiFhirDao#processMatchUrl(String, Class)}.
+ * </p>
+ * <p>
+ * The results are bound to the current thread between {@link #resolveAndBind()}
+ * and {@link #unbind()}, and are only valid for as long as the index tables
+ * are not modified, so callers must unbind before any indexing takes place.
+ * </p>
+ */
+public class MatchUrlBatchResolver {
+
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(MatchUrlBatchResolver.class);
+	private static final int MAX_HASHES_PER_QUERY = 800;
+	private static final String HASH_SYSTEM = "myHashSystem";
+	private static final String HASH_SYSTEM_AND_VALUE = "myHashSystemAndValue";
+	private static final String HASH_VALUE = "myHashValue";
+
+	private final BaseHapiFhirDao<?> myCallingDao;
+	private final FhirContext myContext;
+	private final EntityManager myEntityManager;
+	private final Map<Pair<Class<? extends IBaseResource>, String>, Boolean> myMatchUrls = new LinkedHashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	public MatchUrlBatchResolver(BaseHapiFhirDao<?> theCallingDao, FhirContext theContext, EntityManager theEntityManager) {
+		myCallingDao = theCallingDao;
+		myContext = theContext;
+		myEntityManager = theEntityManager;
+	}
+
+	/**
+	 * Adds a match URL to be resolved. URLs which can't be resolved in a batch are
+	 * silently ignored.
+	 */
+	public void addMatchUrl(String theMatchUrl, Class<? extends IBaseResource> theResourceType) {
+		if (StringUtils.isNotBlank(theMatchUrl) && theResourceType != null) {
+			myMatchUrls.put(Pair.<Class<? extends IBaseResource>, String>of(theResourceType, theMatchUrl), Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Resolves all of the match URLs which have been added and makes the results available
+	 * to {@link #getPreResolvedMatch(String, Class)} on the current thread
+	 */
+	public void resolveAndBind() {
+		if (myMatchUrls.isEmpty() || myCallingDao.getConfig().isDisableHashBasedSearches()) {
+			return;
+		}
+
+		/*
+		 * Work out the hash for each URL, grouped by the hash column we need to
+		 * search. The hashes already include the resource type and parameter
+		 * name, so one query per column covers every type and parameter.
+		 */
+		Map<String, Map<Long, List<Pair<Class<? extends IBaseResource>, String>>>> columnToHashToUrls = new HashMap<>();
+		Map<Pair<Class<? extends IBaseResource>, String>, Set<Long>> resolved = new HashMap<>();
+		for (Pair<Class<? extends IBaseResource>, String> next : myMatchUrls.keySet()) {
+			Pair<String, Long> columnAndHash = toColumnAndHash(next.getLeft(), next.getRight());
+			if (columnAndHash == null) {
+				continue;
+			}
+
+			Map<Long, List<Pair<Class<? extends IBaseResource>, String>>> hashToUrls = columnToHashToUrls.get(columnAndHash.getLeft());
+			if (hashToUrls == null) {
+				hashToUrls = new HashMap<>();
+				columnToHashToUrls.put(columnAndHash.getLeft(), hashToUrls);
+			}
+			List<Pair<Class<? extends IBaseResource>, String>> urls = hashToUrls.get(columnAndHash.getRight());
+			if (urls == null) {
+				urls = new ArrayList<>();
+				hashToUrls.put(columnAndHash.getRight(), urls);
+			}
+			urls.add(next);
+			resolved.put(next, new HashSet<Long>());
+		}
+
+		if (resolved.isEmpty()) {
+			return;
+		}
+
+		for (Map.Entry<String, Map<Long, List<Pair<Class<? extends IBaseResource>, String>>>> nextColumn : columnToHashToUrls.entrySet()) {
+			String column = nextColumn.getKey();
+			Map<Long, List<Pair<Class<? extends IBaseResource>, String>>> hashToUrls = nextColumn.getValue();
+
+			String sql = "SELECT t." + column + ", t.myResourcePid FROM ResourceIndexedSearchParamToken t " +
+				"WHERE t." + column + " IN (:hashes) AND t.myResource.myDeleted IS NULL";
+			for (List<Long> nextChunk : Lists.partition(new ArrayList<>(hashToUrls.keySet()), MAX_HASHES_PER_QUERY)) {
+				TypedQuery<Object[]> q = myEntityManager.createQuery(sql, Object[].class);
+				q.setParameter("hashes", nextChunk);
+				for (Object[] nextRow : q.getResultList()) {
+					Long hash = (Long) nextRow[0];
+					Long pid = (Long) nextRow[1];
+					for (Pair<Class<? extends IBaseResource>, String> nextUrl : hashToUrls.get(hash)) {
+						resolved.get(nextUrl).add(pid);
+					}
+				}
+			}
+		}
+
+		ourLog.debug("Pre-resolved {} of {} match URLs using {} queries", resolved.size(), myMatchUrls.size(), columnToHashToUrls.size());
+
+		unbind();
+		TransactionSynchronizationManager.bindResource(MatchUrlBatchResolver.class, resolved);
+	}
+
+	/**
+	 * Returns the column and hash value that a search for the given URL would use,
+	 * or <code>null</code> if the URL isn't a simple enough token search
+	 */
+	private Pair<String, Long> toColumnAndHash(Class<? extends IBaseResource> theResourceType, String theMatchUrl) {
+		RuntimeResourceDefinition resourceDef = myContext.getResourceDefinition(theResourceType);
+
+		SearchParameterMap paramMap;
+		try {
+			paramMap = BaseHapiFhirDao.translateMatchUrl(myCallingDao, myContext, theMatchUrl, resourceDef);
+		} catch (BaseServerResponseException e) {
+			// Let the normal search path report this one
+			return null;
+		}
+
+		if (paramMap.size() != 1 || paramMap.getLastUpdated() != null || paramMap.getCount() != null || paramMap.getSort() != null
+			|| paramMap.getEverythingMode() != null || !paramMap.getIncludes().isEmpty() || !paramMap.getRevIncludes().isEmpty()) {
+			return null;
+		}
+
+		Map.Entry<String, List<List<? extends IQueryParameterType>>> entry = paramMap.entrySet().iterator().next();
+		String paramName = entry.getKey();
+		if (paramName.startsWith("_")) {
+			return null;
+		}
+		RuntimeSearchParam searchParam = myCallingDao.getSearchParamByName(resourceDef, paramName);
+		if (searchParam == null || searchParam.getParamType() != RestSearchParameterTypeEnum.TOKEN) {
+			return null;
+		}
+
+		List<List<? extends IQueryParameterType>> andList = entry.getValue();
+		if (andList.size() != 1 || andList.get(0).size() != 1 || !(andList.get(0).get(0) instanceof TokenParam)) {
+			return null;
+		}
+
+		TokenParam param = (TokenParam) andList.get(0).get(0);
+		if (param.getModifier() != null || param.isText() || param.getMissing() != null) {
+			return null;
+		}
+
+		String resourceName = resourceDef.getName();
+		String system = param.getSystem();
+		String code = param.getValue();
+		if (StringUtils.isBlank(system) && StringUtils.isBlank(code)) {
+			return null;
+		}
+		if (StringUtils.length(system) > ResourceIndexedSearchParamToken.MAX_LENGTH || StringUtils.length(code) > ResourceIndexedSearchParamToken.MAX_LENGTH) {
+			return null;
+		}
+
+		// This needs to match the hash selection in SearchBuilder#createPredicateToken
+		if (system == null) {
+			return Pair.of(HASH_VALUE, ResourceIndexedSearchParamToken.calculateHashValue(resourceName, paramName, code));
+		} else if (StringUtils.isBlank(code)) {
+			return Pair.of(HASH_SYSTEM, ResourceIndexedSearchParamToken.calculateHashSystem(resourceName, paramName, system));
+		} else {
+			return Pair.of(HASH_SYSTEM_AND_VALUE, ResourceIndexedSearchParamToken.calculateHashSystemAndValue(resourceName, paramName, system, code));
+		}
+	}
+
+	/**
+	 * Returns the resource IDs matching the given URL if it was resolved by a
+	 * resolver bound to the current thread, or <code>null</code> otherwise.
+	 * The returned set may be freely modified by the caller.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Set<Long> getPreResolvedMatch(String theMatchUrl, Class<? extends IBaseResource> theResourceType) {
+		Map<Pair<Class<? extends IBaseResource>, String>, Set<Long>> resolved = (Map<Pair<Class<? extends IBaseResource>, String>, Set<Long>>) TransactionSynchronizationManager.getResource(MatchUrlBatchResolver.class);
+		if (resolved == null) {
+			return null;
+		}
+		Set<Long> retVal = resolved.get(Pair.<Class<? extends IBaseResource>, String>of(theResourceType, theMatchUrl));
+		if (retVal == null) {
+			return null;
+		}
+		return new HashSet<>(retVal);
+	}
+
+	/**
+	 * Discards any results bound to the current thread
+	 */
+	public static void unbind() {
+		TransactionSynchronizationManager.unbindResourceIfPossible(MatchUrlBatchResolver.class);
+	}
+
+}
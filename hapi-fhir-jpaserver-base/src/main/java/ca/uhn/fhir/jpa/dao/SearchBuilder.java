@@ -28,6 +28,8 @@ import ca.uhn.fhir.jpa.search.JpaRuntimeSearchParam;
 import ca.uhn.fhir.jpa.term.IHapiTerminologySvc;
 import ca.uhn.fhir.jpa.term.VersionIndependentConcept;
 import ca.uhn.fhir.jpa.util.BaseIterator;
+import ca.uhn.fhir.jpa.util.LongArrayList;
+import ca.uhn.fhir.jpa.util.LongHashSet;
 import ca.uhn.fhir.model.api.*;
 import ca.uhn.fhir.model.base.composite.BaseCodingDt;
 import ca.uhn.fhir.model.base.composite.BaseIdentifierDt;
@@ -297,8 +299,13 @@ public class SearchBuilder implements ISearchBuilder {
 
 	private void addPredicateParamMissing(String theResourceName, String theParamName, boolean theMissing, Join<ResourceTable, ? extends BaseResourceIndexedSearchParam> theJoin) {
 
-		myPredicates.add(myBuilder.equal(theJoin.get("myResourceType"), theResourceName));
-		myPredicates.add(myBuilder.equal(theJoin.get("myParamName"), theParamName));
+		if (isUseHashes()) {
+			long hashIdentity = BaseResourceIndexedSearchParam.calculateHashIdentity(theResourceName, theParamName);
+			myPredicates.add(myBuilder.equal(theJoin.get("myHashIdentity"), hashIdentity));
+		} else {
+			myPredicates.add(myBuilder.equal(theJoin.get("myResourceType"), theResourceName));
+			myPredicates.add(myBuilder.equal(theJoin.get("myParamName"), theParamName));
+		}
 		myPredicates.add(myBuilder.equal(theJoin.get("myMissing"), theMissing));
 	}
 
@@ -819,6 +826,9 @@ public class SearchBuilder implements ISearchBuilder {
 
 				} else if (param.getQualifier() == UriParamQualifierEnum.BELOW) {
 					predicate = myBuilder.like(join.get("myUri").as(String.class), createLeftMatchLikeExpression(value));
+				} else if (isUseHashes()) {
+					long hashUri = ResourceIndexedSearchParamUri.calculateHashUri(theResourceName, theParamName, value);
+					predicate = myBuilder.equal(join.get("myHashUri"), hashUri);
 				} else {
 					predicate = myBuilder.equal(join.get("myUri").as(String.class), value);
 				}
@@ -846,6 +856,12 @@ public class SearchBuilder implements ISearchBuilder {
 	}
 
 	private Predicate combineParamIndexPredicateWithParamNamePredicate(String theResourceName, String theParamName, From<?, ? extends BaseResourceIndexedSearchParam> theFrom, Predicate thePredicate) {
+		if (isUseHashes()) {
+			long hashIdentity = BaseResourceIndexedSearchParam.calculateHashIdentity(theResourceName, theParamName);
+			Predicate hashIdentityPredicate = myBuilder.equal(theFrom.get("myHashIdentity"), hashIdentity);
+			return myBuilder.and(hashIdentityPredicate, thePredicate);
+		}
+
 		Predicate resourceTypePredicate = myBuilder.equal(theFrom.get("myResourceType"), theResourceName);
 		Predicate paramNamePredicate = myBuilder.equal(theFrom.get("myParamName"), theParamName);
 		Predicate outerPredicate = myBuilder.and(resourceTypePredicate, paramNamePredicate, thePredicate);
@@ -1112,21 +1128,40 @@ public class SearchBuilder implements ISearchBuilder {
 				+ ResourceIndexedSearchParamString.MAX_LENGTH + "): " + rawSearchTerm);
 		}
 
-		String likeExpression = BaseHapiFhirDao.normalizeString(rawSearchTerm);
+		boolean exact = theParameter instanceof StringParam && ((StringParam) theParameter).isExact();
+		if (exact && isUseHashes()) {
+			long hashExact = ResourceIndexedSearchParamString.calculateHashExact(theResourceName, theParamName, rawSearchTerm);
+			return theBuilder.equal(theFrom.get("myHashExact"), hashExact);
+		}
+
+		String normalizedSearchTerm = BaseHapiFhirDao.normalizeString(rawSearchTerm);
+		boolean contains = false;
+		String likeExpression;
 		if (theParameter instanceof StringParam &&
 			((StringParam) theParameter).isContains() &&
 			myCallingDao.getConfig().isAllowContainsSearches()) {
-			likeExpression = createLeftAndRightMatchLikeExpression(likeExpression);
+			likeExpression = createLeftAndRightMatchLikeExpression(normalizedSearchTerm);
+			contains = true;
 		} else {
-			likeExpression = createLeftMatchLikeExpression(likeExpression);
+			likeExpression = createLeftMatchLikeExpression(normalizedSearchTerm);
 		}
 
 		Predicate singleCode = theBuilder.like(theFrom.get("myValueNormalized").as(String.class), likeExpression);
-		if (theParameter instanceof StringParam && ((StringParam) theParameter).isExact()) {
+		if (exact) {
 			Predicate exactCode = theBuilder.equal(theFrom.get("myValueExact"), rawSearchTerm);
 			singleCode = theBuilder.and(singleCode, exactCode);
 		}
 
+		/*
+		 * A left match on a non-empty value can use the hash of the normalized prefix, which
+		 * already includes the resource type and parameter name
+		 */
+		if (!contains && normalizedSearchTerm.length() >= ResourceIndexedSearchParamString.HASH_PREFIX_LENGTH && isUseHashes()) {
+			long hashNormalizedPrefix = ResourceIndexedSearchParamString.calculateHashNormalized(theResourceName, theParamName, normalizedSearchTerm);
+			Predicate hashPredicate = theBuilder.equal(theFrom.get("myHashNormalizedPrefix"), hashNormalizedPrefix);
+			return theBuilder.and(hashPredicate, singleCode);
+		}
+
 		return combineParamIndexPredicateWithParamNamePredicate(theResourceName, theParamName, theFrom, singleCode);
 	}
 
@@ -1213,6 +1248,14 @@ public class SearchBuilder implements ISearchBuilder {
 					}
 					systemCodes.add(nextCode);
 				}
+				if (isUseHashes()) {
+					In<Long> hashPredicate = theBuilder.in(theFrom.<Long>get("myHashSystemAndValue"));
+					for (VersionIndependentConcept nextCode : codes) {
+						hashPredicate.value(ResourceIndexedSearchParamToken.calculateHashSystemAndValue(theResourceName, theParamName, nextCode.getSystem(), nextCode.getCode()));
+					}
+					return hashPredicate;
+				}
+
 				// Use "in" in case of large numbers of codes due to param modifiers
 				final Path<String> systemExpression = theFrom.get("mySystem");
 				final Path<String> valueExpression = theFrom.get("myValue");
@@ -1234,6 +1277,20 @@ public class SearchBuilder implements ISearchBuilder {
 			 * Ok, this is a normal query
 			 */
 
+			if (isUseHashes() && modifier != TokenParamModifier.NOT && (StringUtils.isNotBlank(system) || StringUtils.isNotBlank(code))) {
+				// Each of these hashes already includes the resource type and parameter name
+				if (system == null) {
+					long hashValue = ResourceIndexedSearchParamToken.calculateHashValue(theResourceName, theParamName, code);
+					return theBuilder.equal(theFrom.get("myHashValue"), hashValue);
+				} else if (StringUtils.isBlank(code)) {
+					long hashSystem = ResourceIndexedSearchParamToken.calculateHashSystem(theResourceName, theParamName, system);
+					return theBuilder.equal(theFrom.get("myHashSystem"), hashSystem);
+				} else {
+					long hashSystemAndValue = ResourceIndexedSearchParamToken.calculateHashSystemAndValue(theResourceName, theParamName, system, code);
+					return theBuilder.equal(theFrom.get("myHashSystemAndValue"), hashSystemAndValue);
+				}
+			}
+
 			if (StringUtils.isNotBlank(system)) {
 				if (modifier != null && modifier == TokenParamModifier.NOT) {
 					singleCodePredicates.add(theBuilder.notEqual(theFrom.get("mySystem"), system));
@@ -1370,7 +1427,7 @@ public class SearchBuilder implements ISearchBuilder {
 
 			if (myParams.get(BaseResource.SP_RES_ID) != null) {
 				StringParam idParm = (StringParam) myParams.get(BaseResource.SP_RES_ID).get(0).get(0);
-				Long pid = BaseHapiFhirDao.translateForcedIdToPid(myResourceName, idParm.getValue(), myForcedIdDao);
+				Long pid = myCallingDao.translateForcedIdToPid(myResourceName, idParm.getValue());
 				if (myAlsoIncludePids == null) {
 					myAlsoIncludePids = new ArrayList<>(1);
 				}
@@ -1605,9 +1662,18 @@ public class SearchBuilder implements ISearchBuilder {
 
 		List<ResourceTable> resultList = q.getResultList();
 
-		for (ResourceTable next : resultList) {
-			Class<? extends IBaseResource> resourceType = context.getResourceDefinition(next.getResourceType()).getImplementingClass();
-			IBaseResource resource = theDao.toResource(resourceType, next, theForHistoryOperation);
+		/*
+		 * Load the tags for the whole page up front, instead of letting toResource look
+		 * them up with one query per resource. The DAO loads the version bodies it needs
+		 * (i.e. the ones which aren't already cached) in a single query as well.
+		 */
+		loadTags(entityManager, resultList);
+
+		List<IBaseResource> resources = theDao.toResources(resultList, theForHistoryOperation);
+
+		for (int i = 0; i < resultList.size(); i++) {
+			ResourceTable next = resultList.get(i);
+			IBaseResource resource = resources.get(i);
 			if (resource == null) {
 				ourLog.warn("Unable to find resource {}/{}/_history/{} in database", next.getResourceType(), next.getIdDt().getIdPart(), next.getVersion());
 				continue;
@@ -1636,6 +1702,42 @@ public class SearchBuilder implements ISearchBuilder {
 		}
 	}
 
+	/**
+	 * Loads the current version (i.e. the body) of each of the given resources in a single query
+	 */
+	static Map<Long, ResourceHistoryTable> loadCurrentVersions(EntityManager theEntityManager, Collection<Long> thePids) {
+		String sql = "SELECT h FROM ResourceHistoryTable h, ResourceTable r WHERE h.myResourceId = r.myId AND h.myResourceVersion = r.myVersion AND r.myId IN (:pids)";
+		TypedQuery<ResourceHistoryTable> q = theEntityManager.createQuery(sql, ResourceHistoryTable.class);
+		q.setParameter("pids", thePids);
+
+		Map<Long, ResourceHistoryTable> retVal = new HashMap<>();
+		for (ResourceHistoryTable next : q.getResultList()) {
+			retVal.put(next.getResourceId(), next);
+		}
+		return retVal;
+	}
+
+	/**
+	 * Initializes the tag collections of any of the given resources which have tags, using a single
+	 * fetch join query
+	 */
+	private static void loadTags(EntityManager theEntityManager, List<ResourceTable> theResources) {
+		List<Long> pidsWithTags = new ArrayList<>();
+		for (ResourceTable next : theResources) {
+			if (next.isHasTags()) {
+				pidsWithTags.add(next.getId());
+			}
+		}
+		if (pidsWithTags.isEmpty()) {
+			return;
+		}
+
+		String sql = "SELECT DISTINCT r FROM ResourceTable r LEFT JOIN FETCH r.myTags t LEFT JOIN FETCH t.myTag WHERE r.myId IN (:pids)";
+		TypedQuery<ResourceTable> q = theEntityManager.createQuery(sql, ResourceTable.class);
+		q.setParameter("pids", pidsWithTags);
+		q.getResultList();
+	}
+
 	@Override
 	public void loadResourcesByPid(Collection<Long> theIncludePids, List<IBaseResource> theResourceListToPopulate, Set<Long> theRevIncludedPids, boolean theForHistoryOperation,
 											 EntityManager entityManager, FhirContext context, IDao theDao) {
@@ -1672,24 +1774,24 @@ public class SearchBuilder implements ISearchBuilder {
 	}
 
 	/**
-	 * THIS SHOULD RETURN HASHSET and not jsut Set because we add to it later (so it can't be Collections.emptySet())
+	 * THIS SHOULD RETURN A MUTABLE SET and not jsut Set because we add to it later (so it can't be Collections.emptySet())
 	 *
 	 * @param theLastUpdated
 	 */
 	@Override
-	public HashSet<Long> loadReverseIncludes(IDao theCallingDao, FhirContext theContext, EntityManager theEntityManager, Collection<Long> theMatches, Set<Include> theRevIncludes,
+	public LongHashSet loadReverseIncludes(IDao theCallingDao, FhirContext theContext, EntityManager theEntityManager, Collection<Long> theMatches, Set<Include> theRevIncludes,
 														  boolean theReverseMode, DateRangeParam theLastUpdated) {
 		if (theMatches.size() == 0) {
-			return new HashSet<Long>();
+			return new LongHashSet();
 		}
 		if (theRevIncludes == null || theRevIncludes.isEmpty()) {
-			return new HashSet<Long>();
+			return new LongHashSet();
 		}
 		String searchFieldName = theReverseMode ? "myTargetResourcePid" : "mySourceResourcePid";
 
 		Collection<Long> nextRoundMatches = theMatches;
-		HashSet<Long> allAdded = new HashSet<>();
-		HashSet<Long> original = new HashSet<>(theMatches);
+		LongHashSet allAdded = new LongHashSet();
+		LongHashSet original = new LongHashSet(theMatches);
 		ArrayList<Include> includes = new ArrayList<>(theRevIncludes);
 
 		int roundCounts = 0;
@@ -1699,8 +1801,8 @@ public class SearchBuilder implements ISearchBuilder {
 		do {
 			roundCounts++;
 
-			HashSet<Long> pidsToInclude = new HashSet<>();
-			Set<Long> nextRoundOmit = new HashSet<>();
+			LongHashSet pidsToInclude = new LongHashSet();
+			LongHashSet nextRoundOmit = new LongHashSet();
 
 			for (Iterator<Include> iter = includes.iterator(); iter.hasNext(); ) {
 				Include nextInclude = iter.next();
@@ -1716,10 +1818,14 @@ public class SearchBuilder implements ISearchBuilder {
 					q.setParameter("target_pids", nextRoundMatches);
 					List<ResourceLink> results = q.getResultList();
 					for (ResourceLink resourceLink : results) {
+						Long pid;
 						if (theReverseMode) {
-							pidsToInclude.add(resourceLink.getSourceResourcePid());
+							pid = resourceLink.getSourceResourcePid();
 						} else {
-							pidsToInclude.add(resourceLink.getTargetResourcePid());
+							pid = resourceLink.getTargetResourcePid();
+						}
+						if (pid != null) {
+							pidsToInclude.add(pid.longValue());
 						}
 					}
 				} else {
@@ -1773,12 +1879,12 @@ public class SearchBuilder implements ISearchBuilder {
 							if (theReverseMode) {
 								Long pid = resourceLink.getSourceResourcePid();
 								if (pid != null) {
-									pidsToInclude.add(pid);
+									pidsToInclude.add(pid.longValue());
 								}
 							} else {
 								Long pid = resourceLink.getTargetResourcePid();
 								if (pid != null) {
-									pidsToInclude.add(pid);
+									pidsToInclude.add(pid.longValue());
 								}
 							}
 						}
@@ -1787,7 +1893,7 @@ public class SearchBuilder implements ISearchBuilder {
 			}
 
 			if (theLastUpdated != null && (theLastUpdated.getLowerBoundAsInstant() != null || theLastUpdated.getUpperBoundAsInstant() != null)) {
-				pidsToInclude = new HashSet<>(filterResourceIdsByLastUpdated(theEntityManager, theLastUpdated, pidsToInclude));
+				pidsToInclude = new LongHashSet(filterResourceIdsByLastUpdated(theEntityManager, theLastUpdated, pidsToInclude));
 			}
 			for (Long next : pidsToInclude) {
 				if (original.contains(next) == false && allAdded.contains(next) == false) {
@@ -1806,6 +1912,14 @@ public class SearchBuilder implements ISearchBuilder {
 		return allAdded;
 	}
 
+	/**
+	 * Should index rows be matched using their precomputed hash columns? See
+	 * {@link DaoConfig#setDisableHashBasedSearches(boolean)}
+	 */
+	private boolean isUseHashes() {
+		return !myCallingDao.getConfig().isDisableHashBasedSearches();
+	}
+
 	private void searchForIdsWithAndOr(SearchParameterMap theParams) {
 		SearchParameterMap params = theParams;
 		if (params == null) {
@@ -2103,12 +2217,12 @@ public class SearchBuilder implements ISearchBuilder {
 
 		private Iterator<Long> myCurrentIterator;
 		private int myCurrentOffset;
-		private ArrayList<Long> myCurrentPids;
+		private LongArrayList myCurrentPids;
 		private Long myNext;
 		private int myPageSize = myCallingDao.getConfig().getEverythingIncludesFetchPageSize();
 
 		public IncludesIterator(Set<Long> thePidSet) {
-			myCurrentPids = new ArrayList<Long>(thePidSet);
+			myCurrentPids = new LongArrayList(thePidSet);
 			myCurrentIterator = EMPTY_LONG_LIST.iterator();
 			myCurrentOffset = 0;
 		}
@@ -2159,7 +2273,7 @@ public class SearchBuilder implements ISearchBuilder {
 
 	private final class QueryIterator extends BaseIterator<Long> implements Iterator<Long> {
 
-		private final Set<Long> myPidSet = new HashSet<Long>();
+		private final LongHashSet myPidSet = new LongHashSet();
 		private boolean myFirst = true;
 		private IncludesIterator myIncludesIterator;
 		private Long myNext;
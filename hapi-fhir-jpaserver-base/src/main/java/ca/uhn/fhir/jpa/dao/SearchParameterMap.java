@@ -33,6 +33,7 @@ import ca.uhn.fhir.model.api.*;
 import ca.uhn.fhir.rest.api.*;
 import ca.uhn.fhir.rest.param.DateParam;
 import ca.uhn.fhir.rest.param.DateRangeParam;
+import ca.uhn.fhir.rest.param.ReferenceParam;
 import ca.uhn.fhir.util.ObjectUtil;
 import ca.uhn.fhir.util.UrlUtil;
 
@@ -226,6 +227,27 @@ public class SearchParameterMap extends LinkedHashMap<String, List<List<? extend
 		return true;
 	}
 
+	/**
+	 * Returns <code>true</code> if the results of this search may depend on resources
+	 * of types other than the one being searched for, because it uses a chained
+	 * reference or a <code>_has</code> parameter
+	 */
+	public boolean isDependentOnOtherResourceTypes() {
+		if (containsKey(Constants.PARAM_HAS)) {
+			return true;
+		}
+		for (List<List<? extends IQueryParameterType>> nextParamName : values()) {
+			for (List<? extends IQueryParameterType> nextAnd : nextParamName) {
+				for (IQueryParameterType nextOr : nextAnd) {
+					if (nextOr instanceof ReferenceParam && isNotBlank(((ReferenceParam) nextOr).getChain())) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * If set, tells the server to load these results synchronously, and not to load
 	 * more than X results
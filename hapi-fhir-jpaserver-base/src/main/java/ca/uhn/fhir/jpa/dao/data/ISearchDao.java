@@ -48,7 +48,7 @@ public interface ISearchDao extends JpaRepository<Search, Long> {
 	public Collection<Search> find(@Param("type") String theResourceType, @Param("hash") int theHashCode, @Param("cutoff") Date theCreatedCutoff);
 
 	@Modifying
-	@Query("UPDATE Search s SET s.mySearchLastReturned = :last WHERE s.myId = :pid")
-	public void updateSearchLastReturned(@Param("pid") long thePid, @Param("last") Date theDate);
+	@Query("UPDATE Search s SET s.mySearchLastReturned = :last WHERE s.myUuid = :uuid")
+	public void updateSearchLastReturned(@Param("uuid") String theUuid, @Param("last") Date theDate);
 
 }
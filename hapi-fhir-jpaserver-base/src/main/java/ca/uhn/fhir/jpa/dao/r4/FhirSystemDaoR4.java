@@ -25,6 +25,7 @@ import ca.uhn.fhir.jpa.dao.BaseHapiFhirSystemDao;
 import ca.uhn.fhir.jpa.dao.DaoMethodOutcome;
 import ca.uhn.fhir.jpa.dao.DeleteMethodOutcome;
 import ca.uhn.fhir.jpa.dao.IFhirResourceDao;
+import ca.uhn.fhir.jpa.dao.MatchUrlBatchResolver;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.entity.TagDefinition;
 import ca.uhn.fhir.jpa.provider.ServletSubRequestDetails;
@@ -230,7 +231,11 @@ public class FhirSystemDaoR4 extends BaseHapiFhirSystemDao<Bundle, Meta> {
 		Map<BundleEntryComponent, ResourceTable> entriesToProcess = txManager.execute(new TransactionCallback<Map<BundleEntryComponent, ResourceTable>>() {
 			@Override
 			public Map<BundleEntryComponent, ResourceTable> doInTransaction(TransactionStatus status) {
-				return doTransactionWriteOperations(theRequestDetails, theRequest, theActionName, updateTime, allIds, idSubstitutions, idToPersistedOutcome, response, originalRequestOrder, entries);
+				try {
+					return doTransactionWriteOperations(theRequestDetails, theRequest, theActionName, updateTime, allIds, idSubstitutions, idToPersistedOutcome, response, originalRequestOrder, entries);
+				} finally {
+					MatchUrlBatchResolver.unbind();
+				}
 			}
 		});
 		for (Entry<BundleEntryComponent, ResourceTable> nextEntry : entriesToProcess.entrySet()) {
@@ -325,6 +330,12 @@ public class FhirSystemDaoR4 extends BaseHapiFhirSystemDao<Bundle, Meta> {
 		Set<ResourceTable> updatedEntities = new HashSet<>();
 		Map<String, Class<? extends IBaseResource>> conditionalRequestUrls = new HashMap<>();
 
+		/*
+		 * Resolve as many of the conditional create/update match URLs as we can
+		 * in a few batched queries, instead of running a search per entry
+		 */
+		preResolveConditionalMatchUrls(theEntries);
+
 		/*
 		 * Loop through the request and process any entries of type
 		 * PUT, POST or DELETE
@@ -484,6 +495,12 @@ public class FhirSystemDaoR4 extends BaseHapiFhirSystemDao<Bundle, Meta> {
 			}
 		}
 
+		/*
+		 * The pre-resolved match URLs only apply to the entries above, so indexing
+		 * below runs real searches
+		 */
+		MatchUrlBatchResolver.unbind();
+
 		/*
 		 * Make sure that there are no conflicts from deletions. E.g. we can't delete something
 		 * if something else has a reference to it.. Unless the thing that has a reference to it
@@ -495,11 +512,17 @@ public class FhirSystemDaoR4 extends BaseHapiFhirSystemDao<Bundle, Meta> {
 			deletedResources.contains(next.getTargetId().toUnqualifiedVersionless().getValue()));
 		validateDeleteConflictsEmptyOrThrowException(deleteConflicts);
 
+		/*
+		 * Resolve the client assigned IDs of everything the bundle refers to up front,
+		 * so that indexing the references below doesn't need a lookup per reference
+		 */
+		FhirTerser terser = getContext().newTerser();
+		prefetchReferencedForcedIds(terser, theIdToPersistedOutcome.values(), theIdSubstitutions);
+
 		/*
 		 * Perform ID substitutions and then index each resource we have saved
 		 */
 
-		FhirTerser terser = getContext().newTerser();
 		for (DaoMethodOutcome nextOutcome : theIdToPersistedOutcome.values()) {
 			IBaseResource nextResource = nextOutcome.getResource();
 			if (nextResource == null) {
@@ -624,6 +647,91 @@ public class FhirSystemDaoR4 extends BaseHapiFhirSystemDao<Bundle, Meta> {
 		return toMeta(tagDefinitions);
 	}
 
+	private void prefetchReferencedForcedIds(FhirTerser theTerser, Collection<DaoMethodOutcome> theOutcomes, Map<IdType, IdType> theIdSubstitutions) {
+		Map<String, Set<String>> typeToIds = new HashMap<>();
+		for (DaoMethodOutcome nextOutcome : theOutcomes) {
+			IBaseResource nextResource = nextOutcome.getResource();
+			if (nextResource == null) {
+				continue;
+			}
+
+			for (IBaseReference nextRef : theTerser.getAllPopulatedChildElementsOfType(nextResource, IBaseReference.class)) {
+				IIdType nextId = nextRef.getReferenceElement();
+				if (theIdSubstitutions.containsKey(nextId)) {
+					nextId = theIdSubstitutions.get(nextId);
+				}
+				if (!nextId.hasIdPart() || !nextId.hasResourceType() || nextId.hasBaseUrl() || nextId.isLocal() || nextId.isIdPartValidLong()) {
+					continue;
+				}
+				Set<String> ids = typeToIds.get(nextId.getResourceType());
+				if (ids == null) {
+					ids = new HashSet<>();
+					typeToIds.put(nextId.getResourceType(), ids);
+				}
+				ids.add(nextId.getIdPart());
+			}
+		}
+
+		for (Entry<String, Set<String>> nextEntry : typeToIds.entrySet()) {
+			translateForcedIdsToPids(nextEntry.getKey(), nextEntry.getValue());
+		}
+	}
+
+	private void preResolveConditionalMatchUrls(List<BundleEntryComponent> theEntries) {
+		/*
+		 * A delete in the same bundle changes what a match URL would find partway
+		 * through the transaction, so we don't pre-resolve anything of those types
+		 */
+		Set<String> deletedTypes = new HashSet<>();
+		Set<String> placeholderIds = new HashSet<>();
+		for (BundleEntryComponent nextReqEntry : theEntries) {
+			if (nextReqEntry.getRequest().getMethodElement().getValue() == HTTPVerb.DELETE && isNotBlank(nextReqEntry.getRequest().getUrl())) {
+				deletedTypes.add(UrlUtil.parseUrl(nextReqEntry.getRequest().getUrl()).getResourceType());
+			}
+			if (isNotBlank(nextReqEntry.getFullUrl()) && isPlaceholder(new IdType(nextReqEntry.getFullUrl()))) {
+				placeholderIds.add(nextReqEntry.getFullUrl());
+			}
+			if (nextReqEntry.getResource() != null && isPlaceholder(nextReqEntry.getResource().getIdElement())) {
+				placeholderIds.add(nextReqEntry.getResource().getIdElement().getValue());
+			}
+		}
+
+		MatchUrlBatchResolver resolver = new MatchUrlBatchResolver(this, getContext(), myEntityManager);
+		for (BundleEntryComponent nextReqEntry : theEntries) {
+			Resource res = nextReqEntry.getResource();
+			if (res == null || deletedTypes.contains(getContext().getResourceDefinition(res).getName())) {
+				continue;
+			}
+
+			String matchUrl = null;
+			HTTPVerb verb = nextReqEntry.getRequest().getMethodElement().getValue();
+			if (verb == HTTPVerb.POST) {
+				matchUrl = nextReqEntry.getRequest().getIfNoneExist();
+			} else if (verb == HTTPVerb.PUT && isNotBlank(nextReqEntry.getRequest().getUrl())) {
+				UrlParts parts = UrlUtil.parseUrl(nextReqEntry.getRequest().getUrl());
+				if (isBlank(parts.getResourceId()) && isNotBlank(parts.getParams())) {
+					matchUrl = parts.getResourceType() + '?' + parts.getParams();
+				}
+			}
+
+			// URLs containing placeholder IDs are only known once earlier entries have been written
+			if (isNotBlank(matchUrl) && !containsAnyPlaceholder(matchUrl, placeholderIds)) {
+				resolver.addMatchUrl(matchUrl, res.getClass());
+			}
+		}
+
+		resolver.resolveAndBind();
+	}
+
+	private static boolean containsAnyPlaceholder(String theMatchUrl, Set<String> thePlaceholderIds) {
+		for (String next : thePlaceholderIds) {
+			if (theMatchUrl.contains(next) || theMatchUrl.contains(UrlUtil.escapeUrlParam(next))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private String performIdSubstitutionsInMatchUrl(Map<IdType, IdType> theIdSubstitutions, String theMatchUrl) {
 		String matchUrl = theMatchUrl;
 		if (isNotBlank(matchUrl)) {
@@ -42,6 +42,8 @@ import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.instance.model.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
 
 import ca.uhn.fhir.context.*;
@@ -52,10 +54,17 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 
 public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements ISearchParamExtractor {
 
+	private static final int MAX_PARSED_EXPRESSIONS = 10000;
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchParamExtractorR4.class);
 
 	@Autowired
 	private org.hl7.fhir.r4.hapi.ctx.IValidationSupport myValidationSupport;
+	private volatile FHIRPathEngine myFhirPathEngine;
+	private final Cache<String, ExpressionNode> myParsedExpressions = Caffeine
+		.newBuilder()
+		.maximumSize(MAX_PARSED_EXPRESSIONS)
+		.build();
+	private volatile Map<String, Map<String, RuntimeSearchParam>> myParsedExpressionsActiveSearchParams;
 
 	/**
 	 * Constructor
@@ -680,14 +689,14 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 	 */
 	@Override
 	protected List<Object> extractValues(String thePaths, IBaseResource theResource) {
-		IWorkerContext worker = new org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext(getContext(), myValidationSupport);
-		FHIRPathEngine fp = new FHIRPathEngine(worker);
+		FHIRPathEngine fp = getFhirPathEngine();
 
 		List<Object> values = new ArrayList<Object>();
 		try {
 			String[] nextPathsSplit = SPLIT.split(thePaths);
 			for (String nextPath : nextPathsSplit) {
-				List<Base> allValues = fp.evaluate((Base) theResource, nextPath);
+				ExpressionNode expression = getParsedExpression(nextPath);
+				List<Base> allValues = fp.evaluate((Base) theResource, expression);
 				if (allValues.isEmpty() == false) {
 					values.addAll(allValues);
 				}
@@ -708,6 +717,42 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 		return values;
 	}
 
+	/**
+	 * The engine holds no state between evaluations other than its trace log (which
+	 * search parameter paths don't write to), so a single instance is shared by all
+	 * threads instead of building a new worker context for every resource.
+	 */
+	private FHIRPathEngine getFhirPathEngine() {
+		FHIRPathEngine retVal = myFhirPathEngine;
+		if (retVal == null) {
+			IWorkerContext worker = new org.hl7.fhir.r4.hapi.ctx.HapiWorkerContext(getContext(), myValidationSupport);
+			retVal = new FHIRPathEngine(worker);
+			myFhirPathEngine = retVal;
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the parsed form of a search parameter path, parsing it only the first
+	 * time it is seen. The search parameter registry replaces its map of active
+	 * parameters whenever it refreshes, so when that map changes the cache is cleared
+	 * and the paths which are still in use are parsed again.
+	 */
+	ExpressionNode getParsedExpression(String thePath) throws FHIRException {
+		Map<String, Map<String, RuntimeSearchParam>> activeSearchParams = getSearchParamRegistry().getActiveSearchParams();
+		if (activeSearchParams != myParsedExpressionsActiveSearchParams) {
+			myParsedExpressions.invalidateAll();
+			myParsedExpressionsActiveSearchParams = activeSearchParams;
+		}
+
+		ExpressionNode retVal = myParsedExpressions.getIfPresent(thePath);
+		if (retVal == null) {
+			retVal = getFhirPathEngine().parse(thePath);
+			myParsedExpressions.put(thePath, retVal);
+		}
+		return retVal;
+	}
+
 	@Override
 	public List<PathAndRef> extractResourceLinks(IBaseResource theResource, RuntimeSearchParam theNextSpDef) {
 		ArrayList<PathAndRef> retVal = new ArrayList<PathAndRef>();
@@ -728,6 +773,7 @@ public class SearchParamExtractorR4 extends BaseSearchParamExtractor implements
 	@VisibleForTesting
 	void setValidationSupportForTesting(org.hl7.fhir.r4.hapi.ctx.IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
+		myFhirPathEngine = null;
 	}
 
 	private static <T extends Enum<?>> String extractSystem(Enumeration<T> theBoundCode) {
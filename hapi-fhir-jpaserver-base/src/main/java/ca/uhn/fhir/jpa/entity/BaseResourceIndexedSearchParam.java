@@ -21,6 +21,12 @@ package ca.uhn.fhir.jpa.entity;
  */
 
 import ca.uhn.fhir.model.api.IQueryParameterType;
+import ca.uhn.fhir.util.UrlUtil;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.hibernate.search.annotations.ContainedIn;
 import org.hibernate.search.annotations.Field;
 
@@ -33,8 +39,20 @@ public abstract class BaseResourceIndexedSearchParam implements Serializable {
 
 	static final int MAX_SP_NAME = 100;
 
+	/**
+	 * Don't change this without careful consideration. You will break existing hashes!
+	 */
+	private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128(0);
+	private static final byte[] DELIMITER_BYTES = "|".getBytes(Charsets.UTF_8);
+
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Hash of the resource type and parameter name
+	 */
+	@Column(name = "HASH_IDENTITY", nullable = true)
+	private Long myHashIdentity;
+
 	// TODO: make this nullable=false and a primitive (written may 2017)
 	@Field()
 	@Column(name = "SP_MISSING", nullable = true)
@@ -61,8 +79,36 @@ public abstract class BaseResourceIndexedSearchParam implements Serializable {
 	@Temporal(TemporalType.TIMESTAMP)
 	private Date myUpdated;
 
+	/**
+	 * Populates the precomputed hash columns of this row from its other values. This
+	 * is called automatically before the row is inserted or updated. Subclasses which
+	 * add their own hashes must call this method too.
+	 */
+	@PrePersist
+	@PreUpdate
+	public void calculateHashes() {
+		myHashIdentity = calculateHashIdentity(getResourceType(), getParamName());
+	}
+
+	public Long getHashIdentity() {
+		return myHashIdentity;
+	}
+
 	protected abstract Long getId();
 
+	/**
+	 * Returns a hash of the parameter name and value columns of this row, excluding the
+	 * owning resource. Two rows belonging to the same resource which are equal will always
+	 * produce the same hash.
+	 * <p>
+	 * Only the number index includes the {@link #isMissing() missing} flag in its hash.
+	 * For the other types, a missing row has no value and so never hashes the same as a
+	 * row which has one. The string index hashes its exact value but not its normalized
+	 * value, which is derived from it.
+	 * </p>
+	 */
+	public abstract long calculateValueHash();
+
 	public String getParamName() {
 		return myParamName;
 	}
@@ -107,4 +153,31 @@ public abstract class BaseResourceIndexedSearchParam implements Serializable {
 	}
 
 	public abstract IQueryParameterType toQueryParameterType();
+
+	public static long calculateHashIdentity(String theResourceType, String theParamName) {
+		return hash(theResourceType, theParamName);
+	}
+
+	/**
+	 * Applies a fast and consistent hashing algorithm to a set of strings. Each value
+	 * is URL escaped so that it can't contain the delimiter, and a <code>null</code>
+	 * value is hashed differently to an empty string.
+	 */
+	static long hash(String... theValues) {
+		Hasher hasher = HASH_FUNCTION.newHasher();
+
+		for (String next : theValues) {
+			if (next == null) {
+				hasher.putByte((byte) 0);
+			} else {
+				next = UrlUtil.escapeUrlParam(next);
+				byte[] bytes = next.getBytes(Charsets.UTF_8);
+				hasher.putBytes(bytes);
+			}
+			hasher.putBytes(DELIMITER_BYTES);
+		}
+
+		HashCode hashCode = hasher.hash();
+		return hashCode.asLong();
+	}
 }
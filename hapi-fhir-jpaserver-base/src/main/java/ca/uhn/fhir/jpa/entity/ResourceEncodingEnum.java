@@ -21,8 +21,26 @@ package ca.uhn.fhir.jpa.entity;
  */
 
 import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.jpa.dao.GZipUtil;
+import ca.uhn.fhir.jpa.dao.Lz4Util;
+import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.parser.IParser;
+import org.hl7.fhir.instance.model.api.IBaseResource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The format a resource body is stored in. Every {@link ResourceHistoryTable} row records
+ * the encoding it was written with, so rows written with different encodings can be read
+ * side by side and the encoding used for new versions can be changed at any time
+ * (see {@link ca.uhn.fhir.jpa.dao.DaoConfig#setResourceEncoding(ResourceEncodingEnum)}).
+ */
 public enum ResourceEncodingEnum {
 
 	/*
@@ -32,18 +50,124 @@ public enum ResourceEncodingEnum {
 	 */
 
 	/** Json */
-	JSON,
+	JSON {
+		@Override
+		public String decode(byte[] theBytes) {
+			return new String(theBytes, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public byte[] encode(String theEncoded) {
+			return theEncoded.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public byte[] encode(IParser theParser, IBaseResource theResource) {
+			ByteArrayOutputStream retVal = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+			encodeToStream(theParser, theResource, retVal);
+			return retVal.toByteArray();
+		}
+	},
 	
 	/** Json Compressed */
-	JSONC,
+	JSONC {
+		@Override
+		public String decode(byte[] theBytes) {
+			return GZipUtil.decompress(theBytes);
+		}
+
+		@Override
+		public byte[] encode(String theEncoded) {
+			return GZipUtil.compress(theEncoded);
+		}
+
+		@Override
+		public byte[] encode(IParser theParser, IBaseResource theResource) {
+			ByteArrayOutputStream retVal = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+			try {
+				encodeToStream(theParser, theResource, new GZIPOutputStream(retVal));
+			} catch (IOException e) {
+				throw new DataFormatException("Compress contents", e);
+			}
+			return retVal.toByteArray();
+		}
+	},
+
+	/**
+	 * Json Compressed using LZ4, which is larger than {@link #JSONC} but
+	 * much faster to decompress
+	 */
+	JLZ4 {
+		@Override
+		public String decode(byte[] theBytes) {
+			return Lz4Util.decompress(theBytes);
+		}
+
+		@Override
+		public byte[] encode(String theEncoded) {
+			return Lz4Util.compress(theEncoded);
+		}
+
+		@Override
+		public byte[] encode(IParser theParser, IBaseResource theResource) {
+			// The block format needs the whole uncompressed body up front
+			ByteArrayOutputStream uncompressed = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+			encodeToStream(theParser, theResource, uncompressed);
+			return Lz4Util.compress(uncompressed.toByteArray());
+		}
+	},
 
 	/**
 	 * Resource was deleted - No contents expected
 	 */
-	DEL;
+	DEL {
+		@Override
+		public String decode(byte[] theBytes) {
+			return null;
+		}
+
+		@Override
+		public byte[] encode(String theEncoded) {
+			throw new UnsupportedOperationException("Deleted resources have no contents");
+		}
+
+		@Override
+		public byte[] encode(IParser theParser, IBaseResource theResource) {
+			throw new UnsupportedOperationException("Deleted resources have no contents");
+		}
+	};
+
+	private static final int INITIAL_BUFFER_SIZE = 1024;
+
+	/**
+	 * Converts stored bytes back into the encoded resource text
+	 */
+	public abstract String decode(byte[] theBytes);
+
+	/**
+	 * Converts encoded resource text into the bytes to store
+	 */
+	public abstract byte[] encode(String theEncoded);
+
+	/**
+	 * Encodes a resource using the given parser and converts it into the bytes to store. The
+	 * parser output is written straight through to the codec, so no intermediate String is created.
+	 */
+	public abstract byte[] encode(IParser theParser, IBaseResource theResource);
 
 	public IParser newParser(FhirContext theContext) {
 		return theContext.newJsonParser();
 	}
+
+	/**
+	 * Encodes the resource as UTF-8 into the given stream, and closes it
+	 */
+	private static void encodeToStream(IParser theParser, IBaseResource theResource, OutputStream theOutputStream) {
+		try (Writer writer = new OutputStreamWriter(theOutputStream, StandardCharsets.UTF_8)) {
+			theParser.encodeResourceToWriter(theResource, writer);
+		} catch (IOException e) {
+			throw new DataFormatException("Failed to encode contents", e);
+		}
+	}
 	
 }
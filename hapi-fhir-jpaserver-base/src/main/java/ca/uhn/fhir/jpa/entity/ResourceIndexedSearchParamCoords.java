@@ -87,6 +87,11 @@ public class ResourceIndexedSearchParamCoords extends BaseResourceIndexedSearchP
 		return b.isEquals();
 	}
 
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), Double.toString(getLatitude()), Double.toString(getLongitude()));
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -33,11 +33,13 @@ import org.hl7.fhir.r4.model.DateTimeType;
 
 import javax.persistence.*;
 import java.util.Date;
+import java.util.Objects;
 
 @Embeddable
 @Entity
 @Table(name = "HFJ_SPIDX_DATE", indexes = {
 	@Index(name = "IDX_SP_DATE", columnList = "RES_TYPE,SP_NAME,SP_VALUE_LOW,SP_VALUE_HIGH"),
+	@Index(name = "IDX_SP_DATE_HASH", columnList = "HASH_IDENTITY,SP_VALUE_LOW,SP_VALUE_HIGH"),
 	@Index(name = "IDX_SP_DATE_UPDATED", columnList = "SP_UPDATED"),
 	@Index(name = "IDX_SP_DATE_RESID", columnList = "RES_ID")
 })
@@ -106,6 +108,11 @@ public class ResourceIndexedSearchParamDate extends BaseResourceIndexedSearchPar
 		return null;
 	}
 
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), Objects.toString(getTimeFromDate(getValueLow()), null), Objects.toString(getTimeFromDate(getValueHigh()), null));
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -39,6 +39,7 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "HFJ_SPIDX_NUMBER", indexes = {
 	@Index(name = "IDX_SP_NUMBER", columnList = "RES_TYPE,SP_NAME,SP_VALUE"),
+	@Index(name = "IDX_SP_NUMBER_HASH_VAL", columnList = "HASH_IDENTITY,SP_VALUE"),
 	@Index(name = "IDX_SP_NUMBER_UPDATED", columnList = "SP_UPDATED"),
 	@Index(name = "IDX_SP_NUMBER_RESID", columnList = "RES_ID")
 })
@@ -85,6 +86,15 @@ public class ResourceIndexedSearchParamNumber extends BaseResourceIndexedSearchP
 		return b.isEquals();
 	}
 
+	/**
+	 * Unlike the other index types, this includes the missing flag, since
+	 * {@link #equals(Object)} compares it
+	 */
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), getValue() != null ? getValue().toString() : null, Boolean.toString(isMissing()));
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -39,6 +39,7 @@ import java.math.BigDecimal;
 @Entity
 @Table(name = "HFJ_SPIDX_QUANTITY", indexes = {
 	@Index(name = "IDX_SP_QUANTITY", columnList = "RES_TYPE,SP_NAME,SP_SYSTEM,SP_UNITS,SP_VALUE"),
+	@Index(name = "IDX_SP_QUANTITY_HASH", columnList = "HASH_IDENTITY,SP_VALUE"),
 	@Index(name = "IDX_SP_QUANTITY_UPDATED", columnList = "SP_UPDATED"),
 	@Index(name = "IDX_SP_QUANTITY_RESID", columnList = "RES_ID")
 })
@@ -97,6 +98,11 @@ public class ResourceIndexedSearchParamQuantity extends BaseResourceIndexedSearc
 		return b.isEquals();
 	}
 
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), getSystem(), getUnits(), getValue() != null ? getValue().toString() : null);
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -37,6 +37,9 @@ import javax.persistence.Index;
 @Entity
 @Table(name = "HFJ_SPIDX_STRING", indexes = {
 	@Index(name = "IDX_SP_STRING", columnList = "RES_TYPE,SP_NAME,SP_VALUE_NORMALIZED"),
+	@Index(name = "IDX_SP_STRING_HASH_IDENT", columnList = "HASH_IDENTITY"),
+	@Index(name = "IDX_SP_STRING_HASH_NRM", columnList = "HASH_NORM_PREFIX,SP_VALUE_NORMALIZED"),
+	@Index(name = "IDX_SP_STRING_HASH_EXCT", columnList = "HASH_EXACT"),
 	@Index(name = "IDX_SP_STRING_UPDATED", columnList = "SP_UPDATED"),
 	@Index(name = "IDX_SP_STRING_RESID", columnList = "RES_ID")
 })
@@ -91,6 +94,12 @@ public class ResourceIndexedSearchParamString extends BaseResourceIndexedSearchP
 	 * Note that MYSQL chokes on unique indexes for lengths > 255 so be careful here 
 	 */
 	public static final int MAX_LENGTH = 200;
+	/**
+	 * The number of leading characters of the normalized value which are included
+	 * in {@link #getHashNormalizedPrefix() the normalized prefix hash}. Don't change
+	 * this without reindexing, as it will break existing hashes.
+	 */
+	public static final int HASH_PREFIX_LENGTH = 1;
 
 	private static final long serialVersionUID = 1L;
 
@@ -117,6 +126,19 @@ public class ResourceIndexedSearchParamString extends BaseResourceIndexedSearchP
 	@Column(name = "SP_VALUE_NORMALIZED", length = MAX_LENGTH, nullable = true)
 	private String myValueNormalized;
 
+	/**
+	 * Hash of the resource type, parameter name and the first {@link #HASH_PREFIX_LENGTH}
+	 * characters of the normalized value
+	 */
+	@Column(name = "HASH_NORM_PREFIX", nullable = true)
+	private Long myHashNormalizedPrefix;
+
+	/**
+	 * Hash of the resource type, parameter name and exact value
+	 */
+	@Column(name = "HASH_EXACT", nullable = true)
+	private Long myHashExact;
+
 	public ResourceIndexedSearchParamString() {
 		super();
 	}
@@ -147,6 +169,29 @@ public class ResourceIndexedSearchParamString extends BaseResourceIndexedSearchP
 		return b.isEquals();
 	}
 
+	@Override
+	public void calculateHashes() {
+		super.calculateHashes();
+		myHashNormalizedPrefix = calculateHashNormalized(getResourceType(), getParamName(), getValueNormalized());
+		myHashExact = calculateHashExact(getResourceType(), getParamName(), getValueExact());
+	}
+
+	public Long getHashExact() {
+		return myHashExact;
+	}
+
+	public Long getHashNormalizedPrefix() {
+		return myHashNormalizedPrefix;
+	}
+
+	/**
+	 * The normalized value is not included, since it is derived from the exact value
+	 */
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), getValueExact());
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -197,4 +242,12 @@ public class ResourceIndexedSearchParamString extends BaseResourceIndexedSearchP
 		return b.build();
 	}
 
+	public static long calculateHashExact(String theResourceType, String theParamName, String theValueExact) {
+		return hash(theResourceType, theParamName, theValueExact);
+	}
+
+	public static long calculateHashNormalized(String theResourceType, String theParamName, String theValueNormalized) {
+		return hash(theResourceType, theParamName, StringUtils.left(theValueNormalized, HASH_PREFIX_LENGTH));
+	}
+
 }
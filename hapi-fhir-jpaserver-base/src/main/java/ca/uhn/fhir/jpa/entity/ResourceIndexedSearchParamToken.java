@@ -37,6 +37,10 @@ import javax.persistence.*;
 @Table(name = "HFJ_SPIDX_TOKEN", indexes = {
 	@Index(name = "IDX_SP_TOKEN", columnList = "RES_TYPE,SP_NAME,SP_SYSTEM,SP_VALUE"),
 	@Index(name = "IDX_SP_TOKEN_UNQUAL", columnList = "RES_TYPE,SP_NAME,SP_VALUE"),
+	@Index(name = "IDX_SP_TOKEN_HASH", columnList = "HASH_IDENTITY"),
+	@Index(name = "IDX_SP_TOKEN_HASH_S", columnList = "HASH_SYS"),
+	@Index(name = "IDX_SP_TOKEN_HASH_SV", columnList = "HASH_SYS_AND_VALUE"),
+	@Index(name = "IDX_SP_TOKEN_HASH_V", columnList = "HASH_VALUE"),
 	@Index(name = "IDX_SP_TOKEN_UPDATED", columnList = "SP_UPDATED"),
 	@Index(name = "IDX_SP_TOKEN_RESID", columnList = "RES_ID")
 })
@@ -57,6 +61,21 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_SPIDX_TOKEN")
 	@Column(name = "SP_ID")
 	private Long myId;
+	/**
+	 * Hash of the resource type, parameter name and system
+	 */
+	@Column(name = "HASH_SYS", nullable = true)
+	private Long myHashSystem;
+	/**
+	 * Hash of the resource type, parameter name, system and value
+	 */
+	@Column(name = "HASH_SYS_AND_VALUE", nullable = true)
+	private Long myHashSystemAndValue;
+	/**
+	 * Hash of the resource type, parameter name and value
+	 */
+	@Column(name = "HASH_VALUE", nullable = true)
+	private Long myHashValue;
 
 	public ResourceIndexedSearchParamToken() {
 	}
@@ -87,6 +106,31 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 		return b.isEquals();
 	}
 
+	@Override
+	public void calculateHashes() {
+		super.calculateHashes();
+		myHashSystem = calculateHashSystem(getResourceType(), getParamName(), getSystem());
+		myHashSystemAndValue = calculateHashSystemAndValue(getResourceType(), getParamName(), getSystem(), getValue());
+		myHashValue = calculateHashValue(getResourceType(), getParamName(), getValue());
+	}
+
+	public Long getHashSystem() {
+		return myHashSystem;
+	}
+
+	public Long getHashSystemAndValue() {
+		return myHashSystemAndValue;
+	}
+
+	public Long getHashValue() {
+		return myHashValue;
+	}
+
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), getSystem(), getValue());
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -132,4 +176,16 @@ public class ResourceIndexedSearchParamToken extends BaseResourceIndexedSearchPa
 		b.append("value", getValue());
 		return b.build();
 	}
+
+	public static long calculateHashSystem(String theResourceType, String theParamName, String theSystem) {
+		return hash(theResourceType, theParamName, StringUtils.defaultIfBlank(theSystem, null));
+	}
+
+	public static long calculateHashSystemAndValue(String theResourceType, String theParamName, String theSystem, String theValue) {
+		return hash(theResourceType, theParamName, StringUtils.defaultIfBlank(theSystem, null), StringUtils.defaultIfBlank(theValue, null));
+	}
+
+	public static long calculateHashValue(String theResourceType, String theParamName, String theValue) {
+		return hash(theResourceType, theParamName, StringUtils.defaultIfBlank(theValue, null));
+	}
 }
@@ -36,6 +36,8 @@ import javax.persistence.*;
 @Table(name = "HFJ_SPIDX_URI", indexes = {
 	@Index(name = "IDX_SP_URI", columnList = "RES_TYPE,SP_NAME,SP_URI"),
 	@Index(name = "IDX_SP_URI_RESTYPE_NAME", columnList = "RES_TYPE,SP_NAME"),
+	@Index(name = "IDX_SP_URI_HASH_IDENTITY", columnList = "HASH_IDENTITY,SP_URI"),
+	@Index(name = "IDX_SP_URI_HASH_URI", columnList = "HASH_URI"),
 	@Index(name = "IDX_SP_URI_UPDATED", columnList = "SP_UPDATED"),
 	@Index(name = "IDX_SP_URI_COORDS", columnList = "RES_ID")
 })
@@ -56,6 +58,11 @@ public class ResourceIndexedSearchParamUri extends BaseResourceIndexedSearchPara
 	@GeneratedValue(strategy = GenerationType.AUTO, generator = "SEQ_SPIDX_URI")
 	@Column(name = "SP_ID")
 	private Long myId;
+	/**
+	 * Hash of the resource type, parameter name and URI
+	 */
+	@Column(name = "HASH_URI", nullable = true)
+	private Long myHashUri;
 
 	public ResourceIndexedSearchParamUri() {
 	}
@@ -84,6 +91,21 @@ public class ResourceIndexedSearchParamUri extends BaseResourceIndexedSearchPara
 		return b.isEquals();
 	}
 
+	@Override
+	public void calculateHashes() {
+		super.calculateHashes();
+		myHashUri = calculateHashUri(getResourceType(), getParamName(), getUri());
+	}
+
+	public Long getHashUri() {
+		return myHashUri;
+	}
+
+	@Override
+	public long calculateValueHash() {
+		return hash(getParamName(), getUri());
+	}
+
 	@Override
 	protected Long getId() {
 		return myId;
@@ -121,4 +143,8 @@ public class ResourceIndexedSearchParamUri extends BaseResourceIndexedSearchPara
 		return b.toString();
 	}
 
+	public static long calculateHashUri(String theResourceType, String theParamName, String theUri) {
+		return hash(theResourceType, theParamName, theUri);
+	}
+
 }
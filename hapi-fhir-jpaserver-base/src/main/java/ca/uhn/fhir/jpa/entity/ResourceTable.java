@@ -52,6 +52,7 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 	static final int RESTYPE_LEN = 30;
 	private static final int MAX_LANGUAGE_LENGTH = 20;
 	private static final int MAX_PROFILE_LENGTH = 200;
+	private static final int MAX_INDEX_FINGERPRINT_LENGTH = 200;
 	private static final long serialVersionUID = 1L;
 
 //	@Transient
@@ -95,6 +96,10 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 	@OptimisticLock(excluded = true)
 	private Long myIndexStatus;
 
+	@Column(name = "SP_INDEX_FINGERPRINT", length = MAX_INDEX_FINGERPRINT_LENGTH, nullable = true)
+	@OptimisticLock(excluded = true)
+	private String myIndexFingerprint;
+
 	@Column(name = "RES_LANGUAGE", length = MAX_LANGUAGE_LENGTH, nullable = true)
 	@OptimisticLock(excluded = true)
 	private String myLanguage;
@@ -254,6 +259,18 @@ public class ResourceTable extends BaseHasResource implements Serializable {
 		}
 	}
 
+	/**
+	 * Returns a digest of the search index rows currently stored for this resource,
+	 * or <code>null</code> if it is not known. See {@link ca.uhn.fhir.jpa.dao.IndexFingerprint}.
+	 */
+	public String getIndexFingerprint() {
+		return myIndexFingerprint;
+	}
+
+	public void setIndexFingerprint(String theIndexFingerprint) {
+		myIndexFingerprint = theIndexFingerprint;
+	}
+
 	public Long getIndexStatus() {
 		return myIndexStatus;
 	}
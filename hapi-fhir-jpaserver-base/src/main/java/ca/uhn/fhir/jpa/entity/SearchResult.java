@@ -42,8 +42,13 @@ public class SearchResult implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	/*
+	 * Results are written a batch at a time by SearchResultBulkWriter, so IDs are
+	 * allocated in blocks of the same size. Note that the database sequence must
+	 * have a matching increment.
+	 */
 	@GeneratedValue(strategy = GenerationType.AUTO, generator="SEQ_SEARCH_RES")
-	@SequenceGenerator(name="SEQ_SEARCH_RES", sequenceName="SEQ_SEARCH_RES")
+	@SequenceGenerator(name="SEQ_SEARCH_RES", sequenceName="SEQ_SEARCH_RES", allocationSize = 1000)
 	@Id
 	@Column(name = "PID")
 	private Long myId;
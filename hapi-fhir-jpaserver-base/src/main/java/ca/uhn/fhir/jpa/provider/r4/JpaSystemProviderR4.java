@@ -4,9 +4,11 @@ import ca.uhn.fhir.jpa.dao.FulltextSearchSvcImpl.Suggestion;
 import ca.uhn.fhir.jpa.dao.IFhirSystemDao;
 import ca.uhn.fhir.jpa.dao.IFulltextSearchSvc;
 import ca.uhn.fhir.jpa.provider.BaseJpaSystemProviderDstu2Plus;
+import ca.uhn.fhir.jpa.util.BulkImportOutcome;
 import ca.uhn.fhir.jpa.util.JpaConstants;
 import ca.uhn.fhir.model.api.annotation.Description;
 import ca.uhn.fhir.rest.annotation.*;
+import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.servlet.ServletRequestDetails;
@@ -16,11 +18,18 @@ import org.hl7.fhir.r4.model.Parameters.ParametersParameterComponent;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
 
 import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -54,6 +63,37 @@ public class JpaSystemProviderR4 extends BaseJpaSystemProviderDstu2Plus<Bundle,
 	@Autowired(required = false)
 	private IFulltextSearchSvc mySearchDao;
 
+	/**
+	 * The request body is the NDJSON itself (e.g. with a content type of
+	 * <code>application/fhir+ndjson</code>), and is streamed into the import as it
+	 * is read instead of being loaded into memory first
+	 */
+	@Operation(name = JpaConstants.OPERATION_BULK_IMPORT, idempotent = false, manualRequest = true, returnParameters = {
+		@OperationParam(name = JpaConstants.OPERATION_BULK_IMPORT_OUT_PARAM_WRITTEN_COUNT, type = IntegerType.class),
+		@OperationParam(name = JpaConstants.OPERATION_BULK_IMPORT_OUT_PARAM_FAILED_COUNT, type = IntegerType.class)
+	})
+	@Description(shortDefinition = "Loads resources from an NDJSON request body (one resource per line), committing them in chunks as it goes")
+	public Parameters bulkImport(RequestDetails theRequestDetails) throws IOException {
+		InputStream inputStream = theRequestDetails.getInputStream();
+		if ("gzip".equals(theRequestDetails.getHeader(Constants.HEADER_CONTENT_ENCODING))) {
+			inputStream = new GZIPInputStream(inputStream);
+		}
+		Charset charset = defaultIfNull(theRequestDetails.getCharset(), StandardCharsets.UTF_8);
+
+		BulkImportOutcome outcome;
+		try (Reader reader = new InputStreamReader(inputStream, charset)) {
+			outcome = mySystemDao.bulkImport(theRequestDetails, reader);
+		}
+		if (outcome.getReadCount() == 0) {
+			throw new InvalidRequestException("No content supplied for " + JpaConstants.OPERATION_BULK_IMPORT);
+		}
+
+		Parameters retVal = new Parameters();
+		retVal.addParameter().setName(JpaConstants.OPERATION_BULK_IMPORT_OUT_PARAM_WRITTEN_COUNT).setValue(new IntegerType((int) outcome.getWrittenCount()));
+		retVal.addParameter().setName(JpaConstants.OPERATION_BULK_IMPORT_OUT_PARAM_FAILED_COUNT).setValue(new IntegerType((int) outcome.getFailedCount()));
+		return retVal;
+	}
+
 	@Operation(name = JpaConstants.OPERATION_EXPUNGE, idempotent = false, returnParameters = {
 		@OperationParam(name = JpaConstants.OPERATION_EXPUNGE_OUT_PARAM_EXPUNGE_COUNT, type = IntegerType.class)
 	})
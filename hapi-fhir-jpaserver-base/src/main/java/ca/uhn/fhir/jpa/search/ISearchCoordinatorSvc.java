@@ -31,8 +31,30 @@ public interface ISearchCoordinatorSvc {
 
 	void cancelAllActiveSearches();
 
+	/**
+	 * Writes any pending "last returned" times for searches which have been reused
+	 * to the database. These are batched instead of being written each time a search
+	 * is reused.
+	 */
+	void flushLastReturned();
+
 	List<Long> getResources(String theUuid, int theFrom, int theTo);
 
+	/**
+	 * Discards all searches held in the node-local reusable search cache, and
+	 * prevents any search created before now from being reused
+	 */
+	void invalidateAllReusableSearches();
+
+	/**
+	 * Records that a resource of the given type has been modified. Searches which depend
+	 * on this resource type and were created before now will no longer be reused,
+	 * whether they are held in the node-local reusable search cache or found in the
+	 * database. If this is called within a transaction, the modification is recorded
+	 * again when the transaction commits.
+	 */
+	void invalidateReusableSearches(String theResourceType);
+
 	IBundleProvider registerSearch(IDao theCallingDao, SearchParameterMap theParams, String theResourceType, CacheControlDirective theCacheControlDirective);
 
 }
@@ -29,6 +29,8 @@ import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchIncludeDao;
 import ca.uhn.fhir.jpa.dao.data.ISearchResultDao;
 import ca.uhn.fhir.jpa.entity.*;
+import ca.uhn.fhir.jpa.util.LongArrayList;
+import ca.uhn.fhir.jpa.util.LongHashSet;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.rest.api.CacheControlDirective;
@@ -40,8 +42,9 @@ import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.ResourceGoneException;
 import ca.uhn.fhir.rest.server.method.PageMethodBinding;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -59,6 +62,8 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.EntityManager;
@@ -67,9 +72,24 @@ import java.util.concurrent.*;
 
 public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 	public static final int DEFAULT_SYNC_SIZE = 250;
+	private static final int MAX_REUSABLE_SEARCHES_PER_RESOURCE_TYPE = 1000;
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchCoordinatorSvcImpl.class);
 	private final ConcurrentHashMap<String, SearchTask> myIdToSearchTask = new ConcurrentHashMap<String, SearchTask>();
+	/*
+	 * Searches which may be reused (see DaoConfig#setReuseCachedSearchResultsForMillis),
+	 * by resource type and then by normalized query string, so that repeating a search does
+	 * not need a database round trip
+	 */
+	private final ConcurrentHashMap<String, Cache<String, ReusableSearch>> myResourceTypeToReusableSearches = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Date> mySearchUuidToUnflushedLastReturned = new ConcurrentHashMap<>();
+	/*
+	 * The time (in millis) of the most recent write to each resource type on this node. A
+	 * search created at or before this time is never reused, regardless of whether it
+	 * was found in the local cache or in the database.
+	 */
+	private final ConcurrentHashMap<String, Long> myResourceTypeToLastModified = new ConcurrentHashMap<>();
+	private volatile long myAnyResourceTypeLastModified;
 	@Autowired
 	private FhirContext myContext;
 	@Autowired
@@ -87,6 +107,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 	@Autowired
 	private ISearchResultDao mySearchResultDao;
 	@Autowired
+	private SearchResultBulkWriter mySearchResultBulkWriter;
+	@Autowired
 	private PlatformTransactionManager myManagedTxManager;
 
 	private int mySyncSize = DEFAULT_SYNC_SIZE;
@@ -234,7 +256,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 				public SimpleBundleProvider doInTransaction(TransactionStatus theStatus) {
 
 					// Load the results synchronously
-					final List<Long> pids = new ArrayList<>();
+					final LongArrayList pids = new LongArrayList();
 
 					Iterator<Long> resultIter = sb.createQuery(theParams, searchUuid);
 					while (resultIter.hasNext()) {
@@ -256,7 +278,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 					 * On the other hand for async queries we load includes/revincludes
 					 * individually for pages as we return them to clients
 					 */
-					final Set<Long> includedPids = new HashSet<Long>();
+					final LongHashSet includedPids = new LongHashSet();
 					includedPids.addAll(sb.loadReverseIncludes(theCallingDao, myContext, myEntityManager, pids, theParams.getRevIncludes(), true, theParams.getLastUpdated()));
 					includedPids.addAll(sb.loadReverseIncludes(theCallingDao, myContext, myEntityManager, pids, theParams.getIncludes(), false, theParams.getLastUpdated()));
 
@@ -279,13 +301,21 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		if (theParams.getEverythingMode() == null) {
 			if (myDaoConfig.getReuseCachedSearchResultsForMillis() != null && useCache) {
 
-				final Date createdCutoff = new Date(System.currentTimeMillis() - myDaoConfig.getReuseCachedSearchResultsForMillis());
+				long cutoffMillis = System.currentTimeMillis() - myDaoConfig.getReuseCachedSearchResultsForMillis();
+				cutoffMillis = Math.max(cutoffMillis, getLastModified(theResourceType, theParams.isDependentOnOtherResourceTypes()));
+				final Date createdCutoff = new Date(cutoffMillis);
 				final String resourceType = theResourceType;
 
+				ReusableSearch reusableSearch = getReusableSearch(resourceType, queryString, createdCutoff);
+				if (reusableSearch != null) {
+					ourLog.info("Reusing search {} from local cache", reusableSearch.myUuid);
+					return newReusedSearchProvider(theCallingDao, reusableSearch.myUuid);
+				}
+
 				TransactionTemplate txTemplate = new TransactionTemplate(myManagedTxManager);
-				PersistedJpaBundleProvider foundSearchProvider = txTemplate.execute(new TransactionCallback<PersistedJpaBundleProvider>() {
+				Search foundSearch = txTemplate.execute(new TransactionCallback<Search>() {
 					@Override
-					public PersistedJpaBundleProvider doInTransaction(TransactionStatus theStatus) {
+					public Search doInTransaction(TransactionStatus theStatus) {
 						Search searchToUse = null;
 
 						int hashCode = queryString.hashCode();
@@ -296,24 +326,16 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 							}
 						}
 
-						PersistedJpaBundleProvider retVal = null;
-						if (searchToUse != null) {
-							ourLog.info("Reusing search {} from cache", searchToUse.getUuid());
-							searchToUse.setSearchLastReturned(new Date());
-							mySearchDao.updateSearchLastReturned(searchToUse.getId(), new Date());
-
-							retVal = new PersistedJpaBundleProvider(searchToUse.getUuid(), theCallingDao);
-							retVal.setCacheHit(true);
-
-							populateBundleProvider(retVal);
-						}
-
-						return retVal;
+						return searchToUse;
 					}
 				});
 
-				if (foundSearchProvider != null) {
-					return foundSearchProvider;
+				if (foundSearch != null) {
+					ourLog.info("Reusing search {} from cache", foundSearch.getUuid());
+					if (foundSearch.getStatus() != SearchStatusEnum.FAILED) {
+						addReusableSearch(resourceType, queryString, foundSearch.getUuid(), foundSearch.getCreated());
+					}
+					return newReusedSearchProvider(theCallingDao, foundSearch.getUuid());
 				}
 
 			}
@@ -345,6 +367,10 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		myIdToSearchTask.put(search.getUuid(), task);
 		myExecutor.submit(task);
 
+		if (theParams.getEverythingMode() == null && myDaoConfig.getReuseCachedSearchResultsForMillis() != null) {
+			addReusableSearch(theResourceType, queryString, searchUuid, search.getCreated());
+		}
+
 		PersistedJpaSearchFirstPageBundleProvider retVal = new PersistedJpaSearchFirstPageBundleProvider(search, theCallingDao, task, sb, myManagedTxManager);
 		populateBundleProvider(retVal);
 
@@ -353,6 +379,112 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 	}
 
+	@Override
+	public void flushLastReturned() {
+		if (mySearchUuidToUnflushedLastReturned.isEmpty()) {
+			return;
+		}
+
+		final Map<String, Date> toFlush = new HashMap<>(mySearchUuidToUnflushedLastReturned);
+		TransactionTemplate txTemplate = new TransactionTemplate(myManagedTxManager);
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		txTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				for (Map.Entry<String, Date> next : toFlush.entrySet()) {
+					mySearchDao.updateSearchLastReturned(next.getKey(), next.getValue());
+				}
+			}
+		});
+
+		// Anything reused again while we were flushing stays pending
+		for (Map.Entry<String, Date> next : toFlush.entrySet()) {
+			mySearchUuidToUnflushedLastReturned.remove(next.getKey(), next.getValue());
+		}
+		ourLog.debug("Flushed last returned time for {} searches", toFlush.size());
+	}
+
+	@Override
+	public void invalidateAllReusableSearches() {
+		myAnyResourceTypeLastModified = System.currentTimeMillis();
+		myResourceTypeToReusableSearches.clear();
+	}
+
+	@Override
+	public void invalidateReusableSearches(final String theResourceType) {
+		markModified(theResourceType);
+
+		/*
+		 * A search which is registered before the transaction commits won't see its
+		 * changes, so we mark the type as modified again once it has
+		 */
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					markModified(theResourceType);
+				}
+			});
+		}
+	}
+
+	private void markModified(String theResourceType) {
+		myResourceTypeToLastModified.merge(theResourceType, System.currentTimeMillis(), Math::max);
+		myResourceTypeToReusableSearches.remove(theResourceType);
+	}
+
+	private void addReusableSearch(String theResourceType, String theQueryString, String theUuid, Date theCreated) {
+		Cache<String, ReusableSearch> searches = myResourceTypeToReusableSearches.computeIfAbsent(theResourceType, t -> Caffeine
+			.newBuilder()
+			.maximumSize(MAX_REUSABLE_SEARCHES_PER_RESOURCE_TYPE)
+			.build());
+		searches.put(theQueryString, new ReusableSearch(theUuid, theCreated));
+	}
+
+	private long getLastModified(String theResourceType, boolean theAnyResourceType) {
+		long retVal = myAnyResourceTypeLastModified;
+		if (theAnyResourceType) {
+			for (Long next : myResourceTypeToLastModified.values()) {
+				retVal = Math.max(retVal, next);
+			}
+		} else {
+			Long lastModified = myResourceTypeToLastModified.get(theResourceType);
+			if (lastModified != null) {
+				retVal = Math.max(retVal, lastModified);
+			}
+		}
+		return retVal;
+	}
+
+	private ReusableSearch getReusableSearch(String theResourceType, String theQueryString, Date theCreatedCutoff) {
+		Cache<String, ReusableSearch> searches = myResourceTypeToReusableSearches.get(theResourceType);
+		if (searches == null) {
+			return null;
+		}
+		ReusableSearch retVal = searches.getIfPresent(theQueryString);
+		if (retVal != null && !retVal.myCreated.after(theCreatedCutoff)) {
+			searches.invalidate(theQueryString);
+			retVal = null;
+		}
+		return retVal;
+	}
+
+	private PersistedJpaBundleProvider newReusedSearchProvider(IDao theCallingDao, String theUuid) {
+		mySearchUuidToUnflushedLastReturned.put(theUuid, new Date());
+
+		PersistedJpaBundleProvider retVal = new PersistedJpaBundleProvider(theUuid, theCallingDao);
+		retVal.setCacheHit(true);
+		populateBundleProvider(retVal);
+		return retVal;
+	}
+
+	private void removeReusableSearch(String theResourceType, String theQueryString, final String theUuid) {
+		Cache<String, ReusableSearch> searches = myResourceTypeToReusableSearches.get(theResourceType);
+		if (searches != null && theQueryString != null) {
+			searches.asMap().computeIfPresent(theQueryString, (theKey, theValue) -> theValue.myUuid.equals(theUuid) ? null : theValue);
+		}
+	}
+
 	@VisibleForTesting
 	void setContextForUnitTest(FhirContext theCtx) {
 		myContext = theCtx;
@@ -398,6 +530,11 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		mySearchResultDao = theSearchResultDao;
 	}
 
+	@VisibleForTesting
+	void setSearchResultBulkWriterForUnitTest(SearchResultBulkWriter theSearchResultBulkWriter) {
+		mySearchResultBulkWriter = theSearchResultBulkWriter;
+	}
+
 	@VisibleForTesting
 	public void setSyncSizeForUnitTests(int theSyncSize) {
 		mySyncSize = theSyncSize;
@@ -459,8 +596,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		private final SearchParameterMap myParams;
 		private final String myResourceType;
 		private final Search mySearch;
-		private final ArrayList<Long> mySyncedPids = new ArrayList<>();
-		private final ArrayList<Long> myUnsyncedPids = new ArrayList<>();
+		private final LongArrayList mySyncedPids = new LongArrayList();
+		private final LongArrayList myUnsyncedPids = new LongArrayList();
 		private boolean myAbortRequested;
 		private int myCountSaved = 0;
 		private String mySearchUuid;
@@ -559,11 +696,18 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 				saveSearch();
 
+				removeReusableSearch(myResourceType, mySearch.getSearchQueryString(), mySearch.getUuid());
+
 			}
 
 			myIdToSearchTask.remove(mySearch.getUuid());
 			myInitialCollectionLatch.countDown();
 			myCompletionLatch.countDown();
+
+			// Wake up any threads waiting for PIDs which will now never arrive
+			synchronized (mySyncedPids) {
+				mySyncedPids.notifyAll();
+			}
 			return null;
 		}
 
@@ -629,25 +773,25 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 		public List<Long> getResourcePids(int theFromIndex, int theToIndex) {
 			ourLog.info("Requesting search PIDs from {}-{}", theFromIndex, theToIndex);
 
-			boolean keepWaiting;
-			do {
-				synchronized (mySyncedPids) {
-					keepWaiting = mySyncedPids.size() < theToIndex && mySearch.getStatus() == SearchStatusEnum.LOADING;
-				}
-				if (keepWaiting) {
+			LongArrayList retVal = new LongArrayList();
+			synchronized (mySyncedPids) {
+
+				/*
+				 * The search thread notifies us each time a batch of PIDs is
+				 * synced and when the search stops loading, so we only need a
+				 * timeout here as a safety net
+				 */
+				while (mySyncedPids.size() < theToIndex && mySearch.getStatus() == SearchStatusEnum.LOADING) {
 					ourLog.info("Waiting, as we only have {} results", mySyncedPids.size());
 					try {
-						Thread.sleep(500);
+						mySyncedPids.wait(1000);
 					} catch (InterruptedException theE) {
 						// ignore
 					}
 				}
-			} while (keepWaiting);
 
-			ourLog.info("Proceeding, as we have {} results", mySyncedPids.size());
+				ourLog.info("Proceeding, as we have {} results", mySyncedPids.size());
 
-			ArrayList<Long> retVal = new ArrayList<>();
-			synchronized (mySyncedPids) {
 				verifySearchHasntFailedOrThrowInternalErrorException(mySearch);
 
 				int toIndex = theToIndex;
@@ -655,7 +799,7 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 					toIndex = mySyncedPids.size();
 				}
 				for (int i = theFromIndex; i < toIndex; i++) {
-					retVal.add(mySyncedPids.get(i));
+					retVal.add(mySyncedPids.getLong(i));
 				}
 			}
 
@@ -693,14 +837,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 						doSaveSearch();
 					}
 
-					List<SearchResult> resultsToSave = Lists.newArrayList();
-					for (Long nextPid : myUnsyncedPids) {
-						SearchResult nextResult = new SearchResult(mySearch);
-						nextResult.setResourcePid(nextPid);
-						nextResult.setOrder(myCountSaved++);
-						resultsToSave.add(nextResult);
-					}
-					mySearchResultDao.save(resultsToSave);
+					mySearchResultBulkWriter.saveResults(mySearch, myUnsyncedPids, myCountSaved);
+					myCountSaved += myUnsyncedPids.size();
 
 					synchronized (mySyncedPids) {
 						int numSyncedThisPass = myUnsyncedPids.size();
@@ -712,6 +850,8 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 							mySearch.setTotalCount(myCountSaved);
 							mySearch.setStatus(SearchStatusEnum.FINISHED);
 						}
+
+						mySyncedPids.notifyAll();
 					}
 
 					mySearch.setNumFound(myCountSaved);
@@ -736,4 +876,14 @@ public class SearchCoordinatorSvcImpl implements ISearchCoordinatorSvc {
 
 	}
 
+	private static class ReusableSearch {
+		private final Date myCreated;
+		private final String myUuid;
+
+		ReusableSearch(String theUuid, Date theCreated) {
+			myUuid = theUuid;
+			myCreated = theCreated;
+		}
+	}
+
 }
@@ -0,0 +1,112 @@
+package ca.uhn.fhir.jpa.search;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.entity.SearchResult;
+import ca.uhn.fhir.jpa.util.StopWatch;
+import org.apache.commons.lang3.Validate;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceContextType;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * Writes the results of a search to the HFJ_SEARCH_RESULT table.
+ * <p>
+ * Rather than persisting a {@link SearchResult} entity for each PID, this allocates the
+ * IDs up front using the entity's own pooled sequence generator (which reserves
+ * {@link #BATCH_SIZE} IDs per call to the sequence) and then inserts the rows using
+ * JDBC batches, so a large search only needs a few round trips to the database
+ * regardless of the <code>hibernate.jdbc.batch_size</code> setting.
+ * </p>
+ */
+public class SearchResultBulkWriter {
+
+	/**
+	 * Must match the allocation size of the SEQ_SEARCH_RES generator on {@link SearchResult}
+	 */
+	static final int BATCH_SIZE = 1000;
+	private static final String INSERT_SQL = "INSERT INTO HFJ_SEARCH_RESULT (PID, SEARCH_PID, RESOURCE_PID, SEARCH_ORDER) VALUES (?, ?, ?, ?)";
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(SearchResultBulkWriter.class);
+
+	@PersistenceContext(type = PersistenceContextType.TRANSACTION)
+	private EntityManager myEntityManager;
+
+	/**
+	 * Inserts a result row for each of the given PIDs. This must be called within a
+	 * transaction, and the search must already have been saved.
+	 *
+	 * @param theSearch     The search the results belong to
+	 * @param thePids       The resource PIDs, in the order they were found
+	 * @param theFirstOrder The order (i.e. the index within the whole search) of the first PID
+	 */
+	public void saveResults(Search theSearch, List<Long> thePids, int theFirstOrder) {
+		if (thePids.isEmpty()) {
+			return;
+		}
+
+		// The search itself may not have been inserted yet
+		myEntityManager.flush();
+		Long searchPid = theSearch.getId();
+		Validate.notNull(searchPid, "Search has not been saved");
+
+		StopWatch sw = new StopWatch();
+		SessionImplementor session = myEntityManager.unwrap(SessionImplementor.class);
+
+		/*
+		 * Use the same generator as the entity, so that these IDs never collide with
+		 * any SearchResult persisted through JPA
+		 */
+		IdentifierGenerator idGenerator = session.getFactory().getMetamodel().entityPersister(SearchResult.class).getIdentifierGenerator();
+		long[] ids = new long[thePids.size()];
+		SearchResult placeholder = new SearchResult(theSearch);
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = ((Number) idGenerator.generate(session, placeholder)).longValue();
+		}
+
+		session.doWork(theConnection -> {
+			try (PreparedStatement statement = theConnection.prepareStatement(INSERT_SQL)) {
+				int order = theFirstOrder;
+				for (int i = 0; i < ids.length; i++) {
+					statement.setLong(1, ids[i]);
+					statement.setLong(2, searchPid);
+					statement.setLong(3, thePids.get(i));
+					statement.setInt(4, order++);
+					statement.addBatch();
+					if ((i + 1) % BATCH_SIZE == 0) {
+						statement.executeBatch();
+					}
+				}
+				if (ids.length % BATCH_SIZE != 0) {
+					statement.executeBatch();
+				}
+			}
+		});
+
+		ourLog.debug("Inserted {} search results in {}ms", ids.length, sw.getMillis());
+	}
+
+}
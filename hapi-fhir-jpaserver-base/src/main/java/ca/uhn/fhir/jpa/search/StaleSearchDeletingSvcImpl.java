@@ -58,6 +58,8 @@ public class StaleSearchDeletingSvcImpl implements IStaleSearchDeletingSvc {
 	@Autowired
 	private DaoConfig myDaoConfig;
 	@Autowired
+	private ISearchCoordinatorSvc mySearchCoordinatorSvc;
+	@Autowired
 	private ISearchDao mySearchDao;
 	@Autowired
 	private ISearchIncludeDao mySearchIncludeDao;
@@ -79,6 +81,12 @@ public class StaleSearchDeletingSvcImpl implements IStaleSearchDeletingSvc {
 	@Override
 	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public void pollForStaleSearchesAndDeleteThem() {
+		/*
+		 * Reused searches only record their last returned time in memory, so make
+		 * sure the database is up to date before we decide what is stale
+		 */
+		mySearchCoordinatorSvc.flushLastReturned();
+
 		if (!myDaoConfig.isExpireSearchResults()) {
 			return;
 		}
@@ -0,0 +1,114 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The result of a bulk import, including how long each stage of the import
+ * spent working so that slow stages can be identified
+ */
+public class BulkImportOutcome {
+	private long myFailedCount;
+	private long myMillis;
+	private long myParseMillis;
+	private long myParsedCount;
+	private long myReadCount;
+	private long myWriteMillis;
+	private long myWrittenCount;
+
+	/**
+	 * The number of lines which could not be parsed, plus the number of parsed
+	 * resources which could not be written
+	 */
+	public long getFailedCount() {
+		return myFailedCount;
+	}
+
+	public BulkImportOutcome setFailedCount(long theFailedCount) {
+		myFailedCount = theFailedCount;
+		return this;
+	}
+
+	/**
+	 * The total elapsed time of the import
+	 */
+	public long getMillis() {
+		return myMillis;
+	}
+
+	public BulkImportOutcome setMillis(long theMillis) {
+		myMillis = theMillis;
+		return this;
+	}
+
+	/**
+	 * The time spent parsing, summed across all worker threads
+	 */
+	public long getParseMillis() {
+		return myParseMillis;
+	}
+
+	public BulkImportOutcome setParseMillis(long theParseMillis) {
+		myParseMillis = theParseMillis;
+		return this;
+	}
+
+	public long getParsedCount() {
+		return myParsedCount;
+	}
+
+	public BulkImportOutcome setParsedCount(long theParsedCount) {
+		myParsedCount = theParsedCount;
+		return this;
+	}
+
+	/**
+	 * The number of non-blank lines read from the input
+	 */
+	public long getReadCount() {
+		return myReadCount;
+	}
+
+	public BulkImportOutcome setReadCount(long theReadCount) {
+		myReadCount = theReadCount;
+		return this;
+	}
+
+	/**
+	 * The time spent writing (including index extraction), summed across all worker threads
+	 */
+	public long getWriteMillis() {
+		return myWriteMillis;
+	}
+
+	public BulkImportOutcome setWriteMillis(long theWriteMillis) {
+		myWriteMillis = theWriteMillis;
+		return this;
+	}
+
+	public long getWrittenCount() {
+		return myWrittenCount;
+	}
+
+	public BulkImportOutcome setWrittenCount(long theWrittenCount) {
+		myWrittenCount = theWrittenCount;
+		return this;
+	}
+}
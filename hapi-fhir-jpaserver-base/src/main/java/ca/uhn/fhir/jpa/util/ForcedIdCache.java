@@ -0,0 +1,207 @@
+package ca.uhn.fhir.jpa.util;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A process-wide cache of client assigned (forced) resource IDs, mapping a resource type
+ * and forced ID to the PID of the resource. A forced ID never changes once it has been
+ * assigned, so entries only need to be removed when the resource is expunged.
+ * <p>
+ * Only positive lookups are cached, since a resource with a given forced ID may be created
+ * at any time. As with {@link TagDefinitionCache}, entries resolved within a transaction are
+ * only added to the shared cache once that transaction has committed.
+ * </p>
+ */
+public class ForcedIdCache {
+
+	private static final int MAX_SIZE = 100000;
+
+	private final Cache<ForcedIdKey, Long> myCache = Caffeine
+		.newBuilder()
+		.maximumSize(MAX_SIZE)
+		.recordStats()
+		.build();
+
+	/**
+	 * Returns the cached PID for the given resource type and forced ID, or <code>null</code>
+	 * if it is not known
+	 */
+	public Long get(String theResourceType, String theForcedId) {
+		ForcedIdKey key = new ForcedIdKey(theResourceType, theForcedId);
+		Long retVal = myCache.getIfPresent(key);
+		if (retVal == null) {
+			Map<ForcedIdKey, Long> pending = getPendingIds(false);
+			if (pending != null) {
+				retVal = pending.get(key);
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Returns the hit/miss statistics for the shared cache
+	 */
+	public CacheStats getStats() {
+		return myCache.stats();
+	}
+
+	/**
+	 * Removes the given forced ID from the cache. If this is called within a transaction, the
+	 * ID is removed again once the transaction completes, since another transaction may have
+	 * looked it up (and cached it) in the meantime.
+	 */
+	public void invalidate(String theResourceType, String theForcedId) {
+		final ForcedIdKey key = new ForcedIdKey(theResourceType, theForcedId);
+		myCache.invalidate(key);
+
+		Map<ForcedIdKey, Long> pending = getPendingIds(false);
+		if (pending != null) {
+			pending.remove(key);
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					myCache.invalidate(key);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Removes every entry from the cache. If this is called within a transaction, the cache is
+	 * cleared again when the transaction completes.
+	 */
+	public void invalidateAll() {
+		myCache.invalidateAll();
+
+		Map<ForcedIdKey, Long> pending = getPendingIds(false);
+		if (pending != null) {
+			pending.clear();
+		}
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					myCache.invalidateAll();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Adds a forced ID which has been looked up or persisted. If this is called within a
+	 * transaction, the ID is only added to the shared cache if the transaction commits.
+	 */
+	public void put(String theResourceType, String theForcedId, Long theResourcePid) {
+		ForcedIdKey key = new ForcedIdKey(theResourceType, theForcedId);
+		Map<ForcedIdKey, Long> pending = getPendingIds(true);
+		if (pending != null) {
+			pending.put(key, theResourcePid);
+		} else {
+			myCache.put(key, theResourcePid);
+		}
+	}
+
+	/**
+	 * IDs resolved within the current transaction are held by a synchronization registered
+	 * with that transaction, so that they are suspended and resumed along with it
+	 */
+	private Map<ForcedIdKey, Long> getPendingIds(boolean theCreate) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		for (TransactionSynchronization next : TransactionSynchronizationManager.getSynchronizations()) {
+			if (next instanceof PendingIds && ((PendingIds) next).getOwner() == this) {
+				return ((PendingIds) next).myIds;
+			}
+		}
+
+		if (!theCreate) {
+			return null;
+		}
+		PendingIds pending = new PendingIds();
+		TransactionSynchronizationManager.registerSynchronization(pending);
+		return pending.myIds;
+	}
+
+	private class PendingIds extends TransactionSynchronizationAdapter {
+		private final Map<ForcedIdKey, Long> myIds = new HashMap<>();
+
+		@Override
+		public void afterCompletion(int theStatus) {
+			if (theStatus == STATUS_COMMITTED) {
+				myCache.putAll(myIds);
+			}
+		}
+
+		ForcedIdCache getOwner() {
+			return ForcedIdCache.this;
+		}
+	}
+
+	private static class ForcedIdKey {
+		private final String myForcedId;
+		private final String myResourceType;
+		private final int myHashCode;
+
+		ForcedIdKey(String theResourceType, String theForcedId) {
+			myResourceType = theResourceType;
+			myForcedId = theForcedId;
+			myHashCode = new HashCodeBuilder().append(myResourceType).append(myForcedId).toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof ForcedIdKey)) {
+				return false;
+			}
+			ForcedIdKey other = (ForcedIdKey) theO;
+			return new EqualsBuilder()
+				.append(myResourceType, other.myResourceType)
+				.append(myForcedId, other.myForcedId)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
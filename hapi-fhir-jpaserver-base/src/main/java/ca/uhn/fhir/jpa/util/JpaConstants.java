@@ -101,6 +101,18 @@ public class JpaConstants {
 	 * Output parameter name for the $expunge operation
 	 */
 	public static final String OPERATION_EXPUNGE_OUT_PARAM_EXPUNGE_COUNT = "count";
+	/**
+	 * Operation name for the $bulk-import operation
+	 */
+	public static final String OPERATION_BULK_IMPORT = "$bulk-import";
+	/**
+	 * Output parameter name for the $bulk-import operation: the number of resources stored
+	 */
+	public static final String OPERATION_BULK_IMPORT_OUT_PARAM_WRITTEN_COUNT = "written";
+	/**
+	 * Output parameter name for the $bulk-import operation: the number of lines which could not be imported
+	 */
+	public static final String OPERATION_BULK_IMPORT_OUT_PARAM_FAILED_COUNT = "failed";
 	/**
 	 * Header name for the "X-Meta-Snapshot-Mode" header, which
 	 * specifies that properties in meta (tags, profiles, security labels)
@@ -0,0 +1,133 @@
+package ca.uhn.fhir.jpa.util;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * A list of <code>long</code> values (generally resource PIDs) backed by a
+ * <code>long[]</code>, so that large result sets don't need a boxed value
+ * for every entry.
+ * <p>
+ * This class implements {@link java.util.List List&lt;Long&gt;} so that it can be passed
+ * anywhere a list of PIDs is expected, but callers should prefer the primitive methods
+ * such as {@link #add(long)} and {@link #getLong(int)}. <code>null</code> values are not
+ * permitted. This class is not thread safe.
+ * </p>
+ */
+public class LongArrayList extends AbstractList<Long> implements RandomAccess {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	private int mySize;
+	private long[] myValues;
+
+	/**
+	 * Constructor
+	 */
+	public LongArrayList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theInitialCapacity The number of values to allocate space for
+	 */
+	public LongArrayList(int theInitialCapacity) {
+		myValues = new long[Math.max(theInitialCapacity, 1)];
+	}
+
+	/**
+	 * Constructor
+	 */
+	public LongArrayList(Collection<Long> theValues) {
+		this(theValues.size());
+		addAll(theValues);
+	}
+
+	@Override
+	public boolean add(Long theValue) {
+		return add(theValue.longValue());
+	}
+
+	public boolean add(long theValue) {
+		ensureCapacity(mySize + 1);
+		myValues[mySize++] = theValue;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Long> theValues) {
+		if (theValues instanceof LongArrayList) {
+			LongArrayList values = (LongArrayList) theValues;
+			ensureCapacity(mySize + values.mySize);
+			System.arraycopy(values.myValues, 0, myValues, mySize, values.mySize);
+			mySize += values.mySize;
+			modCount++;
+			return values.mySize > 0;
+		}
+		ensureCapacity(mySize + theValues.size());
+		return super.addAll(theValues);
+	}
+
+	@Override
+	public void clear() {
+		mySize = 0;
+		modCount++;
+	}
+
+	private void ensureCapacity(int theCapacity) {
+		if (theCapacity > myValues.length) {
+			int newCapacity = Math.max(theCapacity, myValues.length + (myValues.length >> 1));
+			myValues = Arrays.copyOf(myValues, newCapacity);
+		}
+	}
+
+	@Override
+	public Long get(int theIndex) {
+		return getLong(theIndex);
+	}
+
+	public long getLong(int theIndex) {
+		if (theIndex < 0 || theIndex >= mySize) {
+			throw new IndexOutOfBoundsException("Index " + theIndex + " is out of bounds for size " + mySize);
+		}
+		return myValues[theIndex];
+	}
+
+	@Override
+	public Long set(int theIndex, Long theValue) {
+		long retVal = getLong(theIndex);
+		myValues[theIndex] = theValue;
+		return retVal;
+	}
+
+	@Override
+	public int size() {
+		return mySize;
+	}
+
+}
@@ -0,0 +1,292 @@
+package ca.uhn.fhir.jpa.util;
+
+/*
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of <code>long</code> values (generally resource PIDs) backed by a single
+ * open addressed <code>long[]</code> table. Unlike a <code>HashSet&lt;Long&gt;</code>
+ * this does not allocate a boxed value and a hash node for every entry, which
+ * matters for searches that match millions of resources.
+ * <p>
+ * This class implements {@link java.util.Set Set&lt;Long&gt;} so that it can be passed
+ * anywhere a set of PIDs is expected (e.g. as a JPA query parameter), but callers
+ * should prefer the primitive methods such as {@link #add(long)} and {@link #contains(long)}.
+ * <code>null</code> values are not permitted. This class is not thread safe.
+ * </p>
+ */
+public class LongHashSet extends AbstractSet<Long> {
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final long EMPTY = 0L;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private boolean myContainsEmptyValue;
+	private int myModCount;
+	private int mySize;
+	private long[] myTable;
+
+	/**
+	 * Constructor
+	 */
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theExpectedSize The number of values the set is expected to hold
+	 */
+	public LongHashSet(int theExpectedSize) {
+		myTable = new long[tableSizeFor(theExpectedSize)];
+	}
+
+	/**
+	 * Constructor
+	 */
+	public LongHashSet(Collection<Long> theValues) {
+		this(theValues.size());
+		addAll(theValues);
+	}
+
+	@Override
+	public boolean add(Long theValue) {
+		return add(theValue.longValue());
+	}
+
+	/**
+	 * Adds a value to this set
+	 *
+	 * @return Returns <code>true</code> if the value was not already present
+	 */
+	public boolean add(long theValue) {
+		if (theValue == EMPTY) {
+			if (myContainsEmptyValue) {
+				return false;
+			}
+			myContainsEmptyValue = true;
+			mySize++;
+			myModCount++;
+			return true;
+		}
+
+		int mask = myTable.length - 1;
+		int index = mix(theValue) & mask;
+		while (myTable[index] != EMPTY) {
+			if (myTable[index] == theValue) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+
+		myTable[index] = theValue;
+		mySize++;
+		myModCount++;
+		if (mySize > myTable.length * LOAD_FACTOR) {
+			rehash(myTable.length * 2);
+		}
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(myTable, EMPTY);
+		myContainsEmptyValue = false;
+		mySize = 0;
+		myModCount++;
+	}
+
+	@Override
+	public boolean contains(Object theValue) {
+		return theValue instanceof Long && contains(((Long) theValue).longValue());
+	}
+
+	public boolean contains(long theValue) {
+		if (theValue == EMPTY) {
+			return myContainsEmptyValue;
+		}
+		return indexOf(theValue) != -1;
+	}
+
+	private int indexOf(long theValue) {
+		int mask = myTable.length - 1;
+		int index = mix(theValue) & mask;
+		while (myTable[index] != EMPTY) {
+			if (myTable[index] == theValue) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	@Override
+	public Iterator<Long> iterator() {
+		return new LongHashSetIterator();
+	}
+
+	private void rehash(int theNewCapacity) {
+		long[] oldTable = myTable;
+		myTable = new long[theNewCapacity];
+		int mask = theNewCapacity - 1;
+		for (long next : oldTable) {
+			if (next != EMPTY) {
+				int index = mix(next) & mask;
+				while (myTable[index] != EMPTY) {
+					index = (index + 1) & mask;
+				}
+				myTable[index] = next;
+			}
+		}
+	}
+
+	@Override
+	public boolean remove(Object theValue) {
+		return theValue instanceof Long && remove(((Long) theValue).longValue());
+	}
+
+	/**
+	 * Removes a value from this set
+	 *
+	 * @return Returns <code>true</code> if the value was present
+	 */
+	public boolean remove(long theValue) {
+		if (theValue == EMPTY) {
+			if (!myContainsEmptyValue) {
+				return false;
+			}
+			myContainsEmptyValue = false;
+			mySize--;
+			myModCount++;
+			return true;
+		}
+
+		int index = indexOf(theValue);
+		if (index == -1) {
+			return false;
+		}
+		removeAtIndex(index);
+		mySize--;
+		myModCount++;
+		return true;
+	}
+
+	/**
+	 * Clears the slot at the given index and shifts any following entries in the
+	 * same probe sequence back, so that no tombstones are needed
+	 */
+	private void removeAtIndex(int theIndex) {
+		int mask = myTable.length - 1;
+		int gap = theIndex;
+		int index = (gap + 1) & mask;
+		while (myTable[index] != EMPTY) {
+			int ideal = mix(myTable[index]) & mask;
+			// Move the entry into the gap unless its ideal slot lies cyclically in (gap, index]
+			boolean canMove = gap <= index ? (ideal <= gap || ideal > index) : (ideal <= gap && ideal > index);
+			if (canMove) {
+				myTable[gap] = myTable[index];
+				gap = index;
+			}
+			index = (index + 1) & mask;
+		}
+		myTable[gap] = EMPTY;
+	}
+
+	/**
+	 * The iterator for this set does not support removal, so this always removes
+	 * the given values one at a time
+	 */
+	@Override
+	public boolean removeAll(Collection<?> theValues) {
+		boolean retVal = false;
+		for (Object next : theValues) {
+			retVal |= remove(next);
+		}
+		return retVal;
+	}
+
+	@Override
+	public int size() {
+		return mySize;
+	}
+
+	private static int mix(long theValue) {
+		long h = theValue * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int tableSizeFor(int theExpectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * LOAD_FACTOR < theExpectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private class LongHashSetIterator implements Iterator<Long> {
+
+		private int myExpectedModCount = myModCount;
+		private int myNextIndex;
+
+		private LongHashSetIterator() {
+			// Index -1 stands for the empty value, which isn't stored in the table
+			myNextIndex = myContainsEmptyValue ? -1 : findNextIndex(0);
+		}
+
+		private int findNextIndex(int theStart) {
+			for (int i = theStart; i < myTable.length; i++) {
+				if (myTable[i] != EMPTY) {
+					return i;
+				}
+			}
+			return myTable.length;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return myNextIndex < myTable.length;
+		}
+
+		@Override
+		public Long next() {
+			if (myExpectedModCount != myModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int index = myNextIndex;
+			myNextIndex = findNextIndex(index + 1);
+			if (index == -1) {
+				return EMPTY;
+			}
+			return myTable[index];
+		}
+	}
+
+}
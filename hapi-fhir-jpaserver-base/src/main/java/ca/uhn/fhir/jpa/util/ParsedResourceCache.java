@@ -0,0 +1,223 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * A process-wide cache of resource bodies which have been parsed from the database,
+ * keyed by resource PID and version. The stored body of a given version never changes,
+ * so entries only need to be removed when a version is expunged, or when a version is
+ * rewritten in place (which the DAOs report using {@link #invalidate(long, long)}).
+ * <p>
+ * The cache holds the parsed body before any resource metadata (ID, version, tags, etc.)
+ * has been populated. Resources are copied on the way in and on the way out, so callers are
+ * free to modify the instances they pass in and get back.
+ * Only resource types which can be deep copied cheaply (i.e. the DSTU3 and R4 structures) are
+ * cached. An entry is only returned for the exact type it was parsed as, and a custom type (see
+ * {@link ca.uhn.fhir.context.FhirContext#setDefaultTypeForProfile(String, Class)}) is only cached
+ * if it overrides <code>copy()</code> to return an instance of itself, since otherwise the
+ * copy would lose the custom type.
+ * </p>
+ *
+ * @see DaoConfig#setParsedResourceCacheMaxBodySize(long)
+ */
+public class ParsedResourceCache {
+	private static final Logger ourLog = LoggerFactory.getLogger(ParsedResourceCache.class);
+
+	private volatile Cache<CacheKey, CachedBody> myCache;
+	private volatile long myCacheMaxBodySize;
+	@Autowired
+	private DaoConfig myDaoConfig;
+
+	/**
+	 * Returns a copy of the cached body for the given resource version, or <code>null</code> if
+	 * it is not cached as the given type
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends IBaseResource> T get(Class<T> theType, long theResourcePid, long theVersion) {
+		Cache<CacheKey, CachedBody> cache = getCache();
+		if (cache == null) {
+			return null;
+		}
+		CachedBody cached = cache.getIfPresent(new CacheKey(theResourcePid, theVersion));
+		if (cached == null || !theType.equals(cached.myResource.getClass())) {
+			return null;
+		}
+		return (T) copy(cached.myResource);
+	}
+
+	/**
+	 * Returns the hit/miss statistics for the cache, or <code>null</code> if the cache is disabled
+	 */
+	public CacheStats getStats() {
+		Cache<CacheKey, CachedBody> cache = getCache();
+		return cache != null ? cache.stats() : null;
+	}
+
+	/**
+	 * Removes the given resource version from the cache. If this is called within a
+	 * transaction, the version is removed again once the transaction completes unless it
+	 * committed, since the new body may have been read (and cached) before a rollback.
+	 */
+	public void invalidate(long theResourcePid, long theVersion) {
+		final Cache<CacheKey, CachedBody> cache = getCache();
+		if (cache == null) {
+			return;
+		}
+		final CacheKey key = new CacheKey(theResourcePid, theVersion);
+		cache.invalidate(key);
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					if (theStatus != STATUS_COMMITTED) {
+						cache.invalidate(key);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Removes every entry from the cache
+	 */
+	public void invalidateAll() {
+		Cache<CacheKey, CachedBody> cache = getCache();
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Stores a copy of the parsed body for the given resource version. The caller may
+	 * continue to use (and modify) the resource it passed in.
+	 *
+	 * @param theBodySize The size of the encoded body, which is used as the weight of the entry
+	 */
+	public void put(long theResourcePid, long theVersion, IBaseResource theResource, int theBodySize) {
+		Cache<CacheKey, CachedBody> cache = getCache();
+		if (cache == null || !isCopyable(theResource)) {
+			return;
+		}
+		IBaseResource copy = copy(theResource);
+		if (copy.getClass() != theResource.getClass()) {
+			// A custom type which doesn't override copy(), so the entry could never be returned
+			return;
+		}
+		cache.put(new CacheKey(theResourcePid, theVersion), new CachedBody(copy, theBodySize));
+	}
+
+	private Cache<CacheKey, CachedBody> getCache() {
+		long maxBodySize = myDaoConfig.getParsedResourceCacheMaxBodySize();
+		if (maxBodySize <= 0) {
+			/*
+			 * Invalidations are not tracked while the cache is disabled, so anything
+			 * held now could be stale if the cache is enabled again later
+			 */
+			if (myCache != null) {
+				synchronized (this) {
+					myCache = null;
+				}
+			}
+			return null;
+		}
+		Cache<CacheKey, CachedBody> retVal = myCache;
+		if (retVal == null || myCacheMaxBodySize != maxBodySize) {
+			synchronized (this) {
+				if (myCache == null || myCacheMaxBodySize != maxBodySize) {
+					ourLog.info("Creating parsed resource cache with a maximum total body size of {}", maxBodySize);
+					myCache = Caffeine
+						.newBuilder()
+						.maximumWeight(maxBodySize)
+						.weigher((CacheKey theKey, CachedBody theValue) -> theValue.myBodySize)
+						.recordStats()
+						.build();
+					myCacheMaxBodySize = maxBodySize;
+				}
+				retVal = myCache;
+			}
+		}
+		return retVal;
+	}
+
+	private static IBaseResource copy(IBaseResource theResource) {
+		if (theResource instanceof org.hl7.fhir.r4.model.Resource) {
+			return ((org.hl7.fhir.r4.model.Resource) theResource).copy();
+		}
+		return ((org.hl7.fhir.dstu3.model.Resource) theResource).copy();
+	}
+
+	/**
+	 * Can resources of this type be deep copied without re-encoding them?
+	 */
+	private static boolean isCopyable(IBaseResource theResource) {
+		return theResource instanceof org.hl7.fhir.r4.model.Resource || theResource instanceof org.hl7.fhir.dstu3.model.Resource;
+	}
+
+	private static class CachedBody {
+		private final int myBodySize;
+		private final IBaseResource myResource;
+
+		CachedBody(IBaseResource theResource, int theBodySize) {
+			myResource = theResource;
+			myBodySize = theBodySize;
+		}
+	}
+
+	private static class CacheKey {
+		private final long myResourcePid;
+		private final long myVersion;
+
+		CacheKey(long theResourcePid, long theVersion) {
+			myResourcePid = theResourcePid;
+			myVersion = theVersion;
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) theO;
+			return myResourcePid == other.myResourcePid && myVersion == other.myVersion;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (myResourcePid ^ (myResourcePid >>> 32)) * 31 + (int) (myVersion ^ (myVersion >>> 32));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package ca.uhn.fhir.jpa.util;
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.time.DateUtils;
+
+/**
+ * A snapshot of the progress of the current reindexing job, i.e. of the passes which have
+ * run since resources were last marked for reindexing
+ *
+ * @see ca.uhn.fhir.jpa.dao.IFhirSystemDao#getReindexingProgress()
+ */
+public class ReindexingProgress {
+	private long myFailedCount;
+	private long myIndexedCount;
+	private long myMillis;
+	private Long myRemainingCount;
+
+	/**
+	 * The estimated time until every resource has been reindexed, based on the throughput of
+	 * the job so far, or <code>null</code> if this can't be estimated yet
+	 */
+	public Long getEstimatedMillisRemaining() {
+		long perSecond = getResourcesPerSecond();
+		if (myRemainingCount == null || perSecond <= 0) {
+			return null;
+		}
+		return (myRemainingCount * DateUtils.MILLIS_PER_SECOND) / perSecond;
+	}
+
+	/**
+	 * The number of resources which have been marked as failed to reindex
+	 */
+	public long getFailedCount() {
+		return myFailedCount;
+	}
+
+	public ReindexingProgress setFailedCount(long theFailedCount) {
+		myFailedCount = theFailedCount;
+		return this;
+	}
+
+	/**
+	 * The number of resources which have been reindexed
+	 */
+	public long getIndexedCount() {
+		return myIndexedCount;
+	}
+
+	public ReindexingProgress setIndexedCount(long theIndexedCount) {
+		myIndexedCount = theIndexedCount;
+		return this;
+	}
+
+	/**
+	 * The time spent running reindexing passes
+	 */
+	public long getMillis() {
+		return myMillis;
+	}
+
+	public ReindexingProgress setMillis(long theMillis) {
+		myMillis = theMillis;
+		return this;
+	}
+
+	/**
+	 * The estimated number of resources which still need to be reindexed, or <code>null</code>
+	 * if no pass has run yet. This is counted once when the job starts and then reduced by each
+	 * pass, so it does not include resources which were marked for reindexing in the meantime.
+	 */
+	public Long getRemainingCount() {
+		return myRemainingCount;
+	}
+
+	public ReindexingProgress setRemainingCount(Long theRemainingCount) {
+		myRemainingCount = theRemainingCount;
+		return this;
+	}
+
+	/**
+	 * The number of resources reindexed per second across the job so far
+	 */
+	public long getResourcesPerSecond() {
+		return (myIndexedCount * DateUtils.MILLIS_PER_SECOND) / Math.max(myMillis, 1);
+	}
+}
@@ -0,0 +1,78 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.dao.DaoConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the thread pool which is used to parse resource bodies when a page of
+ * search results is loaded. The pool is shared by all DAOs.
+ * <p>
+ * The pool is created the first time it is needed, with the number of threads given by
+ * {@link DaoConfig#getSearchPageParseThreadCount()} at that time. It is never replaced
+ * while the server is running (callers may still be submitting work to it), and is only
+ * shut down when the application context is closed.
+ * </p>
+ *
+ * @see DaoConfig#setSearchPageParseThreadCount(int)
+ */
+public class SearchParsePool {
+	private static final Logger ourLog = LoggerFactory.getLogger(SearchParsePool.class);
+
+	@Autowired
+	private DaoConfig myDaoConfig;
+	private ForkJoinPool myPool;
+
+	/**
+	 * Returns the pool, creating it if this is the first time it has been requested
+	 */
+	public synchronized ForkJoinPool getPool() {
+		if (myPool == null) {
+			int threadCount = myDaoConfig.getSearchPageParseThreadCount();
+			ourLog.info("Creating search parse pool with {} threads", threadCount);
+			final AtomicInteger threadIndex = new AtomicInteger();
+			myPool = new ForkJoinPool(threadCount, thePool -> {
+				ForkJoinWorkerThread retVal = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(thePool);
+				retVal.setName("search_parse_" + threadIndex.incrementAndGet());
+				return retVal;
+			}, null, false);
+		}
+		return myPool;
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (myPool != null) {
+			myPool.shutdown();
+			myPool = null;
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package ca.uhn.fhir.jpa.util;
+
+
+/*-
+ * #%L
+ * HAPI FHIR JPA Server
+ * %%
+ * Copyright (C) 2014 - 2018 University Health Network
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.uhn.fhir.jpa.entity.TagDefinition;
+import ca.uhn.fhir.jpa.entity.TagTypeEnum;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * A process-wide cache of {@link TagDefinition} entities (tags, security labels and profiles),
+ * keyed by type, system and code. This is shared by all DAOs so that stamping the same tags on
+ * many resources does not need a lookup for each tag on every write.
+ * <p>
+ * Definitions are only added to the shared cache once the transaction which looked them up (or
+ * created them) has committed, so the cache never holds a definition which was rolled back. Until
+ * then, they are only visible to the transaction which resolved them.
+ * </p>
+ */
+public class TagDefinitionCache {
+
+	private static final int MAX_SIZE = 10000;
+
+	private final Cache<TagKey, TagDefinition> myCache = Caffeine
+		.newBuilder()
+		.maximumSize(MAX_SIZE)
+		.build();
+
+	/**
+	 * Returns the cached definition for the given type, system and code, or <code>null</code>
+	 * if it is not known yet
+	 */
+	public TagDefinition get(TagTypeEnum theTagType, String theSystem, String theCode) {
+		TagKey key = new TagKey(theTagType, theSystem, theCode);
+		TagDefinition retVal = myCache.getIfPresent(key);
+		if (retVal == null) {
+			Map<TagKey, TagDefinition> pending = getPendingDefinitions(false);
+			if (pending != null) {
+				retVal = pending.get(key);
+			}
+		}
+		return retVal;
+	}
+
+	/**
+	 * Removes every entry from the cache. If this is called within a transaction, the cache is
+	 * cleared again when the transaction completes, since definitions resolved by other transactions
+	 * in the meantime may have been deleted.
+	 */
+	public void invalidateAll() {
+		myCache.invalidateAll();
+
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int theStatus) {
+					myCache.invalidateAll();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Adds a definition which has been looked up or persisted. If this is called within a
+	 * transaction, the definition is only added to the shared cache if the transaction commits.
+	 */
+	public void put(TagDefinition theDefinition) {
+		TagKey key = new TagKey(theDefinition.getTagType(), theDefinition.getSystem(), theDefinition.getCode());
+		Map<TagKey, TagDefinition> pending = getPendingDefinitions(true);
+		if (pending != null) {
+			pending.put(key, theDefinition);
+		} else {
+			myCache.put(key, theDefinition);
+		}
+	}
+
+	/**
+	 * Definitions resolved within the current transaction are held by a synchronization registered
+	 * with that transaction, so that they are suspended and resumed along with it
+	 */
+	private Map<TagKey, TagDefinition> getPendingDefinitions(boolean theCreate) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+
+		for (TransactionSynchronization next : TransactionSynchronizationManager.getSynchronizations()) {
+			if (next instanceof PendingDefinitions && ((PendingDefinitions) next).getOwner() == this) {
+				return ((PendingDefinitions) next).myDefinitions;
+			}
+		}
+
+		if (!theCreate) {
+			return null;
+		}
+		PendingDefinitions pending = new PendingDefinitions();
+		TransactionSynchronizationManager.registerSynchronization(pending);
+		return pending.myDefinitions;
+	}
+
+	private class PendingDefinitions extends TransactionSynchronizationAdapter {
+		private final Map<TagKey, TagDefinition> myDefinitions = new HashMap<>();
+
+		@Override
+		public void afterCompletion(int theStatus) {
+			if (theStatus == STATUS_COMMITTED) {
+				myCache.putAll(myDefinitions);
+			}
+		}
+
+		TagDefinitionCache getOwner() {
+			return TagDefinitionCache.this;
+		}
+	}
+
+	private static class TagKey {
+		private final String myCode;
+		private final String mySystem;
+		private final TagTypeEnum myTagType;
+		private final int myHashCode;
+
+		TagKey(TagTypeEnum theTagType, String theSystem, String theCode) {
+			myTagType = theTagType;
+			// A blank system is stored and searched for as a null system
+			mySystem = isNotBlank(theSystem) ? theSystem : null;
+			myCode = theCode;
+			myHashCode = new HashCodeBuilder().append(myTagType).append(mySystem).append(myCode).toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object theO) {
+			if (this == theO) {
+				return true;
+			}
+			if (!(theO instanceof TagKey)) {
+				return false;
+			}
+			TagKey other = (TagKey) theO;
+			return new EqualsBuilder()
+				.append(myTagType, other.myTagType)
+				.append(mySystem, other.mySystem)
+				.append(myCode, other.myCode)
+				.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return myHashCode;
+		}
+	}
+}
@@ -5,14 +5,19 @@ import static org.junit.Assert.assertEquals;
 import org.hl7.fhir.r4.model.StringType;
 import org.hl7.fhir.instance.model.api.IIdType;
 import org.junit.*;
+import org.springframework.beans.factory.annotation.Autowired;
 
+import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
+import ca.uhn.fhir.jpa.util.ParsedResourceCache;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 
 @SuppressWarnings({ })
 public class FhirResourceDaoCustomTypeR4Test extends BaseJpaR4Test {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoCustomTypeR4Test.class);
+	@Autowired
+	private ParsedResourceCache myParsedResourceCache;
 
 	@Before
 	public void before() {
@@ -36,8 +41,28 @@ public class FhirResourceDaoCustomTypeR4Test extends BaseJpaR4Test {
 		
 	}
 	
+	/**
+	 * CustomObservationR4 doesn't override copy(), so it can't be cached without
+	 * losing its type
+	 */
+	@Test
+	public void testReadWithParsedResourceCache() {
+		myDaoConfig.setParsedResourceCacheMaxBodySize(100000);
+
+		CustomObservationR4 obs = new CustomObservationR4();
+		obs.setEyeColour(new StringType("blue"));
+		IIdType id = myObservationDao.create(obs).getId().toUnqualifiedVersionless();
+
+		for (int i = 0; i < 2; i++) {
+			CustomObservationR4 read = (CustomObservationR4) myObservationDao.read(id);
+			assertEquals("blue", read.getEyeColour().getValue());
+		}
+		assertEquals(0, myParsedResourceCache.getStats().hitCount());
+	}
+
 	@After
 	public void after() {
 		myFhirCtx.setDefaultTypeForProfile(CustomObservationR4.PROFILE, null);
+		myDaoConfig.setParsedResourceCacheMaxBodySize(new DaoConfig().getParsedResourceCacheMaxBodySize());
 	}
 }
@@ -23,6 +23,7 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -65,6 +66,27 @@ public class FhirResourceDaoR4InterceptorTest extends BaseJpaR4Test {
 		myDaoConfig.getInterceptors().add(myServerOperationInterceptor);
 	}
 
+	@Test
+	public void testBulkImportNotifiesInterceptors() {
+		Patient withId = new Patient();
+		withId.setId("BULKINT1");
+		Patient withoutId = new Patient();
+		withoutId.addName().setFamily("BULKINT2");
+
+		String input = myFhirCtx.newJsonParser().encodeResourceToString(withId) + "\n" + myFhirCtx.newJsonParser().encodeResourceToString(withoutId) + "\n";
+		assertEquals(2, mySystemDao.bulkImport(mySrd, new StringReader(input)).getWrittenCount());
+
+		// The resource with an ID doesn't exist yet, so its update is a create
+		ArgumentCaptor<RequestDetails> detailsCapt = ArgumentCaptor.forClass(RequestDetails.class);
+		verify(myJpaInterceptor, times(2)).resourceCreated(detailsCapt.capture(), any(IBaseResource.class));
+
+		// Each chunk is written with its own sub-request rather than the shared original
+		for (RequestDetails next : detailsCapt.getAllValues()) {
+			assertNotSame(mySrd, next);
+			assertTrue(next.isSubRequest());
+		}
+	}
+
 	@Test
 	public void testJpaCreate() {
 		Patient p = new Patient();
@@ -8,11 +8,13 @@ import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
 import ca.uhn.fhir.parser.StrictErrorHandler;
 import ca.uhn.fhir.rest.api.Constants;
+import ca.uhn.fhir.rest.api.SortSpec;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.*;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.rest.server.exceptions.MethodNotAllowedException;
 import ca.uhn.fhir.util.TestUtil;
+import net.ttddyy.dsproxy.QueryCountHolder;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.instance.model.api.IAnyResource;
@@ -38,6 +40,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -56,6 +59,7 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 		myDaoConfig.setReuseCachedSearchResultsForMillis(new DaoConfig().getReuseCachedSearchResultsForMillis());
 		myDaoConfig.setFetchSizeDefaultMaximum(new DaoConfig().getFetchSizeDefaultMaximum());
 		myDaoConfig.setAllowContainsSearches(new DaoConfig().isAllowContainsSearches());
+		myDaoConfig.setSearchPageParseThreadCount(new DaoConfig().getSearchPageParseThreadCount());
 	}
 
 	@Before
@@ -63,6 +67,45 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 		myDaoConfig.setReuseCachedSearchResultsForMillis(null);
 	}
 
+	/**
+	 * Version bodies and tags for a page of results are loaded with one query per
+	 * page, not one per resource
+	 */
+	@Test
+	public void testLoadPageUsesConstantNumberOfQueries() {
+		for (int i = 0; i < 20; i++) {
+			Patient patient = new Patient();
+			patient.addName().setFamily("PAGELOAD");
+			patient.getMeta().addTag("http://tags", "tag" + i, null);
+			myPatientDao.create(patient, mySrd);
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("PAGELOAD"));
+		IBundleProvider results = myPatientDao.search(params);
+		// Make sure the search has completed before we start counting
+		assertEquals(1, results.getResources(0, 1).size());
+
+		QueryCountHolder.clear();
+		List<IBaseResource> smallPage = results.getResources(0, 2);
+		long smallPageSelects = QueryCountHolder.getGrandTotal().getSelect();
+		assertEquals(2, smallPage.size());
+
+		QueryCountHolder.clear();
+		List<IBaseResource> largePage = results.getResources(0, 20);
+		long largePageSelects = QueryCountHolder.getGrandTotal().getSelect();
+		assertEquals(20, largePage.size());
+
+		ourLog.info("Loading 2 resources took {} selects, loading 20 resources took {} selects", smallPageSelects, largePageSelects);
+		assertEquals(smallPageSelects, largePageSelects);
+
+		for (IBaseResource next : largePage) {
+			Patient patient = (Patient) next;
+			assertEquals("PAGELOAD", patient.getNameFirstRep().getFamily());
+			assertEquals(1, patient.getMeta().getTag().size());
+		}
+	}
+
 	@Test
 	public void testChainWithMultipleTypePossibilities() {
 
@@ -667,6 +710,30 @@ public class FhirResourceDaoR4SearchNoFtTest extends BaseJpaR4Test {
 		assertTrue(patients.size() >= 2);
 	}
 
+	@Test
+	public void testSearchAllWithParallelParsing() {
+		myDaoConfig.setSearchPageParseThreadCount(4);
+
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Patient patient = new Patient();
+			patient.addIdentifier().setSystem("urn:system").setValue("PARALLEL" + i);
+			patient.addName().setFamily(String.format("Tester%02d", i));
+			ids.add(myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless().getValue());
+		}
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.setLoadSynchronous(true);
+		params.add(Patient.SP_IDENTIFIER, new TokenParam("urn:system", null));
+		params.setSort(new SortSpec(Patient.SP_FAMILY));
+		IBundleProvider results = myPatientDao.search(params);
+		assertEquals(ids, toUnqualifiedVersionlessIdValues(results));
+		List<IBaseResource> patients = toList(results);
+		for (int i = 0; i < 20; i++) {
+			assertEquals(String.format("Tester%02d", i), ((Patient) patients.get(i)).getNameFirstRep().getFamily());
+		}
+	}
+
 	@Test
 	public void testSearchByIdParam() {
 		String id1;
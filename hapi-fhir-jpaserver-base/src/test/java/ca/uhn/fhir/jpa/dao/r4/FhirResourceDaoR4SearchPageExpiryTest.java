@@ -4,10 +4,12 @@ import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.jpa.dao.data.ISearchDao;
 import ca.uhn.fhir.jpa.entity.Search;
+import ca.uhn.fhir.jpa.search.PersistedJpaBundleProvider;
 import ca.uhn.fhir.jpa.search.StaleSearchDeletingSvcImpl;
 import ca.uhn.fhir.util.StopWatch;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.StringParam;
+import net.ttddyy.dsproxy.QueryCountHolder;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.instance.model.api.IIdType;
@@ -30,6 +32,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import static ca.uhn.fhir.jpa.util.TestUtil.sleepAtLeast;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.*;
 
 public class FhirResourceDaoR4SearchPageExpiryTest extends BaseJpaR4Test {
@@ -55,6 +58,63 @@ public class FhirResourceDaoR4SearchPageExpiryTest extends BaseJpaR4Test {
 		myDaoConfig.setCountSearchResultsUpTo(10000);
 	}
 
+	@Test
+	public void testReusedSearchIsServedFromLocalCache() {
+		myDaoConfig.setReuseCachedSearchResultsForMillis(DateUtils.MILLIS_PER_MINUTE);
+
+		Patient patient = new Patient();
+		patient.addName().setFamily("REUSE");
+		IIdType pid1 = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("REUSE"));
+		IBundleProvider bundleProvider = myPatientDao.search(params);
+		assertThat(toUnqualifiedVersionlessIds(bundleProvider), containsInAnyOrder(pid1));
+		final String searchUuid1 = bundleProvider.getUuid();
+		final Date lastReturned1 = newTxTemplate().execute(new TransactionCallback<Date>() {
+			@Override
+			public Date doInTransaction(TransactionStatus theStatus) {
+				return mySearchEntityDao.findByUuid(searchUuid1).getSearchLastReturned();
+			}
+		});
+		sleepAtLeast(10);
+
+		// Reusing the search doesn't touch the database until the last returned times are flushed
+		QueryCountHolder.clear();
+		params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("REUSE"));
+		bundleProvider = myPatientDao.search(params);
+		assertEquals(searchUuid1, bundleProvider.getUuid());
+		assertTrue(((PersistedJpaBundleProvider) bundleProvider).isCacheHit());
+		assertEquals(0, QueryCountHolder.getGrandTotal().getTotal());
+
+		newTxTemplate().execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				assertEquals(lastReturned1.getTime(), mySearchEntityDao.findByUuid(searchUuid1).getSearchLastReturned().getTime());
+			}
+		});
+		mySearchCoordinatorSvc.flushLastReturned();
+		newTxTemplate().execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				long lastReturned2 = mySearchEntityDao.findByUuid(searchUuid1).getSearchLastReturned().getTime();
+				assertThat(lastReturned2, greaterThan(lastReturned1.getTime()));
+			}
+		});
+
+		// A write to the resource type means the database is checked again
+		patient = new Patient();
+		patient.addName().setFamily("OTHER");
+		myPatientDao.create(patient, mySrd);
+
+		QueryCountHolder.clear();
+		params = new SearchParameterMap();
+		params.add(Patient.SP_FAMILY, new StringParam("REUSE"));
+		myPatientDao.search(params);
+		assertThat(QueryCountHolder.getGrandTotal().getSelect(), greaterThan(0L));
+	}
+
 	@Test
 	public void testExpirePagesAfterReuse() throws Exception {
 		IIdType pid1;
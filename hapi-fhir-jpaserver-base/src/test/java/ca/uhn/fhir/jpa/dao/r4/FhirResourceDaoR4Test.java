@@ -8,6 +8,10 @@ import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -24,6 +28,7 @@ import org.hl7.fhir.r4.model.Quantity.QuantityComparator;
 import org.hl7.fhir.instance.model.api.*;
 import org.junit.*;
 import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
@@ -34,10 +39,15 @@ import com.google.common.collect.Lists;
 
 import ca.uhn.fhir.jpa.dao.*;
 import ca.uhn.fhir.jpa.entity.*;
+import ca.uhn.fhir.jpa.util.ExpungeOptions;
+import ca.uhn.fhir.jpa.util.ForcedIdCache;
+import ca.uhn.fhir.jpa.util.ParsedResourceCache;
+import ca.uhn.fhir.jpa.util.TagDefinitionCache;
 import ca.uhn.fhir.model.api.Include;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.valueset.BundleEntrySearchModeEnum;
 import ca.uhn.fhir.model.valueset.BundleEntryTransactionMethodEnum;
+import ca.uhn.fhir.parser.DataFormatException;
 import ca.uhn.fhir.rest.api.*;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
@@ -45,17 +55,27 @@ import ca.uhn.fhir.rest.param.*;
 import ca.uhn.fhir.rest.server.exceptions.*;
 import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor.ActionRequestDetails;
 import ca.uhn.fhir.util.TestUtil;
+import net.ttddyy.dsproxy.QueryCountHolder;
 
 @SuppressWarnings({ "unchecked", "deprecation" })
 public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirResourceDaoR4Test.class);
+	@Autowired
+	private ForcedIdCache myForcedIdCache;
+	@Autowired
+	private ParsedResourceCache myParsedResourceCache;
+	@Autowired
+	private TagDefinitionCache myTagDefinitionCache;
 
 	@After
 	public final void after() {
 		myDaoConfig.setAllowExternalReferences(new DaoConfig().isAllowExternalReferences());
 		myDaoConfig.setTreatReferencesAsLogical(new DaoConfig().getTreatReferencesAsLogical());
 		myDaoConfig.setEnforceReferentialIntegrityOnDelete(new DaoConfig().isEnforceReferentialIntegrityOnDelete());
+		myDaoConfig.setParsedResourceCacheMaxBodySize(new DaoConfig().getParsedResourceCacheMaxBodySize());
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
+		myDaoConfig.setExpungeEnabled(new DaoConfig().isExpungeEnabled());
 	}
 
 	private void assertGone(IIdType theId) {
@@ -83,6 +103,60 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 	}
 
 
+	@Test
+	public void testReadWithParsedResourceCache() {
+		myDaoConfig.setParsedResourceCacheMaxBodySize(100000);
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		Patient read = myPatientDao.read(id, mySrd);
+		assertEquals(0, myParsedResourceCache.getStats().hitCount());
+		assertEquals("1", read.getIdElement().getVersionIdPart());
+
+		// Modifying the returned copy must not affect later reads
+		read.getNameFirstRep().setFamily("MODIFIED");
+		read.getMeta().addTag("http://foo", "bar", null);
+
+		read = myPatientDao.read(id, mySrd);
+		assertEquals(1, myParsedResourceCache.getStats().hitCount());
+		assertEquals("FAMILY", read.getNameFirstRep().getFamily());
+		assertEquals(0, read.getMeta().getTag().size());
+
+		// A new version is a new cache entry
+		p = new Patient();
+		p.setId(id);
+		p.addName().setFamily("FAMILY2");
+		myPatientDao.update(p, mySrd);
+
+		read = myPatientDao.read(id, mySrd);
+		assertEquals("2", read.getIdElement().getVersionIdPart());
+		assertEquals("FAMILY2", read.getNameFirstRep().getFamily());
+		assertEquals("FAMILY", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+	}
+
+	@Test
+	public void testReadWithParsedResourceCacheDoesNotLoadBody() {
+		myDaoConfig.setParsedResourceCacheMaxBodySize(100000);
+
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		QueryCountHolder.clear();
+		myPatientDao.read(id, mySrd);
+		long missSelects = QueryCountHolder.getGrandTotal().getSelect();
+
+		QueryCountHolder.clear();
+		Patient read = myPatientDao.read(id, mySrd);
+		long hitSelects = QueryCountHolder.getGrandTotal().getSelect();
+
+		assertEquals(1, myParsedResourceCache.getStats().hitCount());
+		assertEquals("FAMILY", read.getNameFirstRep().getFamily());
+		assertThat(hitSelects, lessThan(missSelects));
+	}
+
 	@Test
 	public void testSaveAndReturnCollectionBundle() throws IOException {
 		String input = IOUtils.toString(FhirResourceDaoR4Test.class.getResourceAsStream("/r4/collection-bundle.json"));
@@ -570,6 +644,131 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		
 	}
 
+	@Test
+	public void testCreateTagsUsesTagDefinitionCache() {
+		assertNull(myTagDefinitionCache.get(TagTypeEnum.TAG, "FOO", "BAR"));
+
+		Patient p = new Patient();
+		p.getMeta().addTag().setSystem("FOO").setCode("BAR");
+		p.getMeta().addSecurity().setSystem("FOO").setCode("SEC");
+		myPatientDao.create(p, mySrd);
+
+		TagDefinition cached = myTagDefinitionCache.get(TagTypeEnum.TAG, "FOO", "BAR");
+		assertNotNull(cached);
+		assertNotNull(cached.getId());
+		assertNotNull(myTagDefinitionCache.get(TagTypeEnum.SECURITY_LABEL, "FOO", "SEC"));
+		assertNull(myTagDefinitionCache.get(TagTypeEnum.SECURITY_LABEL, "FOO", "BAR"));
+
+		p = new Patient();
+		p.getMeta().addTag().setSystem("FOO").setCode("BAR");
+		IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+		assertEquals(1, myPatientDao.read(id, mySrd).getMeta().getTag().size());
+
+		new TransactionTemplate(myTxManager).execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				assertThat(myTagDefinitionDao.findAll(), hasSize(2));
+				assertThat(myResourceTagDao.findAll(), hasSize(3));
+			}
+		});
+
+		// A definition created by a transaction which rolls back must not be cached
+		new TransactionTemplate(myTxManager).execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				Patient p = new Patient();
+				p.getMeta().addTag().setSystem("FOO").setCode("ROLLEDBACK");
+				myPatientDao.create(p, mySrd);
+				assertNotNull(myTagDefinitionCache.get(TagTypeEnum.TAG, "FOO", "ROLLEDBACK"));
+				theStatus.setRollbackOnly();
+			}
+		});
+		assertNull(myTagDefinitionCache.get(TagTypeEnum.TAG, "FOO", "ROLLEDBACK"));
+
+		p = new Patient();
+		p.getMeta().addTag().setSystem("FOO").setCode("ROLLEDBACK");
+		id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+		assertEquals("ROLLEDBACK", myPatientDao.read(id, mySrd).getMeta().getTag().get(0).getCode());
+	}
+
+	@Test
+	public void testCreateSameNewTagConcurrently() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try {
+			List<Callable<IIdType>> tasks = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				tasks.add(() -> {
+					Patient p = new Patient();
+					p.getMeta().addTag().setSystem("FOO").setCode("CONCURRENT");
+					return myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+				});
+			}
+			for (Future<IIdType> next : executor.invokeAll(tasks)) {
+				IIdType id = next.get();
+				assertEquals("CONCURRENT", myPatientDao.read(id, mySrd).getMeta().getTag().get(0).getCode());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		new TransactionTemplate(myTxManager).execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				assertThat(myTagDefinitionDao.findAll(), hasSize(1));
+			}
+		});
+	}
+
+	@Test
+	public void testForcedIdsAreCached() {
+		Patient p = new Patient();
+		p.setId("Patient/FORCED");
+		p.setActive(true);
+		Long pid = myPatientDao.update(p, mySrd).getEntity().getId();
+		assertEquals(pid, myForcedIdCache.get("Patient", "FORCED"));
+		assertNull(myForcedIdCache.get("Observation", "FORCED"));
+
+		long hits = myForcedIdCache.getStats().hitCount();
+		Observation o = new Observation();
+		o.getSubject().setReference("Patient/FORCED");
+		IIdType obsId = myObservationDao.create(o, mySrd).getId().toUnqualifiedVersionless();
+		assertThat(myForcedIdCache.getStats().hitCount(), greaterThan(hits));
+
+		// A forced ID created by a transaction which rolls back must not be cached
+		new TransactionTemplate(myTxManager).execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				Patient p = new Patient();
+				p.setId("Patient/ROLLEDBACK");
+				myPatientDao.update(p, mySrd);
+				assertNotNull(myForcedIdCache.get("Patient", "ROLLEDBACK"));
+				theStatus.setRollbackOnly();
+			}
+		});
+		assertNull(myForcedIdCache.get("Patient", "ROLLEDBACK"));
+		try {
+			myPatientDao.read(new IdType("Patient/ROLLEDBACK"), mySrd);
+			fail();
+		} catch (ResourceNotFoundException e) {
+			// good
+		}
+
+		// Expunging the resource removes its forced ID from the cache
+		myDaoConfig.setExpungeEnabled(true);
+		myObservationDao.delete(obsId, mySrd);
+		myPatientDao.delete(new IdType("Patient/FORCED"), mySrd);
+		myPatientDao.expunge(new IdType("Patient/FORCED"), new ExpungeOptions()
+			.setExpungeDeletedResources(true)
+			.setExpungeOldVersions(true));
+		assertNull(myForcedIdCache.get("Patient", "FORCED"));
+
+		p = new Patient();
+		p.setId("Patient/FORCED");
+		Long newPid = myPatientDao.update(p, mySrd).getEntity().getId();
+		assertNotEquals(pid, newPid);
+		assertEquals(newPid, myForcedIdCache.get("Patient", "FORCED"));
+	}
+
 	@Test
 	public void testCreateEmptyTagsIsIgnored() {
 		Patient p = new Patient();
@@ -2623,6 +2822,60 @@ public class FhirResourceDaoR4Test extends BaseJpaR4Test {
 		assertThat(string, containsString("value=\"foo\""));
 	}
 
+	@Test
+	public void testReadVersionsWithMixedResourceEncodings() {
+		Patient p = new Patient();
+		p.addName().setFamily("FAMILY1");
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSON);
+		final IIdType id = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		p.setId(id);
+		p.getNameFirstRep().setFamily("FAMILY2");
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JLZ4);
+		myPatientDao.update(p, mySrd);
+
+		p.getNameFirstRep().setFamily("FAMILY3");
+		myDaoConfig.setResourceEncoding(ResourceEncodingEnum.JSONC);
+		myPatientDao.update(p, mySrd);
+
+		new TransactionTemplate(myTxManager).execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus theStatus) {
+				assertEquals(ResourceEncodingEnum.JSON, myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 1L).getEncoding());
+				assertEquals(ResourceEncodingEnum.JLZ4, myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 2L).getEncoding());
+				assertEquals(ResourceEncodingEnum.JSONC, myResourceHistoryTableDao.findForIdAndVersion(id.getIdPartAsLong(), 3L).getEncoding());
+			}
+		});
+
+		assertEquals("FAMILY1", myPatientDao.read(id.withVersion("1"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("FAMILY2", myPatientDao.read(id.withVersion("2"), mySrd).getNameFirstRep().getFamily());
+		assertEquals("FAMILY3", myPatientDao.read(id, mySrd).getNameFirstRep().getFamily());
+
+		IBundleProvider history = myPatientDao.history(id, null, null, mySrd);
+		List<String> families = new ArrayList<>();
+		for (IBaseResource next : history.getResources(0, 3)) {
+			families.add(((Patient) next).getNameFirstRep().getFamily());
+		}
+		assertThat(families, contains("FAMILY3", "FAMILY2", "FAMILY1"));
+	}
+
+	@Test
+	public void testResourceEncodingRoundTrip() {
+		String input = "{\"resourceType\":\"Patient\",\"name\":[{\"family\":\"\u00e9\u00e8 \u4e2d\u6587\"}]}";
+		for (ResourceEncodingEnum next : ResourceEncodingEnum.values()) {
+			if (next != ResourceEncodingEnum.DEL) {
+				assertEquals(next.name(), input, next.decode(next.encode(input)));
+			}
+		}
+
+		try {
+			ResourceEncodingEnum.JLZ4.decode(new byte[] {0, 0, 0, 10, 1, 2});
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Failed to decompress contents", e.getMessage());
+		}
+	}
+
 	@Test
 	public void testResourceInstanceMetaOperation() {
 
@@ -17,11 +17,14 @@ import org.mockito.ArgumentCaptor;
 
 import ca.uhn.fhir.jpa.dao.DaoConfig;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
+import ca.uhn.fhir.jpa.entity.ResourceEncodingEnum;
+import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.model.primitive.InstantDt;
 import ca.uhn.fhir.rest.api.MethodOutcome;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.StringParam;
+import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.*;
 import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor.ActionRequestDetails;
 import ca.uhn.fhir.util.TestUtil;
@@ -33,6 +36,7 @@ public class FhirResourceDaoR4UpdateTest extends BaseJpaR4Test {
 	public void afterResetDao() {
 		myDaoConfig.setResourceMetaCountHardLimit(new DaoConfig().getResourceMetaCountHardLimit());
 		myDaoConfig.setIndexMissingFields(new DaoConfig().getIndexMissingFields());
+		myDaoConfig.setResourceEncoding(new DaoConfig().getResourceEncoding());
 	}
 
 	@Test
@@ -689,6 +693,48 @@ public class FhirResourceDaoR4UpdateTest extends BaseJpaR4Test {
 		assertEquals(4, QueryCountHolder.getGrandTotal().getInsert());
 	}
 
+	@Test
+	public void testUpdateSkipsUnchangedIndexTypes() {
+		Patient pt = new Patient();
+		pt.setActive(true);
+		pt.addName().setFamily("FAMILY1").addGiven("GIVEN1");
+		IIdType id = myPatientDao.create(pt).getId().toUnqualifiedVersionless();
+
+		String fingerprint = myResourceTableDao.findOne(id.getIdPartAsLong()).getIndexFingerprint();
+		assertNotNull(fingerprint);
+
+		// Change something which isn't indexed
+		pt.setId(id);
+		pt.setMultipleBirth(new BooleanType(true));
+		QueryCountHolder.clear();
+		myPatientDao.update(pt);
+		long selectsWithFingerprint = QueryCountHolder.getGrandTotal().getSelect();
+
+		assertEquals(0, QueryCountHolder.getGrandTotal().getDelete());
+		assertEquals(fingerprint, myResourceTableDao.findOne(id.getIdPartAsLong()).getIndexFingerprint());
+
+		// Without a fingerprint, the same kind of update has to load the existing string and token rows
+		ResourceTable table = myResourceTableDao.findOne(id.getIdPartAsLong());
+		table.setIndexFingerprint(null);
+		myResourceTableDao.save(table);
+		pt.setMultipleBirth(new BooleanType(false));
+		QueryCountHolder.clear();
+		myPatientDao.update(pt);
+		long selectsWithoutFingerprint = QueryCountHolder.getGrandTotal().getSelect();
+
+		assertEquals(fingerprint, myResourceTableDao.findOne(id.getIdPartAsLong()).getIndexFingerprint());
+		assertThat(selectsWithFingerprint, lessThan(selectsWithoutFingerprint));
+
+		// Now change something which is
+		pt.getNameFirstRep().setFamily("FAMILY2");
+		myPatientDao.update(pt);
+
+		assertNotEquals(fingerprint, myResourceTableDao.findOne(id.getIdPartAsLong()).getIndexFingerprint());
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(new SearchParameterMap(Patient.SP_FAMILY, new StringParam("FAMILY1")))), empty());
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(new SearchParameterMap(Patient.SP_FAMILY, new StringParam("FAMILY2")))), contains(id.getValue()));
+		assertThat(toUnqualifiedVersionlessIdValues(myPatientDao.search(new SearchParameterMap(Patient.SP_ACTIVE, new TokenParam(null, "true")))), contains(id.getValue()));
+	}
+
 	@Test
 	public void testUpdateUnknownNumericIdFails() {
 		Patient p = new Patient();
@@ -872,6 +918,25 @@ public class FhirResourceDaoR4UpdateTest extends BaseJpaR4Test {
 		assertEquals(id1.getValue(), id2.getValue());
 	}
 
+	@Test
+	public void testUpdateWithNoChangeDetectionUpdateUnchangedForEachEncoding() {
+		for (ResourceEncodingEnum nextEncoding : new ResourceEncodingEnum[] {ResourceEncodingEnum.JSON, ResourceEncodingEnum.JSONC, ResourceEncodingEnum.JLZ4}) {
+			myDaoConfig.setResourceEncoding(nextEncoding);
+
+			Patient patient = new Patient();
+			patient.addName().setFamily(nextEncoding.name());
+			IIdType id = myPatientDao.create(patient, mySrd).getId().toUnqualifiedVersionless();
+
+			patient = new Patient();
+			patient.setId(id);
+			patient.addName().setFamily(nextEncoding.name());
+			assertEquals(nextEncoding.name(), "1", myPatientDao.update(patient, mySrd).getId().getVersionIdPart());
+
+			patient.addName().setFamily("CHANGED");
+			assertEquals(nextEncoding.name(), "2", myPatientDao.update(patient, mySrd).getId().getVersionIdPart());
+		}
+	}
+
 	@Test
 	public void testUpdateWithNumericIdFails() {
 		Patient p = new Patient();
@@ -2,15 +2,19 @@ package ca.uhn.fhir.jpa.dao.r4;
 
 import ca.uhn.fhir.jpa.dao.BaseHapiFhirDao;
 import ca.uhn.fhir.jpa.dao.DaoConfig;
+import ca.uhn.fhir.jpa.dao.MatchUrlBatchResolver;
 import ca.uhn.fhir.jpa.dao.SearchParameterMap;
 import ca.uhn.fhir.jpa.entity.*;
 import ca.uhn.fhir.jpa.provider.SystemProviderDstu2Test;
+import ca.uhn.fhir.jpa.util.BulkImportOutcome;
+import ca.uhn.fhir.jpa.util.ReindexingProgress;
 import ca.uhn.fhir.model.api.ResourceMetadataKeyEnum;
 import ca.uhn.fhir.model.primitive.IdDt;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.RestOperationTypeEnum;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.ReferenceParam;
+import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.param.TokenParam;
 import ca.uhn.fhir.rest.server.exceptions.*;
 import ca.uhn.fhir.rest.server.interceptor.IServerInterceptor.ActionRequestDetails;
@@ -32,9 +36,11 @@ import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -54,6 +60,7 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 	public void after() {
 		myDaoConfig.setAllowInlineMatchUrlReferences(false);
 		myDaoConfig.setAllowMultipleDelete(new DaoConfig().isAllowMultipleDelete());
+		myDaoConfig.setReindexThreadCount(new DaoConfig().getReindexThreadCount());
 	}
 
 	@Before
@@ -256,6 +263,55 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		assertThat(oo.getIssue().get(0).getDiagnostics(), containsString("Unknown search parameter"));
 	}
 
+	@Test
+	public void testBulkImport() {
+		Patient withId = new Patient();
+		withId.setId("BULK1");
+		withId.addName().setFamily("BULKFAM1");
+		Patient withoutId = new Patient();
+		withoutId.addName().setFamily("BULKFAM2");
+		Observation obs = new Observation();
+		obs.setStatus(ObservationStatus.FINAL);
+		obs.getSubject().setReference("Patient/BULK1");
+
+		StringBuilder input = new StringBuilder();
+		input.append(myFhirCtx.newJsonParser().encodeResourceToString(withId)).append('\n');
+		input.append('\n');
+		input.append(myFhirCtx.newJsonParser().encodeResourceToString(withoutId)).append('\n');
+		input.append("{\"resourceType\":\"Patient\",\"active\":\"FOO\"\n");
+		input.append(myFhirCtx.newJsonParser().encodeResourceToString(obs)).append('\n');
+
+		BulkImportOutcome outcome = mySystemDao.bulkImport(mySrd, new StringReader(input.toString()));
+		assertEquals(4, outcome.getReadCount());
+		assertEquals(3, outcome.getParsedCount());
+		assertEquals(3, outcome.getWrittenCount());
+		assertEquals(1, outcome.getFailedCount());
+
+		assertEquals("BULKFAM1", myPatientDao.read(new IdType("Patient/BULK1")).getNameFirstRep().getFamily());
+		SearchParameterMap map = new SearchParameterMap(Patient.SP_FAMILY, new StringParam("BULKFAM2"));
+		map.setLoadSynchronous(true);
+		assertEquals(1, myPatientDao.search(map).size().intValue());
+		map = new SearchParameterMap(Observation.SP_SUBJECT, new ReferenceParam("Patient/BULK1"));
+		map.setLoadSynchronous(true);
+		assertEquals(1, myObservationDao.search(map).size().intValue());
+	}
+
+	@Test
+	public void testBulkImportCountsOnlyUnwrittenResourcesAsFailed() {
+		Patient patient = new Patient();
+		patient.addName().setFamily("BULKFAIL1");
+		Observation obs = new Observation();
+		obs.setStatus(ObservationStatus.FINAL);
+		obs.getSubject().setReference("Patient/BULKFAIL_DOES_NOT_EXIST");
+
+		// The observation's reference can't be resolved, so the chunk is retried one resource at a time
+		String input = myFhirCtx.newJsonParser().encodeResourceToString(patient) + "\n" + myFhirCtx.newJsonParser().encodeResourceToString(obs) + "\n";
+		BulkImportOutcome outcome = mySystemDao.bulkImport(mySrd, new StringReader(input));
+		assertEquals(2, outcome.getParsedCount());
+		assertEquals(1, outcome.getWrittenCount());
+		assertEquals(1, outcome.getFailedCount());
+	}
+
 	@Test
 	public void testCircularCreateAndDelete() {
 		Encounter enc = new Encounter();
@@ -532,6 +588,93 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 
 	}
 
+	@Test
+	public void testReindexingOnlyMarksResourcesWhichFailOnTheirOwn() {
+		final List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			Patient p = new Patient();
+			p.addName().setFamily("family" + i);
+			ids.add(myPatientDao.create(p, mySrd).getId().getIdPartAsLong());
+		}
+
+		mySystemDao.markAllResourcesForReindexing();
+
+		// Make one resource in the middle of the chunk unparseable
+		final Long badId = ids.get(2);
+		new TransactionTemplate(myTxManager).execute(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus theStatus) {
+				ResourceHistoryTable resourceHistoryTable = myResourceHistoryTableDao.findForIdAndVersion(badId, 1L);
+				resourceHistoryTable.setEncoding(ResourceEncodingEnum.JSON);
+				try {
+					resourceHistoryTable.setResource("{\"resourceType\":\"FOO\"}".getBytes("UTF-8"));
+				} catch (UnsupportedEncodingException e) {
+					throw new Error(e);
+				}
+				myResourceHistoryTableDao.save(resourceHistoryTable);
+				return null;
+			}
+		});
+
+		// The chunk fails as a whole, then the resources are retried one at a time
+		assertEquals(Integer.valueOf(4), mySystemDao.performReindexingPass(null));
+
+		new TransactionTemplate(myTxManager).execute(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus theStatus) {
+				for (Long next : ids) {
+					Long expected = next.equals(badId) ? Long.valueOf(2) : Long.valueOf(1);
+					assertEquals(expected, myEntityManager.find(ResourceTable.class, next).getIndexStatus());
+				}
+				return null;
+			}
+		});
+
+		ReindexingProgress progress = mySystemDao.getReindexingProgress();
+		assertEquals(4, progress.getIndexedCount());
+		assertEquals(1, progress.getFailedCount());
+		assertEquals(Long.valueOf(0), progress.getRemainingCount());
+	}
+
+	@Test
+	public void testReindexingWithMultipleThreads() {
+		myDaoConfig.setReindexThreadCount(3);
+
+		final List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			Patient p = new Patient();
+			p.addName().setFamily("family" + i);
+			ids.add(myPatientDao.create(p, mySrd).getId().getIdPartAsLong());
+		}
+
+		mySystemDao.markAllResourcesForReindexing();
+
+		assertNull(mySystemDao.getReindexingProgress().getRemainingCount());
+
+		// Each of the 3 threads reindexes up to 10 resources
+		assertEquals(Integer.valueOf(20), mySystemDao.performReindexingPass(10));
+		ReindexingProgress progress = mySystemDao.getReindexingProgress();
+		assertEquals(20, progress.getIndexedCount());
+		assertEquals(0, progress.getFailedCount());
+		assertEquals(Long.valueOf(0), progress.getRemainingCount());
+		assertEquals(Integer.valueOf(0), mySystemDao.performReindexingPass(10));
+
+		new TransactionTemplate(myTxManager).execute(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus theStatus) {
+				for (Long next : ids) {
+					assertEquals(Long.valueOf(1), myEntityManager.find(ResourceTable.class, next).getIndexStatus());
+				}
+				return null;
+			}
+		});
+
+		SearchParameterMap map = new SearchParameterMap();
+		map.setLoadSynchronous(true);
+		map.add(Patient.SP_FAMILY, new StringParam("family7"));
+		assertEquals(1, myPatientDao.search(map).size().intValue());
+	}
+
 	@Test
 	public void testSystemMetaOperation() {
 
@@ -954,6 +1097,67 @@ public class FhirSystemDaoR4Test extends BaseJpaR4SystemTest {
 		assertEquals(new IdType(patientId).toUnqualifiedVersionless().getValue(), o.getSubject().getReference());
 	}
 
+	@Test
+	public void testTransactionCreateAndUpdateMatchUrlsResolvedInBatch() {
+		String methodName = "testTransactionCreateAndUpdateMatchUrlsResolvedInBatch";
+
+		List<IIdType> existingIds = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Patient p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			existingIds.add(myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless());
+		}
+		Patient p = new Patient();
+		p.addIdentifier().setValue(methodName + "NoSystem");
+		IIdType noSystemId = myPatientDao.create(p, mySrd).getId().toUnqualifiedVersionless();
+
+		Bundle request = new Bundle();
+		for (int i = 0; i < 5; i++) {
+			p = new Patient();
+			p.addIdentifier().setSystem("urn:system").setValue(methodName + i);
+			request.addEntry().setResource(p).getRequest().setMethod(HTTPVerb.POST).setIfNoneExist("Patient?identifier=urn%3Asystem%7C" + methodName + i);
+		}
+		p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName + "0");
+		p.addName().setFamily("Updated");
+		request.addEntry().setResource(p).getRequest().setMethod(HTTPVerb.PUT).setUrl("Patient?identifier=urn%3Asystem%7C" + methodName + "0");
+		p = new Patient();
+		p.addIdentifier().setSystem("urn:system").setValue(methodName + "New");
+		request.addEntry().setResource(p).getRequest().setMethod(HTTPVerb.PUT).setUrl("Patient?identifier=urn%3Asystem%7C" + methodName + "New");
+		p = new Patient();
+		p.addIdentifier().setValue(methodName + "NoSystem");
+		request.addEntry().setResource(p).getRequest().setMethod(HTTPVerb.POST).setIfNoneExist("Patient?identifier=" + methodName + "NoSystem");
+
+		Bundle resp = mySystemDao.transaction(mySrd, request);
+		assertEquals(8, resp.getEntry().size());
+
+		for (int i = 0; i < 3; i++) {
+			BundleEntryComponent respEntry = resp.getEntry().get(i);
+			assertEquals(Constants.STATUS_HTTP_200_OK + " OK", respEntry.getResponse().getStatus());
+			assertEquals(existingIds.get(i).getValue(), new IdType(respEntry.getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+		}
+		for (int i = 3; i < 5; i++) {
+			assertEquals(Constants.STATUS_HTTP_201_CREATED + " Created", resp.getEntry().get(i).getResponse().getStatus());
+		}
+
+		BundleEntryComponent respEntry = resp.getEntry().get(5);
+		assertEquals(Constants.STATUS_HTTP_200_OK + " OK", respEntry.getResponse().getStatus());
+		assertThat(respEntry.getResponse().getLocation(), endsWith(existingIds.get(0).getValue() + "/_history/2"));
+		assertEquals(Constants.STATUS_HTTP_201_CREATED + " Created", resp.getEntry().get(6).getResponse().getStatus());
+		respEntry = resp.getEntry().get(7);
+		assertEquals(Constants.STATUS_HTTP_200_OK + " OK", respEntry.getResponse().getStatus());
+		assertEquals(noSystemId.getValue(), new IdType(respEntry.getResponse().getLocation()).toUnqualifiedVersionless().getValue());
+
+		assertEquals("Updated", myPatientDao.read(existingIds.get(0), mySrd).getNameFirstRep().getFamily());
+		assertNull(MatchUrlBatchResolver.getPreResolvedMatch("Patient?identifier=urn%3Asystem%7C" + methodName + "0", Patient.class));
+
+		// The newly created resources are found by a second transaction
+		resp = mySystemDao.transaction(mySrd, request);
+		for (BundleEntryComponent next : resp.getEntry()) {
+			assertEquals(Constants.STATUS_HTTP_200_OK + " OK", next.getResponse().getStatus());
+		}
+	}
+
 	@Test
 	public void testTransactionCreateNoMatchUrl() {
 		String methodName = "testTransactionCreateNoMatchUrl";
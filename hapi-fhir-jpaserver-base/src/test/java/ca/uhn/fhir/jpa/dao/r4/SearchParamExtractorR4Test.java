@@ -9,8 +9,10 @@ import ca.uhn.fhir.jpa.entity.ResourceIndexedSearchParamToken;
 import ca.uhn.fhir.jpa.entity.ResourceTable;
 import ca.uhn.fhir.jpa.search.JpaRuntimeSearchParam;
 import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.exceptions.FHIRException;
 import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
 import org.hl7.fhir.r4.hapi.ctx.IValidationSupport;
+import org.hl7.fhir.r4.model.ExpressionNode;
 import org.hl7.fhir.r4.model.Observation;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -29,56 +31,46 @@ public class SearchParamExtractorR4Test {
 	private static IValidationSupport ourValidationSupport;
 
 	@Test
-	public void testParamWithOrInPath() {
-		Observation obs = new Observation();
-		obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE");
-
-		ISearchParamRegistry searchParamRegistry = new ISearchParamRegistry() {
-			@Override
-			public void forceRefresh() {
-				// nothing
-			}
+	public void testParsedPathsAreReusedUntilSearchParamsChange() throws FHIRException {
+		MySearchParamRegistry searchParamRegistry = new MySearchParamRegistry();
+		SearchParamExtractorR4 extractor = new SearchParamExtractorR4(ourCtx, ourValidationSupport, searchParamRegistry);
 
-			@Override
-			public RuntimeSearchParam getActiveSearchParam(String theResourceName, String theParamName) {
-				throw new UnsupportedOperationException();
-			}
+		ExpressionNode parsed = extractor.getParsedExpression("Observation.category");
+		assertSame(parsed, extractor.getParsedExpression("Observation.category"));
 
-			@Override
-			public Map<String, Map<String, RuntimeSearchParam>> getActiveSearchParams() {
-				throw new UnsupportedOperationException();
-			}
+		// Simulate a registry refresh
+		searchParamRegistry.myActiveSearchParams = new HashMap<>();
+		ExpressionNode reparsed = extractor.getParsedExpression("Observation.category");
+		assertNotSame(parsed, reparsed);
+		assertSame(reparsed, extractor.getParsedExpression("Observation.category"));
 
-			@Override
-			public Map<String, RuntimeSearchParam> getActiveSearchParams(String theResourceName) {
-				RuntimeResourceDefinition nextResDef = ourCtx.getResourceDefinition(theResourceName);
-				Map<String, RuntimeSearchParam> sps = new HashMap<>();
-				for (RuntimeSearchParam nextSp : nextResDef.getSearchParams()) {
-					sps.put(nextSp.getName(), nextSp);
-				}
-				return sps;
-			}
+		Observation obs = new Observation();
+		obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE1");
+		Set<BaseResourceIndexedSearchParam> tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
+		assertEquals(1, tokens.size());
+		assertEquals("CODE1", ((ResourceIndexedSearchParamToken) tokens.iterator().next()).getValue());
 
-			@Override
-			public List<JpaRuntimeSearchParam> getActiveUniqueSearchParams(String theResourceName, Set<String> theParamNames) {
-				throw new UnsupportedOperationException();
-			}
+		obs = new Observation();
+		obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE2");
+		tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
+		assertEquals(1, tokens.size());
+		assertEquals("CODE2", ((ResourceIndexedSearchParamToken) tokens.iterator().next()).getValue());
 
-			@Override
-			public List<JpaRuntimeSearchParam> getActiveUniqueSearchParams(String theResourceName) {
-				throw new UnsupportedOperationException();
-			}
+		// Simulate a registry refresh
+		searchParamRegistry.myActiveSearchParams = new HashMap<>();
+		obs = new Observation();
+		obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE3");
+		tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
+		assertEquals(1, tokens.size());
+		assertEquals("CODE3", ((ResourceIndexedSearchParamToken) tokens.iterator().next()).getValue());
+	}
 
-			@Override
-			public void refreshCacheIfNecessary() {
-				// nothing
-			}
+	@Test
+	public void testParamWithOrInPath() {
+		Observation obs = new Observation();
+		obs.addCategory().addCoding().setSystem("SYSTEM").setCode("CODE");
 
-			@Override
-			public void requestRefresh() {
-				// nothing
-			}
-		};
+		MySearchParamRegistry searchParamRegistry = new MySearchParamRegistry();
 
 		SearchParamExtractorR4 extractor = new SearchParamExtractorR4(ourCtx, ourValidationSupport, searchParamRegistry);
 		Set<BaseResourceIndexedSearchParam> tokens = extractor.extractSearchParamTokens(new ResourceTable(), obs);
@@ -89,6 +81,56 @@ public class SearchParamExtractorR4Test {
 		assertEquals("CODE", token.getValue());
 	}
 
+	private static class MySearchParamRegistry implements ISearchParamRegistry {
+
+		private Map<String, Map<String, RuntimeSearchParam>> myActiveSearchParams = new HashMap<>();
+
+		@Override
+		public void forceRefresh() {
+			// nothing
+		}
+
+		@Override
+		public RuntimeSearchParam getActiveSearchParam(String theResourceName, String theParamName) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Map<String, Map<String, RuntimeSearchParam>> getActiveSearchParams() {
+			return myActiveSearchParams;
+		}
+
+		@Override
+		public Map<String, RuntimeSearchParam> getActiveSearchParams(String theResourceName) {
+			RuntimeResourceDefinition nextResDef = ourCtx.getResourceDefinition(theResourceName);
+			Map<String, RuntimeSearchParam> sps = new HashMap<>();
+			for (RuntimeSearchParam nextSp : nextResDef.getSearchParams()) {
+				sps.put(nextSp.getName(), nextSp);
+			}
+			return sps;
+		}
+
+		@Override
+		public List<JpaRuntimeSearchParam> getActiveUniqueSearchParams(String theResourceName, Set<String> theParamNames) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public List<JpaRuntimeSearchParam> getActiveUniqueSearchParams(String theResourceName) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void refreshCacheIfNecessary() {
+			// nothing
+		}
+
+		@Override
+		public void requestRefresh() {
+			// nothing
+		}
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
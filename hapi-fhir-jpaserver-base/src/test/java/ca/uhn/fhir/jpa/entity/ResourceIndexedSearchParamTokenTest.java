@@ -0,0 +1,43 @@
+package ca.uhn.fhir.jpa.entity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResourceIndexedSearchParamTokenTest {
+
+	@Test
+	public void testHashFunctions() {
+		ResourceIndexedSearchParamToken token = new ResourceIndexedSearchParamToken("code", "http://example.com", "abc");
+		ResourceTable resource = new ResourceTable();
+		resource.setResourceType("Patient");
+		token.setResource(resource);
+		token.calculateHashes();
+
+		assertEquals(BaseResourceIndexedSearchParam.calculateHashIdentity("Patient", "code"), token.getHashIdentity().longValue());
+		assertEquals(ResourceIndexedSearchParamToken.calculateHashSystem("Patient", "code", "http://example.com"), token.getHashSystem().longValue());
+		assertEquals(ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", "http://example.com", "abc"), token.getHashSystemAndValue().longValue());
+		assertEquals(ResourceIndexedSearchParamToken.calculateHashValue("Patient", "code", "abc"), token.getHashValue().longValue());
+	}
+
+	@Test
+	public void testHashFunctionsDistinguishValues() {
+		assertNotEquals(
+			ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", "a|b", "c"),
+			ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", "a", "b|c"));
+		assertNotEquals(
+			ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", null, "abc"),
+			ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", "null", "abc"));
+		assertNotEquals(
+			BaseResourceIndexedSearchParam.calculateHashIdentity("Patient", "code"),
+			BaseResourceIndexedSearchParam.calculateHashIdentity("Observation", "code"));
+	}
+
+	@Test
+	public void testHashBlankSystemMatchesNullSystem() {
+		assertEquals(
+			ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", "", "abc"),
+			ResourceIndexedSearchParamToken.calculateHashSystemAndValue("Patient", "code", null, "abc"));
+	}
+
+}
@@ -2999,6 +2999,7 @@ public class ResourceProviderDstu3Test extends BaseResourceProviderDstu3Test {
 				.execute();
 
 		final String uuid2 = toSearchUuidFromLinkNext(result2);
+		mySearchCoordinatorSvc.flushLastReturned();
 		Search search2 = newTxTemplate().execute(new TransactionCallback<Search>() {
 			@Override
 			public Search doInTransaction(TransactionStatus theStatus) {
@@ -3059,6 +3060,7 @@ public class ResourceProviderDstu3Test extends BaseResourceProviderDstu3Test {
 				.execute();
 
 		final String uuid2 = toSearchUuidFromLinkNext(result2);
+		mySearchCoordinatorSvc.flushLastReturned();
 		Search search2 = newTxTemplate().execute(new TransactionCallback<Search>() {
 			@Override
 			public Search doInTransaction(TransactionStatus theStatus) {
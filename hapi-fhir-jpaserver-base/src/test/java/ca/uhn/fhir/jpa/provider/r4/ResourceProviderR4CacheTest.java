@@ -8,8 +8,12 @@ import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.client.interceptor.CapturingInterceptor;
 import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IIdType;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.Organization;
 import org.hl7.fhir.r4.model.Patient;
+import org.hl7.fhir.r4.model.Reference;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Test;
@@ -168,9 +172,10 @@ public class ResourceProviderR4CacheTest extends BaseResourceProviderR4Test {
 		assertThat(results1.getMeta().getLastUpdated(), lessThan(new Date()));
 		assertThat(results1.getId(), not(blankOrNullString()));
 
-		Patient pt2 = new Patient();
-		pt2.addName().setFamily("FAM");
-		myClient.create().resource(pt2).execute();
+		// Writes to other resource types don't affect the cache
+		Organization org = new Organization();
+		org.setName("FAM");
+		myClient.create().resource(org).execute();
 
 		Bundle results2 = myClient.search().forResource("Patient").where(Patient.FAMILY.matches().value("FAM")).returnBundle(Bundle.class).execute();
 		assertEquals(1, results2.getEntry().size());
@@ -180,6 +185,57 @@ public class ResourceProviderR4CacheTest extends BaseResourceProviderR4Test {
 		assertEquals(results1.getId(), results2.getId());
 	}
 
+	@Test
+	public void testCacheNotUsedAfterWriteToSearchedType() throws IOException {
+
+		Patient pt1 = new Patient();
+		pt1.addName().setFamily("FAM");
+		myClient.create().resource(pt1).execute();
+
+		Bundle results1 = myClient.search().forResource("Patient").where(Patient.FAMILY.matches().value("FAM")).returnBundle(Bundle.class).execute();
+		assertEquals(1, results1.getEntry().size());
+		assertEquals(1, mySearchEntityDao.count());
+
+		Patient pt2 = new Patient();
+		pt2.addName().setFamily("FAM");
+		myClient.create().resource(pt2).execute();
+
+		Bundle results2 = myClient.search().forResource("Patient").where(Patient.FAMILY.matches().value("FAM")).returnBundle(Bundle.class).execute();
+		assertEquals(2, results2.getEntry().size());
+		assertEquals(2, mySearchEntityDao.count());
+		assertThat(myCapturingInterceptor.getLastResponse().getHeaders(Constants.HEADER_X_CACHE), empty());
+		assertNotEquals(results1.getId(), results2.getId());
+
+		// Searches created after the write may be reused again
+		Bundle results3 = myClient.search().forResource("Patient").where(Patient.FAMILY.matches().value("FAM")).returnBundle(Bundle.class).execute();
+		assertEquals(2, results3.getEntry().size());
+		assertEquals(2, mySearchEntityDao.count());
+		assertEquals("HIT from " + ourServerBase, myCapturingInterceptor.getLastResponse().getHeaders(Constants.HEADER_X_CACHE).get(0));
+	}
+
+	@Test
+	public void testCacheNotUsedForChainedSearchAfterWriteToOtherType() throws IOException {
+
+		Patient pt1 = new Patient();
+		pt1.addName().setFamily("FAM1");
+		IIdType ptId = myClient.create().resource(pt1).execute().getId().toUnqualifiedVersionless();
+
+		Observation obs = new Observation();
+		obs.setSubject(new Reference(ptId));
+		myClient.create().resource(obs).execute();
+
+		Bundle results1 = myClient.search().forResource("Observation").where(Observation.SUBJECT.hasChainedProperty(Patient.FAMILY.matches().value("FAM2"))).returnBundle(Bundle.class).execute();
+		assertEquals(0, results1.getEntry().size());
+
+		pt1.setId(ptId);
+		pt1.getNameFirstRep().setFamily("FAM2");
+		myClient.update().resource(pt1).execute();
+
+		Bundle results2 = myClient.search().forResource("Observation").where(Observation.SUBJECT.hasChainedProperty(Patient.FAMILY.matches().value("FAM2"))).returnBundle(Bundle.class).execute();
+		assertEquals(1, results2.getEntry().size());
+		assertThat(myCapturingInterceptor.getLastResponse().getHeaders(Constants.HEADER_X_CACHE), empty());
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
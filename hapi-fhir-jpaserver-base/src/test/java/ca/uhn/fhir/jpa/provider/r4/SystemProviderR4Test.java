@@ -201,6 +201,33 @@ public class SystemProviderR4Test extends BaseJpaR4Test {
 		assertEquals("get-resource-counts", op.getCode());
 	}
 
+	@Test
+	public void testBulkImport() throws Exception {
+		Patient p1 = new Patient();
+		p1.setId("BULKPROV1");
+		p1.addName().setFamily("BULKPROVFAM1");
+		Patient p2 = new Patient();
+		p2.addName().setFamily("BULKPROVFAM2");
+		String input = myFhirCtx.newJsonParser().encodeResourceToString(p1) + "\n" + myFhirCtx.newJsonParser().encodeResourceToString(p2) + "\n";
+
+		HttpPost post = new HttpPost(ourServerBase + "/$bulk-import");
+		post.setEntity(new StringEntity(input, ContentType.create("application/fhir+ndjson", "UTF-8")));
+		CloseableHttpResponse http = ourHttpClient.execute(post);
+		try {
+			String output = IOUtils.toString(http.getEntity().getContent(), StandardCharsets.UTF_8);
+			ourLog.info(output);
+			assertEquals(200, http.getStatusLine().getStatusCode());
+
+			Parameters response = myFhirCtx.newXmlParser().parseResource(Parameters.class, output);
+			assertEquals(2, ((IntegerType) response.getParameter().get(0).getValue()).getValue().intValue());
+			assertEquals(0, ((IntegerType) response.getParameter().get(1).getValue()).getValue().intValue());
+		} finally {
+			IOUtils.closeQuietly(http);
+		}
+
+		assertEquals("BULKPROVFAM1", myPatientDao.read(new IdType("Patient/BULKPROV1"), mySrd).getNameFirstRep().getFamily());
+	}
+
 	@Test
 	public void testMarkResourcesForReindexing() throws Exception {
 		HttpGet get = new HttpGet(ourServerBase + "/$mark-all-resources-for-reindexing");
@@ -19,7 +19,6 @@ import ca.uhn.fhir.rest.api.server.IBundleProvider;
 import ca.uhn.fhir.rest.param.StringParam;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.util.TestUtil;
-import com.google.common.collect.Lists;
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -27,7 +26,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -40,7 +38,10 @@ import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -53,8 +54,6 @@ import static org.mockito.Mockito.*;
 public class SearchCoordinatorSvcImplTest {
 
 	private static FhirContext ourCtx = FhirContext.forDstu3();
-	@Captor
-	ArgumentCaptor<Iterable<SearchResult>> mySearchResultIterCaptor;
 	@Mock
 	private IDao myCallingDao;
 	@Mock
@@ -68,6 +67,9 @@ public class SearchCoordinatorSvcImplTest {
 	private ISearchIncludeDao mySearchIncludeDao;
 	@Mock
 	private ISearchResultDao mySearchResultDao;
+	@Mock
+	private SearchResultBulkWriter mySearchResultBulkWriter;
+	private List<Long> mySavedResultPids;
 	private SearchCoordinatorSvcImpl mySvc;
 
 	@Mock
@@ -89,12 +91,26 @@ public class SearchCoordinatorSvcImplTest {
 		mySvc.setSearchDaoForUnitTest(mySearchDao);
 		mySvc.setSearchDaoIncludeForUnitTest(mySearchIncludeDao);
 		mySvc.setSearchDaoResultForUnitTest(mySearchResultDao);
+		mySvc.setSearchResultBulkWriterForUnitTest(mySearchResultBulkWriter);
 
 		myDaoConfig = new DaoConfig();
 		mySvc.setDaoConfigForUnitTest(myDaoConfig);
 
 		when(myCallingDao.newSearchBuilder()).thenReturn(mySearchBuider);
 
+		// The PID list passed to the writer is reused, so keep a copy of what was saved
+		mySavedResultPids = Collections.synchronizedList(new ArrayList<Long>());
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock theInvocation) throws Throwable {
+				List<Long> pids = (List<Long>) theInvocation.getArguments()[1];
+				int firstOrder = (Integer) theInvocation.getArguments()[2];
+				assertEquals(mySavedResultPids.size(), firstOrder);
+				mySavedResultPids.addAll(pids);
+				return null;
+			}
+		}).when(mySearchResultBulkWriter).saveResults(any(Search.class), any(List.class), anyInt());
+
 		doAnswer(new Answer<Void>() {
 			@Override
 			public Void answer(InvocationOnMock theInvocation) throws Throwable {
@@ -182,15 +198,9 @@ public class SearchCoordinatorSvcImplTest {
 		ArgumentCaptor<Search> searchCaptor = ArgumentCaptor.forClass(Search.class);
 		verify(mySearchDao, atLeastOnce()).save(searchCaptor.capture());
 
-		verify(mySearchResultDao, atLeastOnce()).save(mySearchResultIterCaptor.capture());
-		List<SearchResult> allResults = new ArrayList<SearchResult>();
-		for (Iterable<SearchResult> next : mySearchResultIterCaptor.getAllValues()) {
-			allResults.addAll(Lists.newArrayList(next));
-		}
-
-		assertEquals(790, allResults.size());
-		assertEquals(10, allResults.get(0).getResourcePid().longValue());
-		assertEquals(799, allResults.get(789).getResourcePid().longValue());
+		assertEquals(790, mySavedResultPids.size());
+		assertEquals(10, mySavedResultPids.get(0).longValue());
+		assertEquals(799, mySavedResultPids.get(789).longValue());
 	}
 
 	@Test
@@ -217,6 +227,58 @@ public class SearchCoordinatorSvcImplTest {
 
 	}
 
+	/**
+	 * A page beyond the initial sync waits for the search thread to sync
+	 * more results, and is woken as soon as they are synced rather than
+	 * on the next poll. A partial last page is returned as soon as the
+	 * search finishes.
+	 */
+	@Test
+	public void testAsyncSearchWaitsForLaterPagesSameCoordinator() throws InterruptedException {
+		mySvc.setSyncSizeForUnitTests(10);
+
+		SearchParameterMap params = new SearchParameterMap();
+		params.add("name", new StringParam("ANAME"));
+
+		// The search thread syncs the first 10 PIDs and then blocks until the gate is opened
+		final CountDownLatch gate = new CountDownLatch(1);
+		List<Long> pids = createPidSequence(10, 105);
+		GatedIterator<Long> iter = new GatedIterator<Long>(pids.iterator(), 10, gate);
+		when(mySearchBuider.createQuery(Mockito.same(params), any(String.class))).thenReturn(iter);
+
+		doAnswer(loadPids()).when(mySearchBuider).loadResourcesByPid(any(List.class), any(List.class), any(Set.class), anyBoolean(), any(EntityManager.class), any(FhirContext.class), same(myCallingDao));
+
+		IBundleProvider result = mySvc.registerSearch(myCallingDao, params, "Patient", new CacheControlDirective());
+		assertNotNull(result.getUuid());
+
+		final AtomicLong openedAt = new AtomicLong();
+		Thread opener = new Thread(() -> {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			openedAt.set(System.currentTimeMillis());
+			gate.countDown();
+		});
+		opener.start();
+
+		List<IBaseResource> resources = result.getResources(10, 20);
+		long latency = System.currentTimeMillis() - openedAt.get();
+		opener.join();
+		assertEquals(10, resources.size());
+		assertEquals("20", resources.get(0).getIdElement().getValueAsString());
+		assertEquals("29", resources.get(9).getIdElement().getValueAsString());
+
+		// Polling every 500ms (or waiting out the 1000ms safety timeout) would take far longer
+		assertThat(latency, lessThan(250L));
+
+		resources = result.getResources(90, 100);
+		assertEquals(5, resources.size());
+		assertEquals("100", resources.get(0).getIdElement().getValueAsString());
+		assertEquals("104", resources.get(4).getIdElement().getValueAsString());
+	}
+
 	/**
 	 * Subsequent requests for the same search (i.e. a request for the next
 	 * page) within the same JVM will not use the original bundle provider
@@ -435,6 +497,42 @@ public class SearchCoordinatorSvcImplTest {
 	}
 
 
+	/**
+	 * Returns the first few elements immediately, and then blocks until the
+	 * gate is opened before returning the rest
+	 */
+	public static class GatedIterator<T> extends BaseIterator<T> implements Iterator<T> {
+
+		private int myCount;
+		private CountDownLatch myGate;
+		private int myOpenCount;
+		private Iterator<T> myWrap;
+
+		public GatedIterator(Iterator<T> theWrap, int theOpenCount, CountDownLatch theGate) {
+			myWrap = theWrap;
+			myOpenCount = theOpenCount;
+			myGate = theGate;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return myWrap.hasNext();
+		}
+
+		@Override
+		public T next() {
+			if (myCount++ >= myOpenCount) {
+				try {
+					myGate.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+			return myWrap.next();
+		}
+
+	}
+
 	public static class SlowIterator<T> extends BaseIterator<T> implements Iterator<T> {
 
 		private int myDelay;
@@ -0,0 +1,43 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.*;
+
+public class LongArrayListTest {
+
+	@Test
+	public void testAddAndGet() {
+		LongArrayList list = new LongArrayList(1);
+		for (long i = 0; i < 1000; i++) {
+			list.add(i);
+		}
+		assertEquals(1000, list.size());
+		assertEquals(500L, list.getLong(500));
+		assertEquals(Long.valueOf(999L), list.get(999));
+		assertThat(list.subList(10, 13), contains(10L, 11L, 12L));
+	}
+
+	@Test
+	public void testAddAll() {
+		LongArrayList list = new LongArrayList(Arrays.asList(1L, 2L));
+		list.addAll(new LongArrayList(Arrays.asList(3L, 4L)));
+		list.addAll(Arrays.asList(5L));
+		assertThat(list, contains(1L, 2L, 3L, 4L, 5L));
+
+		list.clear();
+		assertEquals(0, list.size());
+		assertTrue(list.isEmpty());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testGetOutOfBounds() {
+		LongArrayList list = new LongArrayList();
+		list.add(1L);
+		list.getLong(1);
+	}
+
+}
@@ -0,0 +1,77 @@
+package ca.uhn.fhir.jpa.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.*;
+
+public class LongHashSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		LongHashSet set = new LongHashSet();
+		assertTrue(set.add(1L));
+		assertTrue(set.add(0L));
+		assertTrue(set.add(-5L));
+		assertFalse(set.add(1L));
+		assertFalse(set.add(Long.valueOf(0L)));
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(1L));
+		assertTrue(set.contains(Long.valueOf(-5L)));
+		assertFalse(set.contains(2L));
+		assertFalse(set.contains("1"));
+		assertThat(set, containsInAnyOrder(0L, 1L, -5L));
+	}
+
+	@Test
+	public void testClear() {
+		LongHashSet set = new LongHashSet(Arrays.asList(0L, 1L, 2L));
+		set.clear();
+		assertEquals(0, set.size());
+		assertFalse(set.contains(0L));
+		assertThat(set, empty());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testModifyWhileIterating() {
+		LongHashSet set = new LongHashSet(Arrays.asList(1L, 2L));
+		for (Long next : set) {
+			set.add(next + 100);
+		}
+	}
+
+	@Test
+	public void testRandomOperationsMatchHashSet() {
+		Random random = new Random(123);
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<>();
+
+		for (int i = 0; i < 100000; i++) {
+			long value = random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(value), set.remove(value));
+			} else {
+				assertEquals(expected.add(value), set.add(value));
+			}
+			assertEquals(expected.size(), set.size());
+		}
+
+		assertEquals(expected, set);
+		for (long i = 0; i < 5000; i++) {
+			assertEquals(expected.contains(i), set.contains(i));
+		}
+	}
+
+	@Test
+	public void testRemoveAll() {
+		LongHashSet set = new LongHashSet(Arrays.asList(1L, 2L, 3L));
+		assertTrue(set.removeAll(new LongHashSet(Arrays.asList(1L, 2L, 3L))));
+		assertThat(set, empty());
+		assertFalse(set.removeAll(Collections.singleton(4L)));
+	}
+
+}
@@ -53,6 +53,7 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 	private String myDescription;
 	private final boolean myIdempotent;
 	private final Integer myIdParamIndex;
+	private boolean myManualRequestMode;
 	private final String myName;
 	private final RestOperationTypeEnum myOtherOperatiopnType;
 	private List<ReturnType> myReturnParams;
@@ -153,6 +154,7 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 			Operation theAnnotation) {
 		this(theReturnResourceType, theReturnTypeFromRp, theMethod, theContext, theProvider, theAnnotation.idempotent(), theAnnotation.name(), theAnnotation.type(), theAnnotation.returnParameters(),
 				theAnnotation.bundleType());
+		myManualRequestMode = theAnnotation.manualRequest();
 	}
 
 	public String getDescription() {
@@ -222,7 +224,7 @@ public class OperationMethodBinding extends BaseResourceReturningMethodBinding {
 
 	@Override
 	public Object invokeServer(IRestfulServer<?> theServer, RequestDetails theRequest) throws BaseServerResponseException, IOException {
-		if (theRequest.getRequestType() == RequestTypeEnum.POST) {
+		if (theRequest.getRequestType() == RequestTypeEnum.POST && !myManualRequestMode) {
 			IBaseResource requestContents = ResourceParameter.loadResourceFromRequest(theRequest, this, null);
 			theRequest.getUserData().put(OperationParameter.REQUEST_CONTENTS_USERDATA_KEY, requestContents);
 		}
@@ -7,11 +7,11 @@ import org.hl7.fhir.utilities.validation.ValidationMessage.IssueSeverity;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.Validate;
 import org.hl7.fhir.dstu2016may.formats.IParser;
@@ -44,7 +44,7 @@ import ca.uhn.fhir.rest.server.exceptions.InvalidRequestException;
 
 public final class HapiWorkerContext implements IWorkerContext, ValueSetExpanderFactory  {
 	private final FhirContext myCtx;
-	private Map<String, Resource> myFetchedResourceCache = new HashMap<String, Resource>();
+	private final Map<String, Resource> myFetchedResourceCache = new ConcurrentHashMap<String, Resource>();
 	private IValidationSupport myValidationSupport;
 
 	public HapiWorkerContext(FhirContext theCtx, IValidationSupport theValidationSupport) {
@@ -27,13 +27,14 @@ import org.hl7.fhir.utilities.TranslationServices;
 import org.hl7.fhir.utilities.validation.ValidationMessage.IssueSeverity;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public final class HapiWorkerContext implements IWorkerContext, ValueSetExpander, ValueSetExpanderFactory {
   private final FhirContext myCtx;
-  private Map<String, Resource> myFetchedResourceCache = new HashMap<String, Resource>();
+  private Map<String, Resource> myFetchedResourceCache = new ConcurrentHashMap<String, Resource>();
   private IValidationSupport myValidationSupport;
   private ExpansionProfile myExpansionProfile;
 
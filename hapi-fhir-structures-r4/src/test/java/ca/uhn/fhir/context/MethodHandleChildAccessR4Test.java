@@ -0,0 +1,123 @@
+package ca.uhn.fhir.context;
+
+import ca.uhn.fhir.util.FhirTerser;
+import ca.uhn.fhir.util.TestUtil;
+import org.hl7.fhir.instance.model.api.IBaseReference;
+import org.hl7.fhir.r4.model.*;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MethodHandleChildAccessR4Test {
+	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(MethodHandleChildAccessR4Test.class);
+	private static FhirContext ourCtx = FhirContext.forR4();
+
+	@Test
+	public void testChildAccessorsUseMethodHandles() {
+		FhirContext ctx = newMethodHandleContext();
+
+		BaseRuntimeChildDefinition child = ctx.getResourceDefinition(Patient.class).getChildByName("name");
+		assertTrue(child.getAccessor().getClass().getName(), child.getAccessor().getClass().getSimpleName().startsWith("MethodHandle"));
+		assertTrue(child.getMutator().getClass().getName(), child.getMutator().getClass().getSimpleName().startsWith("MethodHandle"));
+
+		child = ourCtx.getResourceDefinition(Patient.class).getChildByName("name");
+		assertTrue(child.getAccessor().getClass().getName(), child.getAccessor().getClass().getSimpleName().startsWith("Field"));
+	}
+
+	@Test
+	public void testParseAndEncodeMatchesReflectiveAccess() {
+		FhirContext ctx = newMethodHandleContext();
+		Bundle bundle = createBundle(10);
+
+		String expectedJson = ourCtx.newJsonParser().encodeResourceToString(bundle);
+		String expectedXml = ourCtx.newXmlParser().encodeResourceToString(bundle);
+
+		Bundle parsed = ctx.newJsonParser().parseResource(Bundle.class, expectedJson);
+		assertEquals(expectedJson, ctx.newJsonParser().encodeResourceToString(parsed));
+		assertEquals(expectedXml, ctx.newXmlParser().encodeResourceToString(parsed));
+
+		parsed = ctx.newXmlParser().parseResource(Bundle.class, expectedXml);
+		assertEquals(expectedJson, ctx.newJsonParser().encodeResourceToString(parsed));
+
+		List<IBaseReference> refs = ctx.newTerser().getAllPopulatedChildElementsOfType(parsed, IBaseReference.class);
+		List<IBaseReference> expectedRefs = ourCtx.newTerser().getAllPopulatedChildElementsOfType(bundle, IBaseReference.class);
+		assertEquals(expectedRefs.size(), refs.size());
+
+		FhirTerser terser = ctx.newTerser();
+		Patient patient = (Patient) parsed.getEntry().get(0).getResource();
+		assertEquals("FAMILY0", terser.getSingleValueOrNull(patient, "Patient.name.family", StringType.class).getValue());
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+	private static Bundle createBundle(int thePatientCount) {
+		Bundle retVal = new Bundle();
+		retVal.setType(Bundle.BundleType.COLLECTION);
+		for (int i = 0; i < thePatientCount; i++) {
+			Patient p = new Patient();
+			p.setId("Patient/P" + i);
+			p.getMeta().addProfile("http://example.com/profile");
+			p.addIdentifier().setSystem("http://example.com/mrn").setValue("MRN" + i);
+			p.addName().setFamily("FAMILY" + i).addGiven("GIVEN" + i).addGiven("MIDDLE");
+			p.setGender(Enumerations.AdministrativeGender.FEMALE);
+			p.setBirthDateElement(new DateType("1970-01-0" + ((i % 9) + 1)));
+			p.addTelecom().setSystem(ContactPoint.ContactPointSystem.PHONE).setValue("555-000" + i);
+			p.addAddress().addLine("1 Main Street").setCity("Toronto").setCountry("CA");
+			p.addExtension().setUrl("http://example.com/ext").setValue(new StringType("EXT" + i));
+			retVal.addEntry().setFullUrl(p.getId()).setResource(p);
+
+			Observation o = new Observation();
+			o.setId("Observation/O" + i);
+			o.setStatus(Observation.ObservationStatus.FINAL);
+			o.getCode().addCoding().setSystem("http://loinc.org").setCode("8480-6").setDisplay("Systolic blood pressure");
+			o.getSubject().setReference(p.getId());
+			o.setEffective(new DateTimeType(new Date(1500000000000L + i)));
+			o.setValue(new Quantity().setValue(120 + i).setUnit("mmHg").setSystem("http://unitsofmeasure.org").setCode("mm[Hg]"));
+			o.addComponent().getCode().addCoding().setSystem("http://loinc.org").setCode("8462-4");
+			o.getComponentFirstRep().setValue(new Quantity().setValue(80 + i).setUnit("mmHg"));
+			retVal.addEntry().setFullUrl(o.getId()).setResource(o);
+		}
+		return retVal;
+	}
+
+	private static FhirContext newMethodHandleContext() {
+		FhirContext retVal = FhirContext.forR4();
+		retVal.setPerformanceOptions(PerformanceOptionsEnum.METHOD_HANDLE_CHILD_ACCESS);
+		return retVal;
+	}
+
+	/**
+	 * Compares parse/encode throughput with and without {@link PerformanceOptionsEnum#METHOD_HANDLE_CHILD_ACCESS}
+	 */
+	public static void main(String[] args) {
+		Bundle bundle = createBundle(100);
+		String json = FhirContext.forR4().newJsonParser().encodeResourceToString(bundle);
+
+		FhirContext reflectionCtx = FhirContext.forR4();
+		FhirContext methodHandleCtx = newMethodHandleContext();
+
+		int passes = 2000;
+		for (int round = 0; round < 3; round++) {
+			for (FhirContext ctx : new FhirContext[] {reflectionCtx, methodHandleCtx}) {
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < passes; i++) {
+					Bundle parsed = ctx.newJsonParser().parseResource(Bundle.class, json);
+					ctx.newJsonParser().encodeResourceToString(parsed);
+				}
+				long delay = System.currentTimeMillis() - start;
+				float per = (float) delay / (float) passes;
+
+				ourLog.info("{} - Took {} ms - {}ms / pass", ctx.getPerformanceOptions(), delay, per);
+			}
+		}
+	}
+
+}
@@ -12,7 +12,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.HashSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.containsString;
@@ -358,6 +360,137 @@ public class JsonParserR4Test {
 
 	}
 
+	@Test
+	public void testParseBundleIncrementally() {
+		String input = "{\n" +
+			"  \"resourceType\": \"Bundle\",\n" +
+			"  \"id\": \"BUNDLEID\",\n" +
+			"  \"type\": \"transaction\",\n" +
+			"  \"entry\": [\n" +
+			"    {\n" +
+			"      \"fullUrl\": \"http://example.com/Patient/A\",\n" +
+			"      \"resource\": {\n" +
+			"        \"resourceType\": \"Patient\",\n" +
+			"        \"contained\": [ { \"id\": \"org\", \"name\": \"ORG\", \"resourceType\": \"Organization\" } ],\n" +
+			"        \"managingOrganization\": { \"reference\": \"#org\" }\n" +
+			"      }\n" +
+			"    },\n" +
+			"    {\n" +
+			"      \"resource\": { \"resourceType\": \"Observation\", \"status\": \"final\" },\n" +
+			"      \"request\": { \"method\": \"POST\", \"url\": \"urn:uuid:0001\" }\n" +
+			"    }\n" +
+			"  ],\n" +
+			"  \"total\": 2\n" +
+			"}";
+
+		IBundleEntryIterator<Bundle> iter = ourCtx.newJsonParser().parseBundleIncrementally(Bundle.class, new StringReader(input));
+		try {
+			assertEquals(Bundle.BundleType.TRANSACTION, iter.getBundle().getType());
+
+			assertTrue(iter.hasNext());
+			Bundle.BundleEntryComponent entry = (Bundle.BundleEntryComponent) iter.next();
+			Patient pt = (Patient) entry.getResource();
+			assertEquals("http://example.com/Patient/A", pt.getIdElement().getValue());
+			assertEquals("ORG", ((Organization) pt.getManagingOrganization().getResource()).getName());
+
+			assertTrue(iter.hasNext());
+			entry = (Bundle.BundleEntryComponent) iter.next();
+			assertEquals("urn:uuid:0001", entry.getResource().getIdElement().getValue());
+			assertEquals(Bundle.HTTPVerb.POST, entry.getRequest().getMethod());
+
+			assertFalse(iter.hasNext());
+			try {
+				iter.next();
+				fail();
+			} catch (NoSuchElementException e) {
+				// good
+			}
+
+			Bundle bundle = iter.getBundle();
+			assertEquals("BUNDLEID", bundle.getIdElement().getIdPart());
+			assertEquals(2, bundle.getTotal());
+			assertEquals(0, bundle.getEntry().size());
+		} finally {
+			iter.close();
+		}
+	}
+
+	@Test
+	public void testParseBundleIncrementallyResourceTypeNotFirst() {
+		String input = "{\"type\": \"collection\", \"entry\": [ { \"resource\": { \"resourceType\": \"Patient\", \"active\": true } } ], \"resourceType\": \"Bundle\"}";
+
+		IBundleEntryIterator<Bundle> iter = ourCtx.newJsonParser().parseBundleIncrementally(Bundle.class, new StringReader(input));
+		assertEquals(Bundle.BundleType.COLLECTION, iter.getBundle().getType());
+		assertTrue(iter.hasNext());
+		Patient pt = (Patient) ((Bundle.BundleEntryComponent) iter.next()).getResource();
+		assertTrue(pt.getActive());
+		assertFalse(iter.hasNext());
+		assertEquals(0, iter.getBundle().getEntry().size());
+	}
+
+	@Test
+	public void testParseBundleStreaming() throws Exception {
+		String input = "{\n" +
+			"  \"resourceType\": \"Bundle\",\n" +
+			"  \"type\": \"collection\",\n" +
+			"  \"entry\": [\n" +
+			"    {\n" +
+			"      \"fullUrl\": \"http://example.com/Patient/A\",\n" +
+			"      \"resource\": {\n" +
+			"        \"resourceType\": \"Patient\",\n" +
+			"        \"contained\": [ { \"id\": \"org\", \"name\": \"ORG\", \"resourceType\": \"Organization\" } ],\n" +
+			"        \"_gender\": { \"extension\": [ { \"url\": \"http://foo\", \"valueString\": \"BAR\" } ] },\n" +
+			"        \"gender\": \"male\",\n" +
+			"        \"name\": [ { \"family\": \"FAMILY\", \"given\": [ \"G1\", null ], \"_given\": [ null, { \"id\": \"G2ID\" } ] } ],\n" +
+			"        \"_birthDate\": { \"id\": \"BDID\" },\n" +
+			"        \"managingOrganization\": { \"reference\": \"#org\" }\n" +
+			"      }\n" +
+			"    },\n" +
+			"    {\n" +
+			"      \"resource\": { \"id\": \"B\", \"resourceType\": \"Observation\", \"status\": \"final\", \"valueQuantity\": { \"value\": 1.50 } }\n" +
+			"    }\n" +
+			"  ]\n" +
+			"}";
+
+		FhirContext ctx = FhirContext.forR4();
+		ctx.getParserOptions().setStreamingJsonParsing(true);
+		Bundle streamed = ctx.newJsonParser().parseResource(Bundle.class, input);
+		Bundle nonStreamed = ourCtx.newJsonParser().parseResource(Bundle.class, input);
+
+		String expected = ourCtx.newJsonParser().encodeResourceToString(nonStreamed);
+		String actual = ourCtx.newJsonParser().encodeResourceToString(streamed);
+		ourLog.info(actual);
+		assertEquals(expected, actual);
+
+		Patient pt = (Patient) streamed.getEntry().get(0).getResource();
+		assertEquals("http://example.com/Patient/A", pt.getIdElement().getValue());
+		assertEquals("BAR", ((StringType) pt.getGenderElement().getExtensionByUrl("http://foo").getValue()).getValue());
+		assertEquals("G2ID", pt.getNameFirstRep().getGiven().get(1).getId());
+		assertEquals("BDID", pt.getBirthDateElement().getId());
+		assertEquals("ORG", ((Organization) pt.getManagingOrganization().getResource()).getName());
+
+		Observation obs = (Observation) streamed.getEntry().get(1).getResource();
+		assertEquals("1.50", obs.getValueQuantity().getValueElement().getValueAsString());
+	}
+
+	@Test
+	public void testParseStreamingMissingResourceType() {
+		FhirContext ctx = FhirContext.forR4();
+		ctx.getParserOptions().setStreamingJsonParsing(true);
+		try {
+			ctx.newJsonParser().parseResource("{ \"id\": \"A\" }");
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Invalid JSON content detected, missing required element: 'resourceType'", e.getMessage());
+		}
+		try {
+			ctx.newJsonParser().parseResource("FOO");
+			fail();
+		} catch (DataFormatException e) {
+			assertEquals("Failed to parse JSON content, error was: Content does not appear to be FHIR JSON, first non-whitespace character was: 'F' (must be '{')", e.getMessage());
+		}
+	}
+
 	@AfterClass
 	public static void afterClassClearContext() {
 		TestUtil.clearAllStaticFieldsForUnitTest();
@@ -12,8 +12,11 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.hamcrest.Matchers.containsString;
@@ -38,6 +41,44 @@ public class XmlParserR4Test {
 		return b;
 	}
 
+	@Test
+	public void testParseBundleIncrementally() throws Exception {
+		String input = "<Bundle xmlns=\"http://hl7.org/fhir\">" +
+			"<id value=\"BUNDLEID\"/>" +
+			"<type value=\"collection\"/>" +
+			"<entry>" +
+			"<fullUrl value=\"http://example.com/Patient/A\"/>" +
+			"<resource><Patient><active value=\"true\"/></Patient></resource>" +
+			"</entry>" +
+			"<!-- comment -->" +
+			"<entry>" +
+			"<resource><Observation><status value=\"final\"/></Observation></resource>" +
+			"</entry>" +
+			"<signature><whoReference><reference value=\"Practitioner/123\"/></whoReference></signature>" +
+			"</Bundle>";
+
+		IBundleEntryIterator<Bundle> iter = ourCtx.newXmlParser().parseBundleIncrementally(Bundle.class, new StringReader(input));
+		try {
+			assertEquals(Bundle.BundleType.COLLECTION, iter.getBundle().getType());
+
+			List<Bundle.BundleEntryComponent> entries = new ArrayList<>();
+			while (iter.hasNext()) {
+				entries.add((Bundle.BundleEntryComponent) iter.next());
+			}
+			assertEquals(2, entries.size());
+			assertEquals("http://example.com/Patient/A", entries.get(0).getResource().getIdElement().getValue());
+			assertTrue(((Patient) entries.get(0).getResource()).getActive());
+			assertEquals(Observation.ObservationStatus.FINAL, ((Observation) entries.get(1).getResource()).getStatus());
+
+			Bundle bundle = iter.getBundle();
+			assertEquals("BUNDLEID", bundle.getIdElement().getIdPart());
+			assertEquals("Practitioner/123", bundle.getSignature().getWhoReference().getReference());
+			assertEquals(0, bundle.getEntry().size());
+		} finally {
+			iter.close();
+		}
+	}
+
 	@Test
 	public void testParseAndEncodeXmlNumericEntity() {
 		String input = "<Patient xmlns=\"http://hl7.org/fhir\">\n" +
@@ -7,6 +7,7 @@ import ca.uhn.fhir.rest.annotation.OperationParam;
 import ca.uhn.fhir.rest.annotation.Read;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.rest.api.server.IBundleProvider;
+import ca.uhn.fhir.rest.api.server.RequestDetails;
 import ca.uhn.fhir.rest.client.api.IGenericClient;
 import ca.uhn.fhir.rest.client.interceptor.LoggingInterceptor;
 import ca.uhn.fhir.util.PortUtil;
@@ -32,6 +33,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -44,6 +46,7 @@ public class OperationServerR4Test {
 	private static CloseableHttpClient ourClient;
 	private static FhirContext ourCtx;
 
+	private static String ourLastBody;
 	private static IdType ourLastId;
 	private static String ourLastMethod;
 	private static StringType ourLastParam1;
@@ -64,6 +67,7 @@ public class OperationServerR4Test {
 		ourLastParamUnsignedInt1 = null;
 		ourLastParamMoney1 = null;
 		ourLastId = null;
+		ourLastBody = null;
 		ourLastMethod = "";
 
 		myFhirClient = ourCtx.newRestfulGenericClient("http://localhost:" + ourPort);
@@ -338,6 +342,22 @@ public class OperationServerR4Test {
 		assertEquals("RET1", resp.getParameter().get(0).getName());
 	}
 
+	@Test
+	public void testOperationOnServerManualRequest() throws Exception {
+		String body = "{\"resourceType\":\"Patient\"}\n{\"resourceType\":\"Patient\"}\n";
+
+		HttpPost httpPost = new HttpPost("http://localhost:" + ourPort + "/$OP_SERVER_MANUAL_REQUEST?PARAM1=PARAM1val");
+		httpPost.setEntity(new StringEntity(body, ContentType.create("application/fhir+ndjson", "UTF-8")));
+		HttpResponse status = ourClient.execute(httpPost);
+
+		assertEquals(200, status.getStatusLine().getStatusCode());
+		IOUtils.closeQuietly(status.getEntity().getContent());
+
+		assertEquals("$OP_SERVER_MANUAL_REQUEST", ourLastMethod);
+		assertEquals("PARAM1val", ourLastParam1.getValue());
+		assertEquals(body, ourLastBody);
+	}
+
 	@Test
 	public void testOperationOnType() throws Exception {
 		Parameters p = new Parameters();
@@ -763,6 +783,23 @@ public class OperationServerR4Test {
 			return retVal;
 		}
 
+		//@formatter:off
+		@Operation(name="$OP_SERVER_MANUAL_REQUEST", manualRequest=true)
+		public Parameters opServerManualRequest(
+				@OperationParam(name="PARAM1") StringType theParam1,
+				RequestDetails theRequestDetails
+				) throws IOException {
+			//@formatter:on
+
+			ourLastMethod = "$OP_SERVER_MANUAL_REQUEST";
+			ourLastParam1 = theParam1;
+			ourLastBody = IOUtils.toString(theRequestDetails.getInputStream(), StandardCharsets.UTF_8);
+
+			Parameters retVal = new Parameters();
+			retVal.addParameter().setName("RET1").setValue(new StringType("RETVAL1"));
+			return retVal;
+		}
+
 		//@formatter:off
 		@Operation(name="$OP_SERVER_LIST_PARAM")
 		public Parameters opServerListParam(
@@ -32,7 +32,7 @@ public class DefaultProfileValidationSupport implements IValidationSupport {
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(DefaultProfileValidationSupport.class);
 
 	private Map<String, CodeSystem> myCodeSystems;
-	private Map<String, StructureDefinition> myStructureDefinitions;
+	private volatile Map<String, StructureDefinition> myStructureDefinitions;
 	private Map<String, ValueSet> myValueSets;
 
 	@Override
@@ -6,6 +6,7 @@ import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.validation.IValidationContext;
 import ca.uhn.fhir.validation.IValidatorModule;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
@@ -43,6 +44,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 public class FhirInstanceValidator extends BaseValidatorBridge implements IValidatorModule {
@@ -51,6 +53,11 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 
 	private boolean myAnyExtensionsAllowed = true;
 	private BestPracticeWarningLevel myBestPracticeWarningLevel;
+	/**
+	 * Data which the validator derives from the (converted) conformance resources, which are
+	 * shared between threads
+	 */
+	private final Cache<org.hl7.fhir.r4.model.Base, ConcurrentMap<String, Object>> myDefinitionDataCache = Caffeine.newBuilder().weakKeys().build();
 	private DocumentBuilderFactory myDocBuilderFactory;
 	private StructureDefinition myStructureDefintion;
 	private IValidationSupport myValidationSupport;
@@ -205,6 +212,7 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		v.setAnyExtensionsAllowed(isAnyExtensionsAllowed());
 		v.setResourceIdRule(IdStatus.OPTIONAL);
 		v.setNoTerminologyChecks(isNoTerminologyChecks());
+		v.setDefinitionDataCache(myDefinitionDataCache.asMap());
 
 		List<ValidationMessage> messages = new ArrayList<>();
 
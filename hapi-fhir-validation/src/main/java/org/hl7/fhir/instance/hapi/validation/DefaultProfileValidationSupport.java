@@ -23,7 +23,7 @@ import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 public class DefaultProfileValidationSupport implements IValidationSupport {
 
-	private Map<String, ValueSet> myDefaultValueSets;
+	private volatile Map<String, ValueSet> myDefaultValueSets;
 	private Map<String, ValueSet> myCodeSystems;
 
 	/**
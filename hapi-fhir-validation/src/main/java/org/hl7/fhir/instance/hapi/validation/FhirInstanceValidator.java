@@ -28,7 +28,7 @@ import ca.uhn.fhir.validation.IValidatorModule;
 
 public class FhirInstanceValidator extends BaseValidatorBridge implements IValidatorModule {
 
-  private static FhirContext ourHl7OrgCtx;
+  private static volatile FhirContext ourHl7OrgCtx;
   private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirInstanceValidator.class);
   private BestPracticeWarningLevel myBestPracticeWarningLevel;
   private DocumentBuilderFactory myDocBuilderFactory;
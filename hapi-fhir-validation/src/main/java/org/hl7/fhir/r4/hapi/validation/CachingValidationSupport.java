@@ -0,0 +1,283 @@
+package org.hl7.fhir.r4.hapi.validation;
+
+import ca.uhn.fhir.context.FhirContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.hapi.ctx.IValidationSupport;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.CanonicalType;
+import org.hl7.fhir.r4.model.CodeSystem;
+import org.hl7.fhir.r4.model.Property;
+import org.hl7.fhir.r4.model.StructureDefinition;
+import org.hl7.fhir.r4.model.ValueSet.ConceptReferenceComponent;
+import org.hl7.fhir.r4.model.ValueSet.ConceptSetComponent;
+import org.hl7.fhir.r4.model.ValueSet.ConceptSetFilterComponent;
+import org.hl7.fhir.r4.model.ValueSet.ValueSetExpansionComponent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation support which wraps another validation support and caches the
+ * results of its lookups. This is useful when the same profiles are validated
+ * against many times, since the wrapped support (and anything it fetches from
+ * a database or over the network) then only needs to be consulted once per
+ * conformance resource.
+ * <p>
+ * The resources returned by this class are shared between validations, and may be used by
+ * several threads at once. They must be treated as read-only. {@link FhirInstanceValidator}
+ * keeps the data it derives from them (e.g. compiled FHIRPath invariants) in a concurrent map
+ * of its own rather than in the resources' user data.
+ * </p>
+ * <p>
+ * Cached entries expire after a configurable amount of time (default is
+ * {@link #DEFAULT_EXPIRE_AFTER_WRITE_MILLIS}). The cache is also bounded by the total
+ * weight of its entries (default is {@link #DEFAULT_MAXIMUM_WEIGHT}), where the weight
+ * of an entry is the number of elements in the resources it holds. This is an estimate
+ * of the memory used, not an exact count of bytes.
+ * Call {@link #flushCaches()} to force everything to be reloaded, e.g. after
+ * a profile has been changed. If this class is used by a {@link FhirInstanceValidator},
+ * call {@link FhirInstanceValidator#flushCaches()} instead, which also flushes this class.
+ * Note that entries are not keyed by {@link FhirContext}, so an instance of this class
+ * should only be used with a single context.
+ * </p>
+ */
+public class CachingValidationSupport implements IValidationSupport {
+
+	public static final long DEFAULT_EXPIRE_AFTER_WRITE_MILLIS = 60 * DateUtils.MILLIS_PER_SECOND;
+	/**
+	 * The default maximum total weight of the cache, which is roughly the number of elements
+	 * in all of the cached resources
+	 */
+	public static final long DEFAULT_MAXIMUM_WEIGHT = 2000000;
+	private static final Object NULL = new Object();
+
+	private final Cache<List<Object>, Object> myCache;
+	private final IValidationSupport myWrap;
+
+	/**
+	 * Constructor which uses the default expiry time
+	 *
+	 * @param theWrap The validation support to cache results from
+	 */
+	public CachingValidationSupport(IValidationSupport theWrap) {
+		this(theWrap, DEFAULT_EXPIRE_AFTER_WRITE_MILLIS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theWrap                   The validation support to cache results from
+	 * @param theExpireAfterWriteMillis The number of milliseconds that a cached result is kept for
+	 */
+	public CachingValidationSupport(IValidationSupport theWrap, long theExpireAfterWriteMillis) {
+		this(theWrap, theExpireAfterWriteMillis, DEFAULT_MAXIMUM_WEIGHT);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param theWrap                   The validation support to cache results from
+	 * @param theExpireAfterWriteMillis The number of milliseconds that a cached result is kept for
+	 * @param theMaximumWeight          The maximum total weight of the cached results, which is roughly the
+	 *                                  number of elements in all of the cached resources. A single result which
+	 *                                  is heavier than this is not kept at all.
+	 */
+	public CachingValidationSupport(IValidationSupport theWrap, long theExpireAfterWriteMillis, long theMaximumWeight) {
+		Validate.notNull(theWrap, "theWrap must not be null");
+		Validate.isTrue(theExpireAfterWriteMillis > 0, "theExpireAfterWriteMillis must be greater than 0");
+		Validate.isTrue(theMaximumWeight > 0, "theMaximumWeight must be greater than 0");
+		myWrap = theWrap;
+		myCache = Caffeine
+			.newBuilder()
+			.expireAfterWrite(theExpireAfterWriteMillis, TimeUnit.MILLISECONDS)
+			.maximumWeight(theMaximumWeight)
+			.weigher(new ElementCountWeigher())
+			.recordStats()
+			.build();
+	}
+
+	@Override
+	public ValueSetExpansionComponent expandValueSet(final FhirContext theContext, final ConceptSetComponent theInclude) {
+		return loadFromCache(key("expandValueSet", toKey(theInclude)), new ILoader<ValueSetExpansionComponent>() {
+			@Override
+			public ValueSetExpansionComponent load() {
+				return myWrap.expandValueSet(theContext, theInclude);
+			}
+		});
+	}
+
+	@Override
+	public List<IBaseResource> fetchAllConformanceResources(final FhirContext theContext) {
+		return loadFromCache(key("fetchAllConformanceResources"), new ILoader<List<IBaseResource>>() {
+			@Override
+			public List<IBaseResource> load() {
+				return myWrap.fetchAllConformanceResources(theContext);
+			}
+		});
+	}
+
+	@Override
+	public List<StructureDefinition> fetchAllStructureDefinitions(final FhirContext theContext) {
+		return loadFromCache(key("fetchAllStructureDefinitions"), new ILoader<List<StructureDefinition>>() {
+			@Override
+			public List<StructureDefinition> load() {
+				return myWrap.fetchAllStructureDefinitions(theContext);
+			}
+		});
+	}
+
+	@Override
+	public CodeSystem fetchCodeSystem(final FhirContext theContext, final String theSystem) {
+		return loadFromCache(key("fetchCodeSystem", theSystem), new ILoader<CodeSystem>() {
+			@Override
+			public CodeSystem load() {
+				return myWrap.fetchCodeSystem(theContext, theSystem);
+			}
+		});
+	}
+
+	@Override
+	public <T extends IBaseResource> T fetchResource(final FhirContext theContext, final Class<T> theClass, final String theUri) {
+		return loadFromCache(key("fetchResource", theClass.getName(), theUri), new ILoader<T>() {
+			@Override
+			public T load() {
+				return myWrap.fetchResource(theContext, theClass, theUri);
+			}
+		});
+	}
+
+	@Override
+	public StructureDefinition fetchStructureDefinition(final FhirContext theCtx, final String theUrl) {
+		return loadFromCache(key("fetchStructureDefinition", theUrl), new ILoader<StructureDefinition>() {
+			@Override
+			public StructureDefinition load() {
+				return myWrap.fetchStructureDefinition(theCtx, theUrl);
+			}
+		});
+	}
+
+	/**
+	 * Discards all cached results, so that they are loaded again from the
+	 * wrapped validation support the next time they are needed
+	 */
+	public void flushCaches() {
+		myCache.invalidateAll();
+	}
+
+	/**
+	 * Returns the hit/miss statistics for the cache
+	 */
+	public CacheStats getCacheStats() {
+		return myCache.stats();
+	}
+
+	@Override
+	public boolean isCodeSystemSupported(final FhirContext theContext, final String theSystem) {
+		Boolean retVal = loadFromCache(key("isCodeSystemSupported", theSystem), new ILoader<Boolean>() {
+			@Override
+			public Boolean load() {
+				return myWrap.isCodeSystemSupported(theContext, theSystem);
+			}
+		});
+		return Boolean.TRUE.equals(retVal);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T loadFromCache(List<Object> theKey, ILoader<T> theLoader) {
+		Object retVal = myCache.getIfPresent(theKey);
+		if (retVal == null) {
+			retVal = theLoader.load();
+			myCache.put(theKey, retVal != null ? retVal : NULL);
+		}
+		if (retVal == NULL) {
+			return null;
+		}
+		return (T) retVal;
+	}
+
+	@Override
+	public CodeValidationResult validateCode(final FhirContext theContext, final String theCodeSystem, final String theCode, final String theDisplay) {
+		return loadFromCache(key("validateCode", theCodeSystem, theCode, theDisplay), new ILoader<CodeValidationResult>() {
+			@Override
+			public CodeValidationResult load() {
+				return myWrap.validateCode(theContext, theCodeSystem, theCode, theDisplay);
+			}
+		});
+	}
+
+	/**
+	 * Cache keys are lists of the operation name followed by its arguments, so that
+	 * two different sets of arguments can never produce the same key
+	 */
+	private static List<Object> key(Object... theParts) {
+		return Arrays.asList(theParts);
+	}
+
+	private static List<Object> toKey(ConceptSetComponent theInclude) {
+		List<Object> valueSets = new ArrayList<>();
+		for (CanonicalType next : theInclude.getValueSet()) {
+			valueSets.add(next.getValue());
+		}
+		List<Object> concepts = new ArrayList<>();
+		for (ConceptReferenceComponent next : theInclude.getConcept()) {
+			concepts.add(next.getCode());
+		}
+		List<Object> filters = new ArrayList<>();
+		for (ConceptSetFilterComponent next : theInclude.getFilter()) {
+			filters.add(key(next.getProperty(), next.getOp() != null ? next.getOp().toCode() : null, next.getValue()));
+		}
+		return key(theInclude.getSystem(), theInclude.getVersion(), valueSets, concepts, filters);
+	}
+
+	/**
+	 * Weighs each cached result by the number of elements it contains
+	 */
+	private static class ElementCountWeigher implements Weigher<List<Object>, Object> {
+		@Override
+		public int weigh(List<Object> theKey, Object theValue) {
+			long retVal = 1;
+			Deque<Object> toCount = new ArrayDeque<>();
+			toCount.add(theValue);
+			while (!toCount.isEmpty()) {
+				Object next = toCount.pop();
+				if (next instanceof List) {
+					addNonNull(toCount, (List<?>) next);
+				} else if (next instanceof IValidationSupport.CodeValidationResult) {
+					retVal++;
+					if (((IValidationSupport.CodeValidationResult) next).asConceptDefinition() != null) {
+						toCount.add(((IValidationSupport.CodeValidationResult) next).asConceptDefinition());
+					}
+				} else if (next instanceof Base) {
+					retVal++;
+					for (Property nextChild : ((Base) next).children()) {
+						addNonNull(toCount, nextChild.getValues());
+					}
+				}
+			}
+			return (int) Math.min(retVal, Integer.MAX_VALUE);
+		}
+
+		private static void addNonNull(Deque<Object> theDeque, List<?> theValues) {
+			for (Object next : theValues) {
+				if (next != null) {
+					theDeque.add(next);
+				}
+			}
+		}
+	}
+
+	private interface ILoader<T> {
+		T load();
+	}
+
+}
@@ -2,11 +2,13 @@ package org.hl7.fhir.r4.hapi.validation;
 
 import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.time.DateUtils;
 import org.hl7.fhir.exceptions.PathEngineException;
 import org.hl7.fhir.r4.hapi.ctx.*;
 import org.hl7.fhir.r4.model.*;
@@ -21,6 +23,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.gson.*;
 
 import ca.uhn.fhir.context.ConfigurationException;
@@ -29,18 +33,27 @@ import ca.uhn.fhir.rest.api.EncodingEnum;
 import ca.uhn.fhir.rest.server.exceptions.InternalErrorException;
 import ca.uhn.fhir.validation.IValidationContext;
 import ca.uhn.fhir.validation.IValidatorModule;
+import ca.uhn.fhir.validation.ValidationContext;
 
 public class FhirInstanceValidator extends BaseValidatorBridge implements IValidatorModule {
 
 	private static final org.slf4j.Logger ourLog = org.slf4j.LoggerFactory.getLogger(FhirInstanceValidator.class);
+	private static final long WORKER_CONTEXT_MAX_AGE_MILLIS = 10 * DateUtils.MILLIS_PER_SECOND;
 
 	private boolean myAnyExtensionsAllowed = true;
 	private BestPracticeWarningLevel myBestPracticeWarningLevel;
+	/**
+	 * Data which the validator derives from conformance resources (e.g. compiled invariants), keyed
+	 * by the identity of the definition it came from. Conformance resources may be shared between
+	 * threads, so this is kept here instead of in their user data.
+	 */
+	private final Cache<Base, ConcurrentMap<String, Object>> myDefinitionDataCache = Caffeine.newBuilder().weakKeys().build();
 	private DocumentBuilderFactory myDocBuilderFactory;
 	private boolean myNoTerminologyChecks;
 	private StructureDefinition myStructureDefintion;
-
+	private boolean myValidateParsedResources;
 	private IValidationSupport myValidationSupport;
+	private volatile CachedWorkerContext myWorkerContext;
 
 	/**
 	 * Constructor
@@ -122,6 +135,20 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		return myNoTerminologyChecks;
 	}
 
+	/**
+	 * If set to {@literal true} (default is false), resources which are passed to the validator
+	 * as already parsed objects (e.g. using {@link ca.uhn.fhir.validation.FhirValidator#validateWithResult(org.hl7.fhir.instance.model.api.IBaseResource)})
+	 * are converted directly into the validator's element model instead of being encoded
+	 * as XML and then parsed again.
+	 * <p>
+	 * Note that any line and column numbers reported for these resources will not
+	 * correspond to the XML encoding of the resource.
+	 * </p>
+	 */
+	public boolean isValidateParsedResources() {
+		return myValidateParsedResources;
+	}
+
 	/**
 	 * If set to {@literal true} (default is true) extensions which are not known to the
 	 * validator (e.g. because they have not been explicitly declared in a profile) will
@@ -156,6 +183,20 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		myNoTerminologyChecks = theNoTerminologyChecks;
 	}
 
+	/**
+	 * If set to {@literal true} (default is false), resources which are passed to the validator
+	 * as already parsed objects (e.g. using {@link ca.uhn.fhir.validation.FhirValidator#validateWithResult(org.hl7.fhir.instance.model.api.IBaseResource)})
+	 * are converted directly into the validator's element model instead of being encoded
+	 * as XML and then parsed again.
+	 * <p>
+	 * Note that any line and column numbers reported for these resources will not
+	 * correspond to the XML encoding of the resource.
+	 * </p>
+	 */
+	public void setValidateParsedResources(boolean theValidateParsedResources) {
+		myValidateParsedResources = theValidateParsedResources;
+	}
+
 	public void setStructureDefintion(StructureDefinition theStructureDefintion) {
 		myStructureDefintion = theStructureDefintion;
 	}
@@ -166,15 +207,44 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 	 */
 	public void setValidationSupport(IValidationSupport theValidationSupport) {
 		myValidationSupport = theValidationSupport;
+		myWorkerContext = null;
 	}
 
-	protected List<ValidationMessage> validate(final FhirContext theCtx, String theInput, EncodingEnum theEncoding) {
-		HapiWorkerContext workerContext = new HapiWorkerContext(theCtx, myValidationSupport);
+	/**
+	 * Returns a worker context for the given FHIR context. Worker contexts cache the
+	 * conformance resources they fetch, so one is shared between validations for a short
+	 * time, after which a new one is created in order to pick up any changes made to
+	 * those resources in the validation support.
+	 */
+	/**
+	 * Discards the worker context which is shared between validations, along with any data which
+	 * has been derived from conformance resources, so that everything is fetched again from the
+	 * validation support. If the validation support is a {@link CachingValidationSupport}, its
+	 * caches are flushed too.
+	 */
+	public void flushCaches() {
+		myWorkerContext = null;
+		myDefinitionDataCache.invalidateAll();
+		if (myValidationSupport instanceof CachingValidationSupport) {
+			((CachingValidationSupport) myValidationSupport).flushCaches();
+		}
+	}
+
+	private HapiWorkerContext getWorkerContext(FhirContext theCtx) {
+		long now = System.currentTimeMillis();
+		CachedWorkerContext retVal = myWorkerContext;
+		if (retVal == null || retVal.myFhirContext != theCtx || retVal.myExpiry < now) {
+			retVal = new CachedWorkerContext(theCtx, new HapiWorkerContext(theCtx, myValidationSupport), now + WORKER_CONTEXT_MAX_AGE_MILLIS);
+			myWorkerContext = retVal;
+		}
+		return retVal.myWorkerContext;
+	}
 
+	private InstanceValidator newInstanceValidator(FhirContext theCtx) {
 		InstanceValidator v;
 		IEvaluationContext evaluationCtx = new NullEvaluationContext();
 		try {
-			v = new InstanceValidator(workerContext, evaluationCtx);
+			v = new InstanceValidator(getWorkerContext(theCtx), evaluationCtx);
 		} catch (Exception e) {
 			throw new ConfigurationException(e);
 		}
@@ -183,7 +253,39 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 		v.setAnyExtensionsAllowed(isAnyExtensionsAllowed());
 		v.setResourceIdRule(IdStatus.OPTIONAL);
 		v.setNoTerminologyChecks(isNoTerminologyChecks());
+		v.setDefinitionDataCache(myDefinitionDataCache.asMap());
+		return v;
+	}
+
+	private List<ValidationMessage> removeIgnoredMessages(List<ValidationMessage> theMessages) {
+		for (int i = 0; i < theMessages.size(); i++) {
+			ValidationMessage next = theMessages.get(i);
+			if ("Binding has no source, so can't be checked".equals(next.getMessage())) {
+				theMessages.remove(i);
+				i--;
+			}
+		}
+		return theMessages;
+	}
 
+	protected List<ValidationMessage> validate(final FhirContext theCtx, Resource theResource) {
+		InstanceValidator v = newInstanceValidator(theCtx);
+		List<ValidationMessage> messages = new ArrayList<ValidationMessage>();
+
+		StructureDefinition profile = findStructureDefinitionForResourceName(theCtx, theResource.fhirType());
+		if (profile != null) {
+			try {
+				v.validate(null, messages, theResource, profile);
+			} catch (Exception e) {
+				throw new InternalErrorException("Unexpected failure while validating resource", e);
+			}
+		}
+
+		return removeIgnoredMessages(messages);
+	}
+
+	protected List<ValidationMessage> validate(final FhirContext theCtx, String theInput, EncodingEnum theEncoding) {
+		InstanceValidator v = newInstanceValidator(theCtx);
 		List<ValidationMessage> messages = new ArrayList<ValidationMessage>();
 
 		if (theEncoding == EncodingEnum.XML) {
@@ -226,21 +328,34 @@ public class FhirInstanceValidator extends BaseValidatorBridge implements IValid
 			throw new IllegalArgumentException("Unknown encoding: " + theEncoding);
 		}
 
-		for (int i = 0; i < messages.size(); i++) {
-			ValidationMessage next = messages.get(i);
-			if ("Binding has no source, so can't be checked".equals(next.getMessage())) {
-				messages.remove(i);
-				i--;
-			}
-		}
-		return messages;
+		return removeIgnoredMessages(messages);
 	}
 
 	@Override
 	protected List<ValidationMessage> validate(IValidationContext<?> theCtx) {
+		/*
+		 * Contexts created from a parsed resource only produce their string form
+		 * by encoding the resource, so avoid that if we can. Contexts created from
+		 * text are always validated as text, since that's what the client sent us.
+		 */
+		if (myValidateParsedResources && theCtx instanceof ValidationContext && theCtx.getResource() instanceof Resource) {
+			return validate(theCtx.getFhirContext(), (Resource) theCtx.getResource());
+		}
 		return validate(theCtx.getFhirContext(), theCtx.getResourceAsString(), theCtx.getResourceAsStringEncoding());
 	}
 
+	private static class CachedWorkerContext {
+		private final long myExpiry;
+		private final FhirContext myFhirContext;
+		private final HapiWorkerContext myWorkerContext;
+
+		private CachedWorkerContext(FhirContext theFhirContext, HapiWorkerContext theWorkerContext, long theExpiry) {
+			myFhirContext = theFhirContext;
+			myWorkerContext = theWorkerContext;
+			myExpiry = theExpiry;
+		}
+	}
+
 	public static class NullEvaluationContext implements IEvaluationContext {
 
 		@Override
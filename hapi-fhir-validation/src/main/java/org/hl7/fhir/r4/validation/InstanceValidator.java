@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.rmi.CORBA.Util;
 
@@ -171,6 +173,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
   private boolean noBindingMsgSuppressed;
   private HashMap<Element, ResourceProfiles> resourceProfilesMap;
   private IValidatorResourceFetcher fetcher;
+  private ConcurrentMap<Base, ConcurrentMap<String, Object>> definitionDataCache;
   long time = 0;
   private ValidationProfileSet providedProfiles;
   private IEvaluationContext externalHostServices;
@@ -359,6 +362,47 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     return this;
   }
 
+  public ConcurrentMap<Base, ConcurrentMap<String, Object>> getDefinitionDataCache() {
+    return definitionDataCache;
+  }
+
+  /**
+   * Sets a map which holds the data that this validator derives from conformance resources
+   * (e.g. compiled FHIRPath expressions for invariants and slice discriminators), keyed by the
+   * definition element it was derived from. The map must compare keys by identity.
+   * <p>
+   * If this is not set, the data is stored in the user data of the definitions themselves,
+   * which is not safe if the same definitions are used by several threads at once. Set a
+   * shared map here when conformance resources are shared between threads.
+   * </p>
+   */
+  public IResourceValidator setDefinitionDataCache(ConcurrentMap<Base, ConcurrentMap<String, Object>> value) {
+    this.definitionDataCache = value;
+    return this;
+  }
+
+  private Object getDefinitionData(Base definition, String name) {
+    if (definitionDataCache == null)
+      return definition.getUserData(name);
+    ConcurrentMap<String, Object> data = definitionDataCache.get(definition);
+    return data != null ? data.get(name) : null;
+  }
+
+  private void setDefinitionData(Base definition, String name, Object value) {
+    if (definitionDataCache == null) {
+      definition.setUserData(name, value);
+      return;
+    }
+    ConcurrentMap<String, Object> data = definitionDataCache.get(definition);
+    if (data == null) {
+      data = new ConcurrentHashMap<String, Object>();
+      ConcurrentMap<String, Object> existing = definitionDataCache.putIfAbsent(definition, data);
+      if (existing != null)
+        data = existing;
+    }
+    data.put(name, value);
+  }
+
   private boolean allowUnknownExtension(String url) {
     if (url.contains("example.org") || url.contains("acme.com") || url.contains("nema.org") || url.startsWith("http://hl7.org/fhir/tools/StructureDefinition/") || url.equals("http://hl7.org/fhir/StructureDefinition/structuredefinition-expression"))
       // Added structuredefinition-expression explicitly because it wasn't defined in the version of the spec it needs to be used with
@@ -2302,7 +2346,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
     if (!slicer.getSlicing().hasDiscriminator())
       return false; // cannot validate in this case
 
-    ExpressionNode n = (ExpressionNode) ed.getUserData("slice.expression.cache");
+    ExpressionNode n = (ExpressionNode) getDefinitionData(ed, "slice.expression.cache");
     if (n == null) {
       long t = System.nanoTime();
       // GG: this approach is flawed because it treats discriminators individually rather than collectively
@@ -2356,7 +2400,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
         throw new FHIRException("Problem processing expression "+expression +" in profile " + profile.getUrl() + " path " + path + ": " + e.getMessage());
       }
       fpeTime = fpeTime + (System.nanoTime() - t);
-      ed.setUserData("slice.expression.cache", n);
+      setDefinitionData(ed, "slice.expression.cache", n);
     }
 
     String msg;
@@ -3333,7 +3377,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
         String type = null;
         ElementDefinition typeDefn = null;
 
-        String usesMustSupport = profile.getUserString("usesMustSupport");
+        String usesMustSupport = (String) getDefinitionData(profile, "usesMustSupport");
         if (usesMustSupport == null) {
           usesMustSupport = "N";
           for (ElementDefinition pe: profile.getSnapshot().getElement()) {
@@ -3342,7 +3386,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
               break;
             }
           }
-          profile.setUserData("usesMustSupport", usesMustSupport);
+          setDefinitionData(profile, "usesMustSupport", usesMustSupport);
         }
         if (usesMustSupport.equals("Y")) {
           String elementSupported = ei.element.getUserString("elementSupported");
@@ -3547,7 +3591,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
   }
 
   public void checkInvariant(ValidatorHostContext hostContext, List<ValidationMessage> errors, String path, StructureDefinition profile, Element resource, Element element, ElementDefinitionConstraintComponent inv) throws FHIRException {
-    ExpressionNode n = (ExpressionNode) inv.getUserData("validator.expression.cache");
+    ExpressionNode n = (ExpressionNode) getDefinitionData(inv, "validator.expression.cache");
     if (n == null) {
       long t = System.nanoTime();
       try {
@@ -3556,7 +3600,7 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
         throw new FHIRException("Problem processing expression "+inv.getExpression() +" in profile " + profile.getUrl() + " path " + path + ": " + e.getMessage());
       }
       fpeTime = fpeTime + (System.nanoTime() - t);
-      inv.setUserData("validator.expression.cache", n);
+      setDefinitionData(inv, "validator.expression.cache", n);
     }
 
     String msg;
@@ -3944,10 +3988,10 @@ public class InstanceValidator extends BaseValidator implements IResourceValidat
           for (ElementDefinitionConstraintComponent inv : ed.getConstraint()) {
             if (inv.hasExpression()) {
               try {
-                ExpressionNode n = (ExpressionNode) inv.getUserData("validator.expression.cache");
+                ExpressionNode n = (ExpressionNode) getDefinitionData(inv, "validator.expression.cache");
                 if (n == null) {
                   n = fpe.parse(inv.getExpression());
-                  inv.setUserData("validator.expression.cache", n);
+                  setDefinitionData(inv, "validator.expression.cache", n);
                 }
                 fpe.check(null, sd.getKind() == StructureDefinitionKind.RESOURCE ?  sd.getType() : "DomainResource", ed.getPath(), n);
               } catch (Exception e) {
@@ -33,6 +33,8 @@ import org.mockito.stubbing.Answer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.*;
@@ -1005,6 +1007,52 @@ public class FhirInstanceValidatorDstu3Test {
 		ourLog.info(output.getMessages().get(0).getMessage());
 	}
 
+	/**
+	 * The instance validator and its worker context are shared by every thread
+	 */
+	@Test
+	public void testValidateInParallelMatchesSerial() {
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(new FhirInstanceValidator(new DefaultProfileValidationSupport()));
+
+		List<String> inputs = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			Observation input = new Observation();
+			if (i % 2 == 0) {
+				input.setStatus(ObservationStatus.FINAL);
+			}
+			input.getCode().setText("Code " + i);
+			input.setValue(new StringType("Value " + i));
+			inputs.add(ourCtx.newJsonParser().encodeResourceToString(input));
+		}
+
+		List<ValidationResult> serial = val.validateTextWithResults(inputs.iterator());
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<ValidationResult> parallel;
+		try {
+			val.setExecutorService(executor);
+			parallel = val.validateTextWithResults(inputs.iterator());
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(serial.size(), parallel.size());
+		for (int i = 0; i < serial.size(); i++) {
+			assertEquals(toMessages(serial.get(i)), toMessages(parallel.get(i)));
+		}
+	}
+
+	private static List<String> toMessages(ValidationResult theResult) {
+		List<String> retVal = new ArrayList<>();
+		for (SingleValidationMessage next : theResult.getMessages()) {
+			retVal.add(next.getSeverity() + " " + next.getLocationString() + " " + next.getMessage());
+		}
+		return retVal;
+	}
+
 	@Test
 	public void testValueWithWhitespace() throws IOException {
 		String input = IOUtils.toString(FhirInstanceValidatorDstu3Test.class.getResourceAsStream("/dstu3-rick-test.json"), Charsets.UTF_8);
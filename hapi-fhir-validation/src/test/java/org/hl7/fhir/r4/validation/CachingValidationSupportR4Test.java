@@ -0,0 +1,155 @@
+package org.hl7.fhir.r4.validation;
+
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.util.TestUtil;
+import ca.uhn.fhir.validation.FhirValidator;
+import ca.uhn.fhir.validation.ValidationResult;
+import org.hl7.fhir.r4.hapi.ctx.DefaultProfileValidationSupport;
+import org.hl7.fhir.r4.hapi.ctx.IValidationSupport;
+import org.hl7.fhir.r4.hapi.validation.CachingValidationSupport;
+import org.hl7.fhir.r4.hapi.validation.FhirInstanceValidator;
+import org.hl7.fhir.r4.model.ElementDefinition;
+import org.hl7.fhir.r4.model.Observation;
+import org.hl7.fhir.r4.model.StructureDefinition;
+import org.hl7.fhir.r4.model.ValueSet;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.*;
+
+public class CachingValidationSupportR4Test {
+
+	private static FhirContext ourCtx = FhirContext.forR4();
+
+	@Test
+	public void testLookupsAreCached() {
+		IValidationSupport wrap = mock(IValidationSupport.class);
+		StructureDefinition sd = new StructureDefinition();
+		when(wrap.fetchStructureDefinition(any(FhirContext.class), eq("http://foo"))).thenReturn(sd);
+
+		CachingValidationSupport svc = new CachingValidationSupport(wrap);
+		assertSame(sd, svc.fetchStructureDefinition(ourCtx, "http://foo"));
+		assertSame(sd, svc.fetchStructureDefinition(ourCtx, "http://foo"));
+		assertNull(svc.fetchStructureDefinition(ourCtx, "http://bar"));
+		assertNull(svc.fetchStructureDefinition(ourCtx, "http://bar"));
+
+		verify(wrap, times(1)).fetchStructureDefinition(any(FhirContext.class), eq("http://foo"));
+		verify(wrap, times(1)).fetchStructureDefinition(any(FhirContext.class), eq("http://bar"));
+
+		svc.flushCaches();
+		assertSame(sd, svc.fetchStructureDefinition(ourCtx, "http://foo"));
+		verify(wrap, times(2)).fetchStructureDefinition(any(FhirContext.class), eq("http://foo"));
+	}
+
+	@Test
+	public void testCodeSystemSupportedIsCached() {
+		IValidationSupport wrap = mock(IValidationSupport.class);
+		when(wrap.isCodeSystemSupported(any(FhirContext.class), anyString())).thenReturn(true);
+
+		CachingValidationSupport svc = new CachingValidationSupport(wrap);
+		assertTrue(svc.isCodeSystemSupported(ourCtx, "http://loinc.org"));
+		assertTrue(svc.isCodeSystemSupported(ourCtx, "http://loinc.org"));
+
+		verify(wrap, times(1)).isCodeSystemSupported(any(FhirContext.class), eq("http://loinc.org"));
+	}
+
+	@Test
+	public void testKeysDoNotCollide() {
+		IValidationSupport wrap = mock(IValidationSupport.class);
+		IValidationSupport.CodeValidationResult first = new IValidationSupport.CodeValidationResult(null, "first");
+		IValidationSupport.CodeValidationResult second = new IValidationSupport.CodeValidationResult(null, "second");
+		when(wrap.validateCode(any(FhirContext.class), eq("http://foo a"), eq("b"), isNull(String.class))).thenReturn(first);
+		when(wrap.validateCode(any(FhirContext.class), eq("http://foo"), eq("a b"), isNull(String.class))).thenReturn(second);
+
+		CachingValidationSupport svc = new CachingValidationSupport(wrap);
+		assertSame(first, svc.validateCode(ourCtx, "http://foo a", "b", null));
+		assertSame(second, svc.validateCode(ourCtx, "http://foo", "a b", null));
+
+		ValueSet.ConceptSetComponent include1 = new ValueSet.ConceptSetComponent().setSystem("http://foo");
+		include1.addConcept().setCode("a b");
+		ValueSet.ConceptSetComponent include2 = new ValueSet.ConceptSetComponent().setSystem("http://foo");
+		include2.addConcept().setCode("a");
+		include2.addConcept().setCode("b");
+		svc.expandValueSet(ourCtx, include1);
+		svc.expandValueSet(ourCtx, include2);
+		verify(wrap, times(1)).expandValueSet(any(FhirContext.class), same(include1));
+		verify(wrap, times(1)).expandValueSet(any(FhirContext.class), same(include2));
+	}
+
+	@Test
+	public void testResultsHeavierThanMaximumWeightAreNotKept() throws InterruptedException {
+		IValidationSupport wrap = mock(IValidationSupport.class);
+		StructureDefinition sd = new StructureDefinition();
+		sd.setUrl("http://foo");
+		sd.setName("Foo");
+		for (int i = 0; i < 20; i++) {
+			sd.getSnapshot().addElement().setPath("Foo.element" + i);
+		}
+		when(wrap.fetchStructureDefinition(any(FhirContext.class), eq("http://foo"))).thenReturn(sd);
+
+		CachingValidationSupport svc = new CachingValidationSupport(wrap, CachingValidationSupport.DEFAULT_EXPIRE_AFTER_WRITE_MILLIS, 10);
+		svc.fetchStructureDefinition(ourCtx, "http://foo");
+
+		// Eviction happens asynchronously
+		long deadline = System.currentTimeMillis() + 10000;
+		while (svc.getCacheStats().evictionCount() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, svc.getCacheStats().evictionCount());
+
+		svc.fetchStructureDefinition(ourCtx, "http://foo");
+		verify(wrap, times(2)).fetchStructureDefinition(any(FhirContext.class), eq("http://foo"));
+	}
+
+	@Test
+	public void testInstanceValidatorFlushesCachingSupport() {
+		IValidationSupport wrap = mock(IValidationSupport.class);
+		StructureDefinition sd = new StructureDefinition();
+		when(wrap.fetchStructureDefinition(any(FhirContext.class), eq("http://foo"))).thenReturn(sd);
+
+		CachingValidationSupport svc = new CachingValidationSupport(wrap);
+		FhirInstanceValidator validator = new FhirInstanceValidator(svc);
+		svc.fetchStructureDefinition(ourCtx, "http://foo");
+		validator.flushCaches();
+		svc.fetchStructureDefinition(ourCtx, "http://foo");
+
+		verify(wrap, times(2)).fetchStructureDefinition(any(FhirContext.class), eq("http://foo"));
+	}
+
+	@Test
+	public void testValidateUsingCachedSupport() {
+		CachingValidationSupport svc = new CachingValidationSupport(new DefaultProfileValidationSupport());
+		FhirValidator val = ourCtx.newValidator();
+		val.setValidateAgainstStandardSchema(false);
+		val.setValidateAgainstStandardSchematron(false);
+		val.registerValidatorModule(new FhirInstanceValidator(svc));
+
+		for (int i = 0; i < 3; i++) {
+			Observation input = new Observation();
+			input.getCode().setText("No code here!");
+			ValidationResult output = val.validateWithResult(input);
+			assertEquals("Profile http://hl7.org/fhir/StructureDefinition/Observation, Element 'Observation.status': minimum required = 1, but only found 0", output.getMessages().get(0).getMessage());
+		}
+
+		assertThat(svc.getCacheStats().hitCount(), greaterThan(0L));
+
+		// The shared definitions must not have been written to by the validator
+		StructureDefinition sd = svc.fetchStructureDefinition(ourCtx, "http://hl7.org/fhir/StructureDefinition/Observation");
+		for (ElementDefinition nextElement : sd.getSnapshot().getElement()) {
+			for (ElementDefinition.ElementDefinitionConstraintComponent nextConstraint : nextElement.getConstraint()) {
+				assertFalse(nextConstraint.hasUserData("validator.expression.cache"));
+			}
+		}
+	}
+
+	@AfterClass
+	public static void afterClassClearContext() {
+		TestUtil.clearAllStaticFieldsForUnitTest();
+	}
+
+}
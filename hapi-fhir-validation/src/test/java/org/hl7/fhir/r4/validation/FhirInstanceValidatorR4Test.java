@@ -4,6 +4,8 @@ import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.rest.api.Constants;
 import ca.uhn.fhir.util.TestUtil;
 import ca.uhn.fhir.validation.FhirValidator;
+import ca.uhn.fhir.validation.IValidationContext;
+import ca.uhn.fhir.validation.IValidatorModule;
 import ca.uhn.fhir.validation.ResultSeverityEnum;
 import ca.uhn.fhir.validation.SingleValidationMessage;
 import ca.uhn.fhir.validation.ValidationResult;
@@ -36,7 +38,12 @@ import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.*;
@@ -852,6 +859,143 @@ public class FhirInstanceValidatorR4Test {
 
 	}
 
+	@Test
+	public void testValidateBundleEntriesInParallel() {
+		Bundle bundle = new Bundle();
+		bundle.setType(Bundle.BundleType.COLLECTION);
+		for (int i = 0; i < 20; i++) {
+			Observation obs = new Observation();
+			obs.getCode().setText("Observation " + i);
+			if (i % 2 == 0) {
+				obs.setStatus(ObservationStatus.FINAL);
+			}
+			bundle.addEntry().setResource(obs);
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			myVal.setExecutorService(executorService);
+			List<ValidationResult> results = myVal.validateBundleEntriesWithResults(bundle);
+			assertEquals(20, results.size());
+			for (int i = 0; i < results.size(); i++) {
+				List<SingleValidationMessage> errors = logResultsAndReturnErrorOnes(results.get(i));
+				assertEquals(errors.toString(), i % 2 == 0, errors.isEmpty());
+			}
+		} finally {
+			myVal.setExecutorService(null);
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testValidateInParallelOnlySubmitsAHundredAhead() {
+		final AtomicInteger validated = new AtomicInteger();
+		FhirValidator val = ourCtx.newValidator();
+		val.registerValidatorModule(new IValidatorModule() {
+			@Override
+			public void validateResource(IValidationContext<IBaseResource> theCtx) {
+				validated.incrementAndGet();
+			}
+		});
+
+		Iterator<IBaseResource> input = new Iterator<IBaseResource>() {
+			private int myCount;
+
+			@Override
+			public boolean hasNext() {
+				return myCount < 500;
+			}
+
+			@Override
+			public IBaseResource next() {
+				assertThat(myCount - validated.get(), lessThan(100));
+				myCount++;
+				return new Observation();
+			}
+		};
+
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		try {
+			val.setExecutorService(executorService);
+			assertEquals(500, val.validateWithResults(input).size());
+		} finally {
+			executorService.shutdown();
+		}
+		assertEquals(500, validated.get());
+	}
+
+	@Test
+	public void testValidateInParallelCancelsOutstandingOnFailure() throws InterruptedException {
+		final AtomicInteger validated = new AtomicInteger();
+		FhirValidator val = ourCtx.newValidator();
+		val.registerValidatorModule(new IValidatorModule() {
+			@Override
+			public void validateResource(IValidationContext<IBaseResource> theCtx) {
+				if (validated.incrementAndGet() == 1) {
+					throw new IllegalStateException("FAILED");
+				}
+			}
+		});
+
+		List<IBaseResource> input = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			input.add(new Observation());
+		}
+
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		try {
+			val.setExecutorService(executorService);
+			val.validateWithResults(input.iterator());
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("FAILED", e.getMessage());
+		} finally {
+			executorService.shutdown();
+		}
+
+		assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+		assertThat(validated.get(), lessThanOrEqualTo(100));
+	}
+
+	@Test
+	public void testValidateNdjson() throws IOException {
+		Observation valid = new Observation();
+		valid.setStatus(ObservationStatus.FINAL);
+		valid.getCode().setText("Valid");
+		Observation invalid = new Observation();
+		invalid.getCode().setText("Invalid");
+
+		String ndjson = ourCtx.newJsonParser().encodeResourceToString(invalid) + "\n" +
+			ourCtx.newJsonParser().encodeResourceToString(valid) + "\n" +
+			"\n" +
+			ourCtx.newJsonParser().encodeResourceToString(invalid) + "\n";
+
+		List<ValidationResult> results = myVal.validateNdjsonWithResults(new StringReader(ndjson));
+		assertEquals(3, results.size());
+		assertFalse(results.get(0).isSuccessful());
+		assertTrue(results.get(1).isSuccessful());
+		assertFalse(results.get(2).isSuccessful());
+	}
+
+	@Test
+	public void testValidateParsedResourceWithoutEncoding() {
+		myInstanceVal.setValidateParsedResources(true);
+
+		Observation input = new Observation();
+		input.getCode().addCoding().setSystem("http://loinc.org").setCode("12345");
+		input.setValue(new StringType("AAA"));
+
+		ValidationResult output = myVal.validateWithResult(input);
+		logResultsAndReturnAll(output);
+		assertThat(output.getMessages().size(), greaterThan(0));
+		assertEquals("Profile http://hl7.org/fhir/StructureDefinition/Observation, Element 'Observation.status': minimum required = 1, but only found 0", output.getMessages().get(0).getMessage());
+
+		input.setStatus(ObservationStatus.FINAL);
+		output = myVal.validateWithResult(input);
+		List<SingleValidationMessage> errors = logResultsAndReturnNonInformationalOnes(output);
+		assertEquals(errors.toString(), 0, errors.size());
+	}
+
 	@Test
 	public void testValidateResourceWithDefaultValueset() {
 		Observation input = new Observation();